@@ -67,6 +67,7 @@ import org.sagebionetworks.bridge.models.schedules.ActivityType;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.templates.TemplateType;
 import org.sagebionetworks.bridge.services.RequestInfoService;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.springframework.core.annotation.AnnotationUtils;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
@@ -286,7 +287,8 @@ public class BridgeUtils {
     /**
      * A simple means of providing template variables in template strings, in the format <code>${variableName}</code>.
      * This value will be replaced with the value of the variable name. The variable name/value pairs are passed to the
-     * method as a map. Variables that are not found in the map will be left in the string as is.
+     * method as a map. Variables that are not found in the map will be left in the string as is. Templates that are 
+     * rendered repeatedly should be compiled once with {@link CompiledTemplate}.
      *
      * @see <a href="https://sagebionetworks.jira.com/wiki/display/BRIDGE/EmailTemplate"></a>
      * 
@@ -298,13 +300,7 @@ public class BridgeUtils {
         checkNotNull(template);
         checkNotNull(values);
         
-        for (Map.Entry<String,String> entry : values.entrySet()) {
-            if (entry.getValue() != null) {
-                String var = "${"+entry.getKey()+"}";
-                template = template.replace(var, entry.getValue());
-            }
-        }
-        return template;
+        return CompiledTemplate.compile(template).render(values);
     }
     
     public static String generateGuid() {
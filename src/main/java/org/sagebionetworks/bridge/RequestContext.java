@@ -34,7 +34,12 @@ public class RequestContext {
         return context;
     }
 
-    /** @see #get */
+    /**
+     * Sets the request context for the current thread. A task that sets the context of the request that submitted it
+     * should restore the context it replaced when it finishes, rather than clearing it, because a bounded executor
+     * runs a task on the submitting thread when its queue is full.
+     * @see #get
+     */
     public static void set(RequestContext context) {
         REQUEST_CONTEXT_THREAD_LOCAL.set(context);
     }
@@ -63,6 +63,14 @@ public final class CacheKey {
     public static CacheKey channelThrottling(ThrottleRequestType throttleType, String userId) {
         return new CacheKey(userId, throttleType.name().toLowerCase(), "channel-throttling");
     }
+    /** Cache key for the count of requests made by all callers in an app during one window of a rate limit. */
+    public static CacheKey appRateLimit(ThrottleRequestType throttleType, String appId, long window) {
+        return new CacheKey(appId, throttleType.name().toLowerCase(), Long.toString(window), "app-rate-limit");
+    }
+    /** Cache key for the count of requests made by one caller during one window of a rate limit. */
+    public static CacheKey userRateLimit(ThrottleRequestType throttleType, String userId, long window) {
+        return new CacheKey(userId, throttleType.name().toLowerCase(), Long.toString(window), "user-rate-limit");
+    }
     public static final CacheKey emailSignInRequest(SignIn signIn) {
         return new CacheKey(signIn.getEmail(), signIn.getAppId(), "signInRequest");
     }
@@ -81,6 +89,22 @@ public final class CacheKey {
     public static final CacheKey lock(String value, Class<?> clazz) {
         return new CacheKey(value, clazz.getCanonicalName(), "lock");
     }
+    /** The progress of a push notification broadcast to a study. */
+    public static final CacheKey notificationBroadcast(String appId, String guid) {
+        return new CacheKey(guid, appId, "NotificationBroadcast");
+    }
+    /** Present when a running push notification broadcast has been asked to pause. */
+    public static final CacheKey notificationBroadcastPause(String appId, String guid) {
+        return new CacheKey(guid, appId, "NotificationBroadcastPause");
+    }
+    /** Held by the server that is running a push notification broadcast. */
+    public static final CacheKey notificationBroadcastLease(String appId, String guid) {
+        return new CacheKey(guid, appId, "NotificationBroadcastLease");
+    }
+    /** The progress and results of a bulk import of participants. */
+    public static final CacheKey participantImport(String appId, String guid) {
+        return new CacheKey(guid, appId, "ParticipantImport");
+    }
     public static final CacheKey passwordResetForEmail(String sptoken, String appId) {
         return new CacheKey(sptoken, appId); // no type, not great
     }
@@ -102,6 +126,10 @@ public final class CacheKey {
     public static final CacheKey subpopList(String appId) {
         return new CacheKey(appId, "SubpopulationList");
     }
+    /** The parts of a user's data that have been deleted, while the user is being deleted. */
+    public static final CacheKey userDeletion(String appId, String userId) {
+        return new CacheKey(userId, appId, "UserDeletion");
+    }
     public static final CacheKey userIdToSession(String userId) {
         return new CacheKey(userId, "session2", "user");
     }
@@ -11,6 +11,7 @@ import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.json.JsonRegistry;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -23,6 +24,10 @@ import org.springframework.stereotype.Component;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
 
 /**
  * A wrapper around our use of Redis.
@@ -30,7 +35,27 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 @Component
 public class CacheProvider {
     private static final String LOCAL_SERVICE_ERROR = "Cannot find cache service, have you started Redis? (original message: %s)";
+
+    /**
+     * KEYS[1] is the key, ARGV[1] the value it must hold, and ARGV[2] the new expiration in seconds. Returns 1 if the 
+     * expiration was set, and 0 if the key holds a different value or doesn't exist.
+     */
+    static final String EXPIRE_IF_EQUALS_SCRIPT =
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2])) end " +
+        "return 0";
+
+    /**
+     * KEYS[1] is the key and ARGV[1] the value it must hold. Returns 1 if the key was removed, and 0 if it holds a 
+     * different value or doesn't exist.
+     */
+    static final String REMOVE_IF_EQUALS_SCRIPT =
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('DEL', KEYS[1]) end " +
+        "return 0";
+
     private JedisOps jedisOps;
+    private JedisPool jedisPool;
     private int sessionExpireInSeconds;
 
     @Resource(name = "jedisOps")
@@ -38,6 +63,11 @@ public class CacheProvider {
         this.jedisOps = jedisOps;
     }
 
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
     @Resource(name = "sessionExpireInSeconds")
     final void setSessionExpireInSeconds(@SuppressWarnings("SameParameterValue") int sessionExpireInSeconds) {
         this.sessionExpireInSeconds = sessionExpireInSeconds;
@@ -96,7 +126,8 @@ public class CacheProvider {
             Long ttl = jedisOps.ttl(userIdToSessionKey.toString());
             int expiration = (ttl != null && ttl > 0L) ? ttl.intValue() : sessionExpireInSeconds;
                    
-            String ser = StudyParticipant.CACHE_WRITER.writeValueAsString(session);
+            String ser = JsonRegistry.writerFor(StudyParticipant.CACHE_WRITER, UserSession.class)
+                    .writeValueAsString(session);
             
             List<Object> results = transaction
                 .setex(tokenToUserIdKey.toString(), expiration, session.getId())
@@ -128,7 +159,7 @@ public class CacheProvider {
                 String ser = jedisOps.get(userIdToSessionKey.toString());
                 if (ser != null) {
                     JsonNode node = adjustJsonWithStudyIdentifier(ser);
-                    UserSession session = BridgeObjectMapper.get().treeToValue(node,  UserSession.class);
+                    UserSession session = JsonRegistry.readerFor(UserSession.class).readValue(node);
                     
                     // The token --> userId look up is not replaced on session invalidation. 
                     // Check here and only return if the sessionToken is valid. It is possible 
@@ -159,7 +190,7 @@ public class CacheProvider {
                 return null;
             }
             JsonNode node = adjustJsonWithStudyIdentifier(ser);
-            return BridgeObjectMapper.get().treeToValue(node,  UserSession.class);
+            return JsonRegistry.readerFor(UserSession.class).readValue(node);
         } catch(Throwable e) {
             promptToStartRedisIfLocal(e);
             throw new BridgeServiceException(e);
@@ -261,7 +292,7 @@ public class CacheProvider {
             String ser = jedisOps.get(cacheKey.toString());
             if (ser != null) {
                 JsonNode node = adjustJsonWithStudyIdentifier(ser);                
-                return BridgeObjectMapper.get().treeToValue(node, clazz);
+                return JsonRegistry.readerFor(clazz).readValue(node);
             }
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -277,7 +308,7 @@ public class CacheProvider {
             String ser = jedisOps.get(cacheKey.toString());
             if (ser != null) {
                 JsonNode node = adjustJsonWithStudyIdentifier(ser);
-                return BridgeObjectMapper.get().readValue(node.toString(), typeRef);
+                return JsonRegistry.readerFor(typeRef).readValue(node);
             }
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -296,7 +327,7 @@ public class CacheProvider {
             String ser = jedisOps.get(cacheKey.toString());
             if (ser != null) {
                 jedisOps.expire(cacheKey.toString(), expireInSeconds);
-                return BridgeObjectMapper.get().readValue(ser, clazz);
+                return JsonRegistry.readerFor(clazz).readValue(ser);
             }
         } catch (Throwable e) {
             promptToStartRedisIfLocal(e);
@@ -352,6 +383,56 @@ public class CacheProvider {
         }
     }
     
+    /**
+     * Set an object in the cache with an expiration in seconds, only if there is no object under that key. Returns
+     * true if the object was set, and false if the key was already held. The key and its expiration are set in one
+     * command, so the key can't be left without an expiration.
+     */
+    public boolean setObjectIfAbsent(CacheKey cacheKey, Object object, int expireInSeconds) {
+        checkNotNull(cacheKey);
+        checkNotNull(object);
+        try (Jedis jedis = jedisPool.getResource()) {
+            String ser = BridgeObjectMapper.get().writeValueAsString(object);
+            return "OK".equals(jedis.set(cacheKey.toString(), ser, "NX", "EX", expireInSeconds));
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+
+    /**
+     * Set the expiration on the given cache object, only if the key still holds this object. Returns true if the 
+     * expiration was set. The comparison and the update are one atomic step in Redis.
+     */
+    public boolean setExpirationIfEquals(CacheKey cacheKey, Object object, int expireInSeconds) {
+        checkNotNull(cacheKey);
+        checkNotNull(object);
+        return evalIfEquals(EXPIRE_IF_EQUALS_SCRIPT, cacheKey, object,
+                ImmutableList.of(Integer.toString(expireInSeconds)));
+    }
+
+    /**
+     * Remove the object from the cache, only if the key still holds this object. Returns true if it was removed. 
+     * The comparison and the removal are one atomic step in Redis.
+     */
+    public boolean removeObjectIfEquals(CacheKey cacheKey, Object object) {
+        checkNotNull(cacheKey);
+        checkNotNull(object);
+        return evalIfEquals(REMOVE_IF_EQUALS_SCRIPT, cacheKey, object, ImmutableList.of());
+    }
+
+    private boolean evalIfEquals(String script, CacheKey cacheKey, Object object, List<String> otherArgs) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            String ser = BridgeObjectMapper.get().writeValueAsString(object);
+            List<String> args = ImmutableList.<String>builder().add(ser).addAll(otherArgs).build();
+            Object result = jedis.eval(script, ImmutableList.of(cacheKey.toString()), args);
+            return result != null && (Long)result == 1L;
+        } catch (Throwable e) {
+            promptToStartRedisIfLocal(e);
+            throw new BridgeServiceException(e);
+        }
+    }
+    
     /**
      * Remove object from cache, if it exists.
      */
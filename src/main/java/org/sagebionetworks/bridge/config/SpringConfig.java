@@ -1,6 +1,9 @@
 package org.sagebionetworks.bridge.config;
 
 import static com.amazonaws.regions.Regions.US_EAST_1;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.hibernate.event.spi.EventType.DELETE;
 import static org.hibernate.event.spi.EventType.MERGE;
 import static org.hibernate.event.spi.EventType.SAVE_UPDATE;
@@ -12,8 +15,10 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.annotation.Resource;
 import javax.servlet.Filter;
@@ -40,6 +45,7 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.mchange.v2.c3p0.DriverManagerDataSource;
+import com.zaxxer.hikari.HikariConfig;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.hibernate.SessionFactory;
@@ -49,6 +55,8 @@ import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.event.service.spi.EventListenerRegistry;
 import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataDocumentation;
 import org.sagebionetworks.bridge.dynamodb.DynamoParticipantFile;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -113,10 +121,13 @@ import org.sagebionetworks.bridge.hibernate.HibernateStudy;
 import org.sagebionetworks.bridge.hibernate.HibernateTemplate;
 import org.sagebionetworks.bridge.hibernate.HibernateTemplateRevision;
 import org.sagebionetworks.bridge.hibernate.OrganizationPersistenceExceptionConverter;
+import org.sagebionetworks.bridge.hibernate.ReadReplicaRouter;
 import org.sagebionetworks.bridge.hibernate.SponsorPersistenceExceptionConverter;
 import org.sagebionetworks.bridge.hibernate.TagEventListener;
 import org.sagebionetworks.bridge.hibernate.BasicPersistenceExceptionConverter;
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.json.JsonRegistry;
 import org.sagebionetworks.bridge.models.RequestInfo;
 import org.sagebionetworks.bridge.models.Tag;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
@@ -156,6 +167,7 @@ import redis.clients.jedis.JedisPoolConfig;
 @ComponentScan("org.sagebionetworks.bridge")
 @Configuration
 public class SpringConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(SpringConfig.class);
     
     @Bean
     public HeartbeatLogger heartbeatLogger() {
@@ -198,6 +210,8 @@ public class SpringConfig {
     @Bean(name = "bridgeObjectMapper")
     @Primary
     public ObjectMapper bridgeObjectMapper() {
+        // Build the readers and writers of the hot paths before the server takes requests.
+        JsonRegistry.warm();
         return BridgeObjectMapper.get();
     }
 
@@ -277,7 +291,8 @@ public class SpringConfig {
     @Bean(name = "sesClient")
     @Resource(name="awsCredentials")
     public AmazonSimpleEmailServiceClient sesClient(BasicAWSCredentials awsCredentials) {
-        return new AmazonSimpleEmailServiceClient(awsCredentials);
+        // The region is set once here; the client is shared by the threads sending email.
+        return new AmazonSimpleEmailServiceClient(awsCredentials).withRegion(US_EAST_1);
     }
 
     @Bean(name = "sqsClient")
@@ -292,6 +307,65 @@ public class SpringConfig {
         return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("async.worker.thread.count"));
     }
 
+    // The imports themselves run on the async executor, which would deadlock if every thread were an import 
+    // waiting on its rows.
+    @Bean(name = "participantImportExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService participantImportExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("participant.import.thread.count"));
+    }
+
+    @Bean(name = "userDeletionExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService userDeletionExecutorService(BridgeConfig bridgeConfig) {
+        return Executors.newFixedThreadPool(bridgeConfig.getPropertyAsInt("user.deletion.thread.count"));
+    }
+
+    // SNS calls for push notifications and topic subscriptions.
+    @Bean(name = "notificationExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService notificationExecutorService(BridgeConfig bridgeConfig) {
+        return boundedExecutorService("notificationExecutorService",
+                bridgeConfig.getPropertyAsInt("notification.thread.count"),
+                bridgeConfig.getPropertyAsInt("notification.queue.size"));
+    }
+
+    // A broadcast publishes to every registration of a page of accounts at once, so it has its own threads and 
+    // doesn't hold up notifications sent to individual participants.
+    @Bean(name = "notificationBroadcastExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService notificationBroadcastExecutorService(BridgeConfig bridgeConfig) {
+        return boundedExecutorService("notificationBroadcastExecutorService",
+                bridgeConfig.getPropertyAsInt("notification.broadcast.thread.count"),
+                bridgeConfig.getPropertyAsInt("notification.broadcast.queue.size"));
+    }
+
+    // Rendering signed consent PDFs is CPU-heavy, and each queued task holds the signature image and the rendered 
+    // document in memory.
+    @Bean(name = "consentExecutorService")
+    @Resource(name = "bridgeConfig")
+    public ExecutorService consentExecutorService(BridgeConfig bridgeConfig) {
+        return boundedExecutorService("consentExecutorService",
+                bridgeConfig.getPropertyAsInt("consent.render.thread.count"),
+                bridgeConfig.getPropertyAsInt("consent.render.queue.size"));
+    }
+
+    // The executors above (other than the async executor) each have their own threads, so that one kind of work is 
+    // bounded on its own and never waits behind, or starves, the others. This builds one with a fixed number of 
+    // threads and a bounded queue. When the queue is full, the task runs on the thread that submitted it. This slows 
+    // down the callers, rather than letting the queue grow without limit or dropping a task that the caller may be 
+    // waiting on. Tasks must therefore restore the request context of the thread they run on (see RequestContext).
+    static ExecutorService boundedExecutorService(String name, int threadCount, int queueSize) {
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                new ThreadPoolExecutor.CallerRunsPolicy() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                        LOG.warn(name + " queue is full, running task on the calling thread");
+                        super.rejectedExecution(task, executor);
+                    }
+                });
+    }
+
     @Bean(name = "supportEmail")
     @Resource(name = "bridgeConfig")
     public String supportEmail(BridgeConfig bridgeConfig) {
@@ -580,9 +654,12 @@ public class SpringConfig {
     }
     
     private String databaseURL() {
+        return databaseURL(bridgeConfig().get("hibernate.connection.url"));
+    }
+    
+    private String databaseURL(String url) {
         BridgeConfig config = bridgeConfig();
         
-        String url = config.get("hibernate.connection.url");
         // Append SSL props to URL
         boolean useSsl = Boolean.valueOf(config.get("hibernate.connection.useSSL"));
         url += "?rewriteBatchedStatements=true&serverTimezone=UTC&requireSSL="+useSsl+"&useSSL="+useSsl+"&verifyServerCertificate="+useSsl;
@@ -592,7 +669,79 @@ public class SpringConfig {
 
     @Bean
     @Autowired
-    public SessionFactory hibernateSessionFactory(TagEventListener listener) {
+    public SessionFactory hibernateSessionFactory(TagEventListener listener, ConnectionPoolMonitor poolMonitor) {
+        Properties props = hibernateProperties(poolMonitor.createPool(poolConfig("main", databaseURL(),
+                "hibernate.pool")));
+
+        // Second-level and query caches. Only entities annotated with @Cache are cached. The regions are bounded in
+        // size and TTL by ehcache.xml; a region missing from that file is an error rather than an unbounded cache.
+        // Statistics are needed for the hit ratios reported by the ServerMetricsService, but they are not logged
+        // for each session.
+        props.put("hibernate.cache.use_second_level_cache", true);
+        props.put("hibernate.cache.use_query_cache", true);
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+        props.put("hibernate.javax.cache.uri", "ehcache.xml");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        props.put("hibernate.generate_statistics", true);
+        props.put("hibernate.session.events.log", false);
+
+        SessionFactory factory = buildSessionFactory(props);
+        
+        // I could not find a more elegant way to register this listener that was picked up by Hibernate
+        ServiceRegistryImplementor serviceImpl = ((SessionFactoryImplementor)factory).getServiceRegistry();
+        EventListenerRegistry eventRegistry = serviceImpl.getService(EventListenerRegistry.class);
+        eventRegistry.appendListeners(SAVE_UPDATE, listener);
+        eventRegistry.appendListeners(DELETE, listener);
+        eventRegistry.appendListeners(MERGE, listener);
+        
+        return factory;
+    }
+    
+    // The replica's session factory is not a bean, so it can't be injected in place of the primary's. When no
+    // replica URL is configured, the router sends every read to the primary.
+    @Bean
+    @Autowired
+    public ReadReplicaRouter readReplicaRouter(ConnectionPoolMonitor poolMonitor) {
+        String replicaUrl = bridgeConfig().get("hibernate.replica.connection.url");
+        if (isBlank(replicaUrl)) {
+            return new ReadReplicaRouter(null);
+        }
+        // The replica has its own pool, so heavy reads don't take connections away from writes.
+        Properties props = hibernateProperties(poolMonitor.createPool(poolConfig("replica",
+                databaseURL(replicaUrl), "hibernate.replica.pool")));
+
+        // Entities read from the replica may be stale, so they must not be put in the second-level cache, which is 
+        // kept current by the primary's session factory.
+        props.put("hibernate.cache.use_second_level_cache", false);
+        props.put("hibernate.cache.use_query_cache", false);
+
+        return new ReadReplicaRouter(buildSessionFactory(props));
+    }
+    
+    // Configuration of a connection pool. The size of each pool, and how long connections can be held before they
+    // are reported as leaks, are set in Bridge configs under the given prefix.
+    private HikariConfig poolConfig(String poolName, String databaseURL, String prefix) {
+        BridgeConfig config = bridgeConfig();
+        
+        HikariConfig poolConfig = new HikariConfig();
+        poolConfig.setPoolName(poolName);
+        poolConfig.setJdbcUrl(databaseURL);
+        poolConfig.setUsername(config.get("hibernate.connection.username"));
+        poolConfig.setPassword(config.get("hibernate.connection.password"));
+        poolConfig.addDataSourceProperty("characterEncoding", "UTF-8");
+        poolConfig.addDataSourceProperty("useUnicode", true);
+        poolConfig.setMaximumPoolSize(config.getInt(prefix + ".max_size"));
+        poolConfig.setMinimumIdle(config.getInt(prefix + ".min_idle"));
+        poolConfig.setIdleTimeout(SECONDS.toMillis(config.getInt("hibernate.pool.idle_timeout_seconds")));
+        poolConfig.setConnectionTimeout(SECONDS.toMillis(config.getInt("hibernate.pool.connection_timeout_seconds")));
+        poolConfig.setLeakDetectionThreshold(SECONDS.toMillis(config.getInt(
+                "hibernate.pool.leak_detection_threshold_seconds")));
+        return poolConfig;
+    }
+    
+    // Hibernate properties shared by the primary and replica session factories.
+    private Properties hibernateProperties(DataSource dataSource) {
         ClassLoader classLoader = getClass().getClassLoader();
 
         // Need to set env vars to find the truststore so we can validate Amazon's RDS SSL certificate. Note that
@@ -611,25 +760,21 @@ public class SpringConfig {
         System.setProperty("javax.net.ssl.trustStore", trustStorePath.toString());
         System.setProperty("javax.net.ssl.trustStorePassword", "public");
 
-        // Hibernate configs
+        // Hibernate configs. Connections come from the pool, which is configured from Bridge configs.
         Properties props = new Properties();
-        props.put("hibernate.connection.characterEncoding", "UTF-8");
-        props.put("hibernate.connection.CharSet", "UTF-8");
-        props.put("hibernate.connection.useUnicode", true);
         props.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+        props.put("hibernate.connection.datasource", dataSource);
 
-        // c3p0 connection pool properties
-        props.put("hibernate.c3p0.min_size", 5);
-        props.put("hibernate.c3p0.max_size", 20);
-        props.put("hibernate.c3p0.timeout", 300);
-        props.put("hibernate.c3p0.idle_test_period", 300);
-
-        // Connection properties come from Bridge configs
-        BridgeConfig config = bridgeConfig();
-        props.put("hibernate.connection.password", config.get("hibernate.connection.password"));
-        props.put("hibernate.connection.username", config.get("hibernate.connection.username"));
-        props.put("hibernate.connection.url", databaseURL());
-
+        // Write in JDBC batches, including the rows of collections written by cascade (like an account's 
+        // enrollments). Ordering the inserts and updates groups statements for the same table into one batch, and
+        // rewriteBatchedStatements in the URL makes each batch of inserts a single multi-row statement.
+        props.put("hibernate.jdbc.batch_size", bridgeConfig().getInt("hibernate.batch.size"));
+        props.put("hibernate.order_inserts", true);
+        props.put("hibernate.order_updates", true);
+        return props;
+    }
+    
+    private SessionFactory buildSessionFactory(Properties props) {
         StandardServiceRegistry reg = new StandardServiceRegistryBuilder().applySettings(props).build();
         
         // For whatever reason, we need to list each Hibernate-enabled class individually.
@@ -656,16 +801,7 @@ public class SpringConfig {
         metadataSources.addAnnotatedClass(StudyActivityEvent.class);
         metadataSources.addAnnotatedClass(Notification.class);
         
-        SessionFactory factory = metadataSources.buildMetadata().buildSessionFactory();
-        
-        // I could not find a more elegant way to register this listener that was picked up by Hibernate
-        ServiceRegistryImplementor serviceImpl = ((SessionFactoryImplementor)factory).getServiceRegistry();
-        EventListenerRegistry eventRegistry = serviceImpl.getService(EventListenerRegistry.class);
-        eventRegistry.appendListeners(SAVE_UPDATE, listener);
-        eventRegistry.appendListeners(DELETE, listener);
-        eventRegistry.appendListeners(MERGE, listener);
-        
-        return factory;
+        return metadataSources.buildMetadata().buildSessionFactory();
     }
     
     @Bean
@@ -698,36 +834,40 @@ public class SpringConfig {
     @Bean(name = "basicHibernateHelper")
     @Autowired
     public HibernateHelper basicHibernateHelper(SessionFactory sessionFactory,
-            BasicPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            BasicPersistenceExceptionConverter converter, ReadReplicaRouter replicaRouter) {
+        return new HibernateHelper(sessionFactory, converter, replicaRouter);
     }
     
+    // Accounts are written and read on a pool of their own, so sign in doesn't wait on connections held by slow
+    // queries elsewhere.
     @Bean(name = "accountHibernateHelper")
     @Autowired
     public HibernateHelper accountHibernateHelper(SessionFactory sessionFactory,
-            AccountPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            AccountPersistenceExceptionConverter converter, ReadReplicaRouter replicaRouter,
+            ConnectionPoolMonitor poolMonitor) {
+        DataSource dataSource = poolMonitor.createPool(poolConfig("account", databaseURL(), "hibernate.account.pool"));
+        return new HibernateHelper(sessionFactory, converter, replicaRouter, dataSource);
     }
     
     @Bean(name = "sponsorHibernateHelper")
     @Autowired
     public HibernateHelper sponsorHibernateHelper(SessionFactory sessionFactory,
-            SponsorPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            SponsorPersistenceExceptionConverter converter, ReadReplicaRouter replicaRouter) {
+        return new HibernateHelper(sessionFactory, converter, replicaRouter);
     }
     
     @Bean(name = "organizationHibernateHelper")
     @Autowired
     public HibernateHelper organizationHibernateHelper(SessionFactory sessionFactory,
-            OrganizationPersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            OrganizationPersistenceExceptionConverter converter, ReadReplicaRouter replicaRouter) {
+        return new HibernateHelper(sessionFactory, converter, replicaRouter);
     }
     
     @Bean(name = "mysqlHibernateHelper")
     @Autowired
     public HibernateHelper schedule2HibernateHelper(SessionFactory sessionFactory,
-            MySQLHibernatePersistenceExceptionConverter converter) {
-        return new HibernateHelper(sessionFactory, converter);
+            MySQLHibernatePersistenceExceptionConverter converter, ReadReplicaRouter replicaRouter) {
+        return new HibernateHelper(sessionFactory, converter, replicaRouter);
     }
     
     @Bean(name = "sessionExpireInSeconds")
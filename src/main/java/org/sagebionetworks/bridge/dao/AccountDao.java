@@ -2,10 +2,12 @@ package org.sagebionetworks.bridge.dao;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountFetchProfile;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
@@ -33,6 +35,12 @@ public interface AccountDao {
      */
     void createAccount(App app, Account account);
     
+    /**
+     * Create several accounts in one transaction, sending them to the database in batches. If any 
+     * account cannot be created, none of them are.
+     */
+    void createAccounts(App app, List<Account> accounts);
+    
     /**
      * Save account changes. If the optional consumer is passed to this method and 
      * it throws an exception, the account will not be persisted.
@@ -41,9 +49,18 @@ public interface AccountDao {
     
     /**
      * Get an account in the context of an app by the user's ID, email address, health code,
-     * phone number, or Synapse user ID. 
+     * phone number, or Synapse user ID. The full account is loaded.
+     */
+    default Optional<Account> getAccount(AccountId accountId) {
+        return getAccount(accountId, AccountFetchProfile.FULL);
+    }
+    
+    /**
+     * Get an account in the context of an app by the user's ID, email address, health code,
+     * phone number, or Synapse user ID, loading only the parts of the account in the fetch 
+     * profile.
      */
-    Optional<Account> getAccount(AccountId accountId);
+    Optional<Account> getAccount(AccountId accountId, AccountFetchProfile profile);
     
     /**
      * Delete an account along with the authentication credentials.
@@ -67,5 +84,21 @@ public interface AccountDao {
     PagedResourceList<ExternalIdentifierInfo> getPagedExternalIds(String appId, String studyId, String idFilter,
             Integer offsetBy, Integer pageSize);
     
+    /**
+     * Get the health codes of accounts enrolled (and not withdrawn) in a study, in health code order. Pages are 
+     * keyed by the last health code of the prior page (null for the first page), so each page is read from the 
+     * index, however far into the study it is.
+     * @param allOfGroups
+     *      if not empty, only accounts in all of these data groups are returned
+     */
+    List<String> getStudyHealthCodes(String appId, String studyId, Set<String> allOfGroups, String offsetKey,
+            int pageSize);
+    
+    /**
+     * Rebuild the search terms of a page of the accounts in an app, in account ID order. Pages are keyed by the 
+     * last account ID of the prior page (null for the first page). Returns the IDs of the accounts in the page.
+     */
+    List<String> rebuildSearchTerms(String appId, String offsetKey, int pageSize);
+    
     void deleteAllAccounts(String appId);
 }    
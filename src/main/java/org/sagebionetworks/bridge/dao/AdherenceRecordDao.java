@@ -1,5 +1,7 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
+
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecord;
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecordsSearch;
@@ -8,6 +10,12 @@ public interface AdherenceRecordDao {
     
     void updateAdherenceRecord(AdherenceRecord record);
     
+    /**
+     * Update the records as updateAdherenceRecord does, but save them in batches, in one transaction. If a record 
+     * can't be saved, none of them are. If the same record is included more than once, the last one is used.
+     */
+    void updateAdherenceRecords(Collection<AdherenceRecord> records);
+    
     PagedResourceList<AdherenceRecord> getAdherenceRecords(AdherenceRecordsSearch search);
 
     void deleteAdherenceRecordPermanently(AdherenceRecord record);
@@ -3,6 +3,7 @@ package org.sagebionetworks.bridge.dao;
 import java.util.Optional;
 import java.util.Set;
 
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
 import org.sagebionetworks.bridge.models.assessments.config.AssessmentConfig;
@@ -15,6 +16,14 @@ public interface AssessmentDao {
     PagedResourceList<Assessment> getAssessments(String appId, String ownerId, int offsetBy, 
             int pageSize, Set<String> tags, boolean includeDeleted);
 
+    /**
+     * Returns the page of assessments after the assessment identified by the offset key (or the first page if 
+     * the key is null), in the same order as getAssessments. This list does not include the total number of 
+     * records, which is expensive to count. Request parameters should be added by the service.
+     */
+    ForwardCursorPagedResourceList<Assessment> getAssessmentsByOffsetKey(String appId, String ownerId,
+            String offsetKey, int pageSize, Set<String> tags, boolean includeDeleted);
+
     /**
      * The paged resource list returned from the DAO contains only the current page of results
      * and the total number of records. Request parameters should be added by the service.
@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +28,12 @@ public interface Schedule2Dao {
     
     Optional<TimelineMetadata> getTimelineMetadata(String instanceGuid);
     
+    /**
+     * Get the metadata records for all of these instance GUIDs in a single query. GUIDs 
+     * that do not match a record are not included in the list.
+     */
+    List<TimelineMetadata> getTimelineMetadata(Collection<String> instanceGuids);
+    
     List<TimelineMetadata> getAssessmentsForSessionInstance(String instanceGuid);
     
     void deleteAllSchedules(String appId);
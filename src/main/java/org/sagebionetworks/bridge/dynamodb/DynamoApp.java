@@ -29,6 +29,7 @@ import org.sagebionetworks.bridge.models.apps.AppleAppLink;
 import org.sagebionetworks.bridge.models.apps.Exporter3Configuration;
 import org.sagebionetworks.bridge.models.apps.OAuthProvider;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadValidationStrictness;
 
@@ -107,6 +108,7 @@ public final class DynamoApp implements App {
     private Map<String, String> pushNotificationARNs;
     private Map<String, String> installLinks;
     private Map<String, OAuthProvider> oauthProviders;
+    private Map<String, RateLimit> rateLimits;
     private boolean disableExport;
     private List<AppleAppLink> appleAppLinks;
     private List<AndroidAppLink> androidAppLinks;
@@ -123,6 +125,7 @@ public final class DynamoApp implements App {
         pushNotificationARNs = new HashMap<>();
         installLinks = new HashMap<>();
         oauthProviders = new HashMap<>();
+        rateLimits = new HashMap<>();
         appleAppLinks = new ArrayList<>();
         androidAppLinks = new ArrayList<>();
         defaultTemplates = new HashMap<>();
@@ -627,6 +630,17 @@ public final class DynamoApp implements App {
         this.oauthProviders = (oauthProviders == null) ? new HashMap<>() : oauthProviders;
     }
     
+    @DynamoDBTypeConverted(converter = RateLimitMapMarshaller.class)
+    @Override
+    public Map<String, RateLimit> getRateLimits() {
+        return rateLimits;
+    }
+    
+    @Override
+    public void setRateLimits(Map<String, RateLimit> rateLimits) {
+        this.rateLimits = (rateLimits == null) ? new HashMap<>() : rateLimits;
+    }
+    
     @DynamoDBTypeConverted(converter = AppleLinksMarshaller.class)
     @Override
     public List<AppleAppLink> getAppleAppLinks() {
@@ -679,8 +693,8 @@ public final class DynamoApp implements App {
                 taskIdentifiers, activityEventKeys, customEvents, dataGroups, passwordPolicy, strictUploadValidationEnabled,
                 healthCodeExportEnabled, emailVerificationEnabled, externalIdValidationEnabled, emailSignInEnabled,
                 phoneSignInEnabled, externalIdRequiredOnSignup, minSupportedAppVersions, pushNotificationARNs,
-                installLinks, disableExport, oauthProviders, appleAppLinks, androidAppLinks, reauthenticationEnabled,
-                autoVerificationPhoneSuppressed, verifyChannelOnSignInEnabled, defaultTemplates);
+                installLinks, disableExport, oauthProviders, rateLimits, appleAppLinks, androidAppLinks,
+                reauthenticationEnabled, autoVerificationPhoneSuppressed, verifyChannelOnSignInEnabled, defaultTemplates);
     }
 
     @Override
@@ -732,6 +746,7 @@ public final class DynamoApp implements App {
                 && Objects.equals(phoneSignInEnabled, other.phoneSignInEnabled)
                 && Objects.equals(accountLimit, other.accountLimit)
                 && Objects.equals(oauthProviders, other.oauthProviders)
+                && Objects.equals(rateLimits, other.rateLimits)
                 && Objects.equals(appleAppLinks, other.appleAppLinks)
                 && Objects.equals(androidAppLinks, other.androidAppLinks)
                 && Objects.equals(reauthenticationEnabled,  other.reauthenticationEnabled)
@@ -752,7 +767,7 @@ public final class DynamoApp implements App {
                         + "healthCodeExportEnabled=%s, emailVerificationEnabled=%s, externalIdValidationEnabled=%s, "
                         + "externalIdRequiredOnSignup=%s, minSupportedAppVersions=%s, usesCustomExportSchedule=%s, "
                         + "pushNotificationARNs=%s, installLinks=%s, disableExport=%s, emailSignInEnabled=%s, "
-                        + "phoneSignInEnabled=%s, accountLimit=%s, oauthProviders=%s, appleAppLinks=%s, androidAppLinks=%s, "
+                        + "phoneSignInEnabled=%s, accountLimit=%s, oauthProviders=%s, rateLimits=%s, appleAppLinks=%s, androidAppLinks=%s, "
                         + "reauthenticationEnabled=%s, autoVerificationPhoneSuppressed=%s, verifyChannelOnSignInEnabled=%s, "
                         + "defaultTemplates=%s]",
                 name, shortName, active, sponsorName, identifier, automaticCustomEvents,
@@ -762,7 +777,7 @@ public final class DynamoApp implements App {
                 activityEventKeys, customEvents, dataGroups, passwordPolicy, strictUploadValidationEnabled, 
                 healthCodeExportEnabled, emailVerificationEnabled, externalIdValidationEnabled, externalIdRequiredOnSignup,
                 minSupportedAppVersions, usesCustomExportSchedule, pushNotificationARNs, installLinks, disableExport,
-                emailSignInEnabled, phoneSignInEnabled, accountLimit, oauthProviders, appleAppLinks, androidAppLinks,
+                emailSignInEnabled, phoneSignInEnabled, accountLimit, oauthProviders, rateLimits, appleAppLinks, androidAppLinks,
                 reauthenticationEnabled, autoVerificationPhoneSuppressed, verifyChannelOnSignInEnabled,
                 defaultTemplates);
     }
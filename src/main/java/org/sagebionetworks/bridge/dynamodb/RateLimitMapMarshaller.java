@@ -0,0 +1,17 @@
+package org.sagebionetworks.bridge.dynamodb;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import org.sagebionetworks.bridge.models.apps.RateLimit;
+
+public class RateLimitMapMarshaller extends StringKeyMapMarshaller<RateLimit> {
+    private static final TypeReference<Map<String, RateLimit>> REF = new TypeReference<Map<String, RateLimit>>() {
+    };
+
+    @Override
+    public TypeReference<Map<String, RateLimit>> getTypeReference() {
+        return REF;
+    }
+}
@@ -2,12 +2,25 @@ package org.sagebionetworks.bridge.exceptions;
 
 /**
  * Requests have exceeded an allowable limit, either in time or in number. The message should explain what 
- * is being gated (e.g. too many requests to sign in via email; too many users enrolled in the app, etc.).
+ * is being gated (e.g. too many requests to sign in via email; too many users enrolled in the app, etc.). 
+ * If the caller can retry after some period of time, that period is returned in a Retry-After header.
  */
 @NoStackTraceException
 @SuppressWarnings("serial")
 public class LimitExceededException extends BridgeServiceException {
+    private final Integer retryAfterSeconds;
+    
     public LimitExceededException(String message) {
+        this(message, null);
+    }
+    
+    public LimitExceededException(String message, Integer retryAfterSeconds) {
         super(message, 429);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    /** The number of seconds the caller should wait before retrying the request, if known. */
+    public Integer getRetryAfterSeconds() {
+        return retryAfterSeconds;
     }
 }
@@ -0,0 +1,105 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import org.sagebionetworks.bridge.models.studies.Enrollment;
+
+/**
+ * Maintains the search terms of an account, used to find accounts by part of their email address, phone number, or
+ * external ID without scanning every account in the app. Each identifier is normalized (lower case, or digits only
+ * for phone numbers), and stored along with each of its suffixes of at least {@link #MIN_TERM_LENGTH} characters.
+ * An infix search for "abc" is then a prefix search of the suffixes, a postfix search is an exact match of a suffix,
+ * and a prefix search is a prefix search of the whole values; all of these can use the index on the terms. Shorter
+ * search strings match too many accounts for the index to help, and are searched as before.
+ *
+ * A digest of the identifiers is kept with the account, so the terms are only rewritten when an identifier changes.
+ */
+final class AccountSearchIndex {
+    static final String EMAIL_FIELD = "email";
+    static final String PHONE_FIELD = "phone";
+    static final String EXTERNAL_ID_FIELD = "externalId";
+    static final int MIN_TERM_LENGTH = 3;
+
+    private AccountSearchIndex() {
+    }
+
+    /**
+     * Replace the account's search terms if its identifiers have changed since they were last indexed. The account
+     * must be new, or attached to a session, because its enrollments are read even if they were not loaded with it.
+     */
+    static void update(HibernateAccount account) {
+        SortedSet<String> emails = new TreeSet<>();
+        SortedSet<String> phones = new TreeSet<>();
+        SortedSet<String> externalIds = new TreeSet<>();
+        addValue(emails, EMAIL_FIELD, account.getEmail());
+        if (account.getPhone() != null) {
+            addValue(phones, PHONE_FIELD, account.getPhone().getNumber());
+        }
+        // Withdrawn enrollments are included, as they are when searching by external ID.
+        for (Enrollment enrollment : account.getEnrollments()) {
+            addValue(externalIds, EXTERNAL_ID_FIELD, enrollment.getExternalId());
+        }
+        String digest = digest(account.getAppId(), emails, phones, externalIds);
+        if (digest.equals(account.getSearchTermsDigest())) {
+            return;
+        }
+        Set<HibernateAccountSearchTerm> terms = new HashSet<>();
+        addTerms(terms, account.getAppId(), EMAIL_FIELD, emails);
+        addTerms(terms, account.getAppId(), PHONE_FIELD, phones);
+        addTerms(terms, account.getAppId(), EXTERNAL_ID_FIELD, externalIds);
+        account.setSearchTerms(terms);
+        account.setSearchTermsDigest(digest);
+    }
+
+    /** Normalize an identifier, or a search string for that identifier, the same way. */
+    static String normalize(String field, String value) {
+        if (PHONE_FIELD.equals(field)) {
+            return value.replaceAll("\\D", "");
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void addValue(Set<String> values, String field, String value) {
+        if (!isBlank(value)) {
+            String normalized = normalize(field, value);
+            if (!normalized.isEmpty()) {
+                values.add(normalized);
+            }
+        }
+    }
+
+    private static void addTerms(Set<HibernateAccountSearchTerm> terms, String appId, String field,
+            Collection<String> values) {
+        for (String value : values) {
+            terms.add(new HibernateAccountSearchTerm(appId, field, value, true));
+            for (int i = 1; i <= value.length() - MIN_TERM_LENGTH; i++) {
+                terms.add(new HibernateAccountSearchTerm(appId, field, value.substring(i), false));
+            }
+        }
+    }
+
+    private static String digest(String appId, SortedSet<String> emails, SortedSet<String> phones,
+            SortedSet<String> externalIds) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(String.valueOf(appId), UTF_8).putChar('\n');
+        for (Set<String> values : ImmutableList.of(emails, phones, externalIds)) {
+            for (String value : values) {
+                hasher.putString(value, UTF_8).putChar('\t');
+            }
+            hasher.putChar('\n');
+        }
+        return hasher.hash().toString();
+    }
+}
@@ -0,0 +1,131 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+/**
+ * Creates the MySQL connection pools and keeps their metrics for the ServerMetricsService. For each pool this
+ * records how long threads waited to get a connection, how long connections were held, how many requests for a
+ * connection timed out, and how many connections were held for longer than the pool's leak detection threshold
+ * (HikariCP also logs a warning with the stack trace of the code that took each of these connections). The pools
+ * are not Spring beans, so they can't be mistaken for the data source used by Liquibase; they are closed when this
+ * monitor is destroyed.
+ */
+@Component
+public class ConnectionPoolMonitor implements MetricsTrackerFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPoolMonitor.class);
+
+    /** The metrics of a single pool. */
+    public static class PoolMetrics {
+        private final PoolStats stats;
+        private final long leakThresholdMillis;
+        private final LatencyHistogram acquisitionHistogram = new LatencyHistogram();
+        private final LatencyHistogram usageHistogram = new LatencyHistogram();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong leaks = new AtomicLong();
+
+        PoolMetrics(PoolStats stats, long leakThresholdMillis) {
+            this.stats = stats;
+            this.leakThresholdMillis = leakThresholdMillis;
+        }
+        /** Connections in use, idle, and the threads waiting for one. Refreshed at most once a second. */
+        public PoolStats getStats() {
+            return stats;
+        }
+        /** Time spent waiting to get a connection from the pool. */
+        public LatencyHistogram getAcquisitionHistogram() {
+            return acquisitionHistogram;
+        }
+        /** Time from getting a connection to returning it to the pool. */
+        public LatencyHistogram getUsageHistogram() {
+            return usageHistogram;
+        }
+        public long getTimeoutCount() {
+            return timeouts.get();
+        }
+        /** Connections returned to the pool after being held for longer than the leak detection threshold. */
+        public long getLeakCount() {
+            return leaks.get();
+        }
+    }
+
+    private final ConcurrentMap<String, Long> leakThresholds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, HikariDataSource> dataSources = new ConcurrentHashMap<>();
+
+    /** Create a pool with this configuration, which must include a unique pool name. */
+    public HikariDataSource createPool(HikariConfig config) {
+        checkNotNull(config.getPoolName());
+
+        leakThresholds.put(config.getPoolName(), config.getLeakDetectionThreshold());
+        config.setMetricsTrackerFactory(this);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        dataSources.put(config.getPoolName(), dataSource);
+        return dataSource;
+    }
+
+    /** The metrics of each pool, sorted by pool name. */
+    public SortedMap<String, PoolMetrics> getPools() {
+        return new TreeMap<>(pools);
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return create(poolName, poolStats, leakThresholds.getOrDefault(poolName, 0L));
+    }
+
+    IMetricsTracker create(String poolName, PoolStats poolStats, long leakThresholdMillis) {
+        PoolMetrics metrics = new PoolMetrics(poolStats, leakThresholdMillis);
+        pools.put(poolName, metrics);
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                metrics.acquisitionHistogram.record(NANOSECONDS.toMillis(elapsedAcquiredNanos));
+            }
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                metrics.usageHistogram.record(elapsedBorrowedMillis);
+                if (metrics.leakThresholdMillis > 0L && elapsedBorrowedMillis > metrics.leakThresholdMillis) {
+                    metrics.leaks.incrementAndGet();
+                }
+            }
+            @Override
+            public void recordConnectionTimeout() {
+                metrics.timeouts.incrementAndGet();
+            }
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Map.Entry<String, HikariDataSource> entry : dataSources.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (RuntimeException e) {
+                LOG.warn("Could not close connection pool " + entry.getKey(), e);
+            }
+        }
+        dataSources.clear();
+    }
+}
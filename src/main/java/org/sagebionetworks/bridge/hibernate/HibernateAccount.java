@@ -89,6 +89,8 @@ public class HibernateAccount implements Account {
     private Set<Enrollment> enrollments;
     private String note;
     private String clientTimeZone;
+    private Set<HibernateAccountSearchTerm> searchTerms;
+    private String searchTermsDigest;
     
     /**
      * Constructor to load information for the AccountRef object. This avoids loading any of the 
@@ -220,7 +222,7 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountAttributes", joinColumns = @JoinColumn(name = "accountId",
             referencedColumnName = "id"))
     @Column(name = "attributeValue")
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @MapKeyColumn(name = "attributeKey")
     public Map<String, String> getAttributes() {
         if (attributes == null) {
@@ -238,7 +240,7 @@ public class HibernateAccount implements Account {
     /** Map of consents, keyed by a composite of subpopulation ID and signedOn. Never returns null. */
     @CollectionTable(name = "AccountConsents", joinColumns = @JoinColumn(name = "accountId",
             referencedColumnName = "id"))
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @MapKeyClass(HibernateAccountConsentKey.class)
     @JsonIgnore
     public Map<HibernateAccountConsentKey, HibernateAccountConsent> getConsents() {
@@ -354,7 +356,7 @@ public class HibernateAccount implements Account {
      */
     @CollectionTable(name = "AccountRoles", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "role")
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @Enumerated(EnumType.STRING)
     public Set<Roles> getRoles() {
         if (roles == null) {
@@ -459,7 +461,7 @@ public class HibernateAccount implements Account {
     /** Data groups assigned to this account. */
     @CollectionTable(name = "AccountDataGroups", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "dataGroup")
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     public Set<String> getDataGroups() {
         if (dataGroups == null) {
             dataGroups = new HashSet<>();
@@ -477,7 +479,7 @@ public class HibernateAccount implements Account {
     @CollectionTable(name = "AccountLanguages", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
     @Column(name = "language")
     @OrderColumn(name="order_index", insertable=true, updatable=true)
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     public List<String> getLanguages() {
         if (languages == null) {
             languages = new ArrayList<>();
@@ -512,7 +514,7 @@ public class HibernateAccount implements Account {
     }
     
     @OneToMany(mappedBy = "accountId", cascade = CascadeType.ALL, orphanRemoval = true, 
-        fetch = FetchType.EAGER, targetEntity=HibernateEnrollment.class)
+        fetch = FetchType.LAZY, targetEntity=HibernateEnrollment.class)
     @OnDelete(action=OnDeleteAction.CASCADE)
     @JsonIgnore
     @Override
@@ -528,6 +530,33 @@ public class HibernateAccount implements Account {
         this.enrollments = enrollments;
     }
     
+    /** Terms used to search for this account by part of an identifier. These are maintained by the DAO. */
+    @CollectionTable(name = "AccountSearchTerms", joinColumns = @JoinColumn(name = "accountId", referencedColumnName = "id"))
+    @ElementCollection(fetch = FetchType.LAZY)
+    @JsonIgnore
+    public Set<HibernateAccountSearchTerm> getSearchTerms() {
+        if (searchTerms == null) {
+            searchTerms = new HashSet<>();
+        }
+        return searchTerms;
+    }
+
+    /** @see #getSearchTerms */
+    public void setSearchTerms(Set<HibernateAccountSearchTerm> searchTerms) {
+        this.searchTerms = searchTerms;
+    }
+
+    /** A digest of the identifiers the search terms were made from, so they are only rewritten when these change. */
+    @JsonIgnore
+    public String getSearchTermsDigest() {
+        return searchTermsDigest;
+    }
+
+    /** @see #getSearchTermsDigest */
+    public void setSearchTermsDigest(String searchTermsDigest) {
+        this.searchTermsDigest = searchTermsDigest;
+    }
+    
     @Transient
     @JsonIgnore
     public Set<Enrollment> getActiveEnrollments() {
@@ -26,18 +26,25 @@ import static org.sagebionetworks.bridge.models.ResourceList.START_TIME;
 import static org.sagebionetworks.bridge.models.ResourceList.STATUS;
 import static org.sagebionetworks.bridge.models.ResourceList.STRING_SEARCH_POSITION;
 import static org.sagebionetworks.bridge.models.SearchTermPredicate.AND;
+import static org.sagebionetworks.bridge.models.studies.EnrollmentFilter.ENROLLED;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Hibernate;
+import org.hibernate.query.Query;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.ImmutableList;
@@ -45,6 +52,7 @@ import com.google.common.collect.ImmutableList;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.BridgeUtils.StudyAssociations;
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.AccountDao;
 import org.sagebionetworks.bridge.hibernate.QueryBuilder.WhereClauseBuilder;
 import org.sagebionetworks.bridge.time.DateUtils;
@@ -52,6 +60,7 @@ import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.SearchTermPredicate;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountFetchProfile;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
@@ -73,8 +82,14 @@ public class HibernateAccountDao implements AccountDao {
             + "AND en.externalId IS NOT NULL";
     static final String EXTID_FILTER_QUERY = "AND en.externalId LIKE :idFilter";
     static final String EXTID_ORDER_QUERY = "ORDER BY en.externalId";
+    static final String STUDY_HEALTH_CODES_QUERY = "SELECT acct.healthCode FROM HibernateAccount AS acct "
+            + "JOIN acct.enrollments AS enrollment WITH acct.id = enrollment.accountId";
+    static final String BATCH_SIZE_PROPERTY = "hibernate.batch.size";
+    static final String SEARCH_INDEX_ENABLED_PROPERTY = "account.search.index.enabled";
     
     private HibernateHelper hibernateHelper;
+    private int batchSize;
+    private boolean searchIndexEnabled;
 
     /** This makes interfacing with Hibernate easier. */
     @Resource(name = "accountHibernateHelper")
@@ -82,6 +97,12 @@ public class HibernateAccountDao implements AccountDao {
         this.hibernateHelper = hibernateHelper;
     }
     
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.batchSize = config.getInt(BATCH_SIZE_PROPERTY);
+        this.searchIndexEnabled = Boolean.parseBoolean(config.get(SEARCH_INDEX_ENABLED_PROPERTY));
+    }
+    
     // Provided to override in tests
     protected String generateGUID() {
         return BridgeUtils.generateGuid();
@@ -100,24 +121,47 @@ public class HibernateAccountDao implements AccountDao {
     /** {@inheritDoc} */
     @Override
     public void createAccount(App app, Account account) {
+        updateSearchTerms(account);
         hibernateHelper.create(account);
     }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void createAccounts(App app, List<Account> accounts) {
+        accounts.forEach(this::updateSearchTerms);
+        hibernateHelper.bulkInsert(accounts, batchSize);
+    }
 
     /** {@inheritDoc} */
     @Override
     public void updateAccount(Account account) {
-        hibernateHelper.update(account);
+        hibernateHelper.executeWithExceptionHandling(account, (session) -> {
+            session.update(account);
+            // Once the account is attached to the session, its enrollments can be read to index its external IDs,
+            // even if they were not loaded with the account.
+            updateSearchTerms(account);
+            return account;
+        });
+    }
+    
+    // The search terms are always maintained, so the index is complete whenever searches are switched over to it.
+    private void updateSearchTerms(Account account) {
+        if (account instanceof HibernateAccount) {
+            AccountSearchIndex.update((HibernateAccount) account);
+        }
     }
     
     /** {@inheritDoc} */
     @Override
-    public Optional<Account> getAccount(AccountId accountId) {
+    public Optional<Account> getAccount(AccountId accountId, AccountFetchProfile profile) {
+        checkNotNull(profile);
         HibernateAccount account = null;
+        Consumer<HibernateAccount> initializer = (acct) -> initialize(acct, profile);
 
         // The fastest retrieval can be done with the ID if it has been provided.
         AccountId unguarded = accountId.getUnguardedAccountId();
         if (unguarded.getId() != null) {
-            account = hibernateHelper.getById(HibernateAccount.class, unguarded.getId());
+            account = hibernateHelper.getById(HibernateAccount.class, unguarded.getId(), initializer);
             // Enforce the app membership of the accountId
             if (account == null || !account.getAppId().equals(accountId.getAppId())) {
                 return Optional.empty();
@@ -125,7 +169,7 @@ public class HibernateAccountDao implements AccountDao {
         } else {
             QueryBuilder builder = makeQuery(FULL_QUERY, unguarded.getAppId(), accountId, null, false);
             List<HibernateAccount> accountList = hibernateHelper.queryGet(
-                    builder.getQuery(), builder.getParameters(), null, null, HibernateAccount.class);
+                    builder.getQuery(), builder.getParameters(), null, null, HibernateAccount.class, initializer);
             if (accountList.isEmpty()) {
                 return Optional.empty();
             }
@@ -141,6 +185,35 @@ public class HibernateAccountDao implements AccountDao {
         return Optional.of(account);
     }
     
+    /**
+     * The account's collections are mapped as lazy, so the ones included in the fetch profile are loaded 
+     * here, while the session is still open. Each collection is loaded with its own select.
+     */
+    static void initialize(HibernateAccount account, AccountFetchProfile profile) {
+        switch(profile) {
+            case FULL:
+                Hibernate.initialize(account.getAttributes());
+                Hibernate.initialize(account.getConsents());
+                // fall through
+            case AUTH:
+                Hibernate.initialize(account.getRoles());
+                Hibernate.initialize(account.getDataGroups());
+                Hibernate.initialize(account.getLanguages());
+                Hibernate.initialize(account.getEnrollments());
+                break;
+            case IDENTITY:
+                break;
+        }
+    }
+    
+    // Account summaries include everything but consents and languages.
+    static void initializeForSummary(HibernateAccount account) {
+        Hibernate.initialize(account.getAttributes());
+        Hibernate.initialize(account.getRoles());
+        Hibernate.initialize(account.getDataGroups());
+        Hibernate.initialize(account.getEnrollments());
+    }
+    
     QueryBuilder makeQuery(String prefix, String appId, AccountId accountId, AccountSummarySearch search, boolean isCount) {
         RequestContext context = RequestContext.get();
         Set<String> callerStudies = context.getOrgSponsoredStudies();
@@ -170,12 +243,23 @@ public class HibernateAccountDao implements AccountDao {
             }
         }
         if (search != null) {
-            where.like(search.getStringSearchPosition(), "acct.email LIKE :email", "email", search.getEmailFilter());
-            where.phone(search.getStringSearchPosition(), search.getPhoneFilter());
+            if (searchIndexEnabled) {
+                where.likeIndexed(search.getStringSearchPosition(), appId, AccountSearchIndex.EMAIL_FIELD,
+                        "acct.email LIKE :email", "email", search.getEmailFilter());
+                where.phoneIndexed(search.getStringSearchPosition(), appId, search.getPhoneFilter());
+            } else {
+                where.like(search.getStringSearchPosition(), "acct.email LIKE :email", "email", search.getEmailFilter());
+                where.phone(search.getStringSearchPosition(), search.getPhoneFilter());
+            }
             where.append("acct.createdOn >= :startTime", "startTime", search.getStartTime());
             where.append("acct.createdOn <= :endTime", "endTime", search.getEndTime());
             where.append(":language IN ELEMENTS(acct.languages)", "language", search.getLanguage());
-            where.like(search.getStringSearchPosition(), "enrollment.externalId LIKE :extId", "extId", search.getExternalIdFilter());
+            if (searchIndexEnabled) {
+                where.likeIndexed(search.getStringSearchPosition(), appId, AccountSearchIndex.EXTERNAL_ID_FIELD,
+                        "enrollment.externalId LIKE :extId", "extId", search.getExternalIdFilter());
+            } else {
+                where.like(search.getStringSearchPosition(), "enrollment.externalId LIKE :extId", "extId", search.getExternalIdFilter());
+            }
             where.append("acct.status = :status", "status", search.getStatus());
             where.adminOnlyRequired(search.isAdminOnly());
             where.dataGroups(search.getAllOfGroups(), "IN");
@@ -218,19 +302,21 @@ public class HibernateAccountDao implements AccountDao {
         // (N*Y)+1 queries as we must load each collection individually... Y=1 in the prior code to load
         // studies, and Y=2 once we add attributes. On the downside, this approach loads all 
         // HibernateAccount fields, like clientData, though it is not returned.
+        // Searches are the heaviest reads of accounts, and can be served from the read replica.
+        HibernateHelper reader = hibernateHelper.readReplica();
         QueryBuilder builder = makeQuery(ID_QUERY, appId, null, search, false);
         
-        List<String> ids = hibernateHelper.queryGet(builder.getQuery(), builder.getParameters(),
+        List<String> ids = reader.queryGet(builder.getQuery(), builder.getParameters(),
                 search.getOffsetBy(), search.getPageSize(), String.class);
         
         List<AccountSummary>accountSummaryList = ids.stream()
-                .map(id -> hibernateHelper.getById(HibernateAccount.class, id))
+                .map(id -> reader.getById(HibernateAccount.class, id, HibernateAccountDao::initializeForSummary))
                 .map(this::unmarshallAccountSummary)
                 .collect(Collectors.toList());
 
         // Get count of accounts.
         builder = makeQuery(COUNT_QUERY, appId, null, search, true);
-        int count = hibernateHelper.queryCount(builder.getQuery(), builder.getParameters());
+        int count = reader.queryCount(builder.getQuery(), builder.getParameters());
         
         // Package results and return.
         return new PagedResourceList<>(accountSummaryList, count)
@@ -327,6 +413,55 @@ public class HibernateAccountDao implements AccountDao {
         return new PagedResourceList<>(infos, count, true);
     }
     
+    @Override
+    public List<String> getStudyHealthCodes(String appId, String studyId, Set<String> allOfGroups, String offsetKey,
+            int pageSize) {
+        checkNotNull(appId);
+        checkNotNull(studyId);
+        
+        QueryBuilder builder = new QueryBuilder();
+        builder.append(STUDY_HEALTH_CODES_QUERY);
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.appendRequired("acct.appId = :appId", "appId", appId);
+        where.appendRequired("enrollment.studyId = :studyId", "studyId", studyId);
+        where.appendRequired("acct.healthCode > :offsetKey", "offsetKey", offsetKey);
+        where.enrollment(ENROLLED, true);
+        where.dataGroups(allOfGroups, "IN");
+        builder.append("ORDER BY acct.healthCode");
+        
+        return hibernateHelper.readReplica().queryGet(builder.getQuery(), builder.getParameters(), null, pageSize,
+                String.class);
+    }
+    
+    @Override
+    public List<String> rebuildSearchTerms(String appId, String offsetKey, int pageSize) {
+        checkNotNull(appId);
+        
+        QueryBuilder builder = new QueryBuilder();
+        builder.append(FULL_QUERY);
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.appendRequired("acct.appId = :appId", "appId", appId);
+        where.appendRequired("acct.id > :offsetKey", "offsetKey", offsetKey);
+        builder.append("ORDER BY acct.id");
+        
+        return hibernateHelper.executeWithExceptionHandling(null, (session) -> {
+            Query<HibernateAccount> query = session.createQuery(builder.getQuery(), HibernateAccount.class);
+            for (Map.Entry<String, Object> entry : builder.getParameters().entrySet()) {
+                query.setParameter(entry.getKey(), entry.getValue());
+            }
+            query.setMaxResults(pageSize);
+            
+            // The accounts are loaded in this session, so their enrollments can be read, and any search terms 
+            // that change are written when the transaction commits.
+            List<String> accountIds = new ArrayList<>();
+            for (HibernateAccount account : query.list()) {
+                AccountSearchIndex.update(account);
+                accountIds.add(account.getId());
+            }
+            return accountIds;
+        });
+    }
+    
     @Override
     public void deleteAllAccounts(String appId) {
         checkNotNull(appId);
@@ -0,0 +1,76 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.util.Objects;
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Embeddable;
+
+/**
+ * One row of the account search index: a normalized identifier of the account (email, phone number, or external 
+ * ID), or one of that identifier's suffixes. Searching the suffixes with a prefix match ("term LIKE 'abc%'") finds 
+ * the accounts with an identifier containing "abc", using the index rather than scanning every account. This class 
+ * does not include account ID as Hibernate embeds this object directly into HibernateAccount.
+ */
+// Like HibernateAccountConsentKey, Hibernate requires that this class be mutable and accesses the member variables 
+// directly, while it is also kept in a set. There are no setters on the member variables. 
+@Access(AccessType.FIELD)
+@Embeddable
+public final class HibernateAccountSearchTerm {
+    private String appId;
+    private String field;
+    private String term;
+    private boolean wholeValue;
+
+    /** No arg constructor, required by Hibernate. */
+    @SuppressWarnings("unused")
+    public HibernateAccountSearchTerm() {
+    }
+
+    /** Constructs the search term. */
+    public HibernateAccountSearchTerm(String appId, String field, String term, boolean wholeValue) {
+        this.appId = appId;
+        this.field = field;
+        this.term = term;
+        this.wholeValue = wholeValue;
+    }
+
+    /** The app of the account, so searches only read the index entries of one app. */
+    public String getAppId() {
+        return appId;
+    }
+
+    /** The account field this term was taken from (see AccountSearchIndex). */
+    public String getField() {
+        return field;
+    }
+
+    /** The normalized value, or a suffix of it. */
+    public String getTerm() {
+        return term;
+    }
+
+    /** True if the term is the entire value and not just a suffix of it. */
+    public boolean isWholeValue() {
+        return wholeValue;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HibernateAccountSearchTerm)) {
+            return false;
+        }
+        HibernateAccountSearchTerm that = (HibernateAccountSearchTerm) o;
+        return wholeValue == that.wholeValue && Objects.equals(appId, that.appId) && 
+                Objects.equals(field, that.field) && Objects.equals(term, that.term);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return Objects.hash(appId, field, term, wholeValue);
+    }
+}
@@ -4,12 +4,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Boolean.FALSE;
 import static org.sagebionetworks.bridge.models.SearchTermPredicate.AND;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dao.AdherenceRecordDao;
 import org.sagebionetworks.bridge.hibernate.QueryBuilder.WhereClauseBuilder;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -24,30 +30,71 @@ public class HibernateAdherenceRecordDao implements AdherenceRecordDao {
         + "LEFT OUTER JOIN TimelineMetadata AS tm "
         + "ON ar.instanceGuid = tm.guid"; 
 
+    static final String BATCH_SIZE_PROPERTY = "hibernate.batch.size";
     
     private HibernateHelper hibernateHelper;
+    private int batchSize;
 
     @Resource(name = "mysqlHibernateHelper")
     final void setHibernateHelper(HibernateHelper hibernateHelper) {
         this.hibernateHelper = hibernateHelper;
     }
     
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.batchSize = config.getInt(BATCH_SIZE_PROPERTY);
+    }
+    
     @Override
     public void updateAdherenceRecord(AdherenceRecord record) {
         checkNotNull(record);
         
-        if (record.getStartedOn() == null && !record.isDeclined()) {
-            AdherenceRecordId id = new AdherenceRecordId(record.getUserId(), record.getStudyId(),
-                    record.getInstanceGuid(), record.getEventTimestamp(), record.getInstanceTimestamp());
-            // Cannot delete if the record is already not there, so check for this.
-            AdherenceRecord obj = hibernateHelper.getById(AdherenceRecord.class, id);
-            if (obj != null) {
-                hibernateHelper.deleteById(AdherenceRecord.class, id);    
-            }
+        if (isDeletion(record)) {
+            deleteIfExists(record);
         } else {
             hibernateHelper.saveOrUpdate(record);    
         }
     }
+    
+    @Override
+    public void updateAdherenceRecords(Collection<AdherenceRecord> records) {
+        checkNotNull(records);
+        
+        // Two objects with the same key can't be saved in one session, so if a record is submitted more than 
+        // once, the last one submitted is used.
+        Map<AdherenceRecordId, AdherenceRecord> lastById = new LinkedHashMap<>();
+        for (AdherenceRecord record : records) {
+            lastById.put(idOf(record), record);
+        }
+        List<AdherenceRecord> saves = new ArrayList<>();
+        for (AdherenceRecord record : lastById.values()) {
+            if (isDeletion(record)) {
+                deleteIfExists(record);
+            } else {
+                saves.add(record);
+            }
+        }
+        hibernateHelper.bulkUpsert(saves, batchSize);
+    }
+    
+    // A record that has neither been started nor declined is removed, rather than saved.
+    private static boolean isDeletion(AdherenceRecord record) {
+        return record.getStartedOn() == null && !record.isDeclined();
+    }
+    
+    private static AdherenceRecordId idOf(AdherenceRecord record) {
+        return new AdherenceRecordId(record.getUserId(), record.getStudyId(), record.getInstanceGuid(),
+                record.getEventTimestamp(), record.getInstanceTimestamp());
+    }
+    
+    private void deleteIfExists(AdherenceRecord record) {
+        AdherenceRecordId id = idOf(record);
+        // Cannot delete if the record is already not there, so check for this.
+        AdherenceRecord obj = hibernateHelper.getById(AdherenceRecord.class, id);
+        if (obj != null) {
+            hibernateHelper.deleteById(AdherenceRecord.class, id);    
+        }
+    }
 
     @Override
     public PagedResourceList<AdherenceRecord> getAdherenceRecords(AdherenceRecordsSearch search) {
@@ -55,11 +102,11 @@ public class HibernateAdherenceRecordDao implements AdherenceRecordDao {
         
         QueryBuilder builder = createQuery(search);
         
-        List<AdherenceRecord> records = hibernateHelper.nativeQueryGet(
+        List<AdherenceRecord> records = hibernateHelper.readReplica().nativeQueryGet(
                 "SELECT * " + builder.getQuery(), builder.getParameters(), 
                 search.getOffsetBy(), search.getPageSize(), AdherenceRecord.class);
 
-        int total = hibernateHelper.nativeQueryCount(
+        int total = hibernateHelper.readReplica().nativeQueryCount(
                 "SELECT count(*) " + builder.getQuery(), builder.getParameters());
 
         return new PagedResourceList<>(records, total, true);
@@ -4,6 +4,7 @@ import static java.util.stream.Collectors.toList;
 import static org.sagebionetworks.bridge.BridgeConstants.SHARED_APP_ID;
 import static org.sagebionetworks.bridge.BridgeUtils.AND_JOINER;
 import static org.sagebionetworks.bridge.BridgeUtils.isEmpty;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_QUERY_REGION;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -13,10 +14,15 @@ import java.util.Set;
 
 import javax.annotation.Resource;
 
+import com.google.common.primitives.Longs;
+
+import org.hibernate.Session;
 import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Component;
 
 import org.sagebionetworks.bridge.dao.AssessmentDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
 import org.sagebionetworks.bridge.models.assessments.HibernateAssessment;
@@ -47,6 +53,18 @@ class HibernateAssessmentDao implements AssessmentDao {
     static final String DELETE_ALL_ASSESSMENTS_SQL = "DELETE FROM Assessments WHERE appId = :appId";
     static final String DELETE_RESOURCES_SQL = "DELETE FROM ExternalResources where appId = :appId AND assessmentId = :assessmentId";
     static final String DELETE_CONFIG_SQL = "DELETE FROM AssessmentConfigs where guid = :guid";
+    static final String CREATED_ON = "createdOn";
+    static final String ORDER_BY_CREATED_ON = "ORDER BY a.createdOn DESC, a.guid DESC";
+    static final String AFTER_OFFSET_KEY = "AND (a.createdOn < :createdOn OR "
+            + "(a.createdOn = :createdOn AND a.guid < :guid))";
+    static final String OFFSET_KEY_SEPARATOR = ":";
+    // MySQL won't select from the table being updated in a subquery, unless it is an aggregate in a derived table.
+    static final String UPDATE_LATEST_REVISION_SQL = "UPDATE Assessments AS a INNER JOIN (SELECT MAX(revision) "
+            + "AS rev FROM Assessments WHERE appId = :appId AND identifier = :identifier) AS latest "
+            + "SET a.latestRevision = (a.revision = latest.rev) WHERE a.appId = :appId AND a.identifier = :identifier";
+    // HibernateAssessment doesn't map the latestRevision column, so updating it doesn't need to evict cached 
+    // assessments. Without a query space of its own, Hibernate would evict every cache region on update.
+    static final String LATEST_REVISION_QUERY_SPACE = "Assessments.latestRevision";
 
     private HibernateHelper hibernateHelper;
     
@@ -59,44 +77,78 @@ class HibernateAssessmentDao implements AssessmentDao {
     public PagedResourceList<Assessment> getAssessments(String appId, String ownerId, 
             int offsetBy, int pageSize, Set<String> tags, boolean includeDeleted) {
         
-        boolean includeTags = !isEmpty(tags);
+        QueryBuilder builder = latestRevisionsQuery(appId, ownerId, tags, includeDeleted);
+        builder.append(ORDER_BY_CREATED_ON);
         
-        // Not sure pulling this out into constants is any easier to understand...
-        QueryBuilder builder = new QueryBuilder();
-        builder.append("FROM (");
-        builder.append("SELECT DISTINCT identifier as id, MAX(revision) AS rev FROM Assessments");
-        builder.append("WHERE appId = :appId");
-        if (ownerId != null) {
-            builder.append(LIMIT_TO_OWNER, OWNER_ID, ownerId);
+        int count = hibernateHelper.readReplica().nativeQueryCount(
+                SELECT_COUNT + " " + builder.getQuery(), builder.getParameters());
+        List<HibernateAssessment> assessments = hibernateHelper.readReplica().nativeQueryGet(
+                SELECT_ALL + " " + builder.getQuery(), builder.getParameters(), 
+                offsetBy, pageSize, HibernateAssessment.class);
+        
+        List<Assessment> dtos = assessments.stream().map(Assessment::create).collect(toList());
+        return new PagedResourceList<Assessment>(dtos, count, true);
+    }
+    
+    @Override
+    public ForwardCursorPagedResourceList<Assessment> getAssessmentsByOffsetKey(String appId, String ownerId,
+            String offsetKey, int pageSize, Set<String> tags, boolean includeDeleted) {
+        
+        QueryBuilder builder = latestRevisionsQuery(appId, ownerId, tags, includeDeleted);
+        if (offsetKey != null) {
+            String[] parts = offsetKey.split(OFFSET_KEY_SEPARATOR, 2);
+            Long createdOn = (parts.length == 2) ? Longs.tryParse(parts[0]) : null;
+            if (createdOn == null) {
+                throw new BadRequestException("Invalid offsetKey: " + offsetKey);
+            }
+            builder.append(AFTER_OFFSET_KEY, CREATED_ON, createdOn, GUID, parts[1]);
+        }
+        builder.append(ORDER_BY_CREATED_ON);
+        
+        // Get one more record than requested to find out if there is another page.
+        List<HibernateAssessment> assessments = hibernateHelper.readReplica().nativeQueryGet(
+                SELECT_ALL + " " + builder.getQuery(), builder.getParameters(), 
+                0, pageSize + 1, HibernateAssessment.class);
+        
+        String nextPageOffsetKey = null;
+        if (assessments.size() > pageSize) {
+            assessments = assessments.subList(0, pageSize);
+            HibernateAssessment last = assessments.get(pageSize - 1);
+            // Changeset 54 sets createdOn to 0 where it was missing; a record without it sorts as if it were 0.
+            long createdOn = (last.getCreatedOn() == null) ? 0L : last.getCreatedOn().getMillis();
+            nextPageOffsetKey = createdOn + OFFSET_KEY_SEPARATOR + last.getGuid();
         }
-        builder.append("GROUP BY identifier) AS latest_assessments");
-        builder.append("INNER JOIN Assessments AS a ON a.identifier = latest_assessments.id AND");
-        builder.append("a.revision = latest_assessments.rev");
+        List<Assessment> dtos = assessments.stream().map(Assessment::create).collect(toList());
+        return new ForwardCursorPagedResourceList<Assessment>(dtos, nextPageOffsetKey, true);
+    }
+    
+    /**
+     * The latest revision of each assessment is flagged (see updateLatestRevision), so the listing is a scan 
+     * of the appId-latestRevision-createdOn index, rather than a grouping of all the revisions in the app. 
+     * Tags are checked against the primary key of AssessmentTags for each assessment in the scan, so a paged 
+     * query can stop as soon as it has a page of results. 
+     */
+    private QueryBuilder latestRevisionsQuery(String appId, String ownerId, Set<String> tags,
+            boolean includeDeleted) {
+        QueryBuilder builder = new QueryBuilder();
+        builder.append("FROM Assessments AS a");
         
         List<String> clauses = new ArrayList<>();
-        clauses.add("WHERE appId = :appId");
+        clauses.add("WHERE a.appId = :appId AND a.latestRevision = 1");
         if (ownerId != null) {
-            clauses.add("ownerId = :ownerId");
+            clauses.add("a.ownerId = :ownerId");
             builder.getParameters().put(OWNER_ID, ownerId);
         }
-        if (includeTags) {
-            clauses.add("guid IN (SELECT DISTINCT assessmentGuid FROM AssessmentTags WHERE tagValue IN :tags)");
+        if (!isEmpty(tags)) {
+            clauses.add("EXISTS (SELECT 1 FROM AssessmentTags AS t WHERE t.assessmentGuid = a.guid "
+                    + "AND t.tagValue IN :tags)");
             builder.getParameters().put("tags", tags);
         }
         if (!includeDeleted) {
-            clauses.add("deleted = 0");
+            clauses.add("a.deleted = 0");
         }
         builder.append(AND_JOINER.join(clauses), APP_ID, appId);
-        builder.append("ORDER BY createdOn DESC");
-        
-        int count = hibernateHelper.nativeQueryCount(
-                SELECT_COUNT + " " + builder.getQuery(), builder.getParameters());
-        List<HibernateAssessment> assessments = hibernateHelper.nativeQueryGet(
-                SELECT_ALL + " " + builder.getQuery(), builder.getParameters(), 
-                offsetBy, pageSize, HibernateAssessment.class);
-        
-        List<Assessment> dtos = assessments.stream().map(Assessment::create).collect(toList());
-        return new PagedResourceList<Assessment>(dtos, count, true);
+        return builder;
     }
     
     @Override
@@ -113,9 +165,10 @@ class HibernateAssessmentDao implements AssessmentDao {
         }
         builder.append(GET_REVISIONS2);
         
-        int count = hibernateHelper.queryCount(SELECT_COUNT + builder.getQuery(), builder.getParameters());
+        int count = hibernateHelper.readReplica().queryCount(SELECT_COUNT + builder.getQuery(),
+                builder.getParameters());
         
-        List<HibernateAssessment> assessments = hibernateHelper.queryGet(
+        List<HibernateAssessment> assessments = hibernateHelper.readReplica().queryGet(
                 builder.getQuery(), builder.getParameters(), offsetBy, pageSize, HibernateAssessment.class);
         
         List<Assessment> dtos = assessments.stream().map(Assessment::create).collect(toList());
@@ -130,8 +183,8 @@ class HibernateAssessmentDao implements AssessmentDao {
             builder.append(LIMIT_TO_OWNER, OWNER_ID, ownerId); 
         }
         
-        List<HibernateAssessment> results = hibernateHelper.queryGet(
-                builder.getQuery(), builder.getParameters(), null, null, HibernateAssessment.class);
+        List<HibernateAssessment> results = hibernateHelper.cachedQueryGet(
+                builder.getQuery(), builder.getParameters(), HibernateAssessment.class, ASSESSMENT_QUERY_REGION);
         if (results.isEmpty()) {
             return Optional.empty();
         }
@@ -145,8 +198,8 @@ class HibernateAssessmentDao implements AssessmentDao {
         if (ownerId != null) {
             builder.append(LIMIT_TO_OWNER, OWNER_ID, ownerId); 
         }
-        List<HibernateAssessment> results = hibernateHelper.queryGet(
-                builder.getQuery(), builder.getParameters(), null, null, HibernateAssessment.class);
+        List<HibernateAssessment> results = hibernateHelper.cachedQueryGet(
+                builder.getQuery(), builder.getParameters(), HibernateAssessment.class, ASSESSMENT_QUERY_REGION);
         if (results.isEmpty()) {
             return Optional.empty();
         }
@@ -160,7 +213,9 @@ class HibernateAssessmentDao implements AssessmentDao {
         
         HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateAssessment, (session) -> {
             session.persist(hibernateConfig);
-            return (HibernateAssessment)session.merge(hibernateAssessment);
+            HibernateAssessment merged = (HibernateAssessment)session.merge(hibernateAssessment);
+            updateLatestRevision(session, appId, hibernateAssessment.getIdentifier());
+            return merged;
         });
         return Assessment.create(retValue);
     }
@@ -172,8 +227,11 @@ class HibernateAssessmentDao implements AssessmentDao {
         // convert it to a non-managed object, the version will not be updated. It appears that the update of the 
         // Java object happens as part of the transaction commit, or something like that.
         HibernateAssessment hibernateAssessment = HibernateAssessment.create(appId, assessment);
-        HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateAssessment, 
-                (session) -> (HibernateAssessment)session.merge(hibernateAssessment));
+        HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateAssessment, (session) -> {
+            HibernateAssessment merged = (HibernateAssessment)session.merge(hibernateAssessment);
+            updateLatestRevision(session, appId, hibernateAssessment.getIdentifier());
+            return merged;
+        });
         return Assessment.create(retValue);
     }
 
@@ -196,6 +254,7 @@ class HibernateAssessmentDao implements AssessmentDao {
             query.executeUpdate();
             
             session.remove(hibernateAssessment);
+            updateLatestRevision(session, appId, assessmentId);
             return null;
         });
     }
@@ -211,6 +270,7 @@ class HibernateAssessmentDao implements AssessmentDao {
             // And persist all of the resources
             session.saveOrUpdate(hibernateDestConfig);
             session.saveOrUpdate(hibernateDest);
+            updateLatestRevision(session, SHARED_APP_ID, hibernateDest.getIdentifier());
             return (HibernateAssessment)session.merge(hibernateOrigin);
         });
         return Assessment.create(retValue);
@@ -224,11 +284,26 @@ class HibernateAssessmentDao implements AssessmentDao {
         HibernateAssessment retValue = hibernateHelper.executeWithExceptionHandling(hibernateDest, (session) -> {
             session.saveOrUpdate(hibernateConfig);
             session.merge(hibernateDest);
+            updateLatestRevision(session, destAppId, hibernateDest.getIdentifier());
             return hibernateDest;
         });
         return Assessment.create(retValue);
     }
 
+    /**
+     * Flag the highest revision of an assessment (deleted or not) as its latest revision, and clear the flag 
+     * on its other revisions. Called in the transaction of each change that can add or remove a revision.
+     */
+    private void updateLatestRevision(Session session, String appId, String identifier) {
+        // Changes are otherwise only flushed before a native query that shares their query space.
+        session.flush();
+        NativeQuery<?> query = session.createNativeQuery(UPDATE_LATEST_REVISION_SQL);
+        query.setParameter(APP_ID, appId);
+        query.setParameter(IDENTIFIER, identifier);
+        query.addSynchronizedQuerySpace(LATEST_REVISION_QUERY_SPACE);
+        query.executeUpdate();
+    }
+
     @Override
     public boolean hasAssessmentFromOrg(String appId, String orgId) {
         QueryBuilder builder = new QueryBuilder();
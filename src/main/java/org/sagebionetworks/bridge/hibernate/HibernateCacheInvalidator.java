@@ -0,0 +1,194 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+
+/**
+ * Keeps the second-level cache regions of each server in step. Changes made through Hibernate are applied to the
+ * cache of the server that made them, but every server has its own in-memory cache, so the services that change
+ * cached entities call {@link #invalidate(String)} to have the other servers evict the region (and its queries).
+ * Messages are sent over Redis pub/sub. If a message is lost, the other servers serve stale entries until the
+ * region's TTL expires.
+ *
+ * Services that keep their own in-memory caches register them with {@link #registerLocalCache(String, Consumer)},
+ * and call {@link #invalidate(String, String)} to have the other servers evict a key from them, over the same channel.
+ */
+@Component
+public class HibernateCacheInvalidator {
+    private static final Logger LOG = LoggerFactory.getLogger(HibernateCacheInvalidator.class);
+
+    public static final String STUDY_REGION = "study";
+    public static final String ORGANIZATION_REGION = "organization";
+    public static final String SCHEDULE_REGION = "schedule";
+    public static final String ASSESSMENT_REGION = "assessment";
+    public static final String QUERY_REGION_SUFFIX = "-queries";
+    public static final String SCHEDULE_QUERY_REGION = SCHEDULE_REGION + QUERY_REGION_SUFFIX;
+    public static final String ASSESSMENT_QUERY_REGION = ASSESSMENT_REGION + QUERY_REGION_SUFFIX;
+
+    private static final Set<String> REGIONS = ImmutableSet.of(STUDY_REGION, ORGANIZATION_REGION, SCHEDULE_REGION,
+            ASSESSMENT_REGION);
+    private static final Set<String> QUERY_REGIONS = ImmutableSet.of(SCHEDULE_QUERY_REGION, ASSESSMENT_QUERY_REGION);
+
+    public static final String TEMPLATE_REVISION_CACHE = "template-revision";
+    public static final String CRITERIA_TOPIC_CACHE = "criteria-topic";
+    public static final String TIMELINE_METADATA_BY_SCHEDULE_CACHE = "timeline-metadata-schedule";
+    public static final String TIMELINE_METADATA_BY_APP_CACHE = "timeline-metadata-app";
+
+    static final String CHANNEL = "hibernate-cache-invalidations";
+    private static final String SEPARATOR = ":";
+    private static final long RESUBSCRIBE_DELAY_MILLIS = 5000L;
+
+    // Messages sent by this server are also delivered to it, and are ignored.
+    final String serverId = BridgeUtils.generateGuid();
+    private SessionFactory sessionFactory;
+    private JedisPool jedisPool;
+    private final JedisPubSub subscriber = new JedisPubSub() {
+        @Override
+        public void onMessage(String channel, String message) {
+            receive(message);
+        }
+    };
+    private volatile boolean running;
+    // Evicts a key from an in-memory cache of this server, by the name of the cache.
+    private final Map<String, Consumer<String>> localCaches = new ConcurrentHashMap<>();
+
+    @Autowired
+    final void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        running = true;
+        Thread thread = new Thread(this::listen, "hibernate-cache-invalidations");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        running = false;
+        if (subscriber.isSubscribed()) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    /**
+     * Tell the other servers to evict this region and its query region. The cache of this server has already been
+     * updated by Hibernate.
+     */
+    public void invalidate(String region) {
+        checkNotNull(region);
+
+        publish(region);
+    }
+
+    /**
+     * Register an in-memory cache of this server. When another server invalidates a key of the cache, it is passed 
+     * to the evictor.
+     */
+    public void registerLocalCache(String cacheName, Consumer<String> evictor) {
+        checkNotNull(cacheName);
+        checkNotNull(evictor);
+        localCaches.put(cacheName, evictor);
+    }
+
+    /**
+     * Tell the other servers to evict this key from the named in-memory cache. The caller evicts it from the cache
+     * of this server.
+     */
+    public void invalidate(String cacheName, String key) {
+        checkNotNull(cacheName);
+        checkNotNull(key);
+
+        publish(cacheName + SEPARATOR + key);
+    }
+
+    private void publish(String target) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.publish(CHANNEL, serverId + SEPARATOR + target);
+        } catch (JedisException e) {
+            LOG.warn("Could not publish invalidation of cache " + target, e);
+        }
+    }
+
+    void receive(String message) {
+        // Messages are serverId:region for Hibernate regions, and serverId:cacheName:key for in-memory caches.
+        String[] parts = message.split(SEPARATOR, 3);
+        if (parts.length < 2 || serverId.equals(parts[0])) {
+            return;
+        }
+        if (parts.length == 2) {
+            evict(parts[1]);
+            return;
+        }
+        Consumer<String> evictor = localCaches.get(parts[1]);
+        if (evictor == null) {
+            LOG.warn("Ignoring invalidation of unknown cache " + parts[1]);
+            return;
+        }
+        evictor.accept(parts[2]);
+    }
+
+    void evict(String region) {
+        // Hibernate fails on (or creates) regions that aren't configured, so only known regions are evicted.
+        if (!REGIONS.contains(region)) {
+            LOG.warn("Ignoring invalidation of unknown cache region " + region);
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        cache.evictRegion(region);
+        String queryRegion = region + QUERY_REGION_SUFFIX;
+        if (QUERY_REGIONS.contains(queryRegion)) {
+            cache.evictQueryRegion(queryRegion);
+        }
+    }
+
+    private void listen() {
+        // subscribe() blocks until the subscription ends. If the connection to Redis fails, this resubscribes.
+        while (running) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.subscribe(subscriber, CHANNEL);
+            } catch (JedisException e) {
+                if (running) {
+                    LOG.warn("Lost subscription to cache invalidations, resubscribing", e);
+                    try {
+                        Thread.sleep(RESUBSCRIBE_DELAY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
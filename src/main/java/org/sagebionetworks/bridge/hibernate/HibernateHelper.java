@@ -1,28 +1,89 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
+import org.hibernate.exception.JDBCConnectionException;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 
 /** Encapsulates common scenarios for using Hibernate to make it easier to use. */
 public class HibernateHelper {
+    private static final Logger LOG = LoggerFactory.getLogger(HibernateHelper.class);
+    private static final Consumer<Object> NO_OP = (obj) -> {};
+
     private SessionFactory hibernateSessionFactory;
     private PersistenceExceptionConverter exceptionConverter;
+    private ReadReplicaRouter replicaRouter;
+    private DataSource dataSource;
+    private HibernateHelper replicaHelper;
 
     public HibernateHelper(SessionFactory hibernateSessionFactory, PersistenceExceptionConverter exceptionConverter) {
+        this(hibernateSessionFactory, exceptionConverter, null);
+    }
+
+    /** The router may be null, in which case all reads are made on the primary. */
+    public HibernateHelper(SessionFactory hibernateSessionFactory, PersistenceExceptionConverter exceptionConverter,
+            ReadReplicaRouter replicaRouter) {
+        this(hibernateSessionFactory, exceptionConverter, replicaRouter, null);
+    }
+
+    /**
+     * Sessions on the primary take their connections from the data source, rather than from the pool of the session 
+     * factory, so that a group of DAOs can be given a pool of their own. The data source may be null, in which case 
+     * the session factory's pool is used.
+     */
+    public HibernateHelper(SessionFactory hibernateSessionFactory, PersistenceExceptionConverter exceptionConverter,
+            ReadReplicaRouter replicaRouter, DataSource dataSource) {
         this.hibernateSessionFactory = hibernateSessionFactory;
         this.exceptionConverter = exceptionConverter;
+        this.replicaRouter = replicaRouter;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns a helper whose read-only methods (getById, queryGet, queryCount, nativeQueryGet, nativeQueryCount, and
+     * nativeQuery) are made on the read replica when the {@link ReadReplicaRouter} allows it, and on the primary
+     * otherwise. Writes made through the returned helper still go to the primary. The replica may lag behind the
+     * primary, so this should only be used for reads that can tolerate slightly stale results, like searches and
+     * lists; never to read an object that is about to be updated.
+     */
+    public HibernateHelper readReplica() {
+        if (replicaRouter == null || !replicaRouter.isReplicaConfigured()) {
+            return this;
+        }
+        if (replicaHelper == null) {
+            // Racing threads may each create a helper; they are equivalent, so that does no harm.
+            HibernateHelper helper = new HibernateHelper(hibernateSessionFactory, exceptionConverter, replicaRouter,
+                    dataSource);
+            helper.replicaHelper = helper;
+            replicaHelper = helper;
+        }
+        return replicaHelper;
+    }
+
+    private boolean isReplicaHelper() {
+        return replicaHelper == this;
     }
 
     /**
@@ -40,6 +101,8 @@ public class HibernateHelper {
 
     /** Deletes the given object. */
     public <T> void deleteById(Class<T> clazz, Serializable id) {
+        // Recorded before the read, so the object is loaded from the primary.
+        recordWrite();
         T obj = getById(clazz, id);
         // Hibernate optimistic versioning also applies to deletes. However, unlike updates, when we delete something,
         // we want it gone, so we generally don't care about optimistic versioning. In order to handle this in
@@ -52,7 +115,21 @@ public class HibernateHelper {
 
     /** Get by the table's primary key. Returns null if the object doesn't exist. */
     public <T> T getById(Class<T> clazz, Serializable id) {
-        return executeWithExceptionHandling(null, session -> session.get(clazz, id));
+        return getById(clazz, id, NO_OP);
+    }
+
+    /**
+     * Get by the table's primary key. Returns null if the object doesn't exist. The initializer is called with the 
+     * object (if found) before the session is closed, so it can load the lazy collections the caller needs.
+     */
+    public <T> T getById(Class<T> clazz, Serializable id, Consumer<? super T> initializer) {
+        return executeReadWithExceptionHandling(session -> {
+            T obj = session.get(clazz, id);
+            if (obj != null) {
+                initializer.accept(obj);
+            }
+            return obj;
+        });
     }
 
     /**
@@ -61,7 +138,7 @@ public class HibernateHelper {
     public int queryCount(String queryString, Map<String,Object> parameters) {
         // Hibernate returns a long for a count. However, we never expect more than 2 billion rows, for obvious
         // reasons.
-        Long count = executeWithExceptionHandling(null, session -> {
+        Long count = executeReadWithExceptionHandling(session -> {
             Query<Long> query = session.createQuery(queryString, Long.class);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -83,7 +160,7 @@ public class HibernateHelper {
         // This does not accept the typed parameter with something like a Long value, it
         // throws an "unknown entity" exception. So we use the untyped API for this. Also,
         // it returns BigInteger(?!).
-        BigInteger count = executeWithExceptionHandling(null, session -> {
+        BigInteger count = executeReadWithExceptionHandling(session -> {
             NativeQuery query = session.createNativeQuery(queryString);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -105,7 +182,16 @@ public class HibernateHelper {
      * and limit for pagination.
      */
     public <T> List<T> queryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit, Class<T> clazz) {
-        return executeWithExceptionHandling(null, session -> {
+        return queryGet(queryString, parameters, offset, limit, clazz, NO_OP);
+    }
+
+    /**
+     * Executes the query and returns a list of results, as queryGet does. The initializer is called with each 
+     * result before the session is closed, so it can load the lazy collections the caller needs.
+     */
+    public <T> List<T> queryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit,
+            Class<T> clazz, Consumer<? super T> initializer) {
+        return executeReadWithExceptionHandling(session -> {
             Query<T> query = session.createQuery(queryString, clazz);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -118,12 +204,40 @@ public class HibernateHelper {
             if (limit != null) {
                 query.setMaxResults(limit);
             }
-            return query.list();
+            List<T> results = query.list();
+            results.forEach(initializer);
+            return results;
         });
     }
 
+    /**
+     * Executes the query and returns a list of results, as queryGet does, but stores the IDs of the results in the
+     * given query cache region. The entities must themselves be cached, or each one will be loaded separately. The
+     * cached results are discarded whenever a table in the query is changed.
+     */
+    public <T> List<T> cachedQueryGet(String queryString, Map<String,Object> parameters, Class<T> clazz,
+            String cacheRegion) {
+        // Cached queries are always made on the primary, whose second-level cache is kept current. They are not 
+        // writes, so they don't make the rest of the request read from the primary.
+        try {
+            return execute(session -> {
+                Query<T> query = session.createQuery(queryString, clazz);
+                if (parameters != null) {
+                    for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                        query.setParameter(entry.getKey(), entry.getValue());
+                    }
+                }
+                query.setCacheable(true);
+                query.setCacheRegion(cacheRegion);
+                return query.list();
+            });
+        } catch(PersistenceException pe) {
+            throw convert(pe, null);
+        }
+    }
+
     public <T> List<T> nativeQueryGet(String queryString, Map<String,Object> parameters, Integer offset, Integer limit, Class<T> clazz) {
-        return executeWithExceptionHandling(null, session -> {
+        return executeReadWithExceptionHandling(session -> {
             Query<T> query = session.createNativeQuery(queryString, clazz);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -142,7 +256,7 @@ public class HibernateHelper {
     
     @SuppressWarnings("unchecked")
     public <T> List<Object[]> nativeQuery(String queryString, Map<String,Object> parameters) {
-        return executeWithExceptionHandling(null, session -> {
+        return executeReadWithExceptionHandling(session -> {
             Query<?> query = session.createNativeQuery(queryString);
             if (parameters != null) {
                 for (Map.Entry<String, Object> entry : parameters.entrySet()) {
@@ -196,6 +310,52 @@ public class HibernateHelper {
         });
     }
 
+    /**
+     * Inserts the objects in a single transaction, sending them to the database in JDBC batches of the given size
+     * (the connection URL sets rewriteBatchedStatements, so the MySQL driver sends each batch as one multi-row 
+     * INSERT). If any object can't be inserted, none of them are. 
+     */
+    public <T> void bulkInsert(Collection<T> objects, int batchSize) {
+        bulkWrite("Inserted", objects, batchSize, Session::save);
+    }
+
+    /**
+     * Saves or updates the objects in a single transaction, sending them to the database in JDBC batches of the 
+     * given size. If any object can't be written, none of them are. 
+     */
+    public <T> void bulkUpsert(Collection<T> objects, int batchSize) {
+        bulkWrite("Upserted", objects, batchSize, Session::saveOrUpdate);
+    }
+
+    private <T> void bulkWrite(String operation, Collection<T> objects, int batchSize,
+            BiConsumer<Session, T> writer) {
+        checkArgument(batchSize > 0);
+        if (objects.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        executeWithExceptionHandling(null, session -> {
+            session.setJdbcBatchSize(batchSize);
+            int i = 0;
+            for (T obj : objects) {
+                writer.accept(session, obj);
+                // Flush each batch and clear it from the session, so a large write doesn't hold every object in
+                // memory, or dirty-check all of them on each flush.
+                if (++i % batchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            return null;
+        });
+        if (LOG.isDebugEnabled()) {
+            long micros = Math.max(1L, (System.nanoTime() - start) / 1000L);
+            LOG.debug(operation + " " + objects.size() + " " + objects.iterator().next().getClass().getSimpleName()
+                    + " records in " + (micros / 1000L) + " ms (" + (objects.size() * 1000000L / micros)
+                    + " rows/sec, batchSize = " + batchSize + ")");
+        }
+    }
+
     /** Save or update a single object. */
     public <T> T saveOrUpdate(T obj) {
         return executeWithExceptionHandling(obj, session -> {
@@ -213,27 +373,77 @@ public class HibernateHelper {
     }
     
     <T> T executeWithExceptionHandling(T originalEntity, Function<Session, T> function) {
+        // Anything other than a read is assumed to write, so the rest of the request reads from the primary.
+        recordWrite();
         try {
             return execute(function);
         } catch(PersistenceException pe) {
-            RuntimeException ex = exceptionConverter.convert(pe, originalEntity);
-            if (ex == pe) {
-                throw new BridgeServiceException(ex);
-            } else {
-                throw ex;
-            }
+            throw convert(pe, originalEntity);
+        }
+    }
+
+    <T> T executeReadWithExceptionHandling(Function<Session, T> function) {
+        try {
+            return executeRead(function);
+        } catch(PersistenceException pe) {
+            throw convert(pe, null);
+        }
+    }
+
+    private void recordWrite() {
+        if (replicaRouter != null) {
+            replicaRouter.recordWrite();
+        }
+    }
+
+    private RuntimeException convert(PersistenceException pe, Object originalEntity) {
+        RuntimeException ex = exceptionConverter.convert(pe, originalEntity);
+        return (ex == pe) ? new BridgeServiceException(ex) : ex;
+    }
+
+    // Makes the read on the replica if this is the replica helper and the router allows it, and on the primary
+    // otherwise. Package-scoped to facilitate unit tests.
+    <T> T executeRead(Function<Session, T> function) {
+        SessionFactory replicaSessionFactory = isReplicaHelper() ? replicaRouter.route() : null;
+        if (replicaSessionFactory == null) {
+            return execute(function);
+        }
+        try {
+            return execute(replicaSessionFactory, true, function);
+        } catch(JDBCConnectionException e) {
+            replicaRouter.recordFallback();
+            return execute(function);
         }
     }
 
     // Helper function, which handles opening and closing sessions and transactions.
     // Package-scoped to facilitate unit tests.
     <T> T execute(Function<Session, T> function) {
-        T retval;
-        try (Session session = hibernateSessionFactory.openSession()) {
-            Transaction transaction = session.beginTransaction();
-            retval = function.apply(session);
-            transaction.commit();
+        if (dataSource == null) {
+            return execute(hibernateSessionFactory, false, function);
         }
+        // Hibernate doesn't close a connection it was given, so it's returned to the pool here.
+        try (Connection connection = dataSource.getConnection()) {
+            try (Session session = hibernateSessionFactory.withOptions().connection(connection).openSession()) {
+                return execute(session, false, function);
+            }
+        } catch(SQLException e) {
+            throw new JDBCConnectionException("Unable to acquire JDBC Connection", e);
+        }
+    }
+
+    <T> T execute(SessionFactory sessionFactory, boolean readOnly, Function<Session, T> function) {
+        try (Session session = sessionFactory.openSession()) {
+            return execute(session, readOnly, function);
+        }
+    }
+
+    private <T> T execute(Session session, boolean readOnly, Function<Session, T> function) {
+        // Objects loaded in a read-only session are not dirty-checked or flushed.
+        session.setDefaultReadOnly(readOnly);
+        Transaction transaction = session.beginTransaction();
+        T retval = function.apply(session);
+        transaction.commit();
         return retval;
     }
 }
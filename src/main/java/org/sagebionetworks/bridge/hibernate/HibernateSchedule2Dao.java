@@ -3,12 +3,19 @@ package org.sagebionetworks.bridge.hibernate;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toSet;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.SCHEDULE_QUERY_REGION;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -46,11 +53,21 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
     static final String DELETE_ORPHANED_SESSIONS = "DELETE FROM Sessions where scheduleGuid = :guid AND guid NOT IN (:guids)";
     static final String AND_DELETED = "AND deleted = 0";
     static final String AND_NOT_IN_GUIDS = "AND guid NOT IN (:guids)";
+    static final String GET_TIMELINE_METADATA = "FROM TimelineMetadata WHERE guid IN (:guids)";
     static final String INSERT = "INSERT INTO TimelineMetadata (appId, assessmentGuid, assessmentId, assessmentInstanceGuid, "
             + "assessmentRevision, scheduleGuid, scheduleModifiedOn, schedulePublished, sessionGuid, sessionInstanceEndDay, "
             + "sessionInstanceGuid, sessionInstanceStartDay, sessionStartEventId, timeWindowGuid, timeWindowPersistent, guid) "
             + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-    static final String DELETE_TIMELINE_RECORDS = "DELETE FROM TimelineMetadata WHERE scheduleGuid = :scheduleGuid";
+    static final String SELECT_TIMELINE_RECORDS = "SELECT guid, assessmentGuid, assessmentId, assessmentInstanceGuid, "
+            + "assessmentRevision, sessionGuid, sessionInstanceEndDay, sessionInstanceGuid, sessionInstanceStartDay, "
+            + "sessionStartEventId, timeWindowGuid, timeWindowPersistent FROM TimelineMetadata WHERE scheduleGuid = ?";
+    static final String UPDATE_TIMELINE_RECORD = "UPDATE TimelineMetadata SET assessmentGuid = ?, assessmentId = ?, "
+            + "assessmentInstanceGuid = ?, assessmentRevision = ?, sessionGuid = ?, sessionInstanceEndDay = ?, "
+            + "sessionInstanceGuid = ?, sessionInstanceStartDay = ?, sessionStartEventId = ?, timeWindowGuid = ?, "
+            + "timeWindowPersistent = ? WHERE guid = ?";
+    static final String UPDATE_TIMELINE_SCHEDULE_FIELDS = "UPDATE TimelineMetadata SET scheduleModifiedOn = ?, "
+            + "schedulePublished = ? WHERE scheduleGuid = ?";
+    static final String DELETE_TIMELINE_RECORD = "DELETE FROM TimelineMetadata WHERE guid = ?";
     static final String SELECT_ASSESSMENTS_FOR_SESSION_INSTANCE = "SELECT * FROM TimelineMetadata WHERE sessionInstanceGuid = :instanceGuid AND assessmentInstanceGuid IS NOT NULL";
     static final String DELETE_ALL_SCHEDULES = "DELETE FROM Schedules WHERE appId = :appId";
     static final String BATCH_SIZE_PROPERTY = "schedule.batch.size";
@@ -60,7 +77,6 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
     static final String OWNER_ID = "ownerId";
     static final String GUID = "guid";
     static final String GUIDS = "guids";
-    static final String SCHEDULE_GUID = "scheduleGuid";
 
     private HibernateHelper hibernateHelper;
     private int batchSize;
@@ -117,8 +133,8 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         checkNotNull(appId);
         checkNotNull(guid);
 
-        List<Schedule2> results = hibernateHelper.queryGet(GET_SCHEDULE, ImmutableMap.of(APP_ID, appId, GUID, guid),
-                null, null, Schedule2.class);
+        List<Schedule2> results = hibernateHelper.cachedQueryGet(GET_SCHEDULE,
+                ImmutableMap.of(APP_ID, appId, GUID, guid), Schedule2.class, SCHEDULE_QUERY_REGION);
         if (results.isEmpty()) {
             return Optional.empty();
         }
@@ -133,7 +149,7 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
             session.save(schedule);
             return schedule;
         });
-        deleteAndRecreateTimelineMetadataRecords(schedule, false);
+        createTimelineMetadataRecords(schedule);
         return schedule;
     }
 
@@ -141,7 +157,10 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
     public Schedule2 updateSchedule(Schedule2 schedule) {
         checkNotNull(schedule);
 
-        // Update the schedule
+        Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
+        List<TimelineMetadata> metadata = timeline.getMetadata();
+
+        // Update the schedule and its timeline metadata in one transaction, so neither is saved without the other
         hibernateHelper.executeWithExceptionHandling(schedule, (session) -> {
             Set<String> sessionGuids = schedule.getSessions().stream().map(Session::getGuid).collect(toSet());
 
@@ -160,14 +179,18 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
             query.executeUpdate();
 
             session.update(schedule);
+            // The metadata is written over JDBC on the session's connection, after the schedule
+            session.flush();
+
+            session.setJdbcBatchSize(batchSize);
+            session.doWork(updateRecordsIncrementally(schedule, metadata));
 
             return schedule;
         });
-        deleteAndRecreateTimelineMetadataRecords(schedule, true);
         return schedule;
     }
 
-    private void deleteAndRecreateTimelineMetadataRecords(Schedule2 schedule, boolean deleteFirst) {
+    private void createTimelineMetadataRecords(Schedule2 schedule) {
         Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
         List<TimelineMetadata> metadata = timeline.getMetadata();
 
@@ -175,17 +198,6 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
             // batch these operations. Improves network performance
             session.setJdbcBatchSize(batchSize);
 
-            if (deleteFirst) {
-                Stopwatch deleteMetadataStopwatch = Stopwatch.createStarted();
-                NativeQuery<?> query = session.createNativeQuery(DELETE_TIMELINE_RECORDS);
-                query.setParameter(SCHEDULE_GUID, schedule.getGuid());
-                query.executeUpdate();
-                deleteMetadataStopwatch.stop();
-
-                LOG.info("Batch deleting timeline metadata records in " + deleteMetadataStopwatch.elapsed(MILLISECONDS)
-                        + " ms");
-            }
-
             // Hibernate’s session.save() does an insert and then an update operation on each record, so 
             // switching to JDBC to do an insert only, halves the time it takes to do this operation
             // even without further batch optimizations. I was not able to determine why Hibernate is doing 
@@ -201,6 +213,128 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         });
     }
 
+    /**
+     * Most edits to a schedule change only a few of its timeline metadata records, so rather than deleting and
+     * re-inserting every record, the existing records are compared with the new timeline by GUID. Only records
+     * that are new, changed, or no longer in the timeline are written. The schedule's modifiedOn and published
+     * values are the same on every record, so those are updated with one statement. The work is run on the
+     * session that updates the schedule, so if it fails, the update of the schedule is rolled back as well.
+     */
+    protected Work updateRecordsIncrementally(Schedule2 schedule, List<TimelineMetadata> metadata) {
+        return (connection) -> {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            connection.setAutoCommit(false);
+
+            Map<String, TimelineMetadata> existingRecords = selectExistingRecords(connection, schedule.getGuid());
+            int existingCount = existingRecords.size();
+
+            List<TimelineMetadata> inserts = new ArrayList<>();
+            List<TimelineMetadata> updates = new ArrayList<>();
+            for (TimelineMetadata meta : metadata) {
+                TimelineMetadata existing = existingRecords.remove(meta.getGuid());
+                if (existing == null) {
+                    inserts.add(meta);
+                } else if (!recordContentEquals(existing, meta)) {
+                    updates.add(meta);
+                }
+            }
+            // Anything left over is no longer part of the timeline
+            Collection<String> deletes = existingRecords.keySet();
+
+            executeInBatches(connection, DELETE_TIMELINE_RECORD, deletes, (ps, guid) -> {
+                ps.setString(1, guid);
+                ps.addBatch();
+            });
+            executeInBatches(connection, UPDATE_TIMELINE_RECORD, updates, this::updateChangedRecordStatement);
+            if (existingCount > deletes.size()) {
+                try (PreparedStatement ps = connection.prepareStatement(UPDATE_TIMELINE_SCHEDULE_FIELDS)) {
+                    ps.setLong(1, schedule.getModifiedOn().getMillis());
+                    ps.setBoolean(2, schedule.isPublished());
+                    ps.setString(3, schedule.getGuid());
+                    ps.executeUpdate();
+                }
+            }
+            executeInBatches(connection, INSERT, inserts, this::updatePreparedStatement);
+            stopwatch.stop();
+
+            int unchanged = metadata.size() - inserts.size() - updates.size();
+            LOG.info("Incrementally updated timeline metadata for schedule " + schedule.getGuid() + " in "
+                    + stopwatch.elapsed(MILLISECONDS) + " ms: " + inserts.size() + " inserted, " + updates.size()
+                    + " updated, " + deletes.size() + " deleted, " + unchanged + " unchanged (a full rewrite "
+                    + "would have deleted " + existingCount + " and inserted " + metadata.size() + " records)");
+        };
+    }
+
+    private Map<String, TimelineMetadata> selectExistingRecords(Connection connection, String scheduleGuid)
+            throws SQLException {
+        Map<String, TimelineMetadata> records = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_TIMELINE_RECORDS)) {
+            ps.setString(1, scheduleGuid);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    TimelineMetadata meta = new TimelineMetadata();
+                    meta.setGuid(rs.getString("guid"));
+                    meta.setAssessmentGuid(rs.getString("assessmentGuid"));
+                    meta.setAssessmentId(rs.getString("assessmentId"));
+                    meta.setAssessmentInstanceGuid(rs.getString("assessmentInstanceGuid"));
+                    meta.setAssessmentRevision(getInteger(rs, "assessmentRevision"));
+                    meta.setSessionGuid(rs.getString("sessionGuid"));
+                    meta.setSessionInstanceEndDay(getInteger(rs, "sessionInstanceEndDay"));
+                    meta.setSessionInstanceGuid(rs.getString("sessionInstanceGuid"));
+                    meta.setSessionInstanceStartDay(getInteger(rs, "sessionInstanceStartDay"));
+                    meta.setSessionStartEventId(rs.getString("sessionStartEventId"));
+                    meta.setTimeWindowGuid(rs.getString("timeWindowGuid"));
+                    meta.setTimeWindowPersistent(rs.getBoolean("timeWindowPersistent"));
+                    records.put(meta.getGuid(), meta);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static Integer getInteger(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /** Compares the fields that vary from record to record (not the app, schedule, or schedule's state). */
+    static boolean recordContentEquals(TimelineMetadata existing, TimelineMetadata meta) {
+        return Objects.equals(existing.getAssessmentGuid(), meta.getAssessmentGuid())
+                && Objects.equals(existing.getAssessmentId(), meta.getAssessmentId())
+                && Objects.equals(existing.getAssessmentInstanceGuid(), meta.getAssessmentInstanceGuid())
+                && Objects.equals(existing.getAssessmentRevision(), meta.getAssessmentRevision())
+                && Objects.equals(existing.getSessionGuid(), meta.getSessionGuid())
+                && Objects.equals(existing.getSessionInstanceEndDay(), meta.getSessionInstanceEndDay())
+                && Objects.equals(existing.getSessionInstanceGuid(), meta.getSessionInstanceGuid())
+                && Objects.equals(existing.getSessionInstanceStartDay(), meta.getSessionInstanceStartDay())
+                && Objects.equals(existing.getSessionStartEventId(), meta.getSessionStartEventId())
+                && Objects.equals(existing.getTimeWindowGuid(), meta.getTimeWindowGuid())
+                && existing.isTimeWindowPersistent() == meta.isTimeWindowPersistent();
+    }
+
+    private <T> void executeInBatches(Connection connection, String sql, Collection<T> values,
+            StatementSetter<T> setter) throws SQLException {
+        if (values.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 0;
+            for (T value : values) {
+                setter.set(ps, value);
+                if (i > 0 && (i % batchSize) == 0) {
+                    ps.executeBatch();
+                }
+                i++;
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StatementSetter<T> {
+        void set(PreparedStatement ps, T value) throws SQLException;
+    }
+
     /**
      * For batch operations to work efficiently using the MySQL driver, rewriteBatchedStatements=true 
      * must be included in the connector string, auto commit must be off, and you must use the batch 
@@ -250,6 +384,27 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         ps.addBatch();
     }
 
+    // For testability, removing this to a separate method
+    protected void updateChangedRecordStatement(PreparedStatement ps, TimelineMetadata meta) throws SQLException {
+        ps.setString(1, meta.getAssessmentGuid());
+        ps.setString(2, meta.getAssessmentId());
+        ps.setString(3, meta.getAssessmentInstanceGuid());
+        if (meta.getAssessmentRevision() == null) {
+            ps.setNull(4, Types.NULL);
+        } else {
+            ps.setInt(4, meta.getAssessmentRevision());
+        }
+        ps.setString(5, meta.getSessionGuid());
+        ps.setInt(6, meta.getSessionInstanceEndDay());
+        ps.setString(7, meta.getSessionInstanceGuid());
+        ps.setInt(8, meta.getSessionInstanceStartDay());
+        ps.setString(9, meta.getSessionStartEventId());
+        ps.setString(10, meta.getTimeWindowGuid());
+        ps.setBoolean(11, meta.isTimeWindowPersistent());
+        ps.setString(12, meta.getGuid());
+        ps.addBatch();
+    }
+
     @Override
     public void deleteSchedule(Schedule2 schedule) {
         checkNotNull(schedule);
@@ -283,6 +438,17 @@ public class HibernateSchedule2Dao implements Schedule2Dao {
         return Optional.ofNullable(tm);
     }
 
+    @Override
+    public List<TimelineMetadata> getTimelineMetadata(Collection<String> instanceGuids) {
+        checkNotNull(instanceGuids);
+
+        if (instanceGuids.isEmpty()) {
+            return ImmutableList.of();
+        }
+        return hibernateHelper.queryGet(GET_TIMELINE_METADATA, ImmutableMap.of(GUIDS, instanceGuids), null, null,
+                TimelineMetadata.class);
+    }
+
     @Override
     public List<TimelineMetadata> getAssessmentsForSessionInstance(String instanceGuid) {
         checkNotNull(instanceGuid);
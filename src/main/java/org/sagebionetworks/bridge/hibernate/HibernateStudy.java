@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.STUDY_REGION;
+
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -20,6 +23,7 @@ import javax.persistence.OrderColumn;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import org.joda.time.DateTime;
@@ -40,6 +44,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 
 @Entity
+@Cache(usage = READ_WRITE, region = STUDY_REGION)
 @Table(name = "Substudies")
 @IdClass(StudyId.class)
 @BridgeTypeName("Study")
@@ -92,6 +97,7 @@ public class HibernateStudy implements Study {
     @CollectionTable(name="StudyContacts", joinColumns= {
             @JoinColumn(name="appId"), @JoinColumn(name="studyId")
     })
+    @Cache(usage = READ_WRITE, region = STUDY_REGION)
     private List<Contact> contacts;
     
     @ElementCollection(fetch = FetchType.EAGER)
@@ -99,6 +105,7 @@ public class HibernateStudy implements Study {
     @CollectionTable(name="StudyDiseases", 
         joinColumns = {@JoinColumn(name="appId"), @JoinColumn(name="studyId")})
     @Column(name="disease")
+    @Cache(usage = READ_WRITE, region = STUDY_REGION)
     private Set<String> diseases;
     
     @ElementCollection(fetch = FetchType.EAGER)
@@ -106,6 +113,7 @@ public class HibernateStudy implements Study {
     @CollectionTable(name="StudyDesignTypes", 
         joinColumns = {@JoinColumn(name="appId"), @JoinColumn(name="studyId")})
     @Column(name = "designType")
+    @Cache(usage = READ_WRITE, region = STUDY_REGION)
     private Set<String> studyDesignTypes;
 
     @Convert(converter = SignInTypeListConverter.class)
@@ -117,6 +125,7 @@ public class HibernateStudy implements Study {
     @CollectionTable(name="StudyCustomEvents", joinColumns= {
             @JoinColumn(name="appId"), @JoinColumn(name="studyId")
     })
+    @Cache(usage = READ_WRITE, region = STUDY_REGION)
     private List<StudyCustomEvent> customEvents;
     
     /**
@@ -98,10 +98,10 @@ public class HibernateStudyActivityEventDao implements StudyActivityEventDao {
         QueryBuilder builder = new QueryBuilder();
         builder.append(HISTORY_SQL, USER_ID_FIELD, userId, STUDY_ID_FIELD, studyId, EVENT_ID_FIELD, eventId);
 
-        List<StudyActivityEvent> records = helper.nativeQueryGet("SELECT * " + builder.getQuery(), 
+        List<StudyActivityEvent> records = helper.readReplica().nativeQueryGet("SELECT * " + builder.getQuery(), 
                 builder.getParameters(), offsetBy, pageSize, StudyActivityEvent.class);
         
-        int count = helper.nativeQueryCount("SELECT count(*) " + builder.getQuery(), builder.getParameters());
+        int count = helper.readReplica().nativeQueryCount("SELECT count(*) " + builder.getQuery(), builder.getParameters());
         
         return new PagedResourceList<>(records, count, true)
                 .withRequestParam(OFFSET_BY, offsetBy)
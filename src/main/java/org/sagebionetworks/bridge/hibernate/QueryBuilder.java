@@ -6,6 +6,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.sagebionetworks.bridge.BridgeUtils.AND_JOINER;
 import static org.sagebionetworks.bridge.BridgeUtils.OR_JOINER;
 import static org.sagebionetworks.bridge.models.SearchTermPredicate.AND;
+import static org.sagebionetworks.bridge.models.StringSearchPosition.EXACT;
 import static org.sagebionetworks.bridge.models.StringSearchPosition.INFIX;
 import static org.sagebionetworks.bridge.models.StringSearchPosition.POSTFIX;
 import static org.sagebionetworks.bridge.models.StringSearchPosition.PREFIX;
@@ -136,13 +137,14 @@ class QueryBuilder {
         public void like(StringSearchPosition pos, String phrase, String key, String value) {
             if (isNotBlank(value)) {
                 predicated.add(phrase);
-                String searchString = 
-                        ((pos == POSTFIX || pos == INFIX) ? "%" : "") +
-                        value.toString() +
-                        ((pos == PREFIX || pos == INFIX) ? "%" : "");
-                whereParams.put(key, searchString);
+                whereParams.put(key, likeString(pos, value));
             }
         }
+        private String likeString(StringSearchPosition pos, String value) {
+            return ((pos == POSTFIX || pos == INFIX) ? "%" : "") +
+                    value.toString() +
+                    ((pos == PREFIX || pos == INFIX) ? "%" : "");
+        }
         // HQL
         public void phone(StringSearchPosition pos, String phoneFilter) {
             if (isNotBlank(phoneFilter)) {
@@ -150,6 +152,45 @@ class QueryBuilder {
                 like(pos, "acct.phone.number LIKE :number", "number", phoneString);
             }
         }
+        // HQL. Adds a LIKE search on an account identifier, limited to the accounts whose search terms match 
+        // (see AccountSearchIndex), so the database can find them with the index rather than a scan.
+        public void likeIndexed(StringSearchPosition pos, String appId, String field, String phrase, String key,
+                String value) {
+            if (isNotBlank(value)) {
+                String term = AccountSearchIndex.normalize(field, value);
+                if (term.length() < AccountSearchIndex.MIN_TERM_LENGTH) {
+                    like(pos, phrase, key, value);
+                    return;
+                }
+                // Suffixes of the value are searched by prefix for infix searches, and matched exactly for postfix 
+                // searches. Prefix and exact searches are made on the whole value.
+                String termPhrase;
+                if (pos == POSTFIX || pos == EXACT) {
+                    termPhrase = "term.term = :" + key + "Term";
+                    whereParams.put(key + "Term", term);
+                } else {
+                    termPhrase = "term.term LIKE :" + key + "Term";
+                    whereParams.put(key + "Term", term + "%");
+                }
+                if (pos == PREFIX || pos == EXACT) {
+                    termPhrase += " AND term.wholeValue = true";
+                }
+                predicated.add("(acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct JOIN "
+                        + "termAcct.searchTerms AS term WHERE term.appId = :" + key + "AppId AND term.field = :" 
+                        + key + "Field AND " + termPhrase + ") AND " + phrase + ")");
+                whereParams.put(key + "AppId", appId);
+                whereParams.put(key + "Field", field);
+                whereParams.put(key, likeString(pos, value));
+            }
+        }
+        // HQL
+        public void phoneIndexed(StringSearchPosition pos, String appId, String phoneFilter) {
+            if (isNotBlank(phoneFilter)) {
+                String phoneString = phoneFilter.replaceAll("\\D*", "");
+                likeIndexed(pos, appId, AccountSearchIndex.PHONE_FIELD, "acct.phone.number LIKE :number", "number",
+                        phoneString);
+            }
+        }
         public void dataGroups(Set<String> dataGroups, String operator) {
             if (!BridgeUtils.isEmpty(dataGroups)) {
                 int i = 0;
@@ -0,0 +1,89 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.hibernate.SessionFactory;
+
+import org.sagebionetworks.bridge.RequestContext;
+
+/**
+ * Decides whether a read made through {@link HibernateHelper#readReplica()} can go to the read replica. Reads go to
+ * the primary when no replica is configured, when they are made outside of a request, and when the current request
+ * has already written to the primary (so a request always reads its own writes, which may not have been replicated
+ * yet). Reads that fail to get a connection from the replica are retried on the primary. The number of reads routed
+ * each way is kept for the ServerMetricsService.
+ */
+public class ReadReplicaRouter {
+
+    /** Where a read was sent, and why. */
+    public enum Route {
+        /** The read was made on the replica. */
+        REPLICA,
+        /** The read was made outside of a request, so it went to the primary. */
+        NO_REQUEST,
+        /** The request had already written to the primary, so the read went to the primary. */
+        AFTER_WRITE,
+        /** The replica could not be reached, so the read was retried on the primary. Also counted as REPLICA. */
+        FALLBACK
+    }
+
+    private final SessionFactory replicaSessionFactory;
+    // The ID of the last request on this thread that wrote to the primary. Threads are reused across requests, so
+    // this is compared to the current request ID rather than cleared at the end of each request.
+    private final ThreadLocal<String> lastWriteRequestId = new ThreadLocal<>();
+    private final AtomicLongArray routeCounts = new AtomicLongArray(Route.values().length);
+
+    /** The replica session factory may be null, in which case all reads go to the primary. */
+    public ReadReplicaRouter(SessionFactory replicaSessionFactory) {
+        this.replicaSessionFactory = replicaSessionFactory;
+    }
+
+    public boolean isReplicaConfigured() {
+        return replicaSessionFactory != null;
+    }
+
+    /** Note that the current request has written (or is about to write) to the primary. */
+    public void recordWrite() {
+        String requestId = RequestContext.get().getId();
+        if (requestId != null) {
+            lastWriteRequestId.set(requestId);
+        }
+    }
+
+    /**
+     * Returns the session factory of the replica if this read can be made there, or null if it must be made on the
+     * primary. Each decision is counted.
+     */
+    public SessionFactory route() {
+        if (replicaSessionFactory == null) {
+            return null;
+        }
+        String requestId = RequestContext.get().getId();
+        if (requestId == null) {
+            routeCounts.incrementAndGet(Route.NO_REQUEST.ordinal());
+            return null;
+        }
+        if (requestId.equals(lastWriteRequestId.get())) {
+            routeCounts.incrementAndGet(Route.AFTER_WRITE.ordinal());
+            return null;
+        }
+        routeCounts.incrementAndGet(Route.REPLICA.ordinal());
+        return replicaSessionFactory;
+    }
+
+    /** Note that a read routed to the replica failed to connect, and is being retried on the primary. */
+    public void recordFallback() {
+        routeCounts.incrementAndGet(Route.FALLBACK.ordinal());
+    }
+
+    /** The number of reads sent this way since the server started. */
+    public long getRouteCount(Route route) {
+        return routeCounts.get(route.ordinal());
+    }
+
+    public void close() {
+        if (replicaSessionFactory != null) {
+            replicaSessionFactory.close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.json;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Optional;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerationException;
@@ -105,6 +106,20 @@ public class BridgeObjectMapper extends ObjectMapper {
      *
      */
     public static class TypeBeanSerializer extends BeanSerializer {
+        /**
+         * The type property to add to each class, or empty if the class has its own getType() method. This is looked
+         * up once per class, rather than reflecting over the class's methods each time an object is serialized.
+         */
+        private static final ClassValue<Optional<String>> TYPE_NAMES = new ClassValue<Optional<String>>() {
+            @Override
+            protected Optional<String> computeValue(Class<?> clazz) {
+                if (hasTypeProperty(clazz)) {
+                    return Optional.empty();
+                }
+                return Optional.ofNullable(BridgeUtils.getTypeName(clazz));
+            }
+        };
+
         public TypeBeanSerializer(BeanSerializerBase src) {
             super(src);
         }
@@ -124,31 +139,29 @@ public class BridgeObjectMapper extends ObjectMapper {
         }
         
         private void addTypeProperty(Object bean, JsonGenerator jgen) throws IOException {
-            if (noTypeProperty(bean)) {
-                String typeName = BridgeUtils.getTypeName(bean.getClass());
-                if (typeName != null) {
-                    // The only way I have found to prevent duplicate properties is to enable strict checking
-                    // for duplicates, but this is a "try and throw exception" feature... you can't test ahead
-                    // of time. Not ideal but only filtered objects have this duplication problem.
-                    try {
-                        jgen.configure(JsonGenerator.Feature.STRICT_DUPLICATE_DETECTION, true);
-                        jgen.writeStringField("type", typeName);
-                    } catch(JsonGenerationException e) {
-                        if (!e.getMessage().equals("Duplicate field 'type'")) {
-                            throw e;
-                        }
+            String typeName = TYPE_NAMES.get(bean.getClass()).orElse(null);
+            if (typeName != null) {
+                // The only way I have found to prevent duplicate properties is to enable strict checking
+                // for duplicates, but this is a "try and throw exception" feature... you can't test ahead
+                // of time. Not ideal but only filtered objects have this duplication problem.
+                try {
+                    jgen.configure(JsonGenerator.Feature.STRICT_DUPLICATE_DETECTION, true);
+                    jgen.writeStringField("type", typeName);
+                } catch(JsonGenerationException e) {
+                    if (!e.getMessage().equals("Duplicate field 'type'")) {
+                        throw e;
                     }
                 }
             }
         }
 
-        private boolean noTypeProperty(Object bean) {
-            for (Method method : bean.getClass().getMethods()) {
+        private static boolean hasTypeProperty(Class<?> clazz) {
+            for (Method method : clazz.getMethods()) {
                 if ("getType".equals(method.getName())) {
-                    return false;
+                    return true;
                 }
             }
-            return true;
+            return false;
         }
     }
 }
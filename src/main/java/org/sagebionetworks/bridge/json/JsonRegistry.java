@@ -0,0 +1,80 @@
+package org.sagebionetworks.bridge.json;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.sagebionetworks.bridge.dynamodb.DynamoHealthDataRecord;
+import org.sagebionetworks.bridge.dynamodb.DynamoScheduledActivity;
+import org.sagebionetworks.bridge.models.accounts.AccountSummary;
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.models.apps.App;
+
+/**
+ * Prebuilt ObjectReaders and ObjectWriters for the types we read and write on most requests. Readers and writers
+ * are immutable and thread-safe, and one that is built for a specific type has already looked up that type's
+ * deserializer or serializer, so they are created once here and reused, rather than being configured on each call.
+ *
+ * Writers are built from one of our filtering writers (e.g. {@link StudyParticipant#API_NO_HEALTH_CODE_WRITER})
+ * and a concrete class. A writer for a type always serializes values as that type, so do not request a writer for
+ * an interface or a class with subclasses that add properties.
+ */
+public final class JsonRegistry {
+    private static final ConcurrentMap<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+    // ObjectWriter does not override equals(), so writers are keyed by the identity of the writer they are built from.
+    private static final ConcurrentMap<ObjectWriter, ConcurrentMap<Class<?>, ObjectWriter>> WRITERS =
+            new ConcurrentHashMap<>();
+
+    private JsonRegistry() {
+    }
+
+    /** A reader for the given type, using the BridgeObjectMapper's configuration. */
+    public static ObjectReader readerFor(Class<?> clazz) {
+        checkNotNull(clazz);
+        return readerFor(BridgeObjectMapper.get().constructType(clazz));
+    }
+
+    /** A reader for the given generic type, using the BridgeObjectMapper's configuration. */
+    public static ObjectReader readerFor(TypeReference<?> typeRef) {
+        checkNotNull(typeRef);
+        return readerFor(BridgeObjectMapper.get().getTypeFactory().constructType(typeRef));
+    }
+
+    private static ObjectReader readerFor(JavaType type) {
+        return READERS.computeIfAbsent(type, (key) -> BridgeObjectMapper.get().readerFor(key));
+    }
+
+    /** A writer with the configuration and filters of the given writer, that writes values of the given class. */
+    public static ObjectWriter writerFor(ObjectWriter writer, Class<?> clazz) {
+        checkNotNull(writer);
+        checkNotNull(clazz);
+        return WRITERS.computeIfAbsent(writer, (key) -> new ConcurrentHashMap<>())
+                .computeIfAbsent(clazz, (key) -> writer.forType(key));
+    }
+
+    /**
+     * Build the readers and writers used when authenticating and when returning participants, activities and health
+     * data, so the first requests after startup don't pay for the reflection over these types.
+     */
+    public static void warm() {
+        readerFor(UserSession.class);
+        readerFor(App.class);
+        readerFor(StudyParticipant.class);
+        writerFor(StudyParticipant.CACHE_WRITER, UserSession.class);
+        writerFor(StudyParticipant.API_WITH_HEALTH_CODE_WRITER, StudyParticipant.class);
+        writerFor(StudyParticipant.API_NO_HEALTH_CODE_WRITER, StudyParticipant.class);
+        // Spring writes most responses, including the streamed lists, with the BridgeObjectMapper itself. Building
+        // a writer for a type caches its serializer in the mapper.
+        BridgeObjectMapper mapper = BridgeObjectMapper.get();
+        mapper.writerFor(AccountSummary.class);
+        mapper.writerFor(DynamoScheduledActivity.class);
+        mapper.writerFor(DynamoHealthDataRecord.class);
+    }
+}
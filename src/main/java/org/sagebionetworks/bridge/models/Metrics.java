@@ -3,16 +3,31 @@ package org.sagebionetworks.bridge.models;
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
-import com.google.common.collect.Multimap;
-import org.joda.time.DateTime;
-import org.sagebionetworks.bridge.time.DateUtils;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.sagebionetworks.bridge.json.JsonUtils;
+import org.apache.commons.io.output.StringBuilderWriter;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import org.sagebionetworks.bridge.time.DateUtils;
 
 /**
- * Request-scoped metrics.
+ * Request-scoped metrics. These are written to the log once per request, so the values are held in plain fields and
+ * written straight to a JsonGenerator (into a buffer that is reused by each thread), rather than being built up as a
+ * JSON tree. The query string is only parsed when the metrics are written, and only for allow-listed parameters.
  */
 public class Metrics {
 
@@ -20,8 +35,39 @@ public class Metrics {
     private static final int VERSION = 1;
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final DateTimeFormatter ISO_FORMATTER = ISODateTimeFormat.dateTime().withZoneUTC();
 
-    private final ObjectNode json;
+    /** Buffers larger than this (from a request with many spans) are not kept for reuse. */
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<StringBuilderWriter> BUFFER = ThreadLocal
+            .withInitial(() -> new StringBuilderWriter(1024));
+
+    /** The most calls to backing services that are kept for the per-call breakdown of a single request. */
+    static final int MAX_SPANS = 200;
+
+    private String requestId;
+    private long startMillis;
+    private Long elapsedMillis;
+    private String recordId;
+    private String remoteAddress;
+    private String method;
+    private String uri;
+    private String protocol;
+    private String userAgent;
+    private Integer status;
+    private String appId;
+    private String userId;
+    private String sessionId;
+    private String uploadId;
+    private Long uploadSize;
+    private String queryString;
+    private Set<String> queryParamAllowList;
+    // Backend name to {calls, micros}. Created on the first span.
+    private Map<String, long[]> backends;
+    private List<Span> spans;
+    private int droppedSpans;
 
     public static String getCacheKey(String requestId) {
         checkArgument(isNotBlank(requestId), "Request ID cannot be blank.");
@@ -29,113 +75,293 @@ public class Metrics {
     }
 
     public Metrics(final String requestId) {
-        json = MAPPER.createObjectNode();
-        json.put("version", VERSION);
         start();
         setRequestId(requestId);
     }
 
     public String getCacheKey() {
-        return Metrics.getCacheKey(json.get("request_id").asText());
+        return Metrics.getCacheKey(requestId);
     }
 
-    /** The JSON node backing this metrics object. This is used primarily for testing. */
+    /** A copy of these metrics as a JSON node. This is used primarily for testing. */
     public ObjectNode getJson() {
-        return json;
+        try {
+            return (ObjectNode) MAPPER.readTree(toJsonString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    public String toJsonString() {
-        return json.toString();
+    public synchronized String toJsonString() {
+        StringBuilderWriter writer = BUFFER.get();
+        writer.getBuilder().setLength(0);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("version", VERSION);
+            generator.writeStringField("start", ISO_FORMATTER.print(startMillis));
+            generator.writeStringField("request_id", requestId);
+            writeField(generator, "record_id", recordId);
+            writeField(generator, "method", method);
+            writeField(generator, "uri", uri);
+            writeField(generator, "protocol", protocol);
+            writeField(generator, "remote_address", remoteAddress);
+            writeField(generator, "user_agent", userAgent);
+            writeQueryParams(generator);
+            if (status != null) {
+                generator.writeNumberField("status", status);
+            }
+            writeField(generator, "session_id", sessionId);
+            writeField(generator, "user_id", userId);
+            writeField(generator, "app_id", appId);
+            writeField(generator, "upload_id", uploadId);
+            if (uploadSize != null) {
+                generator.writeNumberField("upload_size", uploadSize);
+            }
+            if (backends != null) {
+                generator.writeObjectFieldStart("backends");
+                for (Map.Entry<String, long[]> entry : backends.entrySet()) {
+                    generator.writeObjectFieldStart(entry.getKey());
+                    generator.writeNumberField("calls", entry.getValue()[0]);
+                    generator.writeNumberField("micros", entry.getValue()[1]);
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            if (elapsedMillis != null) {
+                generator.writeStringField("end", ISO_FORMATTER.print(startMillis + elapsedMillis));
+                generator.writeNumberField("elapsedMillis", elapsedMillis);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // The generator writes to memory, so this should not be possible.
+            throw new UncheckedIOException(e);
+        }
+        return releaseBuffer(writer);
     }
 
     public void start() {
-        json.put("start", DateUtils.getCurrentISODateTime());
+        startMillis = DateUtils.getCurrentMillisFromEpoch();
     }
 
     public void end() {
-        // Log endTime
-        DateTime endDateTime = DateUtils.getCurrentDateTime();
-        json.put("end", endDateTime.toString());
-
-        // Calculate elapsed time.
-        DateTime startDateTime = JsonUtils.asDateTime(json, "start");
-        if (startDateTime == null) {
-            // This should not be possible, but if it happens, don't throw an NPE.
-            return;
-        }
-        long elapsedMillis = endDateTime.getMillis() - startDateTime.getMillis();
-        json.put("elapsedMillis", elapsedMillis);
+        elapsedMillis = DateUtils.getCurrentMillisFromEpoch() - startMillis;
+    }
+
+    /** Milliseconds between the start and end of the request, or null if the request has not ended. */
+    public Long getElapsedMillis() {
+        return elapsedMillis;
     }
 
     /** Record ID, used for synchronous health data submission API. */
     public void setRecordId(String recordId) {
-        put("record_id", recordId);
+        this.recordId = ifNotBlank(recordId, this.recordId);
     }
 
     public void setRequestId(String requestId) {
         checkArgument(isNotBlank(requestId), "Request ID cannot be blank.");
-        json.put("request_id", requestId);
+        this.requestId = requestId;
     }
 
     public void setRemoteAddress(String remoteAddress) {
-        put("remote_address", remoteAddress);
+        this.remoteAddress = ifNotBlank(remoteAddress, this.remoteAddress);
     }
 
     public void setMethod(String method) {
-        put("method", method);
+        this.method = ifNotBlank(method, this.method);
     }
 
     public void setUri(String uri) {
-        put("uri", uri);
+        this.uri = ifNotBlank(uri, this.uri);
     }
 
     public void setProtocol(String protocol) {
-        put("protocol", protocol);
+        this.protocol = ifNotBlank(protocol, this.protocol);
     }
 
     public void setUserAgent(String userAgent) {
-        put("user_agent", userAgent);
+        this.userAgent = ifNotBlank(userAgent, this.userAgent);
     }
 
     public void setStatus(int status) {
-        json.put("status", status);
+        this.status = status;
     }
 
     public void setAppId(String appId) {
-        put("app_id", appId);
+        this.appId = ifNotBlank(appId, this.appId);
     }
 
     public void setUserId(String userId) {
-        put("user_id", userId);
+        this.userId = ifNotBlank(userId, this.userId);
     }
 
     public void setSessionId(String sessionId) {
-        put("session_id", sessionId);
+        this.sessionId = ifNotBlank(sessionId, this.sessionId);
     }
 
     public void setUploadId(String uploadId) {
-        put("upload_id", uploadId);
+        this.uploadId = ifNotBlank(uploadId, this.uploadId);
     }
 
     public void setUploadSize(long uploadSize) {
-        json.put("upload_size", uploadSize);
+        this.uploadSize = uploadSize;
     }
 
     /**
-     * Set the query params from the url request to json.
+     * Set the query string of the request. Only parameters named in the allow list are written to the metrics (as
+     * arrays of values under "query_params"), and the string is not parsed until then.
      *
-     * @param paramsMap The query parameters.
+     * @param queryString The raw (encoded) query string of the request.
+     * @param allowList The names of query parameters that can be logged.
      */
-    public void setQueryParams(Multimap<String, String> paramsMap) {
-        if (paramsMap != null && !paramsMap.isEmpty()) {
-            ObjectNode paramsJson = MAPPER.valueToTree(paramsMap.asMap());
-            json.set("query_params", paramsJson);
+    public void setQueryString(String queryString, Set<String> allowList) {
+        this.queryString = queryString;
+        this.queryParamAllowList = allowList;
+    }
+
+    /**
+     * Record a call to a backing service (e.g. "mysql", "dynamodb", "redis", or "s3"). The number of calls and the
+     * total time spent in each backend are included in the metrics JSON. Each call is also kept (up to a limit) so
+     * that slow requests can be logged with a per-call breakdown. Calls can be made from more than one thread.
+     */
+    public synchronized void recordSpan(String backend, String operation, long elapsedMicros) {
+        if (backends == null) {
+            backends = new LinkedHashMap<>();
+            spans = new ArrayList<>();
+        }
+        long[] totals = backends.computeIfAbsent(backend, k -> new long[2]);
+        totals[0]++;
+        totals[1] += elapsedMicros;
+
+        if (spans.size() < MAX_SPANS) {
+            spans.add(new Span(backend, operation, elapsedMicros));
+        } else {
+            droppedSpans++;
         }
     }
 
-    private void put(final String field, final String value) {
-        if (isNotBlank(value)) {
-            json.put(field, value);
+    /** A JSON log line listing each call to a backing service made during this request, in order. */
+    public synchronized String toSpansJsonString() {
+        StringBuilderWriter writer = BUFFER.get();
+        writer.getBuilder().setLength(0);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("request_id", requestId);
+            if (elapsedMillis != null) {
+                generator.writeNumberField("elapsedMillis", elapsedMillis);
+            }
+            generator.writeArrayFieldStart("spans");
+            if (spans != null) {
+                for (Span span : spans) {
+                    generator.writeStartObject();
+                    generator.writeStringField("backend", span.backend);
+                    generator.writeStringField("operation", span.operation);
+                    generator.writeNumberField("micros", span.micros);
+                    generator.writeEndObject();
+                }
+            }
+            generator.writeEndArray();
+            if (droppedSpans > 0) {
+                generator.writeNumberField("spans_dropped", droppedSpans);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return releaseBuffer(writer);
+    }
+
+    private void writeQueryParams(JsonGenerator generator) throws IOException {
+        if (queryString == null || queryParamAllowList == null || queryParamAllowList.isEmpty()) {
+            return;
+        }
+        // Values are grouped by name, in the order the names first appear. Nothing is allocated for parameters that
+        // are not in the allow list.
+        Map<String, List<String>> params = null;
+        int length = queryString.length();
+        int start = 0;
+        while (start < length) {
+            int end = queryString.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = queryString.indexOf('=', start);
+            int nameEnd = (equals < 0 || equals > end) ? end : equals;
+            String name = findAllowedName(start, nameEnd);
+            if (name != null) {
+                String value = (nameEnd == end) ? null : decode(queryString.substring(nameEnd + 1, end));
+                if (params == null) {
+                    params = new LinkedHashMap<>();
+                }
+                params.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+            }
+            start = end + 1;
+        }
+        if (params != null) {
+            generator.writeObjectFieldStart("query_params");
+            for (Map.Entry<String, List<String>> entry : params.entrySet()) {
+                generator.writeArrayFieldStart(entry.getKey());
+                for (String value : entry.getValue()) {
+                    generator.writeString(value);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private String findAllowedName(int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return null;
+        }
+        for (String name : queryParamAllowList) {
+            if (name.length() == length && queryString.regionMatches(start, name, 0, length)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static String decode(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            // Malformed escapes are logged as they were sent
+            return value;
+        }
+    }
+
+    private static String releaseBuffer(StringBuilderWriter writer) {
+        String value = writer.toString();
+        if (writer.getBuilder().capacity() > MAX_BUFFER_SIZE) {
+            BUFFER.remove();
+        }
+        return value;
+    }
+
+    private static void writeField(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        }
+    }
+
+    // Blank values are not logged, and leave any previous value in place.
+    private static String ifNotBlank(String value, String previousValue) {
+        return isNotBlank(value) ? value : previousValue;
+    }
+
+    private static final class Span {
+        private final String backend;
+        private final String operation;
+        private final long micros;
+
+        private Span(String backend, String operation, long micros) {
+            this.backend = backend;
+            this.operation = operation;
+            this.micros = micros;
         }
     }
 }
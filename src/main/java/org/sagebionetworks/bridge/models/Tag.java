@@ -1,11 +1,15 @@
 package org.sagebionetworks.bridge.models;
 
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_REGION;
+
 import java.util.Objects;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.NaturalId;
 
 /**
@@ -14,6 +18,7 @@ import org.hibernate.annotations.NaturalId;
  * table. 
  */
 @Entity
+@Cache(usage = READ_WRITE, region = ASSESSMENT_REGION)
 @Table(name = "Tags")
 public final class Tag {
     @Id
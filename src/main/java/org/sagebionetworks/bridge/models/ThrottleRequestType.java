@@ -1,12 +1,25 @@
 package org.sagebionetworks.bridge.models;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Enumeration of request types that we want to throttle on. Used to differentiate between request types and generate
- * cache keys.
+ * cache keys. The channel types (sign in and verification) are throttled per email address or phone number; the 
+ * remaining types are expensive endpoints that can be rate limited through the app's rate limit configuration 
+ * (see RateLimiterService).
  */
 public enum ThrottleRequestType {
     EMAIL_SIGNIN,
     PHONE_SIGNIN,
     VERIFY_EMAIL,
-    VERIFY_PHONE
+    VERIFY_PHONE,
+    PARTICIPANT_SEARCH,
+    UPLOAD_COMPLETE,
+    REPORT_WRITE,
+    TIMELINE_RETRIEVAL;
+    
+    /** The request types that can be configured in an app's rate limits. */
+    public static final Set<ThrottleRequestType> RATE_LIMITED_TYPES = EnumSet.of(PARTICIPANT_SEARCH, UPLOAD_COMPLETE,
+            REPORT_WRITE, TIMELINE_RETRIEVAL);
 }
@@ -0,0 +1,19 @@
+package org.sagebionetworks.bridge.models.accounts;
+
+/**
+ * The parts of an account that are loaded when it is retrieved. The account's collections are each
+ * stored in a separate table, so every collection that is loaded costs an additional query. Accessing
+ * a collection that was not loaded throws a LazyInitializationException, so use FULL for any account
+ * that is going to be edited or returned to the caller.
+ */
+public enum AccountFetchProfile {
+    /** Only the fields of the account record itself (ID, health code, email, status, etc.). */
+    IDENTITY,
+    /**
+     * The fields of the account record, plus the roles, data groups, languages, and enrollments
+     * needed to authorize access to the account.
+     */
+    AUTH,
+    /** The complete account, including attributes and consents. */
+    FULL;
+}
@@ -0,0 +1,102 @@
+package org.sagebionetworks.bridge.models.accounts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import org.sagebionetworks.bridge.models.BridgeEntity;
+
+/**
+ * The progress and results of a bulk import of participants into a study. Imports run in the background; 
+ * this record is updated as each batch of rows is persisted, and can be retrieved until it expires.
+ */
+public final class ParticipantImport implements BridgeEntity {
+
+    private String guid;
+    private String studyId;
+    private ParticipantImportStatus status;
+    private int rowCount;
+    private int succeededCount;
+    private int failedCount;
+    private DateTime startedOn;
+    private DateTime finishedOn;
+    private String error;
+    private List<ParticipantImportResult> results = new ArrayList<>();
+
+    public String getGuid() {
+        return guid;
+    }
+    public void setGuid(String guid) {
+        this.guid = guid;
+    }
+    public String getStudyId() {
+        return studyId;
+    }
+    public void setStudyId(String studyId) {
+        this.studyId = studyId;
+    }
+    public ParticipantImportStatus getStatus() {
+        return status;
+    }
+    public void setStatus(ParticipantImportStatus status) {
+        this.status = status;
+    }
+    /** The number of rows in the roster. */
+    public int getRowCount() {
+        return rowCount;
+    }
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+    public int getSucceededCount() {
+        return succeededCount;
+    }
+    public void setSucceededCount(int succeededCount) {
+        this.succeededCount = succeededCount;
+    }
+    public int getFailedCount() {
+        return failedCount;
+    }
+    public void setFailedCount(int failedCount) {
+        this.failedCount = failedCount;
+    }
+    /** The number of rows that have been processed so far. */
+    public int getProcessedCount() {
+        return succeededCount + failedCount;
+    }
+    public DateTime getStartedOn() {
+        return startedOn;
+    }
+    public void setStartedOn(DateTime startedOn) {
+        this.startedOn = startedOn;
+    }
+    public DateTime getFinishedOn() {
+        return finishedOn;
+    }
+    public void setFinishedOn(DateTime finishedOn) {
+        this.finishedOn = finishedOn;
+    }
+    /** If the import failed, the reason it stopped. */
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+    /** The result of each row processed so far, in row order. */
+    public List<ParticipantImportResult> getResults() {
+        return results;
+    }
+    public void setResults(List<ParticipantImportResult> results) {
+        this.results = (results == null) ? new ArrayList<>() : results;
+    }
+    public void addResult(ParticipantImportResult result) {
+        results.add(result);
+        if (result.getError() == null) {
+            succeededCount++;
+        } else {
+            failedCount++;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.sagebionetworks.bridge.models.accounts;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of importing one row of a participant roster. Rows are numbered from 1, in the order they appear 
+ * in the roster (not counting the header row of a CSV file). A row that was imported has the ID of the new 
+ * account; a row that could not be imported has a message explaining why.
+ */
+public final class ParticipantImportResult {
+
+    private final int row;
+    private final String userId;
+    private final String error;
+
+    @JsonCreator
+    public ParticipantImportResult(@JsonProperty("row") int row, @JsonProperty("userId") String userId,
+            @JsonProperty("error") String error) {
+        this.row = row;
+        this.userId = userId;
+        this.error = error;
+    }
+
+    public static ParticipantImportResult succeeded(int row, String userId) {
+        return new ParticipantImportResult(row, userId, null);
+    }
+
+    public static ParticipantImportResult failed(int row, String error) {
+        return new ParticipantImportResult(row, null, error);
+    }
+
+    public int getRow() {
+        return row;
+    }
+    public String getUserId() {
+        return userId;
+    }
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,10 @@
+package org.sagebionetworks.bridge.models.accounts;
+
+public enum ParticipantImportStatus {
+    /** Rows are still being imported. */
+    IN_PROGRESS,
+    /** Every row has been processed (some rows may have failed; see the results of the import). */
+    COMPLETED,
+    /** The import stopped before every row was processed. */
+    FAILED;
+}
@@ -366,6 +366,16 @@ public interface App extends BridgeEntity {
     
     /** @see #getOAuthProviders */
     void setOAuthProviders(Map<String, OAuthProvider> providers);
+    
+    /**
+     * Rate limits for expensive endpoints, keyed by the name of the ThrottleRequestType of the request. Requests 
+     * over the limit receive a 429 response. Request types without an entry are not rate limited. These can only 
+     * be changed by an administrator.
+     */
+    Map<String, RateLimit> getRateLimits();
+    
+    /** @see #getRateLimits */
+    void setRateLimits(Map<String, RateLimit> rateLimits);
 
     List<AppleAppLink> getAppleAppLinks();
     void setAppleAppLinks(List<AppleAppLink> appleAppLinks);
@@ -0,0 +1,59 @@
+package org.sagebionetworks.bridge.models.apps;
+
+import java.util.Objects;
+
+import org.sagebionetworks.bridge.models.BridgeEntity;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The number of requests of a given type that can be made in a sliding window of time, both by an individual 
+ * caller and by all callers in an app. A limit of zero means that the limit is not enforced.
+ */
+public final class RateLimit implements BridgeEntity {
+    private final int perUserLimit;
+    private final int perAppLimit;
+    private final int windowSeconds;
+
+    @JsonCreator
+    public RateLimit(@JsonProperty("perUserLimit") int perUserLimit, @JsonProperty("perAppLimit") int perAppLimit,
+            @JsonProperty("windowSeconds") int windowSeconds) {
+        this.perUserLimit = perUserLimit;
+        this.perAppLimit = perAppLimit;
+        this.windowSeconds = windowSeconds;
+    }
+    /** The number of requests one caller can make in the window. */
+    public int getPerUserLimit() {
+        return perUserLimit;
+    }
+    /** The number of requests all callers in the app can make in the window. */
+    public int getPerAppLimit() {
+        return perAppLimit;
+    }
+    /** The length of the sliding window, in seconds. */
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(perUserLimit, perAppLimit, windowSeconds);
+    }
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        RateLimit other = (RateLimit) obj;
+        return perUserLimit == other.perUserLimit 
+               && perAppLimit == other.perAppLimit 
+               && windowSeconds == other.windowSeconds;
+    }
+    @Override
+    public String toString() {
+        return "RateLimit [perUserLimit=" + perUserLimit + ", perAppLimit=" + perAppLimit + ", windowSeconds="
+                + windowSeconds + "]";
+    }
+}
@@ -3,6 +3,8 @@ package org.sagebionetworks.bridge.models.assessments;
 import static javax.persistence.CascadeType.MERGE;
 import static javax.persistence.CascadeType.PERSIST;
 import static javax.persistence.FetchType.EAGER;
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_REGION;
 import static org.sagebionetworks.bridge.models.TagUtils.toTagSet;
 
 import java.util.ArrayList;
@@ -20,6 +22,7 @@ import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
 import org.joda.time.DateTime;
 
 import org.sagebionetworks.bridge.hibernate.DateTimeToLongAttributeConverter;
@@ -36,6 +39,7 @@ import org.sagebionetworks.bridge.models.assessments.config.PropertyInfo;
  * the Bridge system.
  */
 @Entity
+@Cache(usage = READ_WRITE, region = ASSESSMENT_REGION)
 // This annotation is necessary so a constraint violation exception involving an 
 // assessment displays the correct message without exposing the Hibernate implementation.
 @BridgeTypeName("Assessment")
@@ -96,6 +100,7 @@ public class HibernateAssessment {
         joinColumns = { @JoinColumn(name = "assessmentGuid") }, 
         inverseJoinColumns = { @JoinColumn(name = "tagValue")}
     )
+    @Cache(usage = READ_WRITE, region = ASSESSMENT_REGION)
     private Set<Tag> tags;
     
     @Convert(converter = CustomizationFieldsConverter.class)
@@ -0,0 +1,124 @@
+package org.sagebionetworks.bridge.models.notifications;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+
+import org.sagebionetworks.bridge.models.BridgeEntity;
+
+/**
+ * A push notification sent to every participant in a study (optionally, only those in all of a set of data groups).
+ * Broadcasts run in the background; this record is updated as each page of accounts is processed, and can be 
+ * retrieved until it expires.
+ */
+public final class NotificationBroadcast implements BridgeEntity {
+
+    private String guid;
+    private String studyId;
+    private NotificationMessage message;
+    private Set<String> allOfGroups = new HashSet<>();
+    private NotificationBroadcastStatus status;
+    private String offsetKey;
+    private int accountCount;
+    private int unregisteredCount;
+    private int deliveredCount;
+    private int failedCount;
+    private DateTime startedOn;
+    private DateTime modifiedOn;
+    private DateTime finishedOn;
+    private String error;
+
+    public String getGuid() {
+        return guid;
+    }
+    public void setGuid(String guid) {
+        this.guid = guid;
+    }
+    public String getStudyId() {
+        return studyId;
+    }
+    public void setStudyId(String studyId) {
+        this.studyId = studyId;
+    }
+    public NotificationMessage getMessage() {
+        return message;
+    }
+    public void setMessage(NotificationMessage message) {
+        this.message = message;
+    }
+    /** If not empty, only participants in all of these data groups are sent the notification. */
+    public Set<String> getAllOfGroups() {
+        return allOfGroups;
+    }
+    public void setAllOfGroups(Set<String> allOfGroups) {
+        this.allOfGroups = (allOfGroups == null) ? new HashSet<>() : allOfGroups;
+    }
+    public NotificationBroadcastStatus getStatus() {
+        return status;
+    }
+    public void setStatus(NotificationBroadcastStatus status) {
+        this.status = status;
+    }
+    /** The key of the last account processed; a resumed broadcast continues after this account. */
+    public String getOffsetKey() {
+        return offsetKey;
+    }
+    public void setOffsetKey(String offsetKey) {
+        this.offsetKey = offsetKey;
+    }
+    /** The number of accounts processed so far. */
+    public int getAccountCount() {
+        return accountCount;
+    }
+    public void setAccountCount(int accountCount) {
+        this.accountCount = accountCount;
+    }
+    /** The number of accounts processed that had no push notification registrations. */
+    public int getUnregisteredCount() {
+        return unregisteredCount;
+    }
+    public void setUnregisteredCount(int unregisteredCount) {
+        this.unregisteredCount = unregisteredCount;
+    }
+    /** The number of registrations (devices) that SNS accepted the notification for. */
+    public int getDeliveredCount() {
+        return deliveredCount;
+    }
+    public void setDeliveredCount(int deliveredCount) {
+        this.deliveredCount = deliveredCount;
+    }
+    /** The number of registrations (devices) that the notification could not be sent to. */
+    public int getFailedCount() {
+        return failedCount;
+    }
+    public void setFailedCount(int failedCount) {
+        this.failedCount = failedCount;
+    }
+    public DateTime getStartedOn() {
+        return startedOn;
+    }
+    public void setStartedOn(DateTime startedOn) {
+        this.startedOn = startedOn;
+    }
+    /** When this record was last updated by the broadcast. */
+    public DateTime getModifiedOn() {
+        return modifiedOn;
+    }
+    public void setModifiedOn(DateTime modifiedOn) {
+        this.modifiedOn = modifiedOn;
+    }
+    public DateTime getFinishedOn() {
+        return finishedOn;
+    }
+    public void setFinishedOn(DateTime finishedOn) {
+        this.finishedOn = finishedOn;
+    }
+    /** If the broadcast failed, the reason it stopped. */
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+}
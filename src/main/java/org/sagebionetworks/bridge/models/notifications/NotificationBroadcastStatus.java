@@ -0,0 +1,12 @@
+package org.sagebionetworks.bridge.models.notifications;
+
+public enum NotificationBroadcastStatus {
+    /** Accounts are still being sent the notification. */
+    IN_PROGRESS,
+    /** The broadcast was paused, and can be resumed from the account where it stopped. */
+    PAUSED,
+    /** Every matching account has been processed (some deliveries may have failed; see the counts). */
+    COMPLETED,
+    /** The broadcast stopped because of an error, and can be resumed from the account where it stopped. */
+    FAILED;
+}
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.models.organizations;
 
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ORGANIZATION_REGION;
+
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -9,12 +12,14 @@ import javax.persistence.Version;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.hibernate.annotations.Cache;
 import org.joda.time.DateTime;
 
 import org.sagebionetworks.bridge.hibernate.DateTimeToLongAttributeConverter;
 import org.sagebionetworks.bridge.json.BridgeTypeName;
 
 @Entity
+@Cache(usage = READ_WRITE, region = ORGANIZATION_REGION)
 @Table(name = "Organizations")
 @IdClass(OrganizationId.class)
 @BridgeTypeName("Organization")
@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.models.schedules2;
 
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.SCHEDULE_REGION;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,6 +22,7 @@ import javax.persistence.Version;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import org.joda.time.DateTime;
@@ -31,6 +35,7 @@ import org.sagebionetworks.bridge.json.BridgeTypeName;
 import org.sagebionetworks.bridge.models.BridgeEntity;
 
 @Entity
+@Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
 @Table(name = "Schedules")
 @BridgeTypeName("Schedule")
 public class Schedule2 implements BridgeEntity {
@@ -58,6 +63,7 @@ public class Schedule2 implements BridgeEntity {
     @OneToMany(mappedBy = "schedule", cascade = CascadeType.ALL,
             orphanRemoval = true, fetch = FetchType.EAGER)
     @OrderColumn(name = "position")
+    @Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
     private List<Session> sessions;
     
     @ElementCollection(fetch = FetchType.EAGER)
@@ -66,6 +72,7 @@ public class Schedule2 implements BridgeEntity {
     @CollectionTable(name="ScheduleStudyBursts", joinColumns= {
             @JoinColumn(name="scheduleGuid")
     })
+    @Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
     private List<StudyBurst> studyBursts;
     
     @Version
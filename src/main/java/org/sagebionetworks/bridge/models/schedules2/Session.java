@@ -1,5 +1,8 @@
 package org.sagebionetworks.bridge.models.schedules2;
 
+import static org.hibernate.annotations.CacheConcurrencyStrategy.READ_WRITE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.SCHEDULE_REGION;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,6 +22,7 @@ import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import org.hibernate.annotations.Cache;
 import org.joda.time.Period;
 
 import org.sagebionetworks.bridge.hibernate.LabelListConverter;
@@ -29,6 +33,7 @@ import org.sagebionetworks.bridge.models.BridgeEntity;
 import org.sagebionetworks.bridge.models.Label;
 
 @Entity
+@Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
 @Table(name = "Sessions")
 @BridgeTypeName("Session")
 public class Session implements BridgeEntity, HasGuid {
@@ -57,18 +62,21 @@ public class Session implements BridgeEntity, HasGuid {
     @CollectionTable(name = "SessionAssessments", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
     @OrderColumn(name = "position")
+    @Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
     private List<AssessmentReference> assessments;
     
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "SessionTimeWindows", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
     @OrderColumn(name = "position")
+    @Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
     private List<TimeWindow> timeWindows;
 
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "SessionNotifications", 
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
     @OrderColumn(name = "position")
+    @Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
     private List<Notification> notifications;
 
     @Convert(converter = StringListConverter.class)
@@ -83,6 +91,7 @@ public class Session implements BridgeEntity, HasGuid {
         joinColumns = @JoinColumn(name = "sessionGuid", nullable = false))
     @OrderColumn(name = "position")
     @Column(name = "eventId")
+    @Cache(usage = READ_WRITE, region = SCHEDULE_REGION)
     private List<String> startEventIds;
 
     public Schedule2 getSchedule() {
@@ -5,6 +5,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecord;
 import org.sagebionetworks.bridge.services.Schedule2Service;
@@ -12,7 +14,8 @@ import org.sagebionetworks.bridge.services.Schedule2Service;
 /**
  * When working with adherence records, you frequently need the TimelineMetadata
  * record, and carrying this between methods on the callstack is tedious. So this
- * class provides access to metadata as well as being a parameter object.
+ * class provides access to metadata as well as being a parameter object. The metadata
+ * for all the records passed to the constructor is retrieved in one call.
  */
 public class MetadataContainer {
     Schedule2Service scheduleService;
@@ -23,14 +26,27 @@ public class MetadataContainer {
     
     public MetadataContainer(Schedule2Service scheduleService, List<AdherenceRecord> records) {
         this.scheduleService = scheduleService;
+        if (!records.isEmpty()) {
+            Set<String> instanceGuids = records.stream()
+                    .map(AdherenceRecord::getInstanceGuid)
+                    .collect(Collectors.toSet());
+            metadata.putAll(scheduleService.getTimelineMetadata(instanceGuids));
+        }
         for (AdherenceRecord record : records) {
-            addRecord(record);
+            categorizeRecord(record, metadata.get(record.getInstanceGuid()));
         }
     }
     
     public void addRecord(AdherenceRecord record) {
+        TimelineMetadata meta = metadata.get(record.getInstanceGuid());
+        if (meta == null) {
+            meta = scheduleService.getTimelineMetadata(record.getInstanceGuid()).orElse(null);
+        }
+        categorizeRecord(record, meta);
+    }
+    
+    private void categorizeRecord(AdherenceRecord record, TimelineMetadata meta) {
         this.records.put(record.getInstanceGuid(), record);
-        TimelineMetadata meta = scheduleService.getTimelineMetadata(record.getInstanceGuid()).orElse(null);
         if (meta != null) {
             metadata.put(meta.getGuid(), meta);
             // Persistent activities can be done more than once, and are only differentiated by their
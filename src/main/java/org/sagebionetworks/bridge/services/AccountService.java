@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.services;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Boolean.TRUE;
 import static java.util.stream.Collectors.toSet;
@@ -8,10 +9,13 @@ import static org.sagebionetworks.bridge.AuthEvaluatorField.USER_ID;
 import static org.sagebionetworks.bridge.AuthUtils.CAN_READ_PARTICIPANTS;
 import static org.sagebionetworks.bridge.AuthUtils.CANNOT_ACCESS_PARTICIPANTS;
 import static org.sagebionetworks.bridge.AuthUtils.canAccessAccount;
+import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.TEST_USER_GROUP;
 import static org.sagebionetworks.bridge.BridgeUtils.addToSet;
 import static org.sagebionetworks.bridge.BridgeUtils.collectStudyIds;
 import static org.sagebionetworks.bridge.dao.AccountDao.MIGRATION_VERSION;
+import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_KEY;
+import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
 import static org.sagebionetworks.bridge.models.accounts.AccountSecretType.REAUTH;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.DISABLED;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.UNVERIFIED;
@@ -47,8 +51,10 @@ import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountFetchProfile;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.ExternalIdentifierInfo;
@@ -66,6 +72,11 @@ public class AccountService {
 
     static final int ROTATIONS = 3;
     
+    /** Each account is loaded with its enrollments and search terms in one session, so these pages are small. */
+    public static final int SEARCH_TERMS_MAX_PAGE_SIZE = 20;
+    static final String SEARCH_TERMS_PAGE_SIZE_ERROR = "pageSize must be from " + API_MINIMUM_PAGE_SIZE + "-"
+            + SEARCH_TERMS_MAX_PAGE_SIZE + " records";
+    
     private AccountDao accountDao;
     private AccountSecretDao accountSecretDao;
     private AppService appService;
@@ -222,8 +233,35 @@ public class AccountService {
         checkNotNull(app);
         checkNotNull(account);
         
-        account.setAppId(app.getIdentifier());
+        prepareNewAccount(app, account, DateUtils.getCurrentDateTime());
+
+        // Create account. We don't verify studies because this is handled by validation
+        accountDao.createAccount(app, account);
+        
+        publishEnrollmentEvents(app, account);
+    }
+    
+    /**
+     * Create several accounts in one transaction. If any account cannot be created, none of them are 
+     * created, and the exception for the failed account is thrown.
+     */
+    public void createAccounts(App app, List<Account> accounts) {
+        checkNotNull(app);
+        checkNotNull(accounts);
+        
         DateTime timestamp = DateUtils.getCurrentDateTime();
+        for (Account account : accounts) {
+            prepareNewAccount(app, account, timestamp);
+        }
+        accountDao.createAccounts(app, accounts);
+        
+        for (Account account : accounts) {
+            publishEnrollmentEvents(app, account);
+        }
+    }
+    
+    private void prepareNewAccount(App app, Account account, DateTime timestamp) {
+        account.setAppId(app.getIdentifier());
         account.setCreatedOn(timestamp);
         account.setModifiedOn(timestamp);
         account.setPasswordModifiedOn(timestamp);
@@ -232,10 +270,9 @@ public class AccountService {
             Set<String> newDataGroups = addToSet(account.getDataGroups(), TEST_USER_GROUP);
             account.setDataGroups(newDataGroups);
         }
-
-        // Create account. We don't verify studies because this is handled by validation
-        accountDao.createAccount(app, account);
-        
+    }
+    
+    private void publishEnrollmentEvents(App app, Account account) {
         if (!account.getEnrollments().isEmpty()) {
             activityEventService.publishEnrollmentEvent(
                     app, account.getHealthCode(), account.getCreatedOn());
@@ -338,7 +375,22 @@ public class AccountService {
     public Optional<Account> getAccount(AccountId accountId) {
         checkNotNull(accountId);
 
-        Optional<Account> optional = accountDao.getAccount(accountId);
+        return filterAccount(accountDao.getAccount(accountId));
+    }
+    
+    /**
+     * Get an account as getAccount(AccountId) does, loading only the parts of the account in the 
+     * fetch profile. The profile must include the enrollments (AUTH or FULL) so access to the 
+     * account can be checked.
+     */
+    public Optional<Account> getAccount(AccountId accountId, AccountFetchProfile profile) {
+        checkNotNull(accountId);
+        checkArgument(profile != AccountFetchProfile.IDENTITY, "Account access cannot be checked with IDENTITY profile");
+
+        return filterAccount(accountDao.getAccount(accountId, profile));
+    }
+    
+    private Optional<Account> filterAccount(Optional<Account> optional) {
         if (!optional.isPresent()) {
             return optional;
         }
@@ -404,7 +456,8 @@ public class AccountService {
     private Optional<String> getAccountField(String appId, String userIdToken, Function<Account,String> func) {
         if (appId != null && userIdToken != null) {
             AccountId accountId = BridgeUtils.parseAccountId(appId, userIdToken);
-            Account account = accountDao.getAccount(accountId).orElse(null);
+            // Only the account record is needed, so none of the account's collections are loaded
+            Account account = accountDao.getAccount(accountId, AccountFetchProfile.IDENTITY).orElse(null);
             if (account != null) {
                 return Optional.ofNullable(func.apply(account));
             }
@@ -420,6 +473,37 @@ public class AccountService {
         return accountDao.getPagedExternalIds(appId, studyId, idFilter, offsetBy, pageSize);
     }
     
+    /**
+     * Get a page of the health codes of accounts enrolled in a study. Pages are keyed by the last health code 
+     * of the prior page.
+     */
+    public List<String> getStudyHealthCodes(String appId, String studyId, Set<String> allOfGroups,
+            String offsetKey, int pageSize) {
+        checkNotNull(appId);
+        checkNotNull(studyId);
+        
+        return accountDao.getStudyHealthCodes(appId, studyId, allOfGroups, offsetKey, pageSize);
+    }
+    
+    /**
+     * Rebuild the search terms of a page of the app's accounts. Every account in an app must be indexed this way 
+     * before account searches use the search terms (account.search.index.enabled); accounts that are created or 
+     * updated after this change are indexed when they are saved.
+     */
+    public ForwardCursorPagedResourceList<String> rebuildSearchTerms(String appId, String offsetKey, int pageSize) {
+        checkNotNull(appId);
+        
+        if (pageSize < API_MINIMUM_PAGE_SIZE || pageSize > SEARCH_TERMS_MAX_PAGE_SIZE) {
+            throw new BadRequestException(SEARCH_TERMS_PAGE_SIZE_ERROR);
+        }
+        List<String> accountIds = accountDao.rebuildSearchTerms(appId, offsetKey, pageSize);
+        String nextPageOffsetKey = (accountIds.size() == pageSize) ? accountIds.get(pageSize - 1) : null;
+        
+        return new ForwardCursorPagedResourceList<>(accountIds, nextPageOffsetKey)
+                .withRequestParam(OFFSET_KEY, offsetKey)
+                .withRequestParam(PAGE_SIZE, pageSize);
+    }
+    
     public void deleteAllAccounts(String appId) {
         checkNotNull(appId);
         
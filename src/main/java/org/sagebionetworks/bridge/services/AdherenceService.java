@@ -105,9 +105,9 @@ public class AdherenceService {
         MetadataContainer container = new MetadataContainer(scheduleService, recordList.getRecords());
         
         // Update assessments
+        dao.updateAdherenceRecords(container.getAssessments());
         for (AdherenceRecord record : container.getAssessments()) {
             TimelineMetadata meta = container.getMetadata(record.getInstanceGuid());
-            dao.updateAdherenceRecord(record);
             publishEvent(appId, meta, record);
         }
         // Update sessions implied by assessments
@@ -115,9 +115,9 @@ public class AdherenceService {
             updateSessionState(appId, container, record);
         }
         // Update sessions
+        dao.updateAdherenceRecords(container.getSessionUpdates());
         for (AdherenceRecord record : container.getSessionUpdates()) {
             TimelineMetadata sessionMeta = container.getMetadata(record.getInstanceGuid());
-            dao.updateAdherenceRecord(record);
             publishEvent(appId, sessionMeta, record);
         }
     }
@@ -537,6 +537,7 @@ public class AppService {
             app.setPhoneSignInEnabled(originalApp.isPhoneSignInEnabled());
             app.setReauthenticationEnabled(originalApp.isReauthenticationEnabled());
             app.setAccountLimit(originalApp.getAccountLimit());
+            app.setRateLimits(originalApp.getRateLimits());
             app.setAppIdExcludedInExport(originalApp.isAppIdExcludedInExport());
             app.setVerifyChannelOnSignInEnabled(originalApp.isVerifyChannelOnSignInEnabled());
         }
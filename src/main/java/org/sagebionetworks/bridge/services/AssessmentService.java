@@ -20,11 +20,13 @@ import static org.sagebionetworks.bridge.BridgeConstants.SHARED_APP_ID;
 import static org.sagebionetworks.bridge.BridgeUtils.sanitizeHTML;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_REGION;
 import static org.sagebionetworks.bridge.models.OperatingSystem.SYNONYMS;
 import static org.sagebionetworks.bridge.models.ResourceList.GUID;
 import static org.sagebionetworks.bridge.models.ResourceList.IDENTIFIER;
 import static org.sagebionetworks.bridge.models.ResourceList.INCLUDE_DELETED;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
+import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_KEY;
 import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
 import static org.sagebionetworks.bridge.models.ResourceList.TAGS;
 import static org.sagebionetworks.bridge.util.BridgeCollectors.toImmutableSet;
@@ -50,6 +52,8 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
 import org.sagebionetworks.bridge.models.assessments.config.AssessmentConfig;
@@ -67,6 +71,8 @@ public class AssessmentService {
     
     private OrganizationService organizationService;
     
+    private HibernateCacheInvalidator cacheInvalidator;
+    
     @Autowired
     final void setAssessmentDao(AssessmentDao assessmentDao) {
         this.dao = assessmentDao;
@@ -82,6 +88,11 @@ public class AssessmentService {
         this.organizationService = organizationService;
     }
     
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
+    
     // accessor to mock for tests
     String generateGuid() {
         return BridgeUtils.generateGuid();
@@ -119,6 +130,20 @@ public class AssessmentService {
                 .withRequestParam(TAGS, tags);
     }
     
+    public ForwardCursorPagedResourceList<Assessment> getAssessmentsByOffsetKey(String appId, String ownerId,
+            String offsetKey, int pageSize, Set<String> tags, boolean includeDeleted) {
+        checkArgument(isNotBlank(appId));
+        
+        if (pageSize < API_MINIMUM_PAGE_SIZE || pageSize > API_MAXIMUM_PAGE_SIZE) {
+            throw new BadRequestException(PAGE_SIZE_ERROR);
+        }
+        return dao.getAssessmentsByOffsetKey(appId, ownerId, offsetKey, pageSize, tags, includeDeleted)
+                .withRequestParam(OFFSET_KEY, offsetKey)
+                .withRequestParam(PAGE_SIZE, pageSize)
+                .withRequestParam(INCLUDE_DELETED, includeDeleted)
+                .withRequestParam(TAGS, tags);
+    }
+    
     public Assessment createAssessment(String appId, Assessment assessment) {
         checkArgument(isNotBlank(appId));
         checkNotNull(assessment);
@@ -199,7 +224,9 @@ public class AssessmentService {
         AssessmentValidator validator = new AssessmentValidator(appId, organizationService);
         Validate.entityThrowingException(validator, assessment);
 
-        return dao.updateAssessment(appId, assessment);        
+        Assessment updated = dao.updateAssessment(appId, assessment);
+        cacheInvalidator.invalidate(ASSESSMENT_REGION);
+        return updated;
     }
         
     public Assessment getAssessmentByGuid(String appId, String ownerId, String guid) {
@@ -315,7 +342,9 @@ public class AssessmentService {
         
         original.setOriginGuid(assessmentToPublish.getGuid());
         
-        return dao.publishAssessment(appId, original, assessmentToPublish, configToPublish);
+        Assessment published = dao.publishAssessment(appId, original, assessmentToPublish, configToPublish);
+        cacheInvalidator.invalidate(ASSESSMENT_REGION);
+        return published;
     }
     
     /**
@@ -353,7 +382,9 @@ public class AssessmentService {
         sharedAssessment.setRevision(revision);
         sharedAssessment.setOwnerId(ownerId);
         
-        return dao.importAssessment(appId, sharedAssessment, sharedConfig);
+        Assessment imported = dao.importAssessment(appId, sharedAssessment, sharedConfig);
+        cacheInvalidator.invalidate(ASSESSMENT_REGION);
+        return imported;
     }
         
     public void deleteAssessment(String appId, String ownerId, String guid) {
@@ -369,6 +400,7 @@ public class AssessmentService {
         assessment.setDeleted(true);
         assessment.setModifiedOn(getModifiedOn());
         dao.updateAssessment(appId, assessment);
+        cacheInvalidator.invalidate(ASSESSMENT_REGION);
     }
         
     public void deleteAssessmentPermanently(String appId, String ownerId, String guid) {
@@ -379,6 +411,7 @@ public class AssessmentService {
         if (opt.isPresent()) {
             Assessment assessment = opt.get();
             dao.deleteAssessment(appId, assessment);
+            cacheInvalidator.invalidate(ASSESSMENT_REGION);
         }
     }
     
@@ -386,6 +419,7 @@ public class AssessmentService {
         checkArgument(isNotBlank(appId));
         
         dao.deleteAllAssessments(appId);
+        cacheInvalidator.invalidate(ASSESSMENT_REGION);
     }
 
     private Assessment createAssessmentInternal(String appId, Assessment assessment) {
@@ -422,7 +456,10 @@ public class AssessmentService {
         config.setModifiedOn(timestamp);
         config.setConfig(JsonNodeFactory.instance.objectNode());
         
-        return dao.createAssessment(appId, assessment, config);
+        // Other servers may have cached an empty result for this identifier and revision.
+        Assessment created = dao.createAssessment(appId, assessment, config);
+        cacheInvalidator.invalidate(ASSESSMENT_REGION);
+        return created;
     }
     
     Optional<Assessment> getLatestInternal(String appId, String ownerId, String identifier, boolean includeDeleted) {
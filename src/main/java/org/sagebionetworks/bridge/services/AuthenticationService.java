@@ -507,16 +507,15 @@ public class AuthenticationService {
      * APIs, which creates the session. Package-scoped for unit tests.
      */
     public UserSession getSessionFromAccount(App app, CriteriaContext context, Account account) {
-        StudyParticipant participant = participantService.getParticipant(app, account, false);
+        // The session participant is built directly from the account. Consent statuses are calculated below 
+        // for this request, so there's no need to look up request info to calculate them a second time. 
+        StudyParticipant participant = participantService.getSessionParticipant(account, context.getLanguages());
 
         // If the user does not have a language persisted yet, now that we have a session, we can retrieve it 
-        // from the context, add it to the user/session, and persist it.
-        if (participant.getLanguages().isEmpty() && !context.getLanguages().isEmpty()) {
-            participant = new StudyParticipant.Builder().copyOf(participant)
-                    .withLanguages(context.getLanguages()).build();
-            
-            // Note that the context does not have the healthCode, you must use the participant
-            AccountId accountId = AccountId.forHealthCode(app.getIdentifier(), participant.getHealthCode());
+        // from the context, add it to the user/session (done above), and persist it.
+        if (account.getLanguages().isEmpty() && !context.getLanguages().isEmpty()) {
+            // Note that the context does not have the healthCode, you must use the account
+            AccountId accountId = AccountId.forHealthCode(app.getIdentifier(), account.getHealthCode());
             accountService.editAccount(accountId,
                     accountToEdit -> accountToEdit.setLanguages(context.getLanguages()));
         }
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Boolean.TRUE;
 import static java.nio.charset.Charset.defaultCharset;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
@@ -19,6 +20,7 @@ import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.xhtmlrenderer.pdf.ITextRenderer;
 
 import com.fasterxml.jackson.core.util.ByteArrayBuilder;
@@ -33,22 +35,53 @@ public final class ConsentPdf {
 
     public static final DateTimeFormatter FORMATTER = DateTimeFormat.forPattern("MMMM d, yyyy");
     
-    private final App app;
     private final StudyParticipant signer;
     private final ConsentSignature consentSignature;
     private final SharingScope sharingScope;
-    private final String studyConsentAgreement;
-    private final String xmlTemplateWithSignatureBlock;
+    private final CompiledTemplate consentDocument;
     private String formattedConsentDocument;
+    private byte[] pdfBytes;
 
     public ConsentPdf(App app, StudyParticipant signer, ConsentSignature consentSignature,
             SharingScope sharingScope, String studyConsentAgreement, String xmlTemplateWithSignatureBlock) {
-        this.app = checkNotNull(app);
+        this(signer, consentSignature, sharingScope,
+                compileConsentDocument(app, studyConsentAgreement, xmlTemplateWithSignatureBlock));
+    }
+    
+    /**
+     * @param consentDocument
+     *      the complete consent document with the app's variables resolved, as returned by 
+     *      {@link #compileConsentDocument(App, String, String)}. Only the signature block is filled in for this 
+     *      signer.
+     */
+    public ConsentPdf(StudyParticipant signer, ConsentSignature consentSignature, SharingScope sharingScope,
+            CompiledTemplate consentDocument) {
         this.signer = signer;
         this.consentSignature = checkNotNull(consentSignature);
         this.sharingScope = checkNotNull(sharingScope);
-        this.studyConsentAgreement = checkNotNull(studyConsentAgreement);
-        this.xmlTemplateWithSignatureBlock = checkNotNull(xmlTemplateWithSignatureBlock);
+        this.consentDocument = checkNotNull(consentDocument);
+    }
+    
+    /**
+     * Consent documents were originally whole XHTML documents (they must be valid XML because PDF support from Java
+     * libraries is limited and bad, and the tool we're using only works with XML as an input). In order to edit these
+     * documents, we are moving to a system where only the content portion of the consent document, excluding the
+     * signature block at the end, is available to researchers to edit. We then assemble the complete HTML document
+     * here, resolving everything but the signer's variables. The result is the same for every signer of the same 
+     * consent in the same version of the app, so it can be reused.
+     */
+    public static CompiledTemplate compileConsentDocument(App app, String studyConsentAgreement,
+            String xmlTemplateWithSignatureBlock) {
+        checkNotNull(app);
+        checkNotNull(studyConsentAgreement);
+        checkNotNull(xmlTemplateWithSignatureBlock);
+        
+        // This is now a fragment, assemble accordingly
+        Map<String,String> map = BridgeUtils.appTemplateVariables(app);
+        String resolvedStudyConsentAgreement = BridgeUtils.resolveTemplate(studyConsentAgreement, map);
+        
+        map.put("consent.body", resolvedStudyConsentAgreement);
+        return CompiledTemplate.compile(BridgeUtils.resolveTemplate(xmlTemplateWithSignatureBlock, map));
     }
     
     /**
@@ -62,6 +95,10 @@ public final class ConsentPdf {
     }
 
     public byte[] getBytes() {
+        // The same PDF may be both emailed and uploaded for download, so it is only rendered once.
+        if (pdfBytes != null) {
+            return pdfBytes;
+        }
         final String consentDoc = createSignedDocument();
 
         String imageMimeType = consentSignature.getImageMimeType();
@@ -76,7 +113,8 @@ public final class ConsentPdf {
                     "data:" + imageMimeType + ";base64," + imageData);
         }
 
-        return createPdf(formattedConsentDocument);
+        pdfBytes = createPdf(formattedConsentDocument);
+        return pdfBytes;
     }
 
     private byte[] createPdf(final String consentDoc) {
@@ -92,13 +130,7 @@ public final class ConsentPdf {
         }
     }
 
-    /**
-     * Consent documents were originally whole XHTML documents (they must be valid XML because PDF support from Java
-     * libraries is limited and bad, and the tool we're using only works with XML as an input). In order to edit these
-     * documents, we are moving to a system where only the content portion of the consent document, excluding the
-     * signature block at the end, is available to researchers to edit. We then assemble the complete HTML document at
-     * runtime. Here we branch based on the detection of a complete HTML document and do either one or the other.
-     */
+    /** Fill in the signature block of the consent document for this signer. */
     private String createSignedDocument() {
         DateTime localSignedOn = new DateTime(consentSignature.getSignedOn());
         String signingDate = FORMATTER.print(localSignedOn) + " (GMT)";
@@ -122,17 +154,13 @@ public final class ConsentPdf {
             contactLabel = "ID";
         }
         
-        // This is now a fragment, assemble accordingly
-        Map<String,String> map = BridgeUtils.appTemplateVariables(app);
+        Map<String,String> map = new HashMap<>();
         map.put("participant.name", username);
         map.put("participant.signing.date", signingDate);
         map.put("participant.contactInfo", contactInfo);
         map.put("participant.contactLabel", contactLabel);
         map.put("participant.sharing", sharingLabel);
-        String resolvedStudyConsentAgreement = BridgeUtils.resolveTemplate(studyConsentAgreement, map);
-        
-        map.put("consent.body", resolvedStudyConsentAgreement);
-        return BridgeUtils.resolveTemplate(xmlTemplateWithSignatureBlock, map);
+        return consentDocument.render(map);
     }
 
     // Helper method to check if the given string is a valid Base64 string. Returns false for null or blank strings.
@@ -16,12 +16,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.io.IOUtils;
 import org.joda.time.DateTime;
 import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.SecureTokenGenerator;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -50,13 +53,18 @@ import org.sagebionetworks.bridge.services.email.EmailType;
 import org.sagebionetworks.bridge.services.email.WithdrawConsentEmailProvider;
 import org.sagebionetworks.bridge.sms.SmsMessageProvider;
 import org.sagebionetworks.bridge.time.DateUtils;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.sagebionetworks.bridge.validators.ConsentSignatureValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -68,6 +76,7 @@ import org.springframework.stereotype.Component;
  */
 @Component
 public class ConsentService {
+    private static final Logger LOG = LoggerFactory.getLogger(ConsentService.class);
     
     protected static final String USERSIGNED_CONSENTS_BUCKET = BridgeConfigFactory.getConfig()
             .get("usersigned.consents.bucket");
@@ -82,6 +91,17 @@ public class ConsentService {
     private UrlShortenerService urlShortenerService;
     private TemplateService templateService;
     private EnrollmentService enrollmentService;
+    private ExecutorService consentExecutorService;
+    
+    /**
+     * Consent documents assembled for signing, by app, app version, subpopulation and consent revision. Everything 
+     * but the signature block is resolved, so each signer's PDF only needs their own details filled in. Consent 
+     * revisions never change and app changes produce a new version, so entries are never stale.
+     */
+    final Cache<String, CompiledTemplate> consentDocumentCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
     
     @Value("classpath:conf/app-defaults/consent-page.xhtml")
     final void setConsentTemplate(org.springframework.core.io.Resource resource) throws IOException {
@@ -130,6 +150,10 @@ public class ConsentService {
     final void setEnrollmentService(EnrollmentService enrollmentService) {
         this.enrollmentService = enrollmentService;
     }
+    @Resource(name = "consentExecutorService")
+    final void setConsentExecutorService(ExecutorService consentExecutorService) {
+        this.consentExecutorService = consentExecutorService;
+    }
     
     /**
      * Get the user's active consent signature (a signature that has not been withdrawn).
@@ -212,41 +236,48 @@ public class ConsentService {
         }
         accountService.updateAccount(account);
 
-        // Administrative actions, almost exclusively for testing, will send no consent documents
+        // Administrative actions, almost exclusively for testing, will send no consent documents. The user is 
+        // consented at this point, so the PDF is rendered and delivered off the request thread.
         if (sendSignedConsent) {
-            ConsentPdf consentPdf = new ConsentPdf(app, participant, withConsentCreatedOnSignature, sharingScope,
-                    studyConsent.getDocumentContent(), xmlTemplateWithSignatureBlock);
-            
-            boolean verifiedEmail = (participant.getEmail() != null
-                    && Boolean.TRUE.equals(participant.getEmailVerified()));
-            boolean verifiedPhone = (participant.getPhone() != null
-                    && Boolean.TRUE.equals(participant.getPhoneVerified()));
+            CompiledTemplate consentDocument = getConsentDocument(app, subpopGuid, studyConsent);
+            runInBackground(() -> sendSignedConsent(app, subpop, participant, withConsentCreatedOnSignature,
+                    sharingScope, consentDocument));
+        }
+    }
+    
+    private void sendSignedConsent(App app, Subpopulation subpop, StudyParticipant participant,
+            ConsentSignature signature, SharingScope sharingScope, CompiledTemplate consentDocument) {
+        ConsentPdf consentPdf = new ConsentPdf(participant, signature, sharingScope, consentDocument);
+        
+        boolean verifiedEmail = (participant.getEmail() != null
+                && Boolean.TRUE.equals(participant.getEmailVerified()));
+        boolean verifiedPhone = (participant.getPhone() != null
+                && Boolean.TRUE.equals(participant.getPhoneVerified()));
+        
+        // Send an email to the user if they have an email address and we're not suppressing the send, 
+        // and/or to any app consent administrators.
+        Set<String> recipientEmails = Sets.newHashSet();
+        if (verifiedEmail && !subpop.isAutoSendConsentSuppressed()) {
+            recipientEmails.add(participant.getEmail());    
+        }
+        addStudyConsentRecipients(app, recipientEmails);
+        if (!recipientEmails.isEmpty()) {
+            TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
             
-            // Send an email to the user if they have an email address and we're not suppressing the send, 
-            // and/or to any app consent administrators.
-            Set<String> recipientEmails = Sets.newHashSet();
-            if (verifiedEmail && !subpop.isAutoSendConsentSuppressed()) {
-                recipientEmails.add(participant.getEmail());    
-            }
-            addStudyConsentRecipients(app, recipientEmails);
-            if (!recipientEmails.isEmpty()) {
-                TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
-                
-                BasicEmailProvider.Builder consentEmailBuilder = new BasicEmailProvider.Builder()
-                        .withApp(app)
-                        .withParticipant(participant)
-                        .withTemplateRevision(revision)
-                        .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
-                        .withType(EmailType.SIGN_CONSENT);
-                for (String recipientEmail : recipientEmails) {
-                    consentEmailBuilder.withRecipientEmail(recipientEmail);
-                }
-                sendMailService.sendEmail(consentEmailBuilder.build());
-            }
-            // Otherwise if there's no verified email but there is a phone and we're not suppressing, send it there
-            if (!subpop.isAutoSendConsentSuppressed() && !verifiedEmail && verifiedPhone) {
-                sendConsentViaSMS(app, subpop, participant, consentPdf);    
+            BasicEmailProvider.Builder consentEmailBuilder = new BasicEmailProvider.Builder()
+                    .withApp(app)
+                    .withParticipant(participant)
+                    .withTemplateRevision(revision)
+                    .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
+                    .withType(EmailType.SIGN_CONSENT);
+            for (String recipientEmail : recipientEmails) {
+                consentEmailBuilder.withRecipientEmail(recipientEmail);
             }
+            sendMailService.sendEmail(consentEmailBuilder.build());
+        }
+        // Otherwise if there's no verified email but there is a phone and we're not suppressing, send it there
+        if (!subpop.isAutoSendConsentSuppressed() && !verifiedEmail && verifiedPhone) {
+            sendConsentViaSMS(app, subpop, participant, consentPdf);    
         }
     }
 
@@ -416,32 +447,65 @@ public class ConsentService {
         ConsentSignature consentSignature = getConsentSignature(app, subpopGuid, participant.getId());
         SharingScope sharingScope = participant.getSharingScope();
         Subpopulation subpop = subpopService.getSubpopulation(app.getIdentifier(), subpopGuid);
-        String studyConsentDocument = studyConsentService.getActiveConsent(subpop).getDocumentContent();
+        StudyConsentView studyConsent = studyConsentService.getActiveConsent(subpop);
 
         boolean verifiedEmail = (participant.getEmail() != null
                 && Boolean.TRUE.equals(participant.getEmailVerified()));
         boolean verifiedPhone = (participant.getPhone() != null
                 && Boolean.TRUE.equals(participant.getPhoneVerified()));
+        if (!verifiedEmail && !verifiedPhone) {
+            throw new BadRequestException("Participant does not have a valid email address or phone number");
+        }
         
-        ConsentPdf consentPdf = new ConsentPdf(app, participant, consentSignature, sharingScope, studyConsentDocument,
-                xmlTemplateWithSignatureBlock);
-        
-        if (verifiedEmail) {
-            TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
+        CompiledTemplate consentDocument = getConsentDocument(app, subpopGuid, studyConsent);
+        runInBackground(() -> {
+            ConsentPdf consentPdf = new ConsentPdf(participant, consentSignature, sharingScope, consentDocument);
             
-            BasicEmailProvider provider = new BasicEmailProvider.Builder()
-                    .withApp(app)
-                    .withParticipant(participant)
-                    .withTemplateRevision(revision)
-                    .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
-                    .withRecipientEmail(participant.getEmail())
-                    .withType(EmailType.RESEND_CONSENT).build();
-            sendMailService.sendEmail(provider);
-        } else if (verifiedPhone) {
-            sendConsentViaSMS(app, subpop, participant, consentPdf);
-        } else {
-            throw new BadRequestException("Participant does not have a valid email address or phone number");
+            if (verifiedEmail) {
+                TemplateRevision revision = templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT);
+                
+                BasicEmailProvider provider = new BasicEmailProvider.Builder()
+                        .withApp(app)
+                        .withParticipant(participant)
+                        .withTemplateRevision(revision)
+                        .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
+                        .withRecipientEmail(participant.getEmail())
+                        .withType(EmailType.RESEND_CONSENT).build();
+                sendMailService.sendEmail(provider);
+            } else {
+                sendConsentViaSMS(app, subpop, participant, consentPdf);
+            }
+        });
+    }
+    
+    private CompiledTemplate getConsentDocument(App app, SubpopulationGuid subpopGuid,
+            StudyConsentView studyConsent) {
+        String key = app.getIdentifier() + ":" + app.getVersion() + ":" + subpopGuid.getGuid() + ":"
+                + studyConsent.getCreatedOn();
+        CompiledTemplate consentDocument = consentDocumentCache.getIfPresent(key);
+        if (consentDocument == null) {
+            consentDocument = ConsentPdf.compileConsentDocument(app, studyConsent.getDocumentContent(),
+                    xmlTemplateWithSignatureBlock);
+            consentDocumentCache.put(key, consentDocument);
         }
+        return consentDocument;
+    }
+    
+    // Rendering a PDF is slow and CPU-heavy, so it is done on a bounded pool of its own, with the caller's request 
+    // context so templates are still selected for the caller.
+    private void runInBackground(Runnable task) {
+        RequestContext context = RequestContext.get();
+        consentExecutorService.execute(() -> {
+            RequestContext previousContext = RequestContext.get();
+            RequestContext.set(context);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error("Error sending signed consent", e);
+            } finally {
+                RequestContext.set(previousContext);
+            }
+        });
     }
     
     private void sendConsentViaSMS(App app, Subpopulation subpop, StudyParticipant participant,
@@ -1,7 +1,5 @@
 package org.sagebionetworks.bridge.services;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -30,7 +28,7 @@ public class ExportViaSqsService implements ExportService {
     static final String REQUEST_KEY_TAG = "tag";
     static final String REQUEST_KEY_USE_LAST_EXPORT_TIME = "useLastExportTime";
 
-    private AmazonSQSClient sqsClient;
+    private SqsMessageDispatcher sqsMessageDispatcher;
     private String sqsQueueUrl;
 
     /** Bridge config, used to get the SQS queue URL. */
@@ -39,10 +37,10 @@ public class ExportViaSqsService implements ExportService {
         this.sqsQueueUrl = bridgeConfig.getProperty(CONFIG_KEY_EXPORTER_SQS_QUEUE_URL);
     }
 
-    /** SQS client. */
+    /** Sends messages to SQS. */
     @Autowired
-    public final void setSqsClient(AmazonSQSClient sqsClient) {
-        this.sqsClient = sqsClient;
+    public final void setSqsMessageDispatcher(SqsMessageDispatcher sqsMessageDispatcher) {
+        this.sqsMessageDispatcher = sqsMessageDispatcher;
     }
 
     /** {@inheritDoc} */
@@ -69,7 +67,7 @@ public class ExportViaSqsService implements ExportService {
         String requestJsonText = JSON_OBJECT_MAPPER.writeValueAsString(requestNode);
 
         // send to SQS
-        SendMessageResult sqsResult = sqsClient.sendMessage(sqsQueueUrl, requestJsonText);
-        LOG.info("Sent request to SQS for " + tag + "; received message ID=" + sqsResult.getMessageId());
+        sqsMessageDispatcher.send(sqsQueueUrl, requestJsonText);
+        LOG.info("Queued request to SQS for " + tag);
     }
 }
@@ -3,8 +3,6 @@ package org.sagebionetworks.bridge.services;
 import java.io.IOException;
 import javax.annotation.Resource;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
@@ -78,7 +76,7 @@ public class Exporter3Service {
     private AppService appService;
     private HealthDataEx3Service healthDataEx3Service;
     private S3Helper s3Helper;
-    private AmazonSQSClient sqsClient;
+    private SqsMessageDispatcher sqsMessageDispatcher;
     private SynapseHelper synapseHelper;
 
     @Autowired
@@ -113,8 +111,8 @@ public class Exporter3Service {
     }
 
     @Autowired
-    final void setSqsClient(AmazonSQSClient sqsClient) {
-        this.sqsClient = sqsClient;
+    final void setSqsMessageDispatcher(SqsMessageDispatcher sqsMessageDispatcher) {
+        this.sqsMessageDispatcher = sqsMessageDispatcher;
     }
 
     @Resource(name="exporterSynapseHelper")
@@ -297,9 +295,8 @@ public class Exporter3Service {
                     ex);
         }
 
-        // Sent to SQS.
-        SendMessageResult sqsResult = sqsClient.sendMessage(workerQueueUrl, requestJson);
-        LOG.info("Sent export request for app " + appId + " record " + recordId + "; received message ID=" +
-                sqsResult.getMessageId());
+        // Queue for SQS. This is sent in the background, so the upload doesn't wait on SQS.
+        sqsMessageDispatcher.send(workerQueueUrl, requestJson);
+        LOG.info("Queued export request for app " + appId + " record " + recordId);
     }
 }
@@ -0,0 +1,380 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.COMPLETED;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.FAILED;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.IN_PROGRESS;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.PAUSED;
+import static org.sagebionetworks.bridge.models.notifications.NotificationProtocol.APPLICATION;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.annotation.Resource;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+import com.google.common.util.concurrent.RateLimiter;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.notifications.NotificationBroadcast;
+import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
+import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
+import org.sagebionetworks.bridge.time.DateUtils;
+import org.sagebionetworks.bridge.validators.NotificationMessageValidator;
+import org.sagebionetworks.bridge.validators.Validate;
+
+/**
+ * Sends a push notification to every participant enrolled in a study. The broadcast runs in the background, one
+ * page of accounts at a time (paged by health code, so later pages are as cheap to read as the first): the push
+ * registrations of the page's accounts are looked up concurrently, and the notification is then published to each
+ * registration concurrently, at no more than the configured rate for this server. Progress is kept in Redis after
+ * each page. A broadcast can be paused (it stops after the page it is sending) and resumed from the page after the
+ * last one it completed; a page that was interrupted part way through is sent again in full. The server running a
+ * broadcast holds a lease on it in Redis, renewed after each page, so only one server can run a broadcast at a time.
+ */
+@Component
+public class NotificationBroadcastService {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationBroadcastService.class);
+
+    static final String PAGE_SIZE_PROPERTY = "notification.broadcast.page_size";
+    static final String RATE_PROPERTY = "notification.broadcast.rate";
+    static final int EXPIRE_IN_SECONDS = 7 * 24 * 60 * 60;
+    /** If the server running a broadcast doesn't renew its lease for this long, another server can resume it. */
+    static final int LEASE_EXPIRE_IN_SECONDS = 10 * 60;
+
+    static final String MESSAGE_REQUIRED_ERROR = "Broadcast must include a message";
+    static final String CANNOT_PAUSE_ERROR = "Only a broadcast in progress can be paused";
+    static final String ALREADY_RUNNING_ERROR = "Broadcast is already in progress";
+    static final String ALREADY_COMPLETED_ERROR = "Broadcast has already completed";
+
+    private AccountService accountService;
+    private NotificationRegistrationDao registrationDao;
+    private AmazonSNSClient snsClient;
+    private CacheProvider cacheProvider;
+    private ExecutorService asyncExecutorService;
+    private ExecutorService broadcastExecutorService;
+    private int pageSize;
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    final void setAccountService(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    @Autowired
+    final void setNotificationRegistrationDao(NotificationRegistrationDao registrationDao) {
+        this.registrationDao = registrationDao;
+    }
+
+    @Resource(name = "snsClient")
+    final void setSnsClient(AmazonSNSClient snsClient) {
+        this.snsClient = snsClient;
+    }
+
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    /** Runs each broadcast. */
+    @Resource(name = "asyncExecutorService")
+    final void setAsyncExecutorService(ExecutorService asyncExecutorService) {
+        this.asyncExecutorService = asyncExecutorService;
+    }
+
+    /**
+     * Looks up registrations and publishes to them, concurrently. This is not the executor used to send notifications
+     * to individual users, so a broadcast doesn't hold up those requests.
+     */
+    @Resource(name = "notificationBroadcastExecutorService")
+    final void setBroadcastExecutorService(ExecutorService broadcastExecutorService) {
+        this.broadcastExecutorService = broadcastExecutorService;
+    }
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.pageSize = config.getInt(PAGE_SIZE_PROPERTY);
+        // Shared by all the broadcasts running on this server.
+        this.rateLimiter = RateLimiter.create(config.getInt(RATE_PROPERTY));
+    }
+
+    // accessor to mock for tests
+    String generateGuid() {
+        return BridgeUtils.generateGuid();
+    }
+
+    /**
+     * Start sending the message of the broadcast to every participant in the study (in all of the broadcast's data
+     * groups, if it has any). Returns the initial state of the broadcast, whose guid can be used to follow its
+     * progress.
+     */
+    public NotificationBroadcast startBroadcast(String appId, String studyId, NotificationBroadcast broadcast) {
+        checkArgument(isNotBlank(appId));
+        checkArgument(isNotBlank(studyId));
+        checkNotNull(broadcast);
+
+        NotificationMessage message = broadcast.getMessage();
+        if (message == null) {
+            throw new BadRequestException(MESSAGE_REQUIRED_ERROR);
+        }
+        Validate.entityThrowingException(NotificationMessageValidator.INSTANCE, message);
+
+        DateTime now = DateUtils.getCurrentDateTime();
+        NotificationBroadcast record = new NotificationBroadcast();
+        record.setGuid(generateGuid());
+        record.setStudyId(studyId);
+        record.setMessage(message);
+        record.setAllOfGroups(broadcast.getAllOfGroups());
+        record.setStatus(IN_PROGRESS);
+        record.setStartedOn(now);
+        record.setModifiedOn(now);
+
+        String leaseToken = generateGuid();
+        if (!claimLease(appId, record.getGuid(), leaseToken)) {
+            throw new BadRequestException(ALREADY_RUNNING_ERROR);
+        }
+        save(appId, record);
+
+        return start(appId, record, leaseToken);
+    }
+
+    public NotificationBroadcast getBroadcast(String appId, String studyId, String guid) {
+        return forCaller(getStoredBroadcast(appId, studyId, guid));
+    }
+
+    /**
+     * Ask a broadcast in progress to stop. It stops once the page of accounts it is sending is done, and its status
+     * is then PAUSED.
+     */
+    public NotificationBroadcast pauseBroadcast(String appId, String studyId, String guid) {
+        NotificationBroadcast broadcast = getStoredBroadcast(appId, studyId, guid);
+        if (broadcast.getStatus() != IN_PROGRESS) {
+            throw new BadRequestException(CANNOT_PAUSE_ERROR);
+        }
+        cacheProvider.setObject(CacheKey.notificationBroadcastPause(appId, guid), Boolean.TRUE, EXPIRE_IN_SECONDS);
+        return forCaller(broadcast);
+    }
+
+    /**
+     * Continue a paused or failed broadcast from the page after the last one it completed. This also withdraws a
+     * pause that hasn't taken effect yet, and restarts a broadcast whose server stopped while sending it.
+     */
+    public NotificationBroadcast resumeBroadcast(String appId, String studyId, String guid) {
+        NotificationBroadcast broadcast = getStoredBroadcast(appId, studyId, guid);
+        if (broadcast.getStatus() == COMPLETED) {
+            throw new BadRequestException(ALREADY_COMPLETED_ERROR);
+        }
+        CacheKey pauseKey = CacheKey.notificationBroadcastPause(appId, guid);
+        String leaseToken = generateGuid();
+        if (!claimLease(appId, guid, leaseToken)) {
+            // Another server is running the broadcast.
+            if (broadcast.getStatus() == IN_PROGRESS && cacheProvider.getObject(pauseKey, Boolean.class) != null) {
+                cacheProvider.removeObject(pauseKey);
+                return forCaller(broadcast);
+            }
+            throw new BadRequestException(ALREADY_RUNNING_ERROR);
+        }
+        // Read the broadcast again, since the server that held the lease may have saved it before releasing it.
+        broadcast = getStoredBroadcast(appId, studyId, guid);
+        if (broadcast.getStatus() == COMPLETED) {
+            releaseLease(appId, guid, leaseToken);
+            throw new BadRequestException(ALREADY_COMPLETED_ERROR);
+        } else if (broadcast.getStatus() == IN_PROGRESS) {
+            LOG.warn("Restarting notification broadcast " + guid + " in app " + appId +
+                    ", which has not progressed since " + broadcast.getModifiedOn());
+        }
+        // A pause requested of a server that then stopped would otherwise pause the broadcast again.
+        cacheProvider.removeObject(pauseKey);
+        broadcast.setStatus(IN_PROGRESS);
+        broadcast.setError(null);
+        broadcast.setFinishedOn(null);
+        broadcast.setModifiedOn(DateUtils.getCurrentDateTime());
+        save(appId, broadcast);
+
+        return start(appId, broadcast, leaseToken);
+    }
+
+    private NotificationBroadcast start(String appId, NotificationBroadcast broadcast, String leaseToken) {
+        // The background broadcast updates the stored record, since the returned copy is serialized in the response.
+        NotificationBroadcast response = forCaller(broadcast);
+        RequestContext context = RequestContext.get();
+        asyncExecutorService.execute(() -> {
+            RequestContext previousContext = RequestContext.get();
+            RequestContext.set(context);
+            try {
+                runBroadcast(appId, broadcast, leaseToken);
+            } finally {
+                RequestContext.set(previousContext);
+            }
+        });
+        return response;
+    }
+
+    private NotificationBroadcast getStoredBroadcast(String appId, String studyId, String guid) {
+        checkArgument(isNotBlank(appId));
+        checkArgument(isNotBlank(studyId));
+        checkArgument(isNotBlank(guid));
+
+        NotificationBroadcast broadcast = cacheProvider.getObject(CacheKey.notificationBroadcast(appId, guid),
+                NotificationBroadcast.class);
+        if (broadcast == null || !studyId.equals(broadcast.getStudyId())) {
+            throw new EntityNotFoundException(NotificationBroadcast.class);
+        }
+        return broadcast;
+    }
+
+    // The offset key is a health code, which is not returned to callers.
+    private NotificationBroadcast forCaller(NotificationBroadcast broadcast) {
+        NotificationBroadcast copy = BridgeObjectMapper.get().convertValue(broadcast, NotificationBroadcast.class);
+        copy.setOffsetKey(null);
+        return copy;
+    }
+
+    void runBroadcast(String appId, NotificationBroadcast broadcast, String leaseToken) {
+        String guid = broadcast.getGuid();
+        CacheKey pauseKey = CacheKey.notificationBroadcastPause(appId, guid);
+        try {
+            while (true) {
+                if (cacheProvider.getObject(pauseKey, Boolean.class) != null) {
+                    cacheProvider.removeObject(pauseKey);
+                    broadcast.setStatus(PAUSED);
+                    save(appId, broadcast);
+                    releaseLease(appId, guid, leaseToken);
+                    return;
+                }
+                List<String> healthCodes = accountService.getStudyHealthCodes(appId, broadcast.getStudyId(),
+                        broadcast.getAllOfGroups(), broadcast.getOffsetKey(), pageSize);
+                if (!healthCodes.isEmpty()) {
+                    sendToPage(broadcast, healthCodes);
+                    if (!renewLease(appId, guid, leaseToken)) {
+                        // Another server has resumed the broadcast, and its progress is the one to keep.
+                        LOG.warn("Notification broadcast " + guid + " in app " + appId + " lost its lease, stopping");
+                        return;
+                    }
+                    broadcast.setOffsetKey(healthCodes.get(healthCodes.size() - 1));
+                    broadcast.setModifiedOn(DateUtils.getCurrentDateTime());
+                    save(appId, broadcast);
+                }
+                if (healthCodes.size() < pageSize) {
+                    break;
+                }
+            }
+            broadcast.setStatus(COMPLETED);
+        } catch (RuntimeException e) {
+            LOG.error("Notification broadcast " + broadcast.getGuid() + " in app " + appId + " failed", e);
+            broadcast.setStatus(FAILED);
+            broadcast.setError(e.getMessage());
+        }
+        DateTime now = DateUtils.getCurrentDateTime();
+        broadcast.setModifiedOn(now);
+        broadcast.setFinishedOn(now);
+        save(appId, broadcast);
+        releaseLease(appId, guid, leaseToken);
+    }
+
+    private void sendToPage(NotificationBroadcast broadcast, List<String> healthCodes) {
+        List<Future<List<NotificationRegistration>>> lookups = new ArrayList<>(healthCodes.size());
+        for (String healthCode : healthCodes) {
+            lookups.add(broadcastExecutorService.submit(() -> registrationDao.listRegistrations(healthCode)));
+        }
+
+        // Outcomes are only added to the broadcast once the whole page is sent, since an interrupted page is sent 
+        // again when the broadcast is resumed.
+        NotificationMessage message = broadcast.getMessage();
+        int unregisteredCount = 0;
+        int deliveredCount = 0;
+        int failedCount = 0;
+        List<Future<PublishResult>> publishes = new ArrayList<>();
+        for (Future<List<NotificationRegistration>> lookup : lookups) {
+            // Only push registrations can be sent a notification; SMS registrations are skipped.
+            List<NotificationRegistration> registrations = await(lookup).stream()
+                    .filter(registration -> registration.getProtocol() == APPLICATION).collect(Collectors.toList());
+            if (registrations.isEmpty()) {
+                unregisteredCount++;
+            }
+            for (NotificationRegistration registration : registrations) {
+                PublishRequest request = new PublishRequest().withTargetArn(registration.getEndpoint())
+                        .withSubject(message.getSubject()).withMessage(message.getMessage());
+                rateLimiter.acquire();
+                publishes.add(broadcastExecutorService.submit(() -> snsClient.publish(request)));
+            }
+        }
+        for (Future<PublishResult> publish : publishes) {
+            try {
+                publish.get();
+                deliveredCount++;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof AmazonServiceException)) {
+                    throw asRuntimeException(e);
+                }
+                // Most often the registration's endpoint has been disabled; the rest of the broadcast continues.
+                LOG.debug("Error publishing notification broadcast " + broadcast.getGuid(), e.getCause());
+                failedCount++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Notification broadcast was interrupted", e);
+            }
+        }
+        broadcast.setAccountCount(broadcast.getAccountCount() + healthCodes.size());
+        broadcast.setUnregisteredCount(broadcast.getUnregisteredCount() + unregisteredCount);
+        broadcast.setDeliveredCount(broadcast.getDeliveredCount() + deliveredCount);
+        broadcast.setFailedCount(broadcast.getFailedCount() + failedCount);
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw asRuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Notification broadcast was interrupted", e);
+        }
+    }
+
+    private RuntimeException asRuntimeException(ExecutionException e) {
+        return (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() :
+                new RuntimeException(e.getCause());
+    }
+
+    private boolean claimLease(String appId, String guid, String leaseToken) {
+        return cacheProvider.setObjectIfAbsent(CacheKey.notificationBroadcastLease(appId, guid), leaseToken,
+                LEASE_EXPIRE_IN_SECONDS);
+    }
+
+    private boolean renewLease(String appId, String guid, String leaseToken) {
+        return cacheProvider.setExpirationIfEquals(CacheKey.notificationBroadcastLease(appId, guid), leaseToken,
+                LEASE_EXPIRE_IN_SECONDS);
+    }
+
+    private void releaseLease(String appId, String guid, String leaseToken) {
+        cacheProvider.removeObjectIfEquals(CacheKey.notificationBroadcastLease(appId, guid), leaseToken);
+    }
+
+    private void save(String appId, NotificationBroadcast broadcast) {
+        cacheProvider.setObject(CacheKey.notificationBroadcast(appId, broadcast.getGuid()), broadcast,
+                EXPIRE_IN_SECONDS);
+    }
+}
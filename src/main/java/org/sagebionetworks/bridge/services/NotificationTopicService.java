@@ -3,24 +3,32 @@ package org.sagebionetworks.bridge.services;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.CRITERIA_TOPIC_CACHE;
 import static org.sagebionetworks.bridge.models.CriteriaUtils.filterByCriteria;
+import static org.sagebionetworks.bridge.util.BridgeCollectors.toImmutableList;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.dao.NotificationTopicDao;
 import org.sagebionetworks.bridge.dao.TopicSubscriptionDao;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
@@ -43,6 +51,16 @@ public class NotificationTopicService {
 
     private static final Logger LOG = LoggerFactory.getLogger(NotificationTopicService.class);
     
+    /**
+     * Criteria-managed topics by app ID, including logically deleted topics. These are read every time a 
+     * participant's criteria change, but change rarely, so they are cached in-process and removed when a topic 
+     * changes, on this server and (through the HibernateCacheInvalidator) on the others. If that message is lost, 
+     * another server picks up the change when the entries expire.
+     */
+    final Cache<String, List<NotificationTopic>> criteriaTopicCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+    
     private NotificationRegistrationDao registrationDao;
     
     private NotificationTopicDao topicDao;
@@ -51,6 +69,10 @@ public class NotificationTopicService {
     
     private AmazonSNSClient snsClient;
     
+    private ExecutorService notificationExecutorService;
+    
+    private HibernateCacheInvalidator cacheInvalidator;
+    
     @Autowired
     final void setNotificationRegistrationDao(NotificationRegistrationDao registrationDao) {
         this.registrationDao = registrationDao;
@@ -71,6 +93,17 @@ public class NotificationTopicService {
         this.snsClient = snsClient;
     }
     
+    @Resource(name = "notificationExecutorService")
+    final void setNotificationExecutorService(ExecutorService notificationExecutorService) {
+        this.notificationExecutorService = notificationExecutorService;
+    }
+    
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+        cacheInvalidator.registerLocalCache(CRITERIA_TOPIC_CACHE, criteriaTopicCache::invalidate);
+    }
+    
     public List<NotificationTopic> listTopics(String appId, boolean includeDeleted) {
         checkNotNull(appId);
         
@@ -89,7 +122,9 @@ public class NotificationTopicService {
         
         Validate.entityThrowingException(NotificationTopicValidator.INSTANCE, topic);
         
-        return topicDao.createTopic(topic);
+        NotificationTopic created = topicDao.createTopic(topic);
+        invalidateCriteriaTopics(topic.getAppId());
+        return created;
     }
     
     public NotificationTopic updateTopic(NotificationTopic topic) {
@@ -97,7 +132,9 @@ public class NotificationTopicService {
         
         Validate.entityThrowingException(NotificationTopicValidator.INSTANCE, topic);
         
-        return topicDao.updateTopic(topic);
+        NotificationTopic updated = topicDao.updateTopic(topic);
+        invalidateCriteriaTopics(topic.getAppId());
+        return updated;
     }
     
     public void deleteTopic(String appId, String guid) {
@@ -105,6 +142,7 @@ public class NotificationTopicService {
         checkNotNull(guid);
         
         topicDao.deleteTopic(appId, guid);
+        invalidateCriteriaTopics(appId);
     }
     
     public void deleteTopicPermanently(String appId, String guid) {
@@ -112,6 +150,7 @@ public class NotificationTopicService {
         checkNotNull(guid);
         
         topicDao.deleteTopicPermanently(appId, guid);
+        invalidateCriteriaTopics(appId);
     }
     
     /**
@@ -121,6 +160,7 @@ public class NotificationTopicService {
         checkNotNull(appId);
         
         topicDao.deleteAllTopics(appId);
+        invalidateCriteriaTopics(appId);
     }
     
     public void sendNotification(String appId, String guid, NotificationMessage message) {
@@ -162,7 +202,8 @@ public class NotificationTopicService {
     /**
      * Manages criteria-based subscriptions for the given participant with the given criteria context. All topics that
      * match the criteria context will be subscribed. All other topics will be unsubscribed. This only considers
-     * criteria-managed subscriptions. Manually-managed subscriptions will be untouched.
+     * criteria-managed subscriptions. Manually-managed subscriptions will be untouched. The subscriptions are 
+     * changed in the background, so the caller does not wait on SNS.
      */
     public void manageCriteriaBasedSubscriptions(String appId, CriteriaContext context, String healthCode) {
         checkNotNull(appId);
@@ -170,31 +211,75 @@ public class NotificationTopicService {
         checkNotNull(healthCode);
         checkArgument(isNotBlank(healthCode));
 
-        // Check app for topics. Only consider topics with criteria. Include logically deleted topics 
-        // so that if they are undeleted, the user's subscription state is correct
-        List<NotificationTopic> allTopicList = topicDao.listTopics(appId, true);
-        List<NotificationTopic> criteriaTopicList = allTopicList.stream()
-                .filter(topic -> topic.getCriteria() != null).collect(Collectors.toList());
+        List<NotificationTopic> criteriaTopicList = getCriteriaTopics(appId);
         if (criteriaTopicList.isEmpty()) {
             // Short cut: No topics in the app means nothing to manage.
             return;
         }
 
-        // Check participant for notification registrations.
-        List<NotificationRegistration> registrationList = registrationDao.listRegistrations(healthCode);
-        if (registrationList.isEmpty()) {
-            // Short cut: No registrations means nothing to manage.
-            return;
-        }
-
         // Determine topics to subscribe to based on criteria.
         Set<String> desiredTopicGuidSet = filterByCriteria(context, criteriaTopicList, null).stream()
                 .map(NotificationTopic::getGuid).collect(Collectors.toSet());
 
-        // Subscribe user to topics.
-        for (NotificationRegistration oneRegistration : registrationList) {
-            setSubscriptionsForRegistration(oneRegistration, criteriaTopicList, desiredTopicGuidSet);
+        runInBackground(() -> {
+            // Check participant for notification registrations. If there are none, there's nothing to manage.
+            List<NotificationRegistration> registrationList = registrationDao.listRegistrations(healthCode);
+            for (NotificationRegistration oneRegistration : registrationList) {
+                updateSubscriptionsForRegistration(oneRegistration, criteriaTopicList, desiredTopicGuidSet);
+            }
+        });
+    }
+    
+    // Check app for topics. Only consider topics with criteria. Include logically deleted topics so that if they 
+    // are undeleted, the user's subscription state is correct.
+    private List<NotificationTopic> getCriteriaTopics(String appId) {
+        List<NotificationTopic> criteriaTopicList = criteriaTopicCache.getIfPresent(appId);
+        if (criteriaTopicList == null) {
+            criteriaTopicList = topicDao.listTopics(appId, true).stream()
+                    .filter(topic -> topic.getCriteria() != null).collect(toImmutableList());
+            criteriaTopicCache.put(appId, criteriaTopicList);
         }
+        return criteriaTopicList;
+    }
+    
+    private void invalidateCriteriaTopics(String appId) {
+        criteriaTopicCache.invalidate(appId);
+        cacheInvalidator.invalidate(CRITERIA_TOPIC_CACHE, appId);
+    }
+    
+    // Compares the registration's subscription records to the desired topics, and only subscribes or unsubscribes 
+    // the topics that differ. Each SNS call is made as a separate task, so they run concurrently.
+    private void updateSubscriptionsForRegistration(NotificationRegistration registration,
+            List<NotificationTopic> eligibleTopicList, Set<String> desiredTopicGuidSet) {
+        Set<String> subscribedTopicGuidSet = subscriptionDao.listSubscriptions(registration).stream()
+                .map(TopicSubscription::getTopicGuid).collect(Collectors.toSet());
+        
+        for (NotificationTopic oneTopic : eligibleTopicList) {
+            boolean wantsSubscription = desiredTopicGuidSet.contains(oneTopic.getGuid());
+            boolean isCurrentlySubscribed = subscribedTopicGuidSet.contains(oneTopic.getGuid());
+            if (wantsSubscription && !isCurrentlySubscribed) {
+                runInBackground(() -> doSubscribe(registration, oneTopic));
+            } else if (!wantsSubscription && isCurrentlySubscribed) {
+                runInBackground(() -> doUnsubscribe(registration, oneTopic));
+            }
+        }
+    }
+    
+    // Runs the task on the notification executor with the caller's request context. Tasks are never waited on 
+    // from within the executor.
+    private void runInBackground(Runnable task) {
+        RequestContext context = RequestContext.get();
+        notificationExecutorService.execute(() -> {
+            RequestContext previousContext = RequestContext.get();
+            RequestContext.set(context);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error("Error managing criteria-based topic subscriptions", e);
+            } finally {
+                RequestContext.set(previousContext);
+            }
+        });
     }
 
     /**
@@ -4,8 +4,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.Boolean.TRUE;
 import static org.sagebionetworks.bridge.BridgeUtils.SEMICOLON_SPACE_JOINER;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 
@@ -15,8 +20,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.NotImplementedException;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.OperatingSystem;
@@ -48,6 +55,7 @@ public class NotificationsService {
     private NotificationRegistrationDao notificationRegistrationDao;
     private NotificationTopicService notificationTopicService;
     private AmazonSNSClient snsClient;
+    private ExecutorService notificationExecutorService;
 
     /** Participant service, if we need to get the participant. */
     @Autowired
@@ -79,6 +87,12 @@ public class NotificationsService {
         this.snsClient = snsClient;
     }
 
+    /** Executor for publishing to each of a participant's registrations concurrently. */
+    @Resource(name = "notificationExecutorService")
+    final void setNotificationExecutorService(ExecutorService notificationExecutorService) {
+        this.notificationExecutorService = notificationExecutorService;
+    }
+
     /**
      * Return all the registrations for this user. There may be more than one, if a user installs 
      * the application on different devices. It is possible there may be multiple registrations on 
@@ -218,20 +232,39 @@ public class NotificationsService {
             throw new BadRequestException("Participant has not registered to receive push notifications.");
         }
         
-        Set<String> erroredRegistrations = Sets.newHashSet();
+        // Publish to all registrations concurrently, then wait for every result.
+        RequestContext context = RequestContext.get();
+        Map<String, Future<PublishResult>> futures = new LinkedHashMap<>();
         for (NotificationRegistration registration : registrations) {
-            String endpointARN = registration.getEndpoint();
-            
-            PublishRequest request = new PublishRequest().withTargetArn(endpointARN)
+            PublishRequest request = new PublishRequest().withTargetArn(registration.getEndpoint())
                     .withSubject(message.getSubject()).withMessage(message.getMessage());
-
+            futures.put(registration.getGuid(), notificationExecutorService.submit(() -> {
+                RequestContext previousContext = RequestContext.get();
+                RequestContext.set(context);
+                try {
+                    return snsClient.publish(request);
+                } finally {
+                    RequestContext.set(previousContext);
+                }
+            }));
+        }
+        
+        Set<String> erroredRegistrations = Sets.newHashSet();
+        for (Map.Entry<String, Future<PublishResult>> entry : futures.entrySet()) {
             try {
-                PublishResult result = snsClient.publish(request);
-                LOG.debug("Sent message to participant registration=" + registration.getGuid() + ", appId=" +
+                PublishResult result = entry.getValue().get();
+                LOG.debug("Sent message to participant registration=" + entry.getKey() + ", appId=" +
                         appId + ", message ID=" + result.getMessageId());
-            } catch(AmazonServiceException e) {
-                LOG.warn("Error publishing SNS message to participant", e);
-                erroredRegistrations.add(registration.getGuid());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof AmazonServiceException)) {
+                    throw (e.getCause() instanceof RuntimeException) ? 
+                            (RuntimeException) e.getCause() : new BridgeServiceException(e.getCause());
+                }
+                LOG.warn("Error publishing SNS message to participant", e.getCause());
+                erroredRegistrations.add(entry.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException("Sending push notification was interrupted", e);
             }
         }
         // If none of the registrations succeeds, then throw an error.
@@ -8,6 +8,7 @@ import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.NEGATIVE_OFFSET_ERROR;
 import static org.sagebionetworks.bridge.BridgeConstants.PAGE_SIZE_ERROR;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ORGANIZATION_REGION;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
 import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
 import static org.sagebionetworks.bridge.validators.OrganizationValidator.INSTANCE;
@@ -32,6 +33,7 @@ import org.sagebionetworks.bridge.dao.OrganizationDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -47,6 +49,7 @@ public class OrganizationService {
     private SessionUpdateService sessionUpdateService;
     private AssessmentDao assessmentDao;
     private CacheProvider cacheProvider;
+    private HibernateCacheInvalidator cacheInvalidator;
     
     @Autowired
     final void setOrganizationDao(OrganizationDao orgDao) {
@@ -68,6 +71,10 @@ public class OrganizationService {
     final void setCacheProvider(CacheProvider cacheProvider) {
         this.cacheProvider = cacheProvider;
     }
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
     
     DateTime getCreatedOn() {
         return DateTime.now();
@@ -148,7 +155,9 @@ public class OrganizationService {
         organization.setModifiedOn(getModifiedOn());
         organization.setCreatedOn(existing.getCreatedOn());
         
-        return orgDao.updateOrganization(organization);
+        Organization updated = orgDao.updateOrganization(organization);
+        cacheInvalidator.invalidate(ORGANIZATION_REGION);
+        return updated;
     }
     
     /**
@@ -195,6 +204,7 @@ public class OrganizationService {
         
         CacheKey cacheKey = CacheKey.orgSponsoredStudies(appId, identifier);
         cacheProvider.removeObject(cacheKey);
+        cacheInvalidator.invalidate(ORGANIZATION_REGION);
     }
     
     public PagedResourceList<AccountSummary> getMembers(String appId, String identifier, AccountSummarySearch search) {
@@ -259,5 +269,6 @@ public class OrganizationService {
         checkNotNull(appId);
 
         orgDao.deleteAllOrganizations(appId);
+        cacheInvalidator.invalidate(ORGANIZATION_REGION);
     }
 }
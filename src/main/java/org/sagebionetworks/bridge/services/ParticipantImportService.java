@@ -0,0 +1,441 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.sagebionetworks.bridge.models.accounts.ParticipantImportStatus.COMPLETED;
+import static org.sagebionetworks.bridge.models.accounts.ParticipantImportStatus.FAILED;
+import static org.sagebionetworks.bridge.models.accounts.ParticipantImportStatus.IN_PROGRESS;
+import static org.sagebionetworks.bridge.validators.ValidatorUtils.accountHasValidIdentifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Resource;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.BridgeConstants;
+import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.ParticipantImport;
+import org.sagebionetworks.bridge.models.accounts.ParticipantImportResult;
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.studies.Enrollment;
+import org.sagebionetworks.bridge.time.DateUtils;
+
+/**
+ * Imports a roster of participants into a study. The roster is read as it is uploaded, and the import then runs in
+ * the background, one batch of rows at a time: the rows of a batch are validated and turned into accounts in
+ * parallel (hashing passwords is the slowest part of creating an account), then the accounts and their enrollments
+ * are inserted in one transaction. If that transaction fails, the batch is retried one account at a time so the
+ * failure can be reported against its row. Verification messages are queued once a batch is persisted. Progress is
+ * kept in Redis, and can be retrieved until it expires.
+ */
+@Component
+public class ParticipantImportService {
+    private static final Logger LOG = LoggerFactory.getLogger(ParticipantImportService.class);
+
+    static final String BATCH_SIZE_PROPERTY = "hibernate.batch.size";
+    static final String MAX_ROWS_PROPERTY = "participant.import.max_rows";
+    static final int EXPIRE_IN_SECONDS = 24 * 60 * 60;
+
+    static final String PHONE_FIELD = "phone";
+    static final String PHONE_REGION_FIELD = "phoneRegion";
+    static final String DEFAULT_PHONE_REGION = "US";
+    // CSV cells for these fields hold comma-separated lists.
+    static final Set<String> LIST_FIELDS = ImmutableSet.of("dataGroups", "languages", "roles");
+    private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    static final String INVALID_JSON_ERROR = "Roster must be a JSON array of participants";
+    static final String INVALID_CSV_ERROR = "Roster is not a valid CSV file: %s";
+    static final String TOO_MANY_ROWS_ERROR = "Roster cannot have more than %s rows";
+    static final String EMPTY_ROSTER_ERROR = "Roster has no rows";
+    static final String NO_IDENTIFIER_ERROR = "Participant must have an email, phone, external ID or Synapse user ID";
+    static final String DUPLICATE_ERROR = "Duplicate %s in roster (see row %s)";
+
+    private ParticipantService participantService;
+    private AccountService accountService;
+    private EnrollmentService enrollmentService;
+    private CacheProvider cacheProvider;
+    private ExecutorService asyncExecutorService;
+    private ExecutorService importExecutorService;
+    private int batchSize;
+    private int maxRows;
+
+    @Autowired
+    final void setParticipantService(ParticipantService participantService) {
+        this.participantService = participantService;
+    }
+
+    @Autowired
+    final void setAccountService(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    @Autowired
+    final void setEnrollmentService(EnrollmentService enrollmentService) {
+        this.enrollmentService = enrollmentService;
+    }
+
+    @Autowired
+    final void setCacheProvider(CacheProvider cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    /** Runs each import, and sends the verification messages of imported participants. */
+    @Resource(name = "asyncExecutorService")
+    final void setAsyncExecutorService(ExecutorService asyncExecutorService) {
+        this.asyncExecutorService = asyncExecutorService;
+    }
+
+    /** Validates the rows of each batch, and constructs their accounts, in parallel. */
+    @Resource(name = "participantImportExecutorService")
+    final void setImportExecutorService(ExecutorService importExecutorService) {
+        this.importExecutorService = importExecutorService;
+    }
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.batchSize = config.getInt(BATCH_SIZE_PROPERTY);
+        this.maxRows = config.getInt(MAX_ROWS_PROPERTY);
+    }
+
+    // accessor to mock for tests
+    String generateGuid() {
+        return BridgeUtils.generateGuid();
+    }
+
+    /**
+     * Read a roster of participants (a JSON array of participants, or a CSV file with a header row naming the
+     * participant field in each column), and start importing them into the study in the background. Returns the
+     * initial state of the import, whose guid can be used to follow its progress.
+     */
+    public ParticipantImport importParticipants(App app, String studyId, InputStream roster, boolean isCsv) {
+        checkNotNull(app);
+        checkArgument(isNotBlank(studyId));
+        checkNotNull(roster);
+
+        List<StudyParticipant> rows = isCsv ? readCsvRoster(roster) : readJsonRoster(roster);
+        if (rows.isEmpty()) {
+            throw new BadRequestException(EMPTY_ROSTER_ERROR);
+        }
+        if (app.getAccountLimit() > 0) {
+            int total = participantService.getPagedAccountSummaries(app, AccountSummarySearch.EMPTY_SEARCH)
+                    .getTotal();
+            if (total + rows.size() > app.getAccountLimit()) {
+                throw new LimitExceededException(String.format(BridgeConstants.MAX_USERS_ERROR,
+                        app.getAccountLimit()));
+            }
+        }
+
+        String guid = generateGuid();
+        DateTime startedOn = DateUtils.getCurrentDateTime();
+        ParticipantImport participantImport = newParticipantImport(guid, studyId, rows.size(), startedOn);
+        save(app.getIdentifier(), participantImport);
+
+        // The background import updates its own copy, since the returned copy is serialized in the response.
+        ParticipantImport progress = newParticipantImport(guid, studyId, rows.size(), startedOn);
+        RequestContext context = RequestContext.get();
+        asyncExecutorService.execute(() -> {
+            RequestContext previousContext = RequestContext.get();
+            RequestContext.set(context);
+            try {
+                runImport(app, studyId, rows, progress);
+            } finally {
+                RequestContext.set(previousContext);
+            }
+        });
+        return participantImport;
+    }
+
+    private ParticipantImport newParticipantImport(String guid, String studyId, int rowCount, DateTime startedOn) {
+        ParticipantImport participantImport = new ParticipantImport();
+        participantImport.setGuid(guid);
+        participantImport.setStudyId(studyId);
+        participantImport.setStatus(IN_PROGRESS);
+        participantImport.setRowCount(rowCount);
+        participantImport.setStartedOn(startedOn);
+        return participantImport;
+    }
+
+    public ParticipantImport getParticipantImport(String appId, String studyId, String guid) {
+        checkArgument(isNotBlank(appId));
+        checkArgument(isNotBlank(studyId));
+        checkArgument(isNotBlank(guid));
+
+        ParticipantImport participantImport = cacheProvider.getObject(CacheKey.participantImport(appId, guid),
+                ParticipantImport.class);
+        if (participantImport == null || !studyId.equals(participantImport.getStudyId())) {
+            throw new EntityNotFoundException(ParticipantImport.class);
+        }
+        return participantImport;
+    }
+
+    List<StudyParticipant> readJsonRoster(InputStream roster) {
+        BridgeObjectMapper mapper = BridgeObjectMapper.get();
+        List<StudyParticipant> rows = new ArrayList<>();
+        try (JsonParser parser = mapper.getFactory().createParser(roster)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new BadRequestException(INVALID_JSON_ERROR);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                addRow(rows, mapper.readValue(parser, StudyParticipant.class));
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new BadRequestException(INVALID_JSON_ERROR);
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException(INVALID_JSON_ERROR);
+        } catch (IOException e) {
+            throw new BadRequestException(e);
+        }
+        return rows;
+    }
+
+    List<StudyParticipant> readCsvRoster(InputStream roster) {
+        CsvMapper csvMapper = new CsvMapper();
+        CsvSchema schema = CsvSchema.emptySchema().withHeader();
+        List<StudyParticipant> rows = new ArrayList<>();
+        try (MappingIterator<Map<String, String>> iterator = csvMapper.readerFor(Map.class).with(schema)
+                .readValues(roster)) {
+            while (iterator.hasNext()) {
+                addRow(rows, csvRowToParticipant(iterator.next()));
+            }
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw new BadRequestException(String.format(INVALID_CSV_ERROR, e.getMessage()));
+        }
+        return rows;
+    }
+
+    private void addRow(List<StudyParticipant> rows, StudyParticipant participant) {
+        if (rows.size() >= maxRows) {
+            throw new BadRequestException(String.format(TOO_MANY_ROWS_ERROR, maxRows));
+        }
+        rows.add(participant);
+    }
+
+    StudyParticipant csvRowToParticipant(Map<String, String> row) throws JsonProcessingException {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        for (Map.Entry<String, String> entry : row.entrySet()) {
+            String field = entry.getKey().trim();
+            String value = entry.getValue();
+            if (isBlank(value) || PHONE_REGION_FIELD.equals(field)) {
+                continue;
+            }
+            if (PHONE_FIELD.equals(field)) {
+                String region = row.get(PHONE_REGION_FIELD);
+                ObjectNode phone = node.putObject(PHONE_FIELD);
+                phone.put("number", value.trim());
+                phone.put("regionCode", isBlank(region) ? DEFAULT_PHONE_REGION : region.trim());
+            } else if (LIST_FIELDS.contains(field)) {
+                ArrayNode array = node.putArray(field);
+                LIST_SPLITTER.split(value).forEach(array::add);
+            } else {
+                node.put(field, value.trim());
+            }
+        }
+        return BridgeObjectMapper.get().treeToValue(node, StudyParticipant.class);
+    }
+
+    void runImport(App app, String studyId, List<StudyParticipant> rows, ParticipantImport participantImport) {
+        String appId = app.getIdentifier();
+        try {
+            Map<String, Integer> firstRowByIdentifier = new HashMap<>();
+            for (int start = 0; start < rows.size(); start += batchSize) {
+                int end = Math.min(start + batchSize, rows.size());
+                importBatch(app, studyId, rows.subList(start, end), start, firstRowByIdentifier, participantImport);
+                save(appId, participantImport);
+            }
+            participantImport.setStatus(COMPLETED);
+        } catch (RuntimeException e) {
+            LOG.error("Participant import " + participantImport.getGuid() + " in app " + appId + " failed", e);
+            participantImport.setStatus(FAILED);
+            participantImport.setError(e.getMessage());
+        }
+        participantImport.setFinishedOn(DateUtils.getCurrentDateTime());
+        save(appId, participantImport);
+    }
+
+    private void importBatch(App app, String studyId, List<StudyParticipant> batch, int offset,
+            Map<String, Integer> firstRowByIdentifier, ParticipantImport participantImport) {
+        RequestContext context = RequestContext.get();
+
+        // Rows are numbered from 1. Duplicates within the roster are found here, before any account is built, so
+        // they don't fail the batch insert.
+        ParticipantImportResult[] results = new ParticipantImportResult[batch.size()];
+        List<Future<Account>> futures = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            int row = offset + i + 1;
+            StudyParticipant participant = batch.get(i);
+            String duplicate = findDuplicate(studyId, participant, row, firstRowByIdentifier);
+            if (duplicate != null) {
+                results[i] = ParticipantImportResult.failed(row, duplicate);
+                futures.add(null);
+                continue;
+            }
+            futures.add(importExecutorService.submit(() -> {
+                RequestContext previousContext = RequestContext.get();
+                RequestContext.set(context);
+                try {
+                    return newAccount(app, studyId, participant);
+                } finally {
+                    RequestContext.set(previousContext);
+                }
+            }));
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        List<Integer> accountIndices = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (futures.get(i) == null) {
+                continue;
+            }
+            try {
+                accounts.add(futures.get(i).get());
+                accountIndices.add(i);
+            } catch (ExecutionException e) {
+                results[i] = ParticipantImportResult.failed(offset + i + 1, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Participant import was interrupted", e);
+            }
+        }
+
+        boolean[] created = new boolean[accounts.size()];
+        try {
+            accountService.createAccounts(app, accounts);
+            Arrays.fill(created, true);
+        } catch (RuntimeException e) {
+            // Find out which accounts couldn't be created by creating them one at a time.
+            for (int j = 0; j < accounts.size(); j++) {
+                try {
+                    accountService.createAccount(app, accounts.get(j));
+                    created[j] = true;
+                } catch (RuntimeException accountException) {
+                    int i = accountIndices.get(j);
+                    results[i] = ParticipantImportResult.failed(offset + i + 1, accountException.getMessage());
+                }
+            }
+        }
+        for (int j = 0; j < accounts.size(); j++) {
+            if (created[j]) {
+                int i = accountIndices.get(j);
+                results[i] = ParticipantImportResult.succeeded(offset + i + 1, accounts.get(j).getId());
+                queueNotifications(app, accounts.get(j));
+            }
+        }
+        for (ParticipantImportResult result : results) {
+            participantImport.addResult(result);
+        }
+    }
+
+    /**
+     * Construct the account (with its enrollment in the study) for a row, or throw an exception if the row is not
+     * valid. Only the external ID of this study is used, if the row has external IDs for other studies.
+     */
+    Account newAccount(App app, String studyId, StudyParticipant row) {
+        String externalId = getStudyExternalId(studyId, row);
+        StudyParticipant participant = new StudyParticipant.Builder().copyOf(row).withExternalId(null)
+                .withExternalIds(externalId == null ? ImmutableMap.of() : ImmutableMap.of(studyId, externalId))
+                .build();
+
+        Account account = participantService.newAccount(app, participant, true);
+
+        Enrollment enrollment = Enrollment.create(app.getIdentifier(), studyId, account.getId(), externalId);
+        enrollment.setConsentRequired(true); // enrolled, but not consented.
+        enrollmentService.addEnrollment(account, enrollment, false);
+
+        if (!accountHasValidIdentifier(account)) {
+            throw new BadRequestException(NO_IDENTIFIER_ERROR);
+        }
+        return account;
+    }
+
+    // The row's external ID for this study, if it has one, or else its external ID.
+    private static String getStudyExternalId(String studyId, StudyParticipant row) {
+        return row.getExternalIds().containsKey(studyId) ? row.getExternalIds().get(studyId) : row.getExternalId();
+    }
+
+    private String findDuplicate(String studyId, StudyParticipant participant, int row,
+            Map<String, Integer> firstRowByIdentifier) {
+        Map<String, String> identifiers = new LinkedHashMap<>();
+        if (participant.getEmail() != null) {
+            identifiers.put("email", participant.getEmail().toLowerCase());
+        }
+        if (participant.getPhone() != null) {
+            identifiers.put("phone", participant.getPhone().getNumber());
+        }
+        String externalId = getStudyExternalId(studyId, participant);
+        if (externalId != null) {
+            identifiers.put("external ID", externalId);
+        }
+        if (participant.getSynapseUserId() != null) {
+            identifiers.put("Synapse user ID", participant.getSynapseUserId());
+        }
+        for (Map.Entry<String, String> entry : identifiers.entrySet()) {
+            Integer firstRow = firstRowByIdentifier.get(entry.getKey() + ":" + entry.getValue());
+            if (firstRow != null) {
+                return String.format(DUPLICATE_ERROR, entry.getKey(), firstRow);
+            }
+        }
+        for (Map.Entry<String, String> entry : identifiers.entrySet()) {
+            firstRowByIdentifier.put(entry.getKey() + ":" + entry.getValue(), row);
+        }
+        return null;
+    }
+
+    private void queueNotifications(App app, Account account) {
+        asyncExecutorService.execute(() -> {
+            try {
+                participantService.sendNewAccountNotifications(app, account, true);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not send verification to imported participant " + account.getId(), e);
+            }
+        });
+    }
+
+    private void save(String appId, ParticipantImport participantImport) {
+        cacheProvider.setObject(CacheKey.participantImport(appId, participantImport.getGuid()), participantImport,
+                EXPIRE_IN_SECONDS);
+    }
+}
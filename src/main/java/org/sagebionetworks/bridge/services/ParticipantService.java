@@ -35,8 +35,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -158,7 +156,7 @@ public class ParticipantService {
 
     private BridgeConfig bridgeConfig;
 
-    private AmazonSQSClient sqsClient;
+    private SqsMessageDispatcher sqsMessageDispatcher;
     
     private TemplateService templateService;
     
@@ -246,8 +244,8 @@ public class ParticipantService {
     }
 
     @Autowired
-    final void setSqsClient(AmazonSQSClient sqsClient) {
-        this.sqsClient = sqsClient;
+    final void setSqsMessageDispatcher(SqsMessageDispatcher sqsMessageDispatcher) {
+        this.sqsMessageDispatcher = sqsMessageDispatcher;
     }
     
     @Autowired
@@ -372,6 +370,25 @@ public class ParticipantService {
         return builder.build();
     }
     
+    /**
+     * Build the participant that is stored in a user's session on sign in or reauthentication. This is 
+     * constructed directly from the account; unlike getParticipant(), it does not retrieve the user's request 
+     * info to calculate a consented flag, because the session calculates consent statuses for the current 
+     * request itself. If the account has no languages yet, the supplied languages (usually from the request 
+     * context) are used so the participant does not have to be copied again.
+     */
+    public StudyParticipant getSessionParticipant(Account account, List<String> defaultLanguages) {
+        checkNotNull(account);
+        
+        StudyParticipant.Builder builder = new StudyParticipant.Builder();
+        StudyAssociations assoc = studyAssociationsVisibleToCaller(account);
+        copyAccountToParticipant(builder, assoc, account);
+        if (account.getLanguages().isEmpty() && defaultLanguages != null) {
+            builder.withLanguages(defaultLanguages);
+        }
+        return builder.build();
+    }
+    
     private StudyParticipant.Builder copyAccountToParticipant(StudyParticipant.Builder builder, StudyAssociations assoc,
             Account account) {
         builder.withSharingScope(account.getSharingScope());
@@ -484,6 +501,26 @@ public class ParticipantService {
             throwExceptionIfLimitMetOrExceeded(app);
         }
         
+        Account account = newAccount(app, participant, shouldSendVerification);
+        
+        // BRIDGE-2913: Sign up can include an externalId, which passes validation, but does not add
+        // an external ID because the caller is not an admin, leaving an inaccessible and useless 
+        // account record. We should handle this with validation, but it would break existing
+        // clients that are known to submit an external ID during sign up. So we check again and do 
+        // not save if the account is inaccessible after construction.
+        if (accountHasValidIdentifier(account)) {
+            accountService.createAccount(app, account);    
+        }
+        
+        sendNewAccountNotifications(app, account, shouldSendVerification);
+        return new IdentifierHolder(account.getId());
+    }
+    
+    /**
+     * Validate the participant and construct the account that will be created for it, without persisting it. 
+     * Throws an InvalidEntityException if the participant is not valid.
+     */
+    Account newAccount(App app, StudyParticipant participant, boolean shouldSendVerification) {
         StudyParticipantValidator validator = new StudyParticipantValidator(studyService, organizationService, app,
                 true);
         Validate.entityThrowingException(validator, participant);
@@ -529,17 +566,15 @@ public class ParticipantService {
             account.setPhoneVerified(true); 
         }
         account.setSynapseUserId(participant.getSynapseUserId());
-        
-        // BRIDGE-2913: Sign up can include an externalId, which passes validation, but does not add
-        // an external ID because the caller is not an admin, leaving an inaccessible and useless 
-        // account record. We should handle this with validation, but it would break existing
-        // clients that are known to submit an external ID during sign up. So we check again and do 
-        // not save if the account is inaccessible after construction.
-        if (accountHasValidIdentifier(account)) {
-            accountService.createAccount(app, account);    
-        }
-        
+        return account;
+    }
+    
+    /**
+     * Send the verification messages for a newly created account, and opt its phone number in to SMS.
+     */
+    void sendNewAccountNotifications(App app, Account account, boolean shouldSendVerification) {
         // send verify email
+        boolean sendEmailVerification = shouldSendVerification && app.isEmailVerificationEnabled();
         if (sendEmailVerification && !app.isAutoVerificationEmailSuppressed()) {
             accountWorkflowService.sendEmailVerificationToken(app, account.getId(), account.getEmail());
         }
@@ -557,7 +592,6 @@ public class ParticipantService {
         if (shouldSendVerification && !app.isAutoVerificationPhoneSuppressed()) {
             accountWorkflowService.sendPhoneVerificationToken(app, account.getId(), phone);
         }
-        return new IdentifierHolder(account.getId());
     }
 
     // Provided to override in tests
@@ -982,11 +1016,10 @@ public class ParticipantService {
 
         String requestJson = jsonObjectMapper.writeValueAsString(requestMsg);
 
-        // sent to SQS
+        // sent to SQS. The request contains the password for the roster, so it is never spilled to disk.
         String queueUrl = bridgeConfig.getProperty(CONFIG_KEY_DOWNLOAD_ROSTER_SQS_URL);
-        SendMessageResult sqsResult = sqsClient.sendMessage(queueUrl, requestJson);
-        LOG.info("Sent request to SQS for userId=" + userId + ", app=" + app.getIdentifier() + "; received message ID="
-                + sqsResult.getMessageId());
+        sqsMessageDispatcher.sendSecret(queueUrl, requestJson);
+        LOG.info("Queued request to SQS for userId=" + userId + ", app=" + app.getIdentifier());
     }
     
     private CriteriaContext getCriteriaContextForParticipant(App app, StudyParticipant participant) {
@@ -0,0 +1,150 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
+import org.sagebionetworks.bridge.models.ThrottleRequestType;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
+import org.sagebionetworks.bridge.time.DateUtils;
+
+/**
+ * Enforces the rate limits configured in an app for expensive endpoints. Limits are enforced with a sliding window
+ * counter in Redis (the count in the current fixed window, plus the count in the previous window weighted by how much
+ * of it overlaps the sliding window), which is updated atomically by a Lua script.
+ *
+ * To avoid a Redis call on every request, each server leases a small block of permits at a time and spends them
+ * locally. A caller who is well under the limit will only reach Redis once every block of requests. Unused permits
+ * expire with their window, so leasing errs on the side of throttling a little early rather than late.
+ */
+@Component
+public class RateLimiterService {
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiterService.class);
+
+    static final String RATE_LIMIT_ERROR = "Too many %s requests. Please try again later.";
+
+    /** Each server leases 1/LEASE_DIVISOR of a limit (or at least one permit) from Redis at a time. */
+    static final int LEASE_DIVISOR = 20;
+
+    /**
+     * KEYS[1] is the counter for the current window, KEYS[2] the counter for the previous window. ARGV[1] is the
+     * limit, ARGV[2] the number of permits requested, ARGV[3] the portion of the previous window that still falls
+     * within the sliding window (in thousandths), and ARGV[4] the expiration of the counter in seconds. Returns the
+     * number of permits granted, which is zero when the limit has been reached.
+     */
+    static final String SLIDING_WINDOW_SCRIPT =
+        "local current = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+        "local previous = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+        "local used = current + math.floor(previous * tonumber(ARGV[3]) / 1000) " +
+        "local granted = math.min(tonumber(ARGV[1]) - used, tonumber(ARGV[2])) " +
+        "if granted <= 0 then return 0 end " +
+        "redis.call('INCRBY', KEYS[1], granted) " +
+        "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[4])) " +
+        "return granted";
+
+    // Permits leased from Redis that have not yet been used, by the Redis key of the window they were leased from.
+    private final Cache<String, AtomicInteger> leases = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private JedisPool jedisPool;
+    private AppService appService;
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Autowired
+    final void setAppService(AppService appService) {
+        this.appService = appService;
+    }
+
+    /**
+     * Throws a LimitExceededException (429) if this request exceeds the per-user or per-app rate limit configured
+     * for this type of request in the app. If Redis cannot be reached, the request is allowed.
+     */
+    public void checkRateLimit(String appId, String userId, ThrottleRequestType type) {
+        checkNotNull(appId);
+        checkNotNull(type);
+
+        App app = appService.getApp(appId);
+        RateLimit rateLimit = app.getRateLimits().get(type.name());
+        if (rateLimit == null || rateLimit.getWindowSeconds() < 1) {
+            return;
+        }
+        long now = DateUtils.getCurrentMillisFromEpoch();
+        long windowMillis = rateLimit.getWindowSeconds() * 1000L;
+        long window = now / windowMillis;
+        long previousWeight = 1000L - ((now % windowMillis) * 1000L / windowMillis);
+        // Both windows are needed to calculate the sliding count
+        int expireSeconds = rateLimit.getWindowSeconds() * 2;
+
+        boolean allowed = true;
+        if (userId != null && rateLimit.getPerUserLimit() > 0) {
+            allowed = acquire(CacheKey.userRateLimit(type, userId, window),
+                    CacheKey.userRateLimit(type, userId, window - 1), rateLimit.getPerUserLimit(), previousWeight,
+                    expireSeconds);
+        }
+        if (allowed && rateLimit.getPerAppLimit() > 0) {
+            allowed = acquire(CacheKey.appRateLimit(type, appId, window),
+                    CacheKey.appRateLimit(type, appId, window - 1), rateLimit.getPerAppLimit(), previousWeight,
+                    expireSeconds);
+        }
+        if (!allowed) {
+            long retryAfterMillis = (window + 1) * windowMillis - now;
+            int retryAfterSeconds = (int) Math.max(1L, (retryAfterMillis + 999L) / 1000L);
+            String typeName = type.name().toLowerCase().replace("_", " ");
+            throw new LimitExceededException(String.format(RATE_LIMIT_ERROR, typeName), retryAfterSeconds);
+        }
+    }
+
+    private boolean acquire(CacheKey key, CacheKey previousKey, int limit, long previousWeight, int expireSeconds) {
+        AtomicInteger lease = leases.getIfPresent(key.toString());
+        if (lease != null && lease.getAndDecrement() > 0) {
+            return true;
+        }
+        int leaseSize = Math.max(1, limit / LEASE_DIVISOR);
+        long granted;
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = jedis.eval(SLIDING_WINDOW_SCRIPT,
+                    ImmutableList.of(key.toString(), previousKey.toString()),
+                    ImmutableList.of(Integer.toString(limit), Integer.toString(leaseSize),
+                            Long.toString(previousWeight), Integer.toString(expireSeconds)));
+            granted = (result == null) ? 0L : (Long)result;
+        } catch (JedisException e) {
+            // Failing open: an unavailable limiter should not take the API down with it.
+            LOG.warn("Could not check rate limit " + key + ", allowing request", e);
+            return true;
+        }
+        if (granted <= 0L) {
+            return false;
+        }
+        // This request uses one of the granted permits, and the rest are used locally until exhausted. If another
+        // thread leased permits concurrently, one lease is replaced, which can only throttle early.
+        if (granted > 1L) {
+            leases.put(key.toString(), new AtomicInteger((int)granted - 1));
+        }
+        return true;
+    }
+}
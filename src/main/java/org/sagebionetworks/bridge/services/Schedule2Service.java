@@ -15,15 +15,25 @@ import static org.sagebionetworks.bridge.BridgeConstants.PAGE_SIZE_ERROR;
 import static org.sagebionetworks.bridge.BridgeUtils.formatActivityEventId;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.SCHEDULE_REGION;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TIMELINE_METADATA_BY_APP_CACHE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TIMELINE_METADATA_BY_SCHEDULE_CACHE;
 import static org.sagebionetworks.bridge.models.ResourceList.INCLUDE_DELETED;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
 import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
 import static org.sagebionetworks.bridge.validators.Schedule2Validator.INSTANCE;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +44,7 @@ import org.sagebionetworks.bridge.dao.Schedule2Dao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.PublishedEntityException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEventIdsMap;
 import org.sagebionetworks.bridge.models.schedules2.HasGuid;
@@ -55,12 +66,25 @@ import org.sagebionetworks.bridge.validators.Validate;
 @Component
 public class Schedule2Service {
     
+    /**
+     * Timeline metadata by instance GUID. Records are only changed when their schedule is edited, so they 
+     * are cached in-process and removed when the schedule changes, on this server and (through the 
+     * HibernateCacheInvalidator) on the others. If that message is lost, another server picks up the edit when the 
+     * entries expire. Cached records are copies that are never modified.
+     */
+    final Cache<String, TimelineMetadata> metadataCache = CacheBuilder.newBuilder()
+            .maximumSize(50000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+    
     private OrganizationService organizationService;
     
     private StudyService studyService;
     
     private Schedule2Dao dao;
     
+    private HibernateCacheInvalidator cacheInvalidator;
+    
     @Autowired
     final void setOrganizationService(OrganizationService organizationService) {
         this.organizationService = organizationService;
@@ -76,6 +100,13 @@ public class Schedule2Service {
         this.dao = dao;
     }
     
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+        cacheInvalidator.registerLocalCache(TIMELINE_METADATA_BY_SCHEDULE_CACHE, this::evictTimelineMetadata);
+        cacheInvalidator.registerLocalCache(TIMELINE_METADATA_BY_APP_CACHE, this::evictAppTimelineMetadata);
+    }
+    
     DateTime getCreatedOn() {
         return DateTime.now();
     }
@@ -262,7 +293,10 @@ public class Schedule2Service {
 
         Validate.entityThrowingException(INSTANCE, schedule);
         
-        return dao.updateSchedule(schedule);        
+        Schedule2 updated = dao.updateSchedule(schedule);
+        invalidateTimelineMetadata(schedule.getGuid());
+        cacheInvalidator.invalidate(SCHEDULE_REGION);
+        return updated;
     }
     
     /**
@@ -282,7 +316,10 @@ public class Schedule2Service {
         }
         existing.setPublished(true);
         existing.setModifiedOn(getModifiedOn());
-        return dao.updateSchedule(existing);
+        Schedule2 updated = dao.updateSchedule(existing);
+        invalidateTimelineMetadata(guid);
+        cacheInvalidator.invalidate(SCHEDULE_REGION);
+        return updated;
     }
     
     /**
@@ -300,6 +337,7 @@ public class Schedule2Service {
         }
         CAN_EDIT_SCHEDULES.checkAndThrow(ORG_ID, existing.getOwnerId());
         dao.deleteSchedule(existing);
+        cacheInvalidator.invalidate(SCHEDULE_REGION);
     }
     
     /**
@@ -319,6 +357,8 @@ public class Schedule2Service {
         studyService.removeScheduleFromStudies(appId, guid);
         
         dao.deleteSchedulePermanently(existing);
+        invalidateTimelineMetadata(guid);
+        cacheInvalidator.invalidate(SCHEDULE_REGION);
     }
     
     public Timeline getTimelineForSchedule(String appId, String guid) {
@@ -331,7 +371,58 @@ public class Schedule2Service {
     
     public Optional<TimelineMetadata> getTimelineMetadata(String instanceGuid) {
         checkNotNull(instanceGuid);
-        return dao.getTimelineMetadata(instanceGuid);
+        
+        TimelineMetadata cached = metadataCache.getIfPresent(instanceGuid);
+        if (cached != null) {
+            return Optional.of(TimelineMetadata.copy(cached));
+        }
+        Optional<TimelineMetadata> meta = dao.getTimelineMetadata(instanceGuid);
+        meta.ifPresent(tm -> metadataCache.put(tm.getGuid(), TimelineMetadata.copy(tm)));
+        return meta;
+    }
+    
+    /**
+     * Get the timeline metadata for a set of instance GUIDs, mapped by instance GUID. GUIDs 
+     * that are not cached are retrieved with one query; GUIDs that do not match a record are 
+     * not included in the map.
+     */
+    public Map<String, TimelineMetadata> getTimelineMetadata(Collection<String> instanceGuids) {
+        checkNotNull(instanceGuids);
+        
+        Map<String, TimelineMetadata> results = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String instanceGuid : instanceGuids) {
+            TimelineMetadata cached = metadataCache.getIfPresent(instanceGuid);
+            if (cached != null) {
+                results.put(instanceGuid, TimelineMetadata.copy(cached));
+            } else {
+                misses.add(instanceGuid);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (TimelineMetadata meta : dao.getTimelineMetadata(misses)) {
+                metadataCache.put(meta.getGuid(), TimelineMetadata.copy(meta));
+                results.put(meta.getGuid(), meta);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Remove the cached metadata records of this schedule. This must be called whenever a schedule's 
+     * timeline metadata is rewritten.
+     */
+    void invalidateTimelineMetadata(String scheduleGuid) {
+        evictTimelineMetadata(scheduleGuid);
+        cacheInvalidator.invalidate(TIMELINE_METADATA_BY_SCHEDULE_CACHE, scheduleGuid);
+    }
+    
+    private void evictTimelineMetadata(String scheduleGuid) {
+        metadataCache.asMap().values().removeIf(meta -> scheduleGuid.equals(meta.getScheduleGuid()));
+    }
+    
+    private void evictAppTimelineMetadata(String appId) {
+        metadataCache.asMap().values().removeIf(meta -> appId.equals(meta.getAppId()));
     }
     
     public List<TimelineMetadata> getSessionAssessmentMetadata(String instanceGuid) {
@@ -343,6 +434,9 @@ public class Schedule2Service {
         checkNotNull(appId);
         
         dao.deleteAllSchedules(appId);
+        evictAppTimelineMetadata(appId);
+        cacheInvalidator.invalidate(TIMELINE_METADATA_BY_APP_CACHE, appId);
+        cacheInvalidator.invalidate(SCHEDULE_REGION);
     }
     
     /**
@@ -2,8 +2,6 @@ package org.sagebionetworks.bridge.services;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.Collections;
 import java.util.Properties;
 
 import javax.mail.Message;
@@ -14,40 +12,30 @@ import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 
-import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmail;
 import org.sagebionetworks.bridge.services.email.MimeTypeEmailProvider;
 
-import com.amazonaws.services.simpleemail.model.MessageRejectedException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.amazonaws.AmazonClientException;
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.regions.Region;
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
-import com.amazonaws.services.simpleemail.model.RawMessage;
-import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
-import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
 import com.google.common.base.Charsets;
 
+/**
+ * Renders email and queues it to be sent through SES in the background by the {@link SesEmailDispatcher}. Whether 
+ * the sender is verified is still checked here, so that the caller gets the error.
+ */
 @Component("sendEmailViaAmazonService")
 public class SendMailViaAmazonService implements SendMailService {
 
-    private static final Logger logger = LoggerFactory.getLogger(SendMailViaAmazonService.class);
-    private static final Region REGION = Region.getRegion(Regions.US_EAST_1);
     public static final String UNVERIFIED_EMAIL_ERROR = "Bridge cannot send email until you verify Amazon SES can send using your app's support email address";
 
-    private AmazonSimpleEmailServiceClient emailClient;
+    private SesEmailDispatcher emailDispatcher;
     private EmailVerificationService emailVerificationService;
 
     @Autowired
-    final void setEmailClient(AmazonSimpleEmailServiceClient emailClient) {
-        this.emailClient = emailClient;
+    final void setEmailDispatcher(SesEmailDispatcher emailDispatcher) {
+        this.emailDispatcher = emailDispatcher;
     }
     @Autowired
     final void setEmailVerificationService(EmailVerificationService emailVerificationService) {
@@ -62,24 +50,20 @@ public class SendMailViaAmazonService implements SendMailService {
         }
 
         try {
-            String fullSenderEmail = provider.getMimeTypeEmail().getSenderAddress();
             MimeTypeEmail email = provider.getMimeTypeEmail();
+            String fullSenderEmail = email.getSenderAddress();
+            String appId = provider.getApp().getIdentifier();
             for (String recipient: email.getRecipientAddresses()) {
-                sendEmail(fullSenderEmail, recipient, email, provider.getApp().getIdentifier());
+                byte[] rawMessage = renderRawMessage(fullSenderEmail, recipient, email);
+                emailDispatcher.send(appId, email.getType(), fullSenderEmail, recipient, rawMessage);
             }
-        } catch (MessageRejectedException ex) {
-            // This happens if the sender email is not verified in SES. In general, it's not useful to app users to
-            // receive a 500 Internal Error when this happens. Plus, if this exception gets thrown, the user session
-            // won't be updated properly, and really weird things happen. The best course of option is to log an error
-            // and swallow the exception.
-            logger.error("SES rejected email: " + ex.getMessage(), ex);
-        } catch(MessagingException | AmazonServiceException | IOException e) {
+        } catch(MessagingException | IOException e) {
             throw new BridgeServiceException(e);
         }
     }
 
-    private void sendEmail(String senderEmail, String recipient, MimeTypeEmail email, String appId)
-            throws AmazonClientException, MessagingException, IOException {
+    private byte[] renderRawMessage(String senderEmail, String recipient, MimeTypeEmail email)
+            throws MessagingException, IOException {
         
         Session mailSession = Session.getInstance(new Properties(), null);
         MimeMessage mimeMessage = new MimeMessage(mailSession);
@@ -98,16 +82,7 @@ public class SendMailViaAmazonService implements SendMailService {
         mimeMessage.setContent(mimeMultipart);
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
         mimeMessage.writeTo(byteOutputStream);
-        RawMessage sesRawMessage = new RawMessage(ByteBuffer.wrap(byteOutputStream.toByteArray()));
-
-        SendRawEmailRequest req = new SendRawEmailRequest(sesRawMessage);
-        req.setSource(senderEmail);
-        req.setDestinations(Collections.singleton(recipient));
-        emailClient.setRegion(REGION);
-        SendRawEmailResult result = emailClient.sendRawEmail(req);
-
-        logger.info("Sent email to SES with messageID " + result.getMessageId() + " with type " +
-                        email.getType() + " for app " + appId + " and request " + RequestContext.get().getId());
+        return byteOutputStream.toByteArray();
     }
     
 }
@@ -0,0 +1,396 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.Resource;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import redis.clients.jedis.JedisPool;
+
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor;
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor.PoolMetrics;
+import org.sagebionetworks.bridge.hibernate.ReadReplicaRouter;
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+/**
+ * An in-process registry of server metrics. Request latencies are recorded by the MetricsFilter into a histogram for
+ * each combination of HTTP method, route template, and status class (2xx, 4xx, etc.), so the number of series is
+ * bounded by the number of routes rather than by the URLs that are called. Calls to backing services are recorded
+ * by the BackendCallTracer into a histogram for each DAO method, and the MySQL connection pools are measured by the
+ * ConnectionPoolMonitor. When requested, the histograms are exported along with gauges for the JVM, the connection
+ * pools, the async executor, the Hibernate second-level cache regions, and the SQS message dispatcher, and counts of
+ * the reads routed to the read replica, in the Prometheus text exposition format.
+ */
+@Component
+public class ServerMetricsService {
+
+    /** Route used for requests that were not matched to a controller method (e.g. 404s). */
+    static final String UNMATCHED_ROUTE = "unmatched";
+    static final double[] PERCENTILES = new double[] { 50.0, 90.0, 99.0, 99.9 };
+
+    private static final Joiner KEY_JOINER = Joiner.on(' ');
+    private static final List<String> REQUEST_LABELS = ImmutableList.of("method", "route", "status");
+    private static final List<String> BACKEND_LABELS = ImmutableList.of("backend", "operation");
+    private static final List<String> POOL_LABELS = ImmutableList.of("pool");
+
+    private final ConcurrentMap<List<String>, LatencyHistogram> requestHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<List<String>, LatencyHistogram> backendHistograms = new ConcurrentHashMap<>();
+
+    private JedisPool jedisPool;
+    private ExecutorService asyncExecutorService;
+    private SessionFactory sessionFactory;
+    private ReadReplicaRouter readReplicaRouter;
+    private ConnectionPoolMonitor connectionPoolMonitor;
+    private SqsMessageDispatcher sqsMessageDispatcher;
+    private SesEmailDispatcher sesEmailDispatcher;
+
+    @Resource(name = "jedisPool")
+    final void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Resource(name = "asyncExecutorService")
+    final void setAsyncExecutorService(ExecutorService asyncExecutorService) {
+        this.asyncExecutorService = asyncExecutorService;
+    }
+
+    @Autowired
+    final void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Autowired
+    final void setReadReplicaRouter(ReadReplicaRouter readReplicaRouter) {
+        this.readReplicaRouter = readReplicaRouter;
+    }
+
+    @Autowired
+    final void setConnectionPoolMonitor(ConnectionPoolMonitor connectionPoolMonitor) {
+        this.connectionPoolMonitor = connectionPoolMonitor;
+    }
+
+    @Autowired
+    final void setSqsMessageDispatcher(SqsMessageDispatcher sqsMessageDispatcher) {
+        this.sqsMessageDispatcher = sqsMessageDispatcher;
+    }
+
+    @Autowired
+    final void setSesEmailDispatcher(SesEmailDispatcher sesEmailDispatcher) {
+        this.sesEmailDispatcher = sesEmailDispatcher;
+    }
+
+    /**
+     * Record the latency of a request. The route should be the request mapping pattern that matched the request (for
+     * example "/v5/studies/{studyId}"), not the request URI; null is recorded as an unmatched route.
+     */
+    public void recordRequest(String method, String route, int status, long elapsedMillis) {
+        checkNotNull(method);
+
+        List<String> key = ImmutableList.of(method, (route == null) ? UNMATCHED_ROUTE : route,
+                (status / 100) + "xx");
+        requestHistograms.computeIfAbsent(key, k -> new LatencyHistogram()).record(elapsedMillis);
+    }
+
+    /**
+     * Record the latency of a call to a backing service (MySQL, DynamoDB, Redis, S3). The operation should identify
+     * the code that was called, e.g. "HibernateAccountDao.getAccount".
+     */
+    public void recordBackendCall(String backend, String operation, long elapsedMillis) {
+        checkNotNull(backend);
+        checkNotNull(operation);
+
+        backendHistograms.computeIfAbsent(ImmutableList.of(backend, operation), k -> new LatencyHistogram())
+                .record(elapsedMillis);
+    }
+
+    /** The histogram for calls to this backend operation, or null if none. */
+    public LatencyHistogram getBackendHistogram(String backend, String operation) {
+        return backendHistograms.get(ImmutableList.of(backend, operation));
+    }
+
+    /** The histogram for requests with this method, route, and status class (e.g. "2xx"), or null if none. */
+    public LatencyHistogram getRequestHistogram(String method, String route, String statusClass) {
+        return requestHistograms.get(ImmutableList.of(method, route, statusClass));
+    }
+
+    /** All metrics in the Prometheus text exposition format (version 0.0.4). */
+    public String getPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+        writeHistograms(sb, "bridge_http_request_duration_seconds", "Latency of requests by route.",
+                requestHistograms, REQUEST_LABELS);
+        writeHistograms(sb, "bridge_backend_call_duration_seconds", "Latency of calls to backing services.",
+                backendHistograms, BACKEND_LABELS);
+        writeJvmMetrics(sb);
+        writePoolMetrics(sb);
+        writeCacheMetrics(sb);
+        writeReadRoutingMetrics(sb);
+        writeSqsMetrics(sb);
+        writeEmailMetrics(sb);
+        return sb.toString();
+    }
+
+    private void writeHistograms(StringBuilder sb, String name, String help,
+            ConcurrentMap<List<String>, LatencyHistogram> histograms, List<String> labelNames) {
+        // Sort the series so the output is stable from one scrape to the next.
+        SortedMap<String, List<String>> keys = new TreeMap<>();
+        for (List<String> key : histograms.keySet()) {
+            keys.put(KEY_JOINER.join(key), key);
+        }
+        header(sb, name, "histogram", help);
+        for (List<String> key : keys.values()) {
+            LatencyHistogram histogram = histograms.get(key);
+            String labels = labels(labelNames, key);
+            for (int i=0; i < LatencyHistogram.BUCKET_BOUNDS.length; i++) {
+                sample(sb, name + "_bucket", labels + ",le=\"" + seconds(LatencyHistogram.BUCKET_BOUNDS[i]) + "\"",
+                        Long.toString(histogram.getCumulativeBucketCount(i)));
+            }
+            sample(sb, name + "_bucket", labels + ",le=\"+Inf\"", Long.toString(histogram.getCount()));
+            sample(sb, name + "_sum", labels, seconds(histogram.getSum()));
+            sample(sb, name + "_count", labels, Long.toString(histogram.getCount()));
+        }
+        String percentileName = name.replace("_seconds", "_percentile_seconds");
+        header(sb, percentileName, "gauge", "Percentiles since the server started. " + help);
+        for (List<String> key : keys.values()) {
+            LatencyHistogram histogram = histograms.get(key);
+            String labels = labels(labelNames, key);
+            for (double percentile : PERCENTILES) {
+                sample(sb, percentileName, labels + ",percentile=\"" + percentile + "\"",
+                        seconds(histogram.getValueAtPercentile(percentile)));
+            }
+            sample(sb, percentileName, labels + ",percentile=\"100.0\"", seconds(histogram.getMax()));
+        }
+    }
+
+    private void writeJvmMetrics(StringBuilder sb) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        gauge(sb, "bridge_jvm_heap_used_bytes", "Heap memory in use.", heap.getUsed());
+        gauge(sb, "bridge_jvm_heap_max_bytes", "Maximum heap memory.", heap.getMax());
+        gauge(sb, "bridge_jvm_threads", "Live threads.", ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private void writePoolMetrics(StringBuilder sb) {
+        if (jedisPool != null) {
+            gauge(sb, "bridge_redis_pool_active", "Redis connections in use.", jedisPool.getNumActive());
+            gauge(sb, "bridge_redis_pool_idle", "Idle Redis connections.", jedisPool.getNumIdle());
+            gauge(sb, "bridge_redis_pool_waiters", "Threads waiting for a Redis connection.",
+                    jedisPool.getNumWaiters());
+        }
+        if (asyncExecutorService instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor)asyncExecutorService;
+            gauge(sb, "bridge_async_executor_active", "Async tasks executing.", executor.getActiveCount());
+            gauge(sb, "bridge_async_executor_queued", "Async tasks waiting to execute.",
+                    executor.getQueue().size());
+            gauge(sb, "bridge_async_executor_pool_size", "Async executor threads.", executor.getPoolSize());
+        }
+        if (connectionPoolMonitor != null) {
+            writeDbPoolMetrics(sb, connectionPoolMonitor.getPools());
+        }
+    }
+
+    private void writeDbPoolMetrics(StringBuilder sb, Map<String, PoolMetrics> pools) {
+        if (pools.isEmpty()) {
+            return;
+        }
+        String[] names = new String[] { "bridge_db_pool_max", "bridge_db_pool_active", "bridge_db_pool_idle",
+                "bridge_db_pool_pending" };
+        String[] help = new String[] { "Maximum database connections.", "Database connections in use.",
+                "Idle database connections.", "Threads waiting for a database connection." };
+        for (int i=0; i < names.length; i++) {
+            header(sb, names[i], "gauge", help[i]);
+            for (Map.Entry<String, PoolMetrics> entry : pools.entrySet()) {
+                PoolStats stats = entry.getValue().getStats();
+                int[] values = new int[] { stats.getMaxConnections(), stats.getActiveConnections(),
+                        stats.getIdleConnections(), stats.getPendingThreads() };
+                sample(sb, names[i], "pool=\"" + escape(entry.getKey()) + "\"", Integer.toString(values[i]));
+            }
+        }
+        header(sb, "bridge_db_pool_timeouts_total", "counter", "Requests for a database connection that timed out.");
+        for (Map.Entry<String, PoolMetrics> entry : pools.entrySet()) {
+            sample(sb, "bridge_db_pool_timeouts_total", "pool=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getTimeoutCount()));
+        }
+        header(sb, "bridge_db_pool_leaks_total", "counter", "Database connections held for longer than the leak "
+                + "detection threshold.");
+        for (Map.Entry<String, PoolMetrics> entry : pools.entrySet()) {
+            sample(sb, "bridge_db_pool_leaks_total", "pool=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getLeakCount()));
+        }
+        ConcurrentMap<List<String>, LatencyHistogram> acquisitions = new ConcurrentHashMap<>();
+        ConcurrentMap<List<String>, LatencyHistogram> usages = new ConcurrentHashMap<>();
+        for (Map.Entry<String, PoolMetrics> entry : pools.entrySet()) {
+            acquisitions.put(ImmutableList.of(entry.getKey()), entry.getValue().getAcquisitionHistogram());
+            usages.put(ImmutableList.of(entry.getKey()), entry.getValue().getUsageHistogram());
+        }
+        writeHistograms(sb, "bridge_db_pool_acquire_duration_seconds", "Time spent waiting for a database "
+                + "connection.", acquisitions, POOL_LABELS);
+        writeHistograms(sb, "bridge_db_pool_usage_duration_seconds", "Time database connections were held.",
+                usages, POOL_LABELS);
+    }
+
+    private void writeCacheMetrics(StringBuilder sb) {
+        if (sessionFactory == null) {
+            return;
+        }
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        SortedMap<String, CacheRegionStatistics> regions = new TreeMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(regionName);
+            if (regionStats != null) {
+                regions.put(regionName, regionStats);
+            }
+        }
+        if (regions.isEmpty()) {
+            return;
+        }
+        header(sb, "bridge_hibernate_cache_hits_total", "counter", "Hibernate second-level cache hits.");
+        for (Map.Entry<String, CacheRegionStatistics> entry : regions.entrySet()) {
+            sample(sb, "bridge_hibernate_cache_hits_total", "region=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getHitCount()));
+        }
+        header(sb, "bridge_hibernate_cache_misses_total", "counter", "Hibernate second-level cache misses.");
+        for (Map.Entry<String, CacheRegionStatistics> entry : regions.entrySet()) {
+            sample(sb, "bridge_hibernate_cache_misses_total", "region=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getMissCount()));
+        }
+        header(sb, "bridge_hibernate_cache_hit_ratio", "gauge", "Hibernate second-level cache hit ratio since the "
+                + "server started.");
+        for (Map.Entry<String, CacheRegionStatistics> entry : regions.entrySet()) {
+            long hits = entry.getValue().getHitCount();
+            long lookups = hits + entry.getValue().getMissCount();
+            sample(sb, "bridge_hibernate_cache_hit_ratio", "region=\"" + escape(entry.getKey()) + "\"",
+                    Double.toString((lookups == 0) ? 0.0 : (double) hits / lookups));
+        }
+    }
+
+    private void writeReadRoutingMetrics(StringBuilder sb) {
+        if (readReplicaRouter == null || !readReplicaRouter.isReplicaConfigured()) {
+            return;
+        }
+        header(sb, "bridge_db_read_routing_total", "counter", "Reads that could be made on the read replica, by "
+                + "where they were sent and why.");
+        for (ReadReplicaRouter.Route route : ReadReplicaRouter.Route.values()) {
+            sample(sb, "bridge_db_read_routing_total", "route=\"" + route.name().toLowerCase() + "\"",
+                    Long.toString(readReplicaRouter.getRouteCount(route)));
+        }
+    }
+
+    private void writeSqsMetrics(StringBuilder sb) {
+        if (sqsMessageDispatcher == null) {
+            return;
+        }
+        gauge(sb, "bridge_sqs_dispatch_queue_depth", "SQS messages waiting to be sent.",
+                sqsMessageDispatcher.getQueueDepth());
+        header(sb, "bridge_sqs_dispatch_batches_total", "counter", "SendMessageBatch calls made to SQS.");
+        sb.append("bridge_sqs_dispatch_batches_total ").append(sqsMessageDispatcher.getBatchCount()).append('\n');
+        header(sb, "bridge_sqs_dispatch_messages_total", "counter", "Messages accepted by SQS.");
+        sb.append("bridge_sqs_dispatch_messages_total ").append(sqsMessageDispatcher.getSentCount()).append('\n');
+        header(sb, "bridge_sqs_dispatch_spilled_total", "counter", "Messages SQS did not accept, which were "
+                + "written to the spill file to be resent.");
+        sb.append("bridge_sqs_dispatch_spilled_total ").append(sqsMessageDispatcher.getSpilledCount()).append('\n');
+        header(sb, "bridge_sqs_dispatch_dropped_total", "counter", "Messages that were dropped because they were "
+                + "too large, were rejected by SQS, or failed too many times.");
+        sb.append("bridge_sqs_dispatch_dropped_total ").append(sqsMessageDispatcher.getDroppedCount()).append('\n');
+        header(sb, "bridge_sqs_dispatch_batch_fill_ratio", "gauge", "Average messages per SendMessageBatch call, "
+                + "as a fraction of the 10 allowed, since the server started.");
+        sb.append("bridge_sqs_dispatch_batch_fill_ratio ").append(sqsMessageDispatcher.getBatchFillRatio())
+                .append('\n');
+    }
+
+    private void writeEmailMetrics(StringBuilder sb) {
+        if (sesEmailDispatcher == null) {
+            return;
+        }
+        gauge(sb, "bridge_ses_dispatch_queue_depth", "Email waiting to be sent through SES, including retries.",
+                sesEmailDispatcher.getQueueDepth());
+        gauge(sb, "bridge_ses_dispatch_queued_bytes", "Total size of the email waiting to be sent through SES.",
+                sesEmailDispatcher.getQueuedBytes());
+        SortedMap<String, SesEmailDispatcher.AppEmailMetrics> apps = new TreeMap<>(sesEmailDispatcher.getAppMetrics());
+        if (apps.isEmpty()) {
+            return;
+        }
+        header(sb, "bridge_ses_dispatch_queued_total", "counter", "Email queued to be sent, one per recipient.");
+        for (Map.Entry<String, SesEmailDispatcher.AppEmailMetrics> entry : apps.entrySet()) {
+            sample(sb, "bridge_ses_dispatch_queued_total", "app=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getQueuedCount()));
+        }
+        header(sb, "bridge_ses_dispatch_sent_total", "counter", "Email accepted by SES.");
+        for (Map.Entry<String, SesEmailDispatcher.AppEmailMetrics> entry : apps.entrySet()) {
+            sample(sb, "bridge_ses_dispatch_sent_total", "app=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getSentCount()));
+        }
+        header(sb, "bridge_ses_dispatch_retried_total", "counter", "Attempts to send email that failed and were "
+                + "retried.");
+        for (Map.Entry<String, SesEmailDispatcher.AppEmailMetrics> entry : apps.entrySet()) {
+            sample(sb, "bridge_ses_dispatch_retried_total", "app=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getRetriedCount()));
+        }
+        header(sb, "bridge_ses_dispatch_failed_total", "counter", "Email that was not sent, because SES "
+                + "rejected it, it expired, or it failed too many times.");
+        for (Map.Entry<String, SesEmailDispatcher.AppEmailMetrics> entry : apps.entrySet()) {
+            sample(sb, "bridge_ses_dispatch_failed_total", "app=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getFailedCount()));
+        }
+        header(sb, "bridge_ses_dispatch_spilled_total", "counter", "Email written to the spill file to be sent "
+                + "later.");
+        for (Map.Entry<String, SesEmailDispatcher.AppEmailMetrics> entry : apps.entrySet()) {
+            sample(sb, "bridge_ses_dispatch_spilled_total", "app=\"" + escape(entry.getKey()) + "\"",
+                    Long.toString(entry.getValue().getSpilledCount()));
+        }
+    }
+
+    private static String labels(List<String> labelNames, List<String> labelValues) {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i < labelNames.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labelNames.get(i)).append("=\"").append(escape(labelValues.get(i))).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "gauge", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, String value) {
+        sb.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String seconds(long millis) {
+        return Double.toString(millis / 1000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
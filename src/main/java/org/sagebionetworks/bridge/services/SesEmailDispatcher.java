@@ -0,0 +1,531 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
+import com.amazonaws.services.simpleemail.model.MessageRejectedException;
+import com.amazonaws.services.simpleemail.model.RawMessage;
+import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
+import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+import org.sagebionetworks.bridge.services.email.EmailType;
+
+/**
+ * Sends email through SES in the background, so that requests don't wait on SES, and SES latency spikes or
+ * throttling don't become errors for users. Request threads render each message and queue it, and a small pool of
+ * worker threads sends the queued messages no faster than the SES send rate (a token bucket shared by the workers).
+ * Messages that SES throttles or fails to accept for a transient reason are retried with exponential backoff. New
+ * messages that don't fit in the in-memory queue (which is limited by both message count and total size), and
+ * messages still failing after the last attempt, are appended to a spill file that only the server can read. They
+ * are queued again when the dispatcher is idle (no sooner than a minute after the last failure) or when the server
+ * restarts, until they have been tried {@link #MAX_TOTAL_ATTEMPTS} times. Sign-in, password reset and verification
+ * email contain links that expire, so they are never spilled. If one doesn't fit in the queue, it is sent on the
+ * caller's thread, and if SES doesn't accept it then, the request fails with a 503 so the client can try again. If
+ * one is queued but still fails after the last retry, it is dropped. Counts of queued, sent, retried, failed and
+ * spilled messages are kept for each app.
+ */
+@Component
+public class SesEmailDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(SesEmailDispatcher.class);
+
+    static final String CAPACITY_PROPERTY = "ses.dispatcher.capacity";
+    static final String MAX_MEGABYTES_PROPERTY = "ses.dispatcher.max_megabytes";
+    static final String THREAD_COUNT_PROPERTY = "ses.dispatcher.thread.count";
+    static final String SEND_RATE_PROPERTY = "ses.dispatcher.send_rate";
+    static final String SPILL_DIR_PROPERTY = "ses.dispatcher.spill.dir";
+    static final String SPILL_FILE_NAME = "ses-spill.jsonl";
+    /** The most times a message is sent to SES before it is spilled. */
+    static final int MAX_ATTEMPTS = 5;
+    /** The most times a message is sent to SES, across all the times it is spilled and resent, before it is dropped. */
+    static final int MAX_TOTAL_ATTEMPTS = 4 * MAX_ATTEMPTS;
+    /** Email with links that expire long before a spilled message would be resent. */
+    static final Set<EmailType> TIME_LIMITED_TYPES = Sets.immutableEnumSet(EmailType.EMAIL_SIGN_IN,
+            EmailType.RESET_PASSWORD, EmailType.VERIFY_EMAIL, EmailType.VERIFY_CONSENT_EMAIL);
+    static final long INITIAL_BACKOFF_MILLIS = 1000L;
+    static final long MAX_BACKOFF_MILLIS = 60000L;
+    static final long POLL_TIMEOUT_MILLIS = 1000L;
+    static final long SPILL_RETRY_DELAY_MILLIS = 60000L;
+    static final long SHUTDOWN_TIMEOUT_MILLIS = 10000L;
+    private static final String THROTTLING_ERROR_CODE = "Throttling";
+
+    /** A message for one recipient, rendered as raw MIME, waiting to be sent. */
+    static final class Email implements Delayed {
+        private final String appId;
+        private final EmailType type;
+        private final String sender;
+        private final String recipient;
+        private final byte[] rawMessage;
+        private final String requestId;
+        private final int totalAttempts;
+        private final int attempts;
+        private final long readyAtMillis;
+
+        @JsonCreator
+        Email(@JsonProperty("appId") String appId, @JsonProperty("type") EmailType type,
+                @JsonProperty("sender") String sender, @JsonProperty("recipient") String recipient,
+                @JsonProperty("rawMessage") byte[] rawMessage, @JsonProperty("requestId") String requestId,
+                @JsonProperty("totalAttempts") int totalAttempts) {
+            this(appId, type, sender, recipient, rawMessage, requestId, totalAttempts, 0, 0L);
+        }
+        private Email(String appId, EmailType type, String sender, String recipient, byte[] rawMessage,
+                String requestId, int totalAttempts, int attempts, long readyAtMillis) {
+            this.appId = appId;
+            this.type = type;
+            this.sender = sender;
+            this.recipient = recipient;
+            this.rawMessage = rawMessage;
+            this.requestId = requestId;
+            this.totalAttempts = totalAttempts;
+            this.attempts = attempts;
+            this.readyAtMillis = readyAtMillis;
+        }
+        /** A copy of this message to send again once the given time has passed. */
+        Email retryAt(int attempts, long readyAtMillis) {
+            return new Email(appId, type, sender, recipient, rawMessage, requestId, totalAttempts, attempts,
+                    readyAtMillis);
+        }
+        /** A copy of this message after a failed attempt to send it. */
+        Email failedAttempt() {
+            return new Email(appId, type, sender, recipient, rawMessage, requestId, totalAttempts + 1, attempts,
+                    readyAtMillis);
+        }
+        public String getAppId() {
+            return appId;
+        }
+        public EmailType getType() {
+            return type;
+        }
+        public String getSender() {
+            return sender;
+        }
+        public String getRecipient() {
+            return recipient;
+        }
+        public byte[] getRawMessage() {
+            return rawMessage;
+        }
+        public String getRequestId() {
+            return requestId;
+        }
+        /** Attempts to send this message, including those made before it was last spilled. */
+        public int getTotalAttempts() {
+            return totalAttempts;
+        }
+        /** Attempts to send this message since it was last queued. */
+        @JsonIgnore
+        public int getAttempts() {
+            return attempts;
+        }
+        @JsonIgnore
+        boolean isTimeLimited() {
+            return TIME_LIMITED_TYPES.contains(type);
+        }
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAtMillis - System.currentTimeMillis(), MILLISECONDS);
+        }
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAtMillis, ((Email)other).readyAtMillis);
+        }
+    }
+
+    /** Counts of the email sent for one app since the server started. */
+    public static class AppEmailMetrics {
+        private final AtomicLong queuedCount = new AtomicLong();
+        private final AtomicLong sentCount = new AtomicLong();
+        private final AtomicLong retriedCount = new AtomicLong();
+        private final AtomicLong failedCount = new AtomicLong();
+        private final AtomicLong spilledCount = new AtomicLong();
+
+        /** Messages queued to be sent (one per recipient). */
+        public long getQueuedCount() {
+            return queuedCount.get();
+        }
+        /** Messages accepted by SES. */
+        public long getSentCount() {
+            return sentCount.get();
+        }
+        /** Attempts to send that failed and were retried. */
+        public long getRetriedCount() {
+            return retriedCount.get();
+        }
+        /**
+         * Messages that were not sent: SES rejected them, they expire before they could be resent, or they failed
+         * too many times.
+         */
+        public long getFailedCount() {
+            return failedCount.get();
+        }
+        /** Messages written to the spill file to be sent later. */
+        public long getSpilledCount() {
+            return spilledCount.get();
+        }
+    }
+
+    private final ConcurrentMap<String, AppEmailMetrics> appMetrics = new ConcurrentHashMap<>();
+    private final DelayQueue<Email> queue = new DelayQueue<>();
+    // The messages and bytes in the queue. Space is reserved in these before a message is added to the queue.
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private AmazonSimpleEmailServiceClient emailClient;
+    private int capacity;
+    private long maxBytes;
+    private int threadCount;
+    private RateLimiter rateLimiter;
+    private File spillFile;
+    private volatile boolean running;
+    private volatile boolean stopped;
+    private volatile long lastFailureMillis;
+
+    @Autowired
+    final void setEmailClient(AmazonSimpleEmailServiceClient emailClient) {
+        this.emailClient = emailClient;
+    }
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.capacity = config.getInt(CAPACITY_PROPERTY);
+        this.maxBytes = config.getInt(MAX_MEGABYTES_PROPERTY) * 1024L * 1024L;
+        this.threadCount = config.getInt(THREAD_COUNT_PROPERTY);
+        this.rateLimiter = RateLimiter.create(config.getInt(SEND_RATE_PROPERTY));
+        this.spillFile = new File(SpillFiles.directory(config.getProperty(SPILL_DIR_PROPERTY)), SPILL_FILE_NAME);
+    }
+
+    @PostConstruct
+    public void start() {
+        SpillFiles.checkWritable(spillFile.getParentFile());
+        // Queue anything that could not be sent before the server last stopped.
+        resendSpilledEmails();
+
+        running = true;
+        for (int i=0; i < threadCount; i++) {
+            Thread worker = new Thread(this::workLoop, "ses-email-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /** Send the messages that are ready to be sent, and spill the rest (including any waiting to be retried). */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        stopped = true;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1L, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<Email> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        queuedCount.set(0L);
+        queuedBytes.set(0L);
+        spillOrDrop(remaining);
+    }
+
+    /**
+     * Queue a message, already rendered as raw MIME for this one recipient, to be sent through SES. If the queue is
+     * full, a message with a link that expires is sent now, and this throws a ServiceUnavailableException if SES does
+     * not accept it.
+     */
+    public void send(String appId, EmailType type, String sender, String recipient, byte[] rawMessage) {
+        checkNotNull(appId);
+        checkNotNull(sender);
+        checkNotNull(recipient);
+        checkNotNull(rawMessage);
+
+        Email email = new Email(appId, type, sender, recipient, rawMessage, RequestContext.get().getId(), 0);
+        metricsFor(appId).queuedCount.incrementAndGet();
+        if (!stopped && tryEnqueue(email)) {
+            return;
+        }
+        // The queue is full (or the dispatcher has stopped). The link in a time-limited message would expire before
+        // a spilled message is resent, so it is sent now; anything else waits on disk.
+        if (email.isTimeLimited()) {
+            sendNow(email);
+        } else {
+            spillOrDrop(ImmutableList.of(email));
+        }
+    }
+
+    /** The number of messages waiting to be sent, including those waiting to be retried. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** The total size of the messages waiting to be sent, in bytes. */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /** Counts of the email sent for each app since the server started, by app ID. */
+    public Map<String, AppEmailMetrics> getAppMetrics() {
+        return Collections.unmodifiableMap(appMetrics);
+    }
+
+    private AppEmailMetrics metricsFor(String appId) {
+        return appMetrics.computeIfAbsent(appId, k -> new AppEmailMetrics());
+    }
+
+    /** Add the message to the queue if there is room for it, within both the count and size limits. */
+    private boolean tryEnqueue(Email email) {
+        if (!tryReserve(queuedCount, 1L, capacity)) {
+            return false;
+        }
+        if (!tryReserve(queuedBytes, email.getRawMessage().length, maxBytes)) {
+            queuedCount.decrementAndGet();
+            return false;
+        }
+        queue.add(email);
+        return true;
+    }
+
+    // Compare-and-set, so that threads queueing messages at the same time can't together go over the limit.
+    private static boolean tryReserve(AtomicLong counter, long amount, long limit) {
+        long current;
+        do {
+            current = counter.get();
+            if (current + amount > limit) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current + amount));
+        return true;
+    }
+
+    /** Add the message to the queue regardless of the limits. */
+    private void enqueue(Email email) {
+        queuedCount.incrementAndGet();
+        queuedBytes.addAndGet(email.getRawMessage().length);
+        queue.add(email);
+    }
+
+    private Email dequeued(Email email) {
+        if (email != null) {
+            queuedCount.decrementAndGet();
+            queuedBytes.addAndGet(-email.getRawMessage().length);
+        }
+        return email;
+    }
+
+    private void workLoop() {
+        while (true) {
+            try {
+                // Once stopped, send what is ready and then exit; stop() spills anything else.
+                Email email = dequeued(running ? queue.poll(POLL_TIMEOUT_MILLIS, MILLISECONDS) : queue.poll());
+                if (email == null) {
+                    if (!running) {
+                        return;
+                    }
+                    if (queue.isEmpty() && System.currentTimeMillis() - lastFailureMillis > SPILL_RETRY_DELAY_MILLIS) {
+                        resendSpilledEmails();
+                    }
+                    continue;
+                }
+                deliver(email);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Error sending queued email", e);
+            }
+        }
+    }
+
+    /** Send all the messages that are ready to be sent (the worker threads do this continuously). */
+    void dispatchQueued() {
+        Email email;
+        while ((email = dequeued(queue.poll())) != null) {
+            deliver(email);
+        }
+    }
+
+    private void deliver(Email email) {
+        rateLimiter.acquire();
+
+        AppEmailMetrics metrics = metricsFor(email.getAppId());
+        try {
+            sendRawEmail(email, metrics);
+        } catch (MessageRejectedException e) {
+            // This happens if the sender email is not verified in SES. Sending it again won't help.
+            LOG.error("SES rejected email for app " + email.getAppId() + ": " + e.getMessage(), e);
+            metrics.failedCount.incrementAndGet();
+        } catch (AmazonServiceException e) {
+            if (e.getErrorType() == ErrorType.Client && !THROTTLING_ERROR_CODE.equals(e.getErrorCode())) {
+                LOG.error("SES did not accept email for app " + email.getAppId() + ": " + e.getMessage(), e);
+                metrics.failedCount.incrementAndGet();
+            } else {
+                retry(email, metrics, e);
+            }
+        } catch (AmazonClientException e) {
+            retry(email, metrics, e);
+        }
+    }
+
+    /** Send the message on the calling thread, with no retries. */
+    private void sendNow(Email email) {
+        AppEmailMetrics metrics = metricsFor(email.getAppId());
+        try {
+            sendRawEmail(email, metrics);
+        } catch (MessageRejectedException e) {
+            // As for queued messages, this is logged rather than returned to the user.
+            LOG.error("SES rejected email for app " + email.getAppId() + ": " + e.getMessage(), e);
+            metrics.failedCount.incrementAndGet();
+        } catch (AmazonClientException e) {
+            LOG.error("Could not send " + email.getType() + " email to SES for app " + email.getAppId()
+                    + " and request " + email.getRequestId() + " while the queue is full", e);
+            metrics.failedCount.incrementAndGet();
+            throw new ServiceUnavailableException(e);
+        }
+    }
+
+    private void sendRawEmail(Email email, AppEmailMetrics metrics) {
+        SendRawEmailRequest request = new SendRawEmailRequest(new RawMessage(ByteBuffer.wrap(email.getRawMessage())))
+                .withSource(email.getSender()).withDestinations(email.getRecipient());
+        SendRawEmailResult result = emailClient.sendRawEmail(request);
+        metrics.sentCount.incrementAndGet();
+        LOG.info("Sent email to SES with messageID " + result.getMessageId() + " with type " + email.getType()
+                + " for app " + email.getAppId() + " and request " + email.getRequestId());
+    }
+
+    private void retry(Email email, AppEmailMetrics metrics, AmazonClientException e) {
+        lastFailureMillis = System.currentTimeMillis();
+        email = email.failedAttempt();
+        int attempts = email.getAttempts() + 1;
+        if (attempts >= MAX_ATTEMPTS || email.getTotalAttempts() >= MAX_TOTAL_ATTEMPTS) {
+            LOG.error("Could not send email to SES after " + attempts + " attempts for app " + email.getAppId(), e);
+            spillOrDrop(ImmutableList.of(email));
+            return;
+        }
+        long backoffMillis = getBackoffMillis(attempts);
+        LOG.warn("Could not send email to SES for app " + email.getAppId() + ", retrying in " + backoffMillis
+                + " ms: " + e.getMessage());
+        metrics.retriedCount.incrementAndGet();
+        // A message being retried was already counted against the queue's limits, so it always goes back in.
+        enqueue(email.retryAt(attempts, System.currentTimeMillis() + backoffMillis));
+    }
+
+    /** The time to wait before sending a message again, after this many failed attempts. */
+    long getBackoffMillis(int attempts) {
+        return Math.min(INITIAL_BACKOFF_MILLIS << Math.min(attempts - 1, 16), MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Keep these messages in the spill file to send later, except for messages with links that will have expired by
+     * then, and messages that have already been tried too many times. Those are dropped.
+     */
+    private void spillOrDrop(List<Email> emails) {
+        List<Email> spilled = new ArrayList<>(emails.size());
+        for (Email email : emails) {
+            if (email.isTimeLimited()) {
+                drop(email, "it expires before it could be resent");
+            } else if (email.getTotalAttempts() >= MAX_TOTAL_ATTEMPTS) {
+                drop(email, "it failed " + email.getTotalAttempts() + " times");
+            } else {
+                spilled.add(email);
+            }
+        }
+        spill(spilled);
+    }
+
+    private void drop(Email email, String reason) {
+        // The messages aren't logged because they contain sign-in links.
+        LOG.error("Dropped " + email.getType() + " email for app " + email.getAppId() + " and request "
+                + email.getRequestId() + " because " + reason);
+        metricsFor(email.getAppId()).failedCount.incrementAndGet();
+    }
+
+    private synchronized void spill(List<Email> emails) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = SpillFiles.openForAppend(spillFile)) {
+            for (Email email : emails) {
+                writer.write(BridgeObjectMapper.get().writeValueAsString(email));
+                writer.newLine();
+                metricsFor(email.getAppId()).spilledCount.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // There's nowhere left to keep these. The messages aren't logged because they contain sign-in links.
+            for (Email email : emails) {
+                LOG.error("Lost " + email.getType() + " email for app " + email.getAppId() + " and request "
+                        + email.getRequestId(), e);
+            }
+        }
+    }
+
+    /**
+     * Queue the messages in the spill file to be sent again, each with a new set of attempts (up to the total allowed),
+     * and remove the file. Messages that don't fit in the queue are kept in the spill file.
+     */
+    synchronized void resendSpilledEmails() {
+        if (!spillFile.exists()) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(spillFile.toPath(), UTF_8);
+            Files.delete(spillFile.toPath());
+        } catch (IOException e) {
+            LOG.error("Could not read SES spill file " + spillFile, e);
+            return;
+        }
+        LOG.info("Resending " + lines.size() + " spilled emails");
+        List<Email> overflow = new ArrayList<>();
+        for (String line : lines) {
+            try {
+                Email email = BridgeObjectMapper.get().readValue(line, Email.class);
+                if (email.isTimeLimited() || !tryEnqueue(email)) {
+                    overflow.add(email);
+                }
+            } catch (IOException e) {
+                LOG.error("Could not read spilled email", e);
+            }
+        }
+        spillOrDrop(overflow);
+    }
+}
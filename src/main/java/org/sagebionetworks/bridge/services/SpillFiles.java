@@ -0,0 +1,82 @@
+package org.sagebionetworks.bridge.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * The background dispatchers keep messages they could not send in a spill file until they can be resent. These
+ * messages can contain personal information, so the spill files are created readable only by the server's user, in a
+ * directory that only the server's user can open. Unless another directory is configured, spill files are kept in a
+ * directory under the server's temp directory.
+ */
+final class SpillFiles {
+    static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+    static final String DEFAULT_DIRECTORY_NAME = "bridge-spill";
+
+    private SpillFiles() {
+    }
+
+    /** The configured spill directory, or a directory under the server's temp directory if none is configured. */
+    static File directory(String configuredDirectory) {
+        if (isBlank(configuredDirectory)) {
+            return new File(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY_NAME);
+        }
+        return new File(configuredDirectory);
+    }
+
+    /**
+     * Create the spill directory if it doesn't exist, and check that the server can write to it. This is called when
+     * the server starts, so a misconfigured directory stops the server rather than losing every message it spills.
+     */
+    static void checkWritable(File directory) {
+        Path path = directory.toPath().toAbsolutePath();
+        try {
+            createDirectories(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create spill directory " + path, e);
+        }
+        if (!Files.isWritable(path)) {
+            throw new IllegalStateException("Spill directory " + path + " is not writable");
+        }
+    }
+
+    /** Open the spill file to append to it, creating it (and its directory) with owner-only permissions. */
+    static BufferedWriter openForAppend(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        createDirectories(path.getParent());
+        if (isPosix()) {
+            try {
+                Files.createFile(path, PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS));
+            } catch (FileAlreadyExistsException e) {
+                // A file left by an earlier version of the server may have been created with default permissions.
+                Files.setPosixFilePermissions(path, FILE_PERMISSIONS);
+            }
+        }
+        return Files.newBufferedWriter(path, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void createDirectories(Path path) throws IOException {
+        if (isPosix()) {
+            Files.createDirectories(path, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+        } else {
+            Files.createDirectories(path);
+        }
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+}
@@ -0,0 +1,398 @@
+package org.sagebionetworks.bridge.services;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.json.BridgeObjectMapper;
+
+/**
+ * Sends messages to SQS in the background, so that requests don't wait on a round trip to SQS for each message.
+ * Messages are queued in memory, and a single thread sends whatever has been queued, grouped by queue URL, with
+ * SendMessageBatch (at most 10 messages, and 256 KiB of message bodies, per call). When messages arrive faster than
+ * one call's round trip, they accumulate in the queue and are sent in fuller batches. If the in-memory queue is full,
+ * the message is sent on the caller's thread instead. Messages that SQS fails to accept are appended to a local spill
+ * file, and resent when the dispatcher is next idle (no sooner than a minute after the failure) or when the server
+ * restarts, until they have failed {@link #MAX_ATTEMPTS} times. Messages that can never be sent (those that are too
+ * large, or that SQS rejects as the sender's fault) are dropped. Messages that contain a secret are never written to
+ * the spill file, so they are dropped if SQS fails to accept them. Message bodies are never logged.
+ */
+@Component
+public class SqsMessageDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsMessageDispatcher.class);
+
+    static final String CAPACITY_PROPERTY = "sqs.dispatcher.capacity";
+    static final String SPILL_DIR_PROPERTY = "sqs.dispatcher.spill.dir";
+    static final String SPILL_FILE_NAME = "sqs-spill.jsonl";
+    /** The most messages SQS accepts in one SendMessageBatch call. */
+    static final int MAX_BATCH_SIZE = 10;
+    /** The most bytes of message bodies SQS accepts in one SendMessageBatch call (and so in one message). */
+    static final int MAX_BATCH_BYTES = 256 * 1024;
+    /** The most times a message can fail to be sent, across all the times it is spilled and resent. */
+    static final int MAX_ATTEMPTS = 10;
+    /** The most messages taken from the queue at one time. */
+    static final int MAX_DRAIN_SIZE = 100;
+    static final long POLL_TIMEOUT_MILLIS = 1000L;
+    static final long SPILL_RETRY_DELAY_MILLIS = 60000L;
+    static final long SHUTDOWN_TIMEOUT_MILLIS = 10000L;
+
+    /** A message waiting to be sent. */
+    static final class Message {
+        private final String queueUrl;
+        private final String body;
+        private final int attempts;
+        private final boolean secret;
+        private final int size;
+
+        // Messages with a secret are never spilled, so a spilled message never has one.
+        @JsonCreator
+        Message(@JsonProperty("queueUrl") String queueUrl, @JsonProperty("body") String body,
+                @JsonProperty("attempts") int attempts) {
+            this(queueUrl, body, attempts, false);
+        }
+        Message(String queueUrl, String body, int attempts, boolean secret) {
+            this.queueUrl = queueUrl;
+            this.body = body;
+            this.attempts = attempts;
+            this.secret = secret;
+            this.size = body.getBytes(UTF_8).length;
+        }
+        /** A copy of this message, recording that it could not be sent. */
+        Message failedAttempt() {
+            return new Message(queueUrl, body, attempts + 1, secret);
+        }
+        public String getQueueUrl() {
+            return queueUrl;
+        }
+        public String getBody() {
+            return body;
+        }
+        /** The number of times this message has failed to be sent. */
+        public int getAttempts() {
+            return attempts;
+        }
+        /** True if the body contains a secret, such as a password, that must not be written to disk. */
+        @JsonIgnore
+        public boolean isSecret() {
+            return secret;
+        }
+        /** The size of the message body in bytes, as SQS counts it. */
+        @JsonIgnore
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private AmazonSQSClient sqsClient;
+    private BlockingQueue<Message> queue;
+    private File spillFile;
+    private Thread dispatchThread;
+    private volatile boolean running;
+    private volatile boolean stopped;
+    private volatile long lastFailureMillis;
+
+    @Autowired
+    final void setSqsClient(AmazonSQSClient sqsClient) {
+        this.sqsClient = sqsClient;
+    }
+
+    @Autowired
+    final void setBridgeConfig(BridgeConfig config) {
+        this.queue = new LinkedBlockingQueue<>(config.getInt(CAPACITY_PROPERTY));
+        this.spillFile = new File(SpillFiles.directory(config.getProperty(SPILL_DIR_PROPERTY)), SPILL_FILE_NAME);
+    }
+
+    @PostConstruct
+    public void start() {
+        SpillFiles.checkWritable(spillFile.getParentFile());
+        // Resend anything that could not be sent before the server last stopped.
+        resendSpilledMessages();
+
+        running = true;
+        dispatchThread = new Thread(this::dispatchLoop, "sqs-message-dispatcher");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+    }
+
+    /** Stop accepting messages on the background thread, and send the messages that are still queued. */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        stopped = true;
+        if (dispatchThread != null) {
+            try {
+                dispatchThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Anything that could not be sent in time is kept for the next server start.
+        List<Message> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        spill(remaining);
+    }
+
+    /** Queue a message to be sent to this SQS queue. */
+    public void send(String queueUrl, String body) {
+        send(new Message(checkNotNull(queueUrl), checkNotNull(body), 0, false));
+    }
+
+    /**
+     * Queue a message that contains a secret, such as a password, to be sent to this SQS queue. The message is never
+     * written to the spill file, so if SQS does not accept it, it is dropped.
+     */
+    public void sendSecret(String queueUrl, String body) {
+        send(new Message(checkNotNull(queueUrl), checkNotNull(body), 0, true));
+    }
+
+    private void send(Message message) {
+        if (stopped || !queue.offer(message)) {
+            // The queue is full (or the dispatcher has stopped), so send the message on this thread.
+            dispatch(ImmutableList.of(message));
+        }
+    }
+
+    /** The number of messages waiting to be sent. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** The number of SendMessageBatch calls made since the server started. */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /** The number of messages SQS has accepted since the server started. */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /** The number of messages written to the spill file since the server started. */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /** The number of messages that were dropped because they could not be sent, since the server started. */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /** The average number of messages per SendMessageBatch call, as a fraction of the most allowed. */
+    public double getBatchFillRatio() {
+        long batches = batchCount.get();
+        return (batches == 0L) ? 0.0 : (double) sentCount.get() / (batches * MAX_BATCH_SIZE);
+    }
+
+    private void dispatchLoop() {
+        // Keep sending until the dispatcher is stopped and the queue has been emptied.
+        while (running || !queue.isEmpty()) {
+            try {
+                Message first = queue.poll(POLL_TIMEOUT_MILLIS, MILLISECONDS);
+                if (first == null) {
+                    if (System.currentTimeMillis() - lastFailureMillis > SPILL_RETRY_DELAY_MILLIS) {
+                        resendSpilledMessages();
+                    }
+                    continue;
+                }
+                List<Message> messages = new ArrayList<>();
+                messages.add(first);
+                queue.drainTo(messages, MAX_DRAIN_SIZE - 1);
+                dispatch(messages);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Error dispatching SQS messages", e);
+            }
+        }
+    }
+
+    /** Send all the messages that are queued (the background thread does this continuously). */
+    void dispatchQueued() {
+        List<Message> messages = new ArrayList<>();
+        while (queue.drainTo(messages, MAX_DRAIN_SIZE) > 0) {
+            dispatch(messages);
+            messages.clear();
+        }
+    }
+
+    private void dispatch(List<Message> messages) {
+        Map<String, List<Message>> messagesByQueue = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.getSize() > MAX_BATCH_BYTES) {
+                drop(message, "it is " + message.getSize() + " bytes");
+                continue;
+            }
+            messagesByQueue.computeIfAbsent(message.getQueueUrl(), k -> new ArrayList<>()).add(message);
+        }
+        for (Map.Entry<String, List<Message>> entry : messagesByQueue.entrySet()) {
+            for (List<Message> batch : partition(entry.getValue())) {
+                sendBatch(entry.getKey(), batch);
+            }
+        }
+    }
+
+    /** Split messages into batches that SQS accepts, by both the number of messages and the size of their bodies. */
+    static List<List<Message>> partition(List<Message> messages) {
+        List<List<Message>> batches = new ArrayList<>();
+        List<Message> batch = new ArrayList<>();
+        int batchBytes = 0;
+        for (Message message : messages) {
+            boolean full = batch.size() == MAX_BATCH_SIZE || batchBytes + message.getSize() > MAX_BATCH_BYTES;
+            if (!batch.isEmpty() && full) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(message);
+            batchBytes += message.getSize();
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private void sendBatch(String queueUrl, List<Message> batch) {
+        // Entry IDs only need to be unique within the batch; the index maps failures back to their messages.
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            entries.add(new SendMessageBatchRequestEntry(Integer.toString(i), batch.get(i).getBody()));
+        }
+        SendMessageBatchResult result;
+        try {
+            result = sqsClient.sendMessageBatch(new SendMessageBatchRequest(queueUrl, entries));
+        } catch (AmazonClientException e) {
+            LOG.error("Could not send " + batch.size() + " messages to SQS queue " + queueUrl, e);
+            lastFailureMillis = System.currentTimeMillis();
+            List<Message> failed = new ArrayList<>(batch.size());
+            for (Message message : batch) {
+                failed.add(message.failedAttempt());
+            }
+            spillOrDrop(failed);
+            return;
+        }
+        batchCount.incrementAndGet();
+        sentCount.addAndGet(result.getSuccessful().size());
+
+        if (!result.getFailed().isEmpty()) {
+            List<Message> failed = new ArrayList<>();
+            for (BatchResultErrorEntry error : result.getFailed()) {
+                LOG.error("SQS queue " + queueUrl + " did not accept message: " + error.getCode() + " " +
+                        error.getMessage());
+                Message message = batch.get(Integer.parseInt(error.getId()));
+                if (Boolean.TRUE.equals(error.getSenderFault())) {
+                    // Sending the same message again would fail the same way.
+                    drop(message, "SQS rejected it (" + error.getCode() + ")");
+                } else {
+                    failed.add(message.failedAttempt());
+                }
+            }
+            lastFailureMillis = System.currentTimeMillis();
+            spillOrDrop(failed);
+        }
+    }
+
+    private void spillOrDrop(List<Message> messages) {
+        List<Message> spilled = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (message.isSecret()) {
+                drop(message, "it contains a secret that is not written to the spill file");
+            } else if (message.getAttempts() >= MAX_ATTEMPTS) {
+                drop(message, "it failed " + message.getAttempts() + " times");
+            } else {
+                spilled.add(message);
+            }
+        }
+        spill(spilled);
+    }
+
+    private void drop(Message message, String reason) {
+        LOG.error("Dropped " + describe(message) + " because " + reason);
+        droppedCount.incrementAndGet();
+    }
+
+    // Bodies can contain personal information or secrets, so they are not logged.
+    private static String describe(Message message) {
+        return "SQS message for queue " + message.getQueueUrl() + " (" + message.getSize() + " bytes, " +
+                message.getAttempts() + " failed attempts)";
+    }
+
+    private synchronized void spill(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = SpillFiles.openForAppend(spillFile)) {
+            for (Message message : messages) {
+                writer.write(BridgeObjectMapper.get().writeValueAsString(message));
+                writer.newLine();
+            }
+            spilledCount.addAndGet(messages.size());
+        } catch (IOException e) {
+            for (Message message : messages) {
+                LOG.error("Lost " + describe(message) + ", could not write it to the spill file", e);
+            }
+            droppedCount.addAndGet(messages.size());
+        }
+    }
+
+    /** Queue the messages in the spill file to be sent again, and remove the file. */
+    synchronized void resendSpilledMessages() {
+        if (!spillFile.exists()) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(spillFile.toPath(), UTF_8);
+            Files.delete(spillFile.toPath());
+        } catch (IOException e) {
+            LOG.error("Could not read SQS spill file " + spillFile, e);
+            return;
+        }
+        LOG.info("Resending " + lines.size() + " spilled SQS messages");
+        List<Message> messages = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                messages.add(BridgeObjectMapper.get().readValue(line, Message.class));
+            } catch (IOException e) {
+                LOG.error("Could not read spilled SQS message of " + line.length() + " characters", e);
+            }
+        }
+        dispatch(messages);
+    }
+}
@@ -43,6 +43,7 @@ import org.sagebionetworks.bridge.models.subpopulations.StudyConsentView;
 import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 import org.sagebionetworks.bridge.validators.StudyConsentValidator;
 import org.sagebionetworks.bridge.validators.Validate;
 import org.slf4j.Logger;
@@ -99,11 +100,12 @@ public class StudyConsentService {
     private S3Helper s3Helper;
     private String consentsBucket = BridgeConfigFactory.getConfig().getConsentsBucket();
     private String publicationsBucket = BridgeConfigFactory.getConfig().getHostnameWithPostfix("docs");
-    private String fullPageTemplate;
+    private CompiledTemplate fullPageTemplate;
     
     @Value("classpath:conf/app-defaults/consent-page.xhtml")
     final void setConsentTemplate(org.springframework.core.io.Resource resource) throws IOException {
-        this.fullPageTemplate = IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
+        String template = IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
+        this.fullPageTemplate = CompiledTemplate.compile(template);
     }
     @Autowired
     final void setValidator(StudyConsentValidator validator) {
@@ -320,7 +322,7 @@ public class StudyConsentService {
         String resolvedHTML = BridgeUtils.resolveTemplate(bodyTemplate, map);
 
         map.put("consent.body", resolvedHTML);
-        resolvedHTML = BridgeUtils.resolveTemplate(fullPageTemplate, map);
+        resolvedHTML = fullPageTemplate.render(map);
 
         String key = subpopGuid.getGuid() + CONSENT_HTML_SUFFIX;
         byte[] bytes = resolvedHTML.getBytes(Charset.forName(("UTF-8")));
@@ -10,6 +10,7 @@ import static org.sagebionetworks.bridge.BridgeConstants.API_MINIMUM_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.NEGATIVE_OFFSET_ERROR;
 import static org.sagebionetworks.bridge.BridgeConstants.PAGE_SIZE_ERROR;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.STUDY_REGION;
 import static org.sagebionetworks.bridge.models.ResourceList.INCLUDE_DELETED;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
 import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
@@ -36,6 +37,7 @@ import org.sagebionetworks.bridge.dao.StudyDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.VersionHolder;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEventIdsMap;
@@ -60,6 +62,8 @@ public class StudyService {
     
     private Schedule2Service scheduleService;
     
+    private HibernateCacheInvalidator cacheInvalidator;
+    
     @Autowired
     final void setStudyDao(StudyDao studyDao) {
         this.studyDao = studyDao;
@@ -80,11 +84,17 @@ public class StudyService {
         this.scheduleService = scheduleService;
     }
     
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
+    
     public void removeScheduleFromStudies(String appId, String scheduleGuid) {
         checkNotNull(appId);
         checkNotNull(scheduleGuid);
         
         studyDao.removeScheduleFromStudies(appId, scheduleGuid);
+        cacheInvalidator.invalidate(STUDY_REGION);
     }
     
     public Study getStudy(String appId, String studyId, boolean throwsException) {
@@ -210,6 +220,7 @@ public class StudyService {
         
         CacheKey cacheKey = CacheKey.publicStudy(appId, study.getIdentifier());
         cacheProvider.removeObject(cacheKey);
+        cacheInvalidator.invalidate(STUDY_REGION);
         
         return keys;
     }
@@ -231,6 +242,7 @@ public class StudyService {
         
         CacheKey cacheKey = CacheKey.publicStudy(appId, studyId);
         cacheProvider.removeObject(cacheKey);
+        cacheInvalidator.invalidate(STUDY_REGION);
     }
     
     public void deleteStudyPermanently(String appId, String studyId) {
@@ -252,12 +264,14 @@ public class StudyService {
         }
         CacheKey cacheKey = CacheKey.publicStudy(appId, studyId);
         cacheProvider.removeObject(cacheKey);
+        cacheInvalidator.invalidate(STUDY_REGION);
     }
     
     public void deleteAllStudies(String appId) {
         checkNotNull(appId);
 
         studyDao.deleteAllStudies(appId);
+        cacheInvalidator.invalidate(STUDY_REGION);
     }
     
     public Study transitionToDesign(String appId, String studyId) {
@@ -347,6 +361,7 @@ public class StudyService {
         
         CacheKey cacheKey = CacheKey.publicStudy(appId, studyId);
         cacheProvider.removeObject(cacheKey);
+        cacheInvalidator.invalidate(STUDY_REGION);
         
         return study;
     }
@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.joda.time.DateTimeZone.UTC;
 import static org.sagebionetworks.bridge.BridgeConstants.API_DEFAULT_PAGE_SIZE;
 import static org.sagebionetworks.bridge.BridgeConstants.API_MAXIMUM_PAGE_SIZE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TEMPLATE_REVISION_CACHE;
 import static org.sagebionetworks.bridge.models.apps.MimeType.HTML;
 import static org.sagebionetworks.bridge.models.apps.MimeType.TEXT;
 import static org.sagebionetworks.bridge.models.templates.TemplateType.EMAIL_ACCOUNT_EXISTS;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 
@@ -33,6 +35,8 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Triple;
 import org.joda.time.DateTime;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +51,7 @@ import org.sagebionetworks.bridge.dao.TemplateRevisionDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.Criteria;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.CriteriaUtils;
@@ -67,11 +72,24 @@ public class TemplateService {
 
     private Map<TemplateType,Triple<String,String,MimeType>> defaultTemplatesMap = new HashMap<>();
     
+    /**
+     * The published revision selected for a caller, by app, template type, the app's default template for that 
+     * type, and the caller's languages and client info (the only parts of the criteria context used to select a 
+     * template). Entries are removed when the app's templates change, on this server and (through the 
+     * HibernateCacheInvalidator) on the others. If that message is lost, another server picks up the change when 
+     * the entries expire. Cached revisions are shared and must not be modified.
+     */
+    final Cache<String, TemplateRevision> revisionCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+    
     private TemplateDao templateDao;
     private TemplateRevisionDao templateRevisionDao;
     private CriteriaDao criteriaDao;
     private AppService appService;
     private StudyService studyService;
+    private HibernateCacheInvalidator cacheInvalidator;
     
     private String defaultEmailVerificationTemplate;
     private String defaultEmailVerificationTemplateSubject;
@@ -112,6 +130,11 @@ public class TemplateService {
     final void setStudyService(StudyService studyService) {
         this.studyService = studyService;
     }
+    @Autowired
+    final void setHibernateCacheInvalidator(HibernateCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+        cacheInvalidator.registerLocalCache(TEMPLATE_REVISION_CACHE, this::evictRevisions);
+    }
 
     @Value("classpath:conf/app-defaults/email-verification.txt")
     final void setDefaultEmailVerificationTemplate(org.springframework.core.io.Resource resource) throws IOException {
@@ -216,10 +239,32 @@ public class TemplateService {
             .withAppId(app.getIdentifier())
             .build();
 
-        Template template = getTemplateForUser(app, context, type)
-                .orElseThrow(() -> new EntityNotFoundException(Template.class));
-        return templateRevisionDao.getTemplateRevision(template.getGuid(), template.getPublishedCreatedOn())
-                .orElseThrow(() -> new EntityNotFoundException(TemplateRevision.class));
+        String defaultGuid = app.getDefaultTemplates().get(type.name().toLowerCase());
+        String cacheKey = app.getIdentifier() + ":" + type.name() + ":" + defaultGuid + ":" 
+                + context.getLanguages() + ":" + context.getClientInfo();
+        TemplateRevision revision = revisionCache.getIfPresent(cacheKey);
+        if (revision == null) {
+            Template template = getTemplateForUser(app, context, type)
+                    .orElseThrow(() -> new EntityNotFoundException(Template.class));
+            revision = templateRevisionDao.getTemplateRevision(template.getGuid(), template.getPublishedCreatedOn())
+                    .orElseThrow(() -> new EntityNotFoundException(TemplateRevision.class));
+            revisionCache.put(cacheKey, revision);
+        }
+        return revision;
+    }
+    
+    /**
+     * Remove the cached revision selections for this app. This must be called whenever a template of the app is 
+     * created, changed, published or deleted.
+     */
+    void invalidateRevisionCache(String appId) {
+        evictRevisions(appId);
+        cacheInvalidator.invalidate(TEMPLATE_REVISION_CACHE, appId);
+    }
+    
+    private void evictRevisions(String appId) {
+        String prefix = appId + ":";
+        revisionCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
     }
     
     @SuppressWarnings("unchecked")
@@ -337,6 +382,7 @@ public class TemplateService {
 
         templateDao.createTemplate(template);
         templateRevisionDao.createTemplateRevision(revision);
+        invalidateRevisionCache(app.getIdentifier());
         return new GuidVersionHolder(template.getGuid(), Long.valueOf(template.getVersion()));
     }
     
@@ -368,6 +414,7 @@ public class TemplateService {
         
         persistCriteria(template);
         templateDao.updateTemplate(template);
+        invalidateRevisionCache(appId);
         
         return new GuidVersionHolder(template.getGuid(), Long.valueOf(template.getVersion()));
     }
@@ -388,6 +435,7 @@ public class TemplateService {
         existing.setModifiedOn(getTimestamp());
         
         templateDao.updateTemplate(existing);
+        invalidateRevisionCache(appId);
     }
     
     public void deleteTemplatePermanently(String appId, String guid) {
@@ -396,10 +444,12 @@ public class TemplateService {
 
         templateDao.deleteTemplatePermanently(appId, guid);
         criteriaDao.deleteCriteria(getKey(template));
+        invalidateRevisionCache(appId);
     }
     
     public void deleteAllTemplates(String appId) {
         templateDao.deleteTemplatesForApp(appId);
+        invalidateRevisionCache(appId);
     }
 
     private boolean isDefaultTemplate(Template template, String appId) {
@@ -4,11 +4,23 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.NO_SHARING;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import javax.annotation.Resource;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.apache.commons.lang3.StringUtils;
 
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.time.DateUtils;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -30,6 +42,18 @@ import org.springframework.stereotype.Component;
 
 @Component("userAdminService")
 public class UserAdminService {
+    
+    /** The deletions of a user's data that are made (concurrently) before the account itself is deleted. */
+    enum DeletionStep {
+        HEALTH_DATA,
+        HEALTH_DATA_EX3,
+        NOTIFICATION_REGISTRATIONS,
+        UPLOADS,
+        SCHEDULED_ACTIVITIES,
+        ACTIVITY_EVENTS
+    }
+    static final TypeReference<Set<DeletionStep>> DELETION_STEPS_TYPE = new TypeReference<Set<DeletionStep>>() {};
+    static final int DELETION_EXPIRE_IN_SECONDS = 7 * 24 * 60 * 60;
 
     private AuthenticationService authenticationService;
     private NotificationsService notificationsService;
@@ -43,6 +67,7 @@ public class UserAdminService {
     private CacheProvider cacheProvider;
     private UploadService uploadService;
     private RequestInfoService requestInfoService;
+    private ExecutorService deletionExecutorService;
 
     @Autowired
     final void setAuthenticationService(AuthenticationService authenticationService) {
@@ -95,6 +120,10 @@ public class UserAdminService {
     final void setRequestInfoService(RequestInfoService requestInfoService) {
         this.requestInfoService = requestInfoService;
     }
+    @Resource(name = "userDeletionExecutorService")
+    final void setDeletionExecutorService(ExecutorService deletionExecutorService) {
+        this.deletionExecutorService = deletionExecutorService;
+    }
     
     /**
      * Create a user and optionally consent the user and/or sign the user in. If a specific subpopulation 
@@ -183,7 +212,9 @@ public class UserAdminService {
     }
 
     /**
-     * Delete the target user.
+     * Delete the target user. The user's data is deleted from each data store concurrently, and the account 
+     * is only deleted once all of that data has been deleted. If a deletion fails, the exception is thrown, 
+     * and deleting the user again will resume with the data that has not been deleted.
      *
      * @param app
      *      target user's app
@@ -202,16 +233,85 @@ public class UserAdminService {
             cacheProvider.removeSessionByUserId(account.getId());
             requestInfoService.removeRequestInfo(account.getId());
             
-            String healthCode = account.getHealthCode();
-            healthDataService.deleteRecordsForHealthCode(healthCode);
-            healthDataEx3Service.deleteRecordsForHealthCode(healthCode);
-            notificationsService.deleteAllRegistrations(app.getIdentifier(), healthCode);
-            uploadService.deleteUploadsForHealthCode(healthCode);
-            scheduledActivityService.deleteActivitiesForUser(healthCode);
-            activityEventService.deleteActivityEvents(healthCode);
-            // AccountSecret records and Enrollment records are are deleted on a 
-            // cascading delete from Account
+            CacheKey progressKey = CacheKey.userDeletion(app.getIdentifier(), account.getId());
+            deleteUserData(app, account.getHealthCode(), progressKey);
+            // AccountSecret, Enrollment, AdherenceRecord and StudyActivityEvent records are deleted 
+            // on a cascading delete from Account
             accountService.deleteAccount(accountId);
+            cacheProvider.removeObject(progressKey);
+        }
+    }
+    
+    /**
+     * None of these deletions depend on each other, so they run at the same time. Each step that finishes is 
+     * recorded under the progress key, and the steps recorded by an earlier, interrupted attempt are skipped. 
+     * Every step is allowed to finish before the first failure (if any) is thrown.
+     */
+    private void deleteUserData(App app, String healthCode, CacheKey progressKey) {
+        Set<DeletionStep> completedSteps = EnumSet.noneOf(DeletionStep.class);
+        Set<DeletionStep> previousSteps = cacheProvider.getObject(progressKey, DELETION_STEPS_TYPE);
+        if (previousSteps != null) {
+            completedSteps.addAll(previousSteps);
+        }
+        
+        RequestContext context = RequestContext.get();
+        Map<DeletionStep, Future<?>> futures = new EnumMap<>(DeletionStep.class);
+        for (DeletionStep step : DeletionStep.values()) {
+            if (completedSteps.contains(step)) {
+                continue;
+            }
+            futures.put(step, deletionExecutorService.submit(() -> {
+                RequestContext previousContext = RequestContext.get();
+                RequestContext.set(context);
+                try {
+                    deleteUserData(app, healthCode, step);
+                } finally {
+                    RequestContext.set(previousContext);
+                }
+            }));
+        }
+        
+        RuntimeException failure = null;
+        for (Map.Entry<DeletionStep, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+                completedSteps.add(entry.getKey());
+                cacheProvider.setObject(progressKey, completedSteps, DELETION_EXPIRE_IN_SECONDS);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = (e.getCause() instanceof RuntimeException) ? 
+                            (RuntimeException) e.getCause() : new BridgeServiceException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BridgeServiceException("Deleting user data was interrupted", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void deleteUserData(App app, String healthCode, DeletionStep step) {
+        switch (step) {
+            case HEALTH_DATA:
+                healthDataService.deleteRecordsForHealthCode(healthCode);
+                break;
+            case HEALTH_DATA_EX3:
+                healthDataEx3Service.deleteRecordsForHealthCode(healthCode);
+                break;
+            case NOTIFICATION_REGISTRATIONS:
+                notificationsService.deleteAllRegistrations(app.getIdentifier(), healthCode);
+                break;
+            case UPLOADS:
+                uploadService.deleteUploadsForHealthCode(healthCode);
+                break;
+            case SCHEDULED_ACTIVITIES:
+                scheduledActivityService.deleteActivitiesForUser(healthCode);
+                break;
+            case ACTIVITY_EVENTS:
+                activityEventService.deleteActivityEvents(healthCode);
+                break;
         }
     }
 }
@@ -1,7 +1,5 @@
 package org.sagebionetworks.bridge.services;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -33,7 +31,7 @@ public class UserDataDownloadViaSqsService implements UserDataDownloadService {
     static final String UDD_SERVICE_TITLE = "UDD";
 
     private BridgeConfig bridgeConfig;
-    private AmazonSQSClient sqsClient;
+    private SqsMessageDispatcher sqsMessageDispatcher;
 
     /** Bridge config, used to get the SQS queue URL. */
     @Autowired
@@ -41,10 +39,10 @@ public class UserDataDownloadViaSqsService implements UserDataDownloadService {
         this.bridgeConfig = bridgeConfig;
     }
 
-    /** SQS client. */
+    /** Sends messages to SQS. */
     @Autowired
-    public final void setSqsClient(AmazonSQSClient sqsClient) {
-        this.sqsClient = sqsClient;
+    public final void setSqsMessageDispatcher(SqsMessageDispatcher sqsMessageDispatcher) {
+        this.sqsMessageDispatcher = sqsMessageDispatcher;
     }
 
     /** {@inheritDoc} */
@@ -70,9 +68,8 @@ public class UserDataDownloadViaSqsService implements UserDataDownloadService {
 
         // send to SQS
         String queueUrl = bridgeConfig.getProperty(CONFIG_KEY_UDD_SQS_QUEUE_URL);
-        SendMessageResult sqsResult = sqsClient.sendMessage(queueUrl, requestJson);
-        logger.info("Sent request to SQS for userId=" + userId + ", app=" + appId +
-                ", startDate=" + startDateStr + ", endDate=" + endDateStr + "; received message ID=" +
-                sqsResult.getMessageId());
+        sqsMessageDispatcher.send(queueUrl, requestJson);
+        logger.info("Queued request to SQS for userId=" + userId + ", app=" + appId +
+                ", startDate=" + startDateStr + ", endDate=" + endDateStr);
     }
 }
@@ -20,6 +20,7 @@ import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.MimeType;
 import org.sagebionetworks.bridge.models.templates.TemplateRevision;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -77,7 +78,7 @@ public class BasicEmailProvider extends MimeTypeEmailProvider {
     public MimeTypeEmail getMimeTypeEmail() throws MessagingException {
         final MimeTypeEmailBuilder emailBuilder = new MimeTypeEmailBuilder();
 
-        final String formattedSubject = BridgeUtils.resolveTemplate(revision.getSubject(), tokenMap);
+        final String formattedSubject = CompiledTemplate.subjectOf(revision).render(tokenMap);
         emailBuilder.withSubject(formattedSubject);
 
         final String sendFromEmail = getFormattedSenderEmail();
@@ -88,7 +89,7 @@ public class BasicEmailProvider extends MimeTypeEmailProvider {
         }
         
         final MimeBodyPart bodyPart = new MimeBodyPart();
-        final String formattedBody = BridgeUtils.resolveTemplate(revision.getDocumentContent(), tokenMap);
+        final String formattedBody = CompiledTemplate.documentContentOf(revision).render(tokenMap);
         bodyPart.setContent(formattedBody, revision.getMimeType().toString() + "; charset=utf-8");
         emailBuilder.withMessageParts(bodyPart);
         
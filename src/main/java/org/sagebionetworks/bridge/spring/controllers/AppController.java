@@ -7,6 +7,7 @@ import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
 import static org.sagebionetworks.bridge.Roles.WORKER;
 import static org.sagebionetworks.bridge.models.apps.App.APP_LIST_WRITER;
+import static org.sagebionetworks.bridge.services.AccountService.SEARCH_TERMS_MAX_PAGE_SIZE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
 import java.util.Arrays;
@@ -342,4 +343,19 @@ public class AppController extends BaseController {
 
         return uploadService.getAppUploads(appId, startTimeObj, endTimeObj, pageSize, offsetKey);
     }
+
+    /**
+     * Rebuild the search terms of a page of the app's accounts. Call this with the nextPageOffsetKey of each
+     * response until there are no more pages, for every app, before turning on account.search.index.enabled.
+     * Pages are at most 20 accounts, which is also the default.
+     */
+    @PostMapping("/v1/apps/{appId}/accounts/searchterms")
+    public ForwardCursorPagedResourceList<String> rebuildAccountSearchTerms(@PathVariable String appId,
+            @RequestParam(required = false) String offsetKey, @RequestParam(required = false) String pageSize) {
+        getAuthenticatedSession(SUPERADMIN);
+        
+        int pageSizeInt = BridgeUtils.getIntOrDefault(pageSize, SEARCH_TERMS_MAX_PAGE_SIZE);
+        
+        return accountService.rebuildSearchTerms(appId, offsetKey, pageSizeInt);
+    }
 }
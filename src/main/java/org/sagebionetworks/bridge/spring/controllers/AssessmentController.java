@@ -27,6 +27,7 @@ import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
 import org.sagebionetworks.bridge.models.PagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
@@ -50,11 +51,17 @@ public class AssessmentController extends BaseController {
         return session.getParticipant().getOrgMembership();
     }
     
+    /**
+     * Assessments are paged by offset and returned with a total count, unless an offsetKey is provided or 
+     * includeTotal is false, in which case they are returned in pages with a nextPageOffsetKey (and no count).
+     */
     @GetMapping("/v1/assessments")
-    public PagedResourceList<Assessment> getAssessments(@RequestParam(required = false) String offsetBy,
+    public ResourceList<Assessment> getAssessments(@RequestParam(required = false) String offsetBy,
             @RequestParam(required = false) String pageSize,
             @RequestParam(name = "tag", required = false) Set<String> tags,
-            @RequestParam(required = false) String includeDeleted) {
+            @RequestParam(required = false) String includeDeleted,
+            @RequestParam(required = false) String offsetKey,
+            @RequestParam(required = false) String includeTotal) {
         UserSession session = getAuthenticatedSession(DEVELOPER, STUDY_DESIGNER);
         
         String appId = session.getAppId();
@@ -67,6 +74,9 @@ public class AssessmentController extends BaseController {
         int pageSizeInt = BridgeUtils.getIntOrDefault(pageSize, API_DEFAULT_PAGE_SIZE);
         boolean incDeletedBool = Boolean.valueOf(includeDeleted);
         
+        if (offsetKey != null || "false".equalsIgnoreCase(includeTotal)) {
+            return service.getAssessmentsByOffsetKey(appId, ownerId, offsetKey, pageSizeInt, tags, incDeletedBool);
+        }
         return service.getAssessments(appId, ownerId, offsetByInt, pageSizeInt, tags, incDeletedBool);
     }
     
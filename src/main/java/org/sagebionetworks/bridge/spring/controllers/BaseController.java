@@ -42,12 +42,14 @@ import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.Metrics;
 import org.sagebionetworks.bridge.models.RequestInfo;
+import org.sagebionetworks.bridge.models.ThrottleRequestType;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.services.AccountService;
 import org.sagebionetworks.bridge.services.AuthenticationService;
+import org.sagebionetworks.bridge.services.RateLimiterService;
 import org.sagebionetworks.bridge.services.RequestInfoService;
 import org.sagebionetworks.bridge.services.SessionUpdateService;
 import org.sagebionetworks.bridge.services.SponsorService;
@@ -87,6 +89,8 @@ public abstract class BaseController {
     
     SponsorService sponsorService;
     
+    RateLimiterService rateLimiterService;
+    
     @Autowired
     final void setBridgeConfig(BridgeConfig bridgeConfig) {
         this.bridgeConfig = bridgeConfig;
@@ -127,6 +131,18 @@ public abstract class BaseController {
         this.sponsorService = sponsorService;
     }
     
+    @Autowired
+    final void setRateLimiterService(RateLimiterService rateLimiterService) {
+        this.rateLimiterService = rateLimiterService;
+    }
+    
+    /**
+     * Throws a LimitExceededException if the caller has exceeded the app's rate limit for this type of request.
+     */
+    void checkRateLimit(UserSession session, ThrottleRequestType type) {
+        rateLimiterService.checkRateLimit(session.getAppId(), session.getId(), type);
+    }
+    
     protected HttpServletRequest request() {
         HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
         if (request == null) {
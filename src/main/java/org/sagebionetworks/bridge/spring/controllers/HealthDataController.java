@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.spring.controllers;
 
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.WORKER;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.streamJson;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
 import java.io.IOException;
@@ -12,6 +13,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -61,8 +63,8 @@ public class HealthDataController extends BaseController {
 
     /** Gets a list of records for the given healthCode between the specified createdOn times (inclusive). */
     @GetMapping(path="/v3/healthdata", produces={APPLICATION_JSON_UTF8_VALUE})
-    public String getRecordsByCreatedOn(@RequestParam(required = false) String createdOnStart,
-            @RequestParam(required = false) String createdOnEnd) throws IOException {
+    public MappingJacksonValue getRecordsByCreatedOn(@RequestParam(required = false) String createdOnStart,
+            @RequestParam(required = false) String createdOnEnd) {
         UserSession session = getAuthenticatedAndConsentedSession();
 
         DateTime createdOnStartObj = BridgeUtils.getDateTimeOrDefault(createdOnStart, null);
@@ -73,7 +75,7 @@ public class HealthDataController extends BaseController {
         DateTimeRangeResourceList<HealthDataRecord> recordResourceList = new DateTimeRangeResourceList<>(recordList)
                 .withRequestParam(ResourceList.START_TIME, createdOnStart)
                 .withRequestParam(ResourceList.END_TIME, createdOnEnd);
-        return HealthDataRecord.PUBLIC_RECORD_WRITER.writeValueAsString(recordResourceList);
+        return streamJson(HealthDataRecord.PUBLIC_RECORD_WRITER, recordResourceList);
     }
 
     /**
@@ -18,8 +18,10 @@ import static org.sagebionetworks.bridge.models.ResourceList.END_TIME;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
 import static org.sagebionetworks.bridge.models.ResourceList.START_DATE;
 import static org.sagebionetworks.bridge.models.ResourceList.START_TIME;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.PARTICIPANT_SEARCH;
 import static org.sagebionetworks.bridge.models.sms.SmsType.PROMOTIONAL;
 import static org.sagebionetworks.bridge.spring.controllers.StudyParticipantController.INSTALL_LINK_SEND_MSG;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.streamJson;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
 import java.util.List;
@@ -36,6 +38,7 @@ import org.joda.time.DateTime;
 import org.sagebionetworks.bridge.models.ParticipantRosterRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -50,6 +53,7 @@ import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.json.JsonRegistry;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
@@ -231,7 +235,7 @@ public class ParticipantController extends BaseController {
     @GetMapping(path = { "/v1/apps/{appId}/participants/{userId}/activities/{activityType}/{referentGuid}",
             "/v3/studies/{appId}/participants/{userId}/activities/{activityType}/{referentGuid}" }, produces = {
                     APPLICATION_JSON_UTF8_VALUE })
-    public String getActivityHistoryForWorkerV3(@PathVariable String appId, @PathVariable String userId,
+    public MappingJacksonValue getActivityHistoryForWorkerV3(@PathVariable String appId, @PathVariable String userId,
             @PathVariable String activityType, @PathVariable String referentGuid,
             @RequestParam(required = false) String scheduledOnStart,
             @RequestParam(required = false) String scheduledOnEnd, @RequestParam(required = false) String offsetKey,
@@ -289,6 +293,7 @@ public class ParticipantController extends BaseController {
     @PostMapping("/v3/participants/search")
     public PagedResourceList<AccountSummary> searchForAccountSummaries() {
         UserSession session = getAuthenticatedSession(DEVELOPER, RESEARCHER);
+        checkRateLimit(session, PARTICIPANT_SEARCH);
         App app = appService.getApp(session.getAppId());
         
         AccountSummarySearch search = parseJson(AccountSummarySearch.class);
@@ -341,7 +346,7 @@ public class ParticipantController extends BaseController {
         ObjectWriter writer = (participant.getDataGroups().contains(TEST_USER_GROUP)) ?
                 StudyParticipant.API_WITH_HEALTH_CODE_WRITER :
                 StudyParticipant.API_NO_HEALTH_CODE_WRITER;
-        return writer.writeValueAsString(participant);
+        return JsonRegistry.writerFor(writer, StudyParticipant.class).writeValueAsString(participant);
     }
 
     @GetMapping(path="/v3/participants/{userId}", produces={APPLICATION_JSON_UTF8_VALUE})
@@ -364,7 +369,7 @@ public class ParticipantController extends BaseController {
         ObjectWriter writer = (app.isHealthCodeExportEnabled() || session.isInRole(SUPERADMIN)) ?
                 StudyParticipant.API_WITH_HEALTH_CODE_WRITER :
                 StudyParticipant.API_NO_HEALTH_CODE_WRITER;
-        return writer.writeValueAsString(participant);
+        return JsonRegistry.writerFor(writer, StudyParticipant.class).writeValueAsString(participant);
     }
     
     @GetMapping(path= {"/v1/apps/{appId}/participants/{userId}",
@@ -467,7 +472,7 @@ public class ParticipantController extends BaseController {
     }
 
     @GetMapping(path="/v3/participants/{userId}/activities/{activityType}/{referentGuid}", produces={APPLICATION_JSON_UTF8_VALUE})
-    public String getActivityHistoryV3(@PathVariable String userId, @PathVariable String activityType,
+    public MappingJacksonValue getActivityHistoryV3(@PathVariable String userId, @PathVariable String activityType,
             @PathVariable String referentGuid, @RequestParam(required = false) String scheduledOnStart,
             @RequestParam(required = false) String scheduledOnEnd, @RequestParam(required = false) String offsetKey,
             @RequestParam(required = false) String pageSize) throws Exception {
@@ -716,7 +721,7 @@ public class ParticipantController extends BaseController {
         return node;
     }
     
-    private String getActivityHistoryV3Internal(App app, String userId, String activityTypeString,
+    private MappingJacksonValue getActivityHistoryV3Internal(App app, String userId, String activityTypeString,
             String referentGuid, String scheduledOnStartString, String scheduledOnEndString, String offsetKey,
             String pageSizeString) throws Exception {
         
@@ -728,6 +733,6 @@ public class ParticipantController extends BaseController {
         ForwardCursorPagedResourceList<ScheduledActivity> page = participantService.getActivityHistory(app, userId,
                 activityType, referentGuid, scheduledOnStart, scheduledOnEnd, offsetKey, pageSize);
         
-        return ScheduledActivity.SCHEDULED_ACTIVITY_WRITER.writeValueAsString(page);
+        return streamJson(ScheduledActivity.SCHEDULED_ACTIVITY_WRITER, page);
     }
 }
@@ -8,6 +8,8 @@ import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 import static org.sagebionetworks.bridge.Roles.WORKER;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.REPORT_WRITE;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.AUTH;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -91,6 +93,7 @@ public class ParticipantReportController extends BaseController {
     @ResponseStatus(HttpStatus.CREATED)
     public StatusMessage saveParticipantReportForSelf(@PathVariable String identifier) {
         UserSession session = getAuthenticatedSession();
+        checkRateLimit(session, REPORT_WRITE);
         
         ReportData reportData = parseJson(ReportData.class);
         reportData.setKey(null); // set in service, but just so no future use depends on it
@@ -130,7 +133,7 @@ public class ParticipantReportController extends BaseController {
         UserSession session = getAdministrativeSession();
         
         AccountId accountId = BridgeUtils.parseAccountId(session.getAppId(), userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
         
         return getParticipantReportInternal(session.getAppId(), account.getId(), account.getHealthCode(), identifier,
@@ -146,7 +149,7 @@ public class ParticipantReportController extends BaseController {
         getAuthenticatedSession(WORKER);
         
         AccountId accountId = BridgeUtils.parseAccountId(appId, userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
             .orElseThrow(() -> new EntityNotFoundException(Account.class));
 
         return getParticipantReportInternal(appId, account.getId(), account.getHealthCode(), reportId, startDate, endDate);
@@ -169,7 +172,7 @@ public class ParticipantReportController extends BaseController {
         UserSession session = getAuthenticatedSession();
 
         AccountId accountId = BridgeUtils.parseAccountId(session.getAppId(), userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
         
         return getParticipantReportInternalV4(session.getAppId(), account.getId(), account.getHealthCode(), identifier,
@@ -186,7 +189,7 @@ public class ParticipantReportController extends BaseController {
         getAuthenticatedSession(WORKER);
         
         AccountId accountId = BridgeUtils.parseAccountId(appId, userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
 
         return getParticipantReportInternalV4(appId, account.getId(), account.getHealthCode(), reportId, startTime,
@@ -213,9 +216,10 @@ public class ParticipantReportController extends BaseController {
     @ResponseStatus(HttpStatus.CREATED)
     public StatusMessage saveParticipantReport(@PathVariable String userIdToken, @PathVariable String identifier) {
         UserSession session = getAuthenticatedSession(DEVELOPER, RESEARCHER);
+        checkRateLimit(session, REPORT_WRITE);
 
         AccountId accountId = BridgeUtils.parseAccountId(session.getAppId(), userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
 
         ReportData reportData = parseJson(ReportData.class);
@@ -264,7 +268,7 @@ public class ParticipantReportController extends BaseController {
         UserSession session = getAuthenticatedSession(DEVELOPER, RESEARCHER, WORKER);
         
         AccountId accountId = BridgeUtils.parseAccountId(session.getAppId(), userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
 
         reportService.deleteParticipantReport(session.getAppId(), account.getId(), identifier, account.getHealthCode());
@@ -281,7 +285,7 @@ public class ParticipantReportController extends BaseController {
         UserSession session = getAuthenticatedSession(DEVELOPER, RESEARCHER, WORKER);
         
         AccountId accountId = BridgeUtils.parseAccountId(session.getAppId(), userIdToken);
-        Account account = accountService.getAccount(accountId)
+        Account account = accountService.getAccount(accountId, AUTH)
                 .orElseThrow(() -> new EntityNotFoundException(Account.class));
 
         reportService.deleteParticipantReportRecord(session.getAppId(), null, identifier, date, account.getHealthCode());
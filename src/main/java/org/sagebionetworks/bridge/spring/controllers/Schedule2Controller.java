@@ -6,6 +6,7 @@ import static org.sagebionetworks.bridge.AuthUtils.CAN_UPDATE_STUDIES;
 import static org.sagebionetworks.bridge.Roles.ADMIN;
 import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.STUDY_DESIGNER;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.TIMELINE_RETRIEVAL;
 import static org.sagebionetworks.bridge.models.studies.StudyPhase.CAN_EDIT_STUDY_CORE;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,6 +82,7 @@ public class Schedule2Controller extends BaseController {
     @GetMapping("/v5/studies/{studyId}/timeline")
     public Timeline getTimeline(@PathVariable String studyId) {
         UserSession session = getAdministrativeSession();
+        checkRateLimit(session, TIMELINE_RETRIEVAL);
         
         Study study = studyService.getStudy(session.getAppId(), studyId, true);
         CAN_READ_STUDIES.checkAndThrow(STUDY_ID, studyId);
@@ -6,13 +6,13 @@ import static org.sagebionetworks.bridge.BridgeUtils.getDateTimeOrDefault;
 import static org.sagebionetworks.bridge.BridgeUtils.getIntOrDefault;
 import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_BY;
 import static org.sagebionetworks.bridge.models.schedules.ScheduledActivity.SCHEDULED_ACTIVITY_WRITER;
+import static org.sagebionetworks.bridge.spring.util.HttpUtil.streamJson;
 import static org.sagebionetworks.bridge.time.DateUtils.parseZoneFromOffsetString;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
 import java.util.ArrayList;
 import java.util.List;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -22,6 +22,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -73,7 +74,7 @@ public class ScheduledActivityController extends BaseController {
     
     @Deprecated
     @GetMapping(path="/v3/activities", produces={APPLICATION_JSON_UTF8_VALUE})
-    public String getScheduledActivities(@RequestParam(required = false) String until,
+    public MappingJacksonValue getScheduledActivities(@RequestParam(required = false) String until,
             @RequestParam(required = false) String offset, @RequestParam(required = false) String daysAhead,
             @RequestParam(required = false) String minimumPerSchedule) throws Exception {
         List<ScheduledActivity> scheduledActivities = getScheduledActivitiesInternalV3(until, offset, daysAhead,
@@ -81,7 +82,7 @@ public class ScheduledActivityController extends BaseController {
         
         ResourceList<ScheduledActivity> list = new ResourceList<>(scheduledActivities);
         
-        return SCHEDULED_ACTIVITY_WRITER.writeValueAsString(list);
+        return streamJson(SCHEDULED_ACTIVITY_WRITER, list);
     }
 
     @GetMapping("/v3/activities/{activityGuid}")
@@ -114,7 +115,7 @@ public class ScheduledActivityController extends BaseController {
     }
 
     @GetMapping(path="/v4/activities/{activityType}/{referentGuid}", produces={APPLICATION_JSON_UTF8_VALUE})
-    public String getActivityHistoryV3WithActivityType(@PathVariable String activityType,
+    public MappingJacksonValue getActivityHistoryV3WithActivityType(@PathVariable String activityType,
             @PathVariable String referentGuid, @RequestParam(required = false) String scheduledOnStart,
             @RequestParam(required = false) String scheduledOnEnd, @RequestParam(required = false) String offsetKey,
             @RequestParam(required = false) String pageSize) throws Exception {
@@ -123,7 +124,7 @@ public class ScheduledActivityController extends BaseController {
     }
     
     @GetMapping(path="/v4/activities/{referentGuid}", produces={APPLICATION_JSON_UTF8_VALUE})
-    public String getActivityHistoryV3(@PathVariable String referentGuid,
+    public MappingJacksonValue getActivityHistoryV3(@PathVariable String referentGuid,
             @RequestParam(required = false) String scheduledOnStart,
             @RequestParam(required = false) String scheduledOnEnd, @RequestParam(required = false) String offsetKey,
             @RequestParam(required = false) String pageSize) throws Exception {
@@ -131,8 +132,8 @@ public class ScheduledActivityController extends BaseController {
     }
 
     @GetMapping(path="/v4/activities", produces={APPLICATION_JSON_UTF8_VALUE})
-    public String getScheduledActivitiesByDateRange(@RequestParam String startTime, @RequestParam String endTime)
-            throws Exception {
+    public MappingJacksonValue getScheduledActivitiesByDateRange(@RequestParam String startTime,
+            @RequestParam String endTime) throws Exception {
         UserSession session = getAuthenticatedAndConsentedSession();
         App app = appService.getApp(session.getAppId());
         
@@ -154,7 +155,7 @@ public class ScheduledActivityController extends BaseController {
         DateTimeRangeResourceList<ScheduledActivity> results = new DateTimeRangeResourceList<>(scheduledActivities)
                 .withRequestParam(ResourceList.START_TIME, startsOnObj)
                 .withRequestParam(ResourceList.END_TIME, endsOnObj);
-        return SCHEDULED_ACTIVITY_WRITER.writeValueAsString(results);
+        return streamJson(SCHEDULED_ACTIVITY_WRITER, results);
     }
 
     @PostMapping({"/v4/activities", "/v3/tasks", "/v3/activities"})
@@ -168,8 +169,8 @@ public class ScheduledActivityController extends BaseController {
         return UPDATED_MSG;
     }
 
-    private String getActivityHistoryV3Internal(String activityType, String referentGuid, String scheduledOnStart,
-            String scheduledOnEnd, String offsetKey, String pageSize) throws JsonProcessingException {
+    private MappingJacksonValue getActivityHistoryV3Internal(String activityType, String referentGuid,
+            String scheduledOnStart, String scheduledOnEnd, String offsetKey, String pageSize) {
         UserSession session = getAuthenticatedAndConsentedSession();
         
         ActivityType activityTypeObj = ActivityType.fromPlural(activityType);
@@ -181,7 +182,7 @@ public class ScheduledActivityController extends BaseController {
                 session.getHealthCode(), activityTypeObj, referentGuid, scheduledOnStartObj, scheduledOnEndObj,
                 offsetKey, pageSizeInt);
         
-        return SCHEDULED_ACTIVITY_WRITER.writeValueAsString(page);
+        return streamJson(SCHEDULED_ACTIVITY_WRITER, page);
     }
     
     private <T> JsonNode okResultAsTasks(List<T> list) {
@@ -0,0 +1,32 @@
+package org.sagebionetworks.bridge.spring.controllers;
+
+import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import org.sagebionetworks.bridge.services.ServerMetricsService;
+
+@CrossOrigin
+@RestController
+public class ServerMetricsController extends BaseController {
+
+    /** The content type of the Prometheus text exposition format. */
+    static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private ServerMetricsService serverMetricsService;
+
+    @Autowired
+    final void setServerMetricsService(ServerMetricsService serverMetricsService) {
+        this.serverMetricsService = serverMetricsService;
+    }
+
+    @GetMapping(path = "/v3/metrics", produces = { PROMETHEUS_TEXT })
+    public String getMetrics() {
+        getAuthenticatedSession(SUPERADMIN);
+
+        return serverMetricsService.getPrometheusText();
+    }
+}
@@ -23,6 +23,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.models.PagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
@@ -49,17 +50,27 @@ public class SharedAssessmentController extends BaseController {
         return service.importAssessment(appId, ownerId, newIdentifier, guid);
     }
     
+    /**
+     * Shared assessments are paged by offset and returned with a total count, unless an offsetKey is provided 
+     * or includeTotal is false, in which case they are returned in pages with a nextPageOffsetKey (and no count).
+     */
     @GetMapping("/v1/sharedassessments")
-    public PagedResourceList<Assessment> getSharedAssessments(
+    public ResourceList<Assessment> getSharedAssessments(
             @RequestParam(required = false) String offsetBy,
             @RequestParam(required = false) String pageSize,
             @RequestParam(required = false, name = "tag") Set<String> tags,
-            @RequestParam(required = false) String includeDeleted) {
+            @RequestParam(required = false) String includeDeleted,
+            @RequestParam(required = false) String offsetKey,
+            @RequestParam(required = false) String includeTotal) {
         
         int offsetByInt = BridgeUtils.getIntOrDefault(offsetBy, 0);
         int pageSizeInt = BridgeUtils.getIntOrDefault(pageSize, API_DEFAULT_PAGE_SIZE);
         boolean incDeletedBool = Boolean.valueOf(includeDeleted);
         
+        if (offsetKey != null || "false".equalsIgnoreCase(includeTotal)) {
+            return service.getAssessmentsByOffsetKey(
+                    SHARED_APP_ID, null, offsetKey, pageSizeInt, tags, incDeletedBool);
+        }
         return service.getAssessments(
                 SHARED_APP_ID, null, offsetByInt, pageSizeInt, tags, incDeletedBool);
     }
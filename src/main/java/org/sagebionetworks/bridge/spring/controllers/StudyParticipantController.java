@@ -15,6 +15,8 @@ import static org.sagebionetworks.bridge.Roles.STUDY_COORDINATOR;
 import static org.sagebionetworks.bridge.Roles.STUDY_DESIGNER;
 import static org.sagebionetworks.bridge.cache.CacheKey.scheduleModificationTimestamp;
 import static org.sagebionetworks.bridge.models.RequestInfo.REQUEST_INFO_WRITER;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.PARTICIPANT_SEARCH;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.TIMELINE_RETRIEVAL;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventObjectType.TIMELINE_RETRIEVED;
 import static org.sagebionetworks.bridge.models.reports.ReportType.PARTICIPANT;
 import static org.sagebionetworks.bridge.models.schedules2.timelines.Scheduler.INSTANCE;
@@ -23,6 +25,7 @@ import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -46,6 +49,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.sagebionetworks.bridge.BridgeUtils;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.json.JsonRegistry;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -58,6 +62,7 @@ import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
+import org.sagebionetworks.bridge.models.accounts.ParticipantImport;
 import org.sagebionetworks.bridge.models.accounts.Phone;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -65,6 +70,7 @@ import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEventIdsMap;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEventRequest;
 import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.notifications.NotificationBroadcast;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.reports.ReportData;
@@ -77,6 +83,8 @@ import org.sagebionetworks.bridge.models.studies.EnrollmentDetail;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.models.upload.UploadView;
+import org.sagebionetworks.bridge.services.NotificationBroadcastService;
+import org.sagebionetworks.bridge.services.ParticipantImportService;
 import org.sagebionetworks.bridge.services.ParticipantService;
 import org.sagebionetworks.bridge.services.ReportService;
 import org.sagebionetworks.bridge.services.Schedule2Service;
@@ -108,6 +116,7 @@ public class StudyParticipantController extends BaseController {
     static final StatusMessage INSTALL_LINK_SEND_MSG = new StatusMessage("Install instructions sent to participant.");
     static final StatusMessage REPORT_DELETED_MSG = new StatusMessage("Report deleted.");
     static final StatusMessage REPORT_SAVED_MSG = new StatusMessage("Participant report saved.");
+    static final String TEXT_CSV_VALUE = "text/csv";
     static final StatusMessage REPORT_INDEX_DELETED_MSG = new StatusMessage("Participant report index deleted.");
 
     private ParticipantService participantService;
@@ -124,6 +133,10 @@ public class StudyParticipantController extends BaseController {
 
     private ReportService reportService;
     
+    private ParticipantImportService participantImportService;
+    
+    private NotificationBroadcastService notificationBroadcastService;
+    
     @Autowired
     final void setParticipantService(ParticipantService participantService) {
         this.participantService = participantService;
@@ -159,6 +172,16 @@ public class StudyParticipantController extends BaseController {
         this.reportService = reportService;
     }
     
+    @Autowired
+    final void setParticipantImportService(ParticipantImportService participantImportService) {
+        this.participantImportService = participantImportService;
+    }
+    
+    @Autowired
+    final void setNotificationBroadcastService(NotificationBroadcastService notificationBroadcastService) {
+        this.notificationBroadcastService = notificationBroadcastService;
+    }
+    
     DateTime getDateTime() {
         return DateTime.now();
     }
@@ -166,6 +189,7 @@ public class StudyParticipantController extends BaseController {
     @GetMapping("/v5/studies/{studyId}/participants/self/timeline")
     public ResponseEntity<Timeline> getTimelineForSelf(@PathVariable String studyId) {
         UserSession session = getAuthenticatedAndConsentedSession();
+        checkRateLimit(session, TIMELINE_RETRIEVAL);
         
         if (!session.getParticipant().getStudyIds().contains(studyId)) {
             throw new UnauthorizedException("Caller is not enrolled in study '" + studyId + "'");
@@ -233,6 +257,7 @@ public class StudyParticipantController extends BaseController {
     @GetMapping("/v5/studies/{studyId}/participants/{userId}/timeline")
     public Timeline getTimelineForUser(@PathVariable String studyId, @PathVariable String userId) {
         UserSession session = getAdministrativeSession();
+        checkRateLimit(session, TIMELINE_RETRIEVAL);
         getValidAccountInStudy(session.getAppId(), studyId, userId);
         
         CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
@@ -260,6 +285,7 @@ public class StudyParticipantController extends BaseController {
     @PostMapping("/v5/studies/{studyId}/participants/search")
     public PagedResourceList<AccountSummary> searchForAccountSummaries(@PathVariable String studyId) {
         UserSession session = getAdministrativeSession();
+        checkRateLimit(session, PARTICIPANT_SEARCH);
         
         CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
         
@@ -289,6 +315,34 @@ public class StudyParticipantController extends BaseController {
         
         return keys;
     }
+    
+    /**
+     * Import a roster of participants into the study, either as a JSON array of participants or as a CSV file 
+     * (with a Content-Type of text/csv). The import runs in the background; the returned record can be used 
+     * to follow its progress.
+     */
+    @PostMapping("/v5/studies/{studyId}/participants/imports")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ParticipantImport importParticipants(@PathVariable String studyId) throws IOException {
+        UserSession session = getAdministrativeSession();
+        
+        CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
+        
+        App app = appService.getApp(session.getAppId());
+        String contentType = request().getContentType();
+        boolean isCsv = contentType != null && contentType.toLowerCase().startsWith(TEXT_CSV_VALUE);
+        
+        return participantImportService.importParticipants(app, studyId, request().getInputStream(), isCsv);
+    }
+    
+    @GetMapping("/v5/studies/{studyId}/participants/imports/{guid}")
+    public ParticipantImport getParticipantImport(@PathVariable String studyId, @PathVariable String guid) {
+        UserSession session = getAdministrativeSession();
+        
+        CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
+        
+        return participantImportService.getParticipantImport(session.getAppId(), studyId, guid);
+    }
 
     @GetMapping(path="/v5/studies/{studyId}/participants/{userId}", 
             produces={APPLICATION_JSON_UTF8_VALUE})
@@ -313,7 +367,7 @@ public class StudyParticipantController extends BaseController {
         ObjectWriter writer = (app.isHealthCodeExportEnabled() || session.isInRole(SUPERADMIN)) ?
                 StudyParticipant.API_WITH_HEALTH_CODE_WRITER :
                 StudyParticipant.API_NO_HEALTH_CODE_WRITER;
-        return writer.writeValueAsString(participant);
+        return JsonRegistry.writerFor(writer, StudyParticipant.class).writeValueAsString(participant);
     }
     
     @GetMapping(path = "/v5/studies/{studyId}/participants/{userId}/requestInfo", produces = {
@@ -467,6 +521,50 @@ public class StudyParticipantController extends BaseController {
                 + BridgeUtils.COMMA_SPACE_JOINER.join(erroredNotifications) + ".");
     }
     
+    /**
+     * Send a push notification to every participant in the study (or only those in all of a set of data groups).
+     * The broadcast runs in the background; the returned record has the guid used to follow, pause, or resume it.
+     */
+    @PostMapping("/v5/studies/{studyId}/participants/broadcasts")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public NotificationBroadcast startNotificationBroadcast(@PathVariable String studyId) {
+        UserSession session = getAdministrativeSession();
+        
+        CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
+        
+        NotificationBroadcast broadcast = parseJson(NotificationBroadcast.class);
+        return notificationBroadcastService.startBroadcast(session.getAppId(), studyId, broadcast);
+    }
+    
+    @GetMapping("/v5/studies/{studyId}/participants/broadcasts/{guid}")
+    public NotificationBroadcast getNotificationBroadcast(@PathVariable String studyId, @PathVariable String guid) {
+        UserSession session = getAdministrativeSession();
+        
+        CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
+        
+        return notificationBroadcastService.getBroadcast(session.getAppId(), studyId, guid);
+    }
+    
+    @PostMapping("/v5/studies/{studyId}/participants/broadcasts/{guid}/pause")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public NotificationBroadcast pauseNotificationBroadcast(@PathVariable String studyId, @PathVariable String guid) {
+        UserSession session = getAdministrativeSession();
+        
+        CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
+        
+        return notificationBroadcastService.pauseBroadcast(session.getAppId(), studyId, guid);
+    }
+    
+    @PostMapping("/v5/studies/{studyId}/participants/broadcasts/{guid}/resume")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public NotificationBroadcast resumeNotificationBroadcast(@PathVariable String studyId, @PathVariable String guid) {
+        UserSession session = getAdministrativeSession();
+        
+        CAN_EDIT_STUDY_PARTICIPANTS.checkAndThrow(STUDY_ID, studyId);
+        
+        return notificationBroadcastService.resumeBroadcast(session.getAppId(), studyId, guid);
+    }
+    
     @PostMapping("/v5/studies/{studyId}/participants/{userId}/sendInstallLink")
     @ResponseStatus(HttpStatus.ACCEPTED)
     public StatusMessage sendInstallLink(@PathVariable String studyId, @PathVariable String userId, 
@@ -5,6 +5,7 @@ import static org.sagebionetworks.bridge.Roles.DEVELOPER;
 import static org.sagebionetworks.bridge.Roles.RESEARCHER;
 import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
 import static org.sagebionetworks.bridge.Roles.WORKER;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.UPLOAD_COMPLETE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8_VALUE;
 
 import java.util.EnumSet;
@@ -150,6 +151,8 @@ public class UploadController extends BaseController {
 
             appId = session.getAppId();
             uploadCompletionClient = UploadCompletionClient.APP;
+            // Worker completions come from our own infrastructure, so only app callers are rate limited.
+            checkRateLimit(session, UPLOAD_COMPLETE);
         }
         uploadService.uploadComplete(appId, uploadCompletionClient, upload, redrive);
 
@@ -4,8 +4,7 @@ import static org.apache.http.HttpHeaders.USER_AGENT;
 import static org.sagebionetworks.bridge.BridgeConstants.X_FORWARDED_FOR_HEADER;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.Set;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -16,18 +15,18 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.utils.URLEncodedUtils;
+import com.google.common.collect.ImmutableSet;
 import org.sagebionetworks.bridge.config.BridgeConfigFactory;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
 
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.services.ServerMetricsService;
 
 @Component
 public class MetricsFilter implements Filter {
@@ -37,8 +36,24 @@ public class MetricsFilter implements Filter {
     public static final String X_PASSTHROUGH = "X-Passthrough";
 
     // Allow-list for query parameters metrics logging.
-    private static final List<String> ALLOW_LIST =
-            BridgeConfigFactory.getConfig().getList("query.param.allowlist");
+    private static final Set<String> ALLOW_LIST =
+            ImmutableSet.copyOf(BridgeConfigFactory.getConfig().getList("query.param.allowlist"));
+    
+    // Requests that take at least this long are logged with a breakdown of their calls to backing services. Zero
+    // disables the breakdown.
+    private long traceThresholdMillis = BridgeConfigFactory.getConfig().getInt("metrics.trace.threshold.millis");
+    
+    private ServerMetricsService serverMetricsService;
+    
+    @Autowired
+    final void setServerMetricsService(ServerMetricsService serverMetricsService) {
+        this.serverMetricsService = serverMetricsService;
+    }
+    
+    // For unit tests.
+    final void setTraceThresholdMillis(long traceThresholdMillis) {
+        this.traceThresholdMillis = traceThresholdMillis;
+    }
     
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
@@ -53,14 +68,8 @@ public class MetricsFilter implements Filter {
         metrics.setRemoteAddress(header(request, X_FORWARDED_FOR_HEADER, request.getRemoteAddr()));
         metrics.setUserAgent(header(request, USER_AGENT, null));
 
-        // Process the query parameters, and append them to the metrics.
-        List<NameValuePair> params = URLEncodedUtils.parse(request.getQueryString(), StandardCharsets.UTF_8);
-
-        Multimap<String, String> paramsMap = MultimapBuilder.linkedHashKeys().linkedListValues().build();
-        params.stream().filter(i -> ALLOW_LIST.contains(i.getName()))
-                .forEach(i -> paramsMap.put(i.getName(), i.getValue()));
-
-        metrics.setQueryParams(paramsMap);
+        // The allow-listed query parameters are parsed from the query string when the metrics are written.
+        metrics.setQueryString(request.getQueryString(), ALLOW_LIST);
 
         try {
             chain.doFilter(req, res);
@@ -75,6 +84,17 @@ public class MetricsFilter implements Filter {
             if (response.getHeader(X_PASSTHROUGH) == null) {
                 metrics.end();
                 LOG.info(metrics.toJsonString());
+                
+                // Spring sets the matching route template on the request once it has been dispatched.
+                String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                Long elapsedMillis = metrics.getElapsedMillis();
+                if (elapsedMillis != null) {
+                    serverMetricsService.recordRequest(request.getMethod(), route, response.getStatus(),
+                            elapsedMillis);
+                    if (traceThresholdMillis > 0L && elapsedMillis >= traceThresholdMillis) {
+                        LOG.info(metrics.toSpansJsonString());
+                    }
+                }
             }
         }
     }
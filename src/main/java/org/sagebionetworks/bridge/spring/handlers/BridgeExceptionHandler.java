@@ -4,6 +4,7 @@ import static org.apache.http.HttpStatus.SC_BAD_REQUEST;
 import static org.sagebionetworks.bridge.BridgeConstants.X_REQUEST_ID_HEADER;
 import static org.sagebionetworks.bridge.spring.util.HttpUtil.CONTENT_TYPE_HEADER;
 import static org.sagebionetworks.bridge.spring.util.HttpUtil.CONTENT_TYPE_JSON;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 
 import java.util.Set;
 
@@ -26,6 +27,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
 import org.sagebionetworks.bridge.exceptions.NoStackTraceException;
 import org.sagebionetworks.bridge.json.BridgeObjectMapper;
 import org.sagebionetworks.bridge.models.accounts.UserSessionInfo;
@@ -99,9 +101,15 @@ public class BridgeExceptionHandler {
         node.put("type", type);
         node.remove(UNEXPOSED_FIELD_NAMES);
         
-        return ResponseEntity.status(status)
-                .header(CONTENT_TYPE_HEADER, CONTENT_TYPE_JSON)
-                .body(node.toString());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status)
+                .header(CONTENT_TYPE_HEADER, CONTENT_TYPE_JSON);
+        if (throwable instanceof LimitExceededException) {
+            Integer retryAfterSeconds = ((LimitExceededException)throwable).getRetryAfterSeconds();
+            if (retryAfterSeconds != null) {
+                builder.header(RETRY_AFTER, retryAfterSeconds.toString());
+            }
+        }
+        return builder.body(node.toString());
     }
     
     private String getType(final Throwable throwable, final ObjectNode node) {
@@ -0,0 +1,110 @@
+package org.sagebionetworks.bridge.spring.interceptors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.dao.AccountDao;
+import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.services.ServerMetricsService;
+
+/**
+ * Wraps every DAO, the JedisOps, and the S3Helper in a proxy that times each call. The time is added to the totals
+ * for its backend in the metrics of the current request (if there is one), and to the call histograms of the
+ * ServerMetricsService. Proxies subclass the target so beans that are injected by their implementation class still
+ * work. Calls a bean makes to its own methods are not timed separately.
+ */
+@Component
+public class BackendCallTracer implements BeanPostProcessor {
+
+    static final String MYSQL = "mysql";
+    static final String DYNAMODB = "dynamodb";
+    static final String REDIS = "redis";
+    static final String S3 = "s3";
+    static final String OTHER = "other";
+
+    private static final String DAO_PACKAGE = AccountDao.class.getPackage().getName();
+
+    private ServerMetricsService serverMetricsService;
+
+    // Lazy so that the service (and the pools it reports on) are not created while post-processors are registered.
+    @Autowired
+    @Lazy
+    final void setServerMetricsService(ServerMetricsService serverMetricsService) {
+        this.serverMetricsService = serverMetricsService;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        String backend = getBackend(bean);
+        if (backend == null) {
+            return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(new TracingInterceptor(backend, bean.getClass().getSimpleName()));
+        return factory.getProxy();
+    }
+
+    /** The backend to report for calls to this bean, or null if it isn't traced. */
+    static String getBackend(Object bean) {
+        if (bean instanceof JedisOps) {
+            return REDIS;
+        }
+        if (bean instanceof S3Helper) {
+            return S3;
+        }
+        for (Class<?> oneInterface : bean.getClass().getInterfaces()) {
+            if (oneInterface.getPackage() != null && DAO_PACKAGE.equals(oneInterface.getPackage().getName())) {
+                String className = bean.getClass().getSimpleName();
+                if (className.startsWith("Hibernate")) {
+                    return MYSQL;
+                } else if (className.startsWith("Dynamo")) {
+                    return DYNAMODB;
+                }
+                return OTHER;
+            }
+        }
+        return null;
+    }
+
+    void recordCall(String backend, String operation, long elapsedNanos) {
+        Metrics metrics = RequestContext.get().getMetrics();
+        if (metrics != null) {
+            metrics.recordSpan(backend, operation, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        }
+        serverMetricsService.recordBackendCall(backend, operation, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    class TracingInterceptor implements MethodInterceptor {
+        private final String backend;
+        private final String className;
+
+        TracingInterceptor(String backend, String className) {
+            this.backend = backend;
+            this.className = className;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (invocation.getMethod().getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                recordCall(backend, className + "." + invocation.getMethod().getName(), System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package org.sagebionetworks.bridge.spring.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 
 import org.sagebionetworks.bridge.json.DefaultObjectMapper;
 
@@ -44,6 +46,18 @@ public class HttpUtil {
         return new ResponseEntity<>(responseString, headers, status);
     }
 
+    /**
+     * Wraps a response value so it is serialized with the filters of the given writer. Rather than building the
+     * response as a String, Spring's Jackson message converter then writes the value through a JsonGenerator directly
+     * to the response stream. The content length isn't known up front, so large lists are sent with chunked transfer
+     * encoding.
+     */
+    public static MappingJacksonValue streamJson(ObjectWriter writer, Object value) {
+        MappingJacksonValue jacksonValue = new MappingJacksonValue(value);
+        jacksonValue.setFilters(writer.getConfig().getFilterProvider());
+        return jacksonValue;
+    }
+
 
     /**
      * Make a session web cookie based on given sessonToken and expireInSeconds (duration).
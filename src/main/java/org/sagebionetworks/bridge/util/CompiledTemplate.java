@@ -0,0 +1,123 @@
+package org.sagebionetworks.bridge.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.sagebionetworks.bridge.models.templates.TemplateRevision;
+
+/**
+ * A template with variables in the format <code>${variableName}</code>, parsed once into alternating literal and
+ * variable segments so it can be rendered in a single pass. Variables that have no value (or a null value) are left
+ * in the output as is. Values are inserted verbatim; a value that itself contains <code>${...}</code> is not
+ * expanded again.
+ *
+ * Template revisions never change once created, so their compiled forms are cached by template GUID and revision
+ * creation time.
+ */
+public final class CompiledTemplate {
+    private static final String VAR_START = "${";
+    private static final char VAR_END = '}';
+    // Average number of characters we expect a variable's value to add to the output.
+    private static final int VALUE_LENGTH_ESTIMATE = 16;
+    private static final int MAX_CACHED_REVISIONS = 1000;
+
+    private static final Cache<String, CompiledTemplate> REVISION_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_REVISIONS).build();
+
+    private final String source;
+    // There is always one more literal than there are variables (literals may be empty).
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private CompiledTemplate(String source, List<String> literals, List<String> variables) {
+        this.source = source;
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.variables = variables.toArray(new String[variables.size()]);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /** Parse the template into literal and variable segments. */
+    public static CompiledTemplate compile(String template) {
+        checkNotNull(template);
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int literalStart = 0;
+        while (true) {
+            int start = template.indexOf(VAR_START, literalStart);
+            if (start < 0) {
+                break;
+            }
+            int end = template.indexOf(VAR_END, start + VAR_START.length());
+            if (end < 0) {
+                break;
+            }
+            // In "${a${b}", only "${b}" is a variable.
+            start = template.lastIndexOf(VAR_START, end);
+            literals.add(template.substring(literalStart, start));
+            variables.add(template.substring(start + VAR_START.length(), end));
+            literalStart = end + 1;
+        }
+        literals.add(template.substring(literalStart));
+        return new CompiledTemplate(template, literals, variables);
+    }
+
+    /** The compiled subject of this template revision. */
+    public static CompiledTemplate subjectOf(TemplateRevision revision) {
+        return compileRevision(revision, "subject", revision.getSubject());
+    }
+
+    /** The compiled document content of this template revision. */
+    public static CompiledTemplate documentContentOf(TemplateRevision revision) {
+        return compileRevision(revision, "documentContent", revision.getDocumentContent());
+    }
+
+    private static CompiledTemplate compileRevision(TemplateRevision revision, String field, String template) {
+        checkNotNull(template);
+        if (revision.getTemplateGuid() == null || revision.getCreatedOn() == null) {
+            return compile(template);
+        }
+        String key = revision.getTemplateGuid() + ":" + revision.getCreatedOn().getMillis() + ":" + field;
+        CompiledTemplate compiled = REVISION_CACHE.getIfPresent(key);
+        // Revisions are immutable, but an unsaved revision could reuse a GUID and timestamp, so check the source.
+        if (compiled == null || !compiled.source.equals(template)) {
+            compiled = compile(template);
+            REVISION_CACHE.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /** Render the template, replacing each variable with its value from the map. */
+    public String render(Map<String,String> values) {
+        checkNotNull(values);
+
+        StringBuilder builder = new StringBuilder(literalLength + variables.length * VALUE_LENGTH_ESTIMATE);
+        for (int i=0; i < variables.length; i++) {
+            builder.append(literals[i]);
+            String value = values.get(variables[i]);
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append(VAR_START).append(variables[i]).append(VAR_END);
+            }
+        }
+        builder.append(literals[variables.length]);
+        return builder.toString();
+    }
+
+    /** The template this was compiled from. */
+    public String getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,112 @@
+package org.sagebionetworks.bridge.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram in milliseconds. Values are counted in log-linear buckets (eight linear sub-buckets
+ * for every power of two, in the manner of an HDR histogram), so percentiles are accurate to within 12.5% of the
+ * recorded value at any scale. Values are also counted in a fixed set of coarse buckets that are exported as a
+ * Prometheus histogram. Recording is a handful of atomic increments and allocates nothing.
+ */
+public class LatencyHistogram {
+
+    /** Upper bounds (inclusive) of the coarse buckets, in milliseconds. Larger values only appear in +Inf. */
+    public static final long[] BUCKET_BOUNDS = new long[] { 5L, 10L, 25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L,
+            10000L };
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Values of 2^MAX_EXPONENT ms (over 18 minutes) or more are all counted in the last bucket.
+    private static final int MAX_EXPONENT = 20;
+    private static final int FINE_BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray fineCounts = new AtomicLongArray(FINE_BUCKET_COUNT);
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_BOUNDS.length);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long millis) {
+        long value = Math.max(0L, millis);
+        fineCounts.incrementAndGet(fineIndex(value));
+        for (int i=0; i < BUCKET_BOUNDS.length; i++) {
+            if (value <= BUCKET_BOUNDS[i]) {
+                bucketCounts.incrementAndGet(i);
+                break;
+            }
+        }
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * The number of recorded values that are less than or equal to the upper bound of the coarse bucket at this index
+     * in BUCKET_BOUNDS (Prometheus buckets are cumulative).
+     */
+    public long getCumulativeBucketCount(int index) {
+        long total = 0L;
+        for (int i=0; i <= index; i++) {
+            total += bucketCounts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * The value at the given percentile (0-100), reported as the highest value that is equivalent to it within the
+     * precision of this histogram (and never more than the maximum value recorded). Returns zero if nothing has been
+     * recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long)Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0L;
+        for (int i=0; i < FINE_BUCKET_COUNT; i++) {
+            seen += fineCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        // Counts are read while other threads record, so the total can run slightly ahead of the buckets.
+        return max.get();
+    }
+
+    static int fineIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return FINE_BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int)(value >> shift) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lowestValue = ((long)(SUB_BUCKET_COUNT + subBucket)) << shift;
+        return lowestValue + (1L << shift) - 1L;
+    }
+}
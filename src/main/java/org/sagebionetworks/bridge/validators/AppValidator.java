@@ -18,6 +18,7 @@ import org.apache.commons.validator.routines.EmailValidator;
 
 import org.sagebionetworks.bridge.BridgeConstants;
 import org.sagebionetworks.bridge.BridgeUtils;
+import org.sagebionetworks.bridge.models.ThrottleRequestType;
 import org.sagebionetworks.bridge.models.Tuple;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.activities.ActivityEventObjectType;
@@ -26,6 +27,7 @@ import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.AppleAppLink;
 import org.sagebionetworks.bridge.models.apps.OAuthProvider;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.upload.UploadFieldSize;
 import org.sagebionetworks.bridge.upload.UploadUtil;
@@ -221,6 +223,29 @@ public class AppValidator implements Validator {
             }
         }
         
+        for (Map.Entry<String, RateLimit> entry : app.getRateLimits().entrySet()) {
+            String fieldName = "rateLimits["+entry.getKey()+"]";
+            if (!isRateLimitedType(entry.getKey())) {
+                errors.rejectValue(fieldName, "is not a request type that can be rate limited");
+            }
+            RateLimit rateLimit = entry.getValue();
+            if (rateLimit == null) {
+                errors.rejectValue(fieldName, "is required");
+            } else {
+                errors.pushNestedPath(fieldName);
+                if (rateLimit.getPerUserLimit() < 0) {
+                    errors.rejectValue("perUserLimit", "must be zero (no limit set) or higher");
+                }
+                if (rateLimit.getPerAppLimit() < 0) {
+                    errors.rejectValue("perAppLimit", "must be zero (no limit set) or higher");
+                }
+                if (rateLimit.getWindowSeconds() < 1) {
+                    errors.rejectValue("windowSeconds", "must be one second or longer");
+                }
+                errors.popNestedPath();
+            }
+        }
+        
         // app link configuration is not required, but if it is provided, we validate it
         if (app.getAppleAppLinks() != null && !app.getAppleAppLinks().isEmpty()) {
             validateAppLinks(errors, "appleAppLinks", app.getAppleAppLinks(), (AppleAppLink link) -> {
@@ -265,6 +290,15 @@ public class AppValidator implements Validator {
         }
     }
     
+    private static boolean isRateLimitedType(String name) {
+        for (ThrottleRequestType type : ThrottleRequestType.RATE_LIMITED_TYPES) {
+            if (type.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     private boolean specifiesValidEventKey(Set<String> customKeys, String proposedKey) {
         for (ActivityEventObjectType type : ActivityEventObjectType.values()) {
             if (type.name().toLowerCase().equals(proposedKey)) {
@@ -836,3 +836,33 @@ ADD COLUMN `periodFromOrigin` varchar(60);
 
 ALTER TABLE `StudyActivityEvents`
 ADD COLUMN `updateType` enum('MUTABLE', 'IMMUTABLE', 'FUTURE_ONLY') DEFAULT 'IMMUTABLE';
+
+-- changeset bridge:54
+
+ALTER TABLE `Assessments`
+ADD COLUMN `latestRevision` tinyint(1) NOT NULL DEFAULT 0;
+
+UPDATE `Assessments` SET createdOn = 0 WHERE createdOn IS NULL;
+
+UPDATE `Assessments` AS a INNER JOIN (
+  SELECT appId, identifier, MAX(revision) AS rev FROM `Assessments` GROUP BY appId, identifier
+) AS latest ON a.appId = latest.appId AND a.identifier = latest.identifier AND a.revision = latest.rev
+SET a.latestRevision = 1;
+
+CREATE INDEX `Assessments-AppId-LatestRevision-CreatedOn` ON `Assessments`(`appId`, `latestRevision`, `createdOn`, `guid`);
+
+-- changeset bridge:55
+
+CREATE TABLE IF NOT EXISTS `AccountSearchTerms` (
+  `accountId` varchar(255) NOT NULL,
+  `appId` varchar(255) NOT NULL,
+  `field` varchar(32) NOT NULL,
+  `term` varchar(255) NOT NULL,
+  `wholeValue` tinyint(1) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`accountId`, `field`, `term`, `wholeValue`),
+  KEY `AccountSearchTerms-AppId-Field-Term-Index` (`appId`, `field`, `term`),
+  CONSTRAINT `AccountSearchTerms-Id-Constraint` FOREIGN KEY (`accountId`) REFERENCES `Accounts` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE=utf8_unicode_ci;
+
+ALTER TABLE `Accounts`
+ADD COLUMN `searchTermsDigest` varchar(64) DEFAULT NULL;
@@ -33,6 +33,7 @@ import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -50,6 +51,7 @@ import org.joda.time.DateTime;
 import org.joda.time.Period;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.validation.Validator;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -709,6 +711,14 @@ public class TestUtils {
         return json.replaceAll("'", "\"");
     }
 
+    /**
+     * Serializes a streamed controller response the way Spring's Jackson message converter writes it to the
+     * response, so tests can verify the JSON that is returned to the client.
+     */
+    public static String toJson(MappingJacksonValue value) throws JsonProcessingException {
+        return BridgeObjectMapper.get().writer(value.getFilters()).writeValueAsString(value.getValue());
+    }
+
     public static Criteria createCriteria(Integer minAppVersion, Integer maxAppVersion, Set<String> allOfGroups, Set<String> noneOfGroups) {
         DynamoCriteria crit = new DynamoCriteria();
         crit.setMinAppVersion(OperatingSystem.IOS, minAppVersion);
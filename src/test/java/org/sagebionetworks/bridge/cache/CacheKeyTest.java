@@ -36,6 +36,34 @@ public class CacheKeyTest {
                 "test-org-id:test-app:OrgSponsoredStudies");
     }
     
+    @Test
+    public void notificationBroadcast() {
+        assertEquals(CacheKey.notificationBroadcast(TEST_APP_ID, "guid").toString(),
+                "guid:test-app:NotificationBroadcast");
+    }
+    
+    @Test
+    public void notificationBroadcastPause() {
+        assertEquals(CacheKey.notificationBroadcastPause(TEST_APP_ID, "guid").toString(),
+                "guid:test-app:NotificationBroadcastPause");
+    }
+    
+    @Test
+    public void notificationBroadcastLease() {
+        assertEquals(CacheKey.notificationBroadcastLease(TEST_APP_ID, "guid").toString(),
+                "guid:test-app:NotificationBroadcastLease");
+    }
+    
+    @Test
+    public void participantImport() {
+        assertEquals(CacheKey.participantImport(TEST_APP_ID, "guid").toString(), "guid:test-app:ParticipantImport");
+    }
+    
+    @Test
+    public void userDeletion() {
+        assertEquals(CacheKey.userDeletion(TEST_APP_ID, "userId").toString(), "userId:test-app:UserDeletion");
+    }
+    
     @Test
     public void tagList() { 
         assertEquals(CacheKey.tagList().toString(), "TagList");
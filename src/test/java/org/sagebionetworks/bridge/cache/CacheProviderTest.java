@@ -49,6 +49,7 @@ import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.redis.JedisOps;
 import org.sagebionetworks.bridge.redis.JedisTransaction;
 
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -76,6 +77,12 @@ public class CacheProviderTest {
     @Mock
     private JedisOps jedisOps;
 
+    @Mock
+    private JedisPool mockJedisPool;
+
+    @Mock
+    private Jedis mockJedis;
+
     @Captor
     private ArgumentCaptor<String> stringCaptor;
 
@@ -161,8 +168,11 @@ public class CacheProviderTest {
         when(jedisOps.getTransaction()).thenReturn(transaction);
         when(jedisOps.get(TOKEN_TO_USER_ID.toString())).thenReturn(USER_ID);
 
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+
         cacheProvider = new CacheProvider();
         cacheProvider.setJedisOps(jedisOps);
+        cacheProvider.setJedisPool(mockJedisPool);
     }
 
     private UserSession createUserSession() {
@@ -481,6 +491,57 @@ public class CacheProviderTest {
         verify(jedisOps).setex(CACHE_KEY.toString(), 100, ser);
     }
     
+    @Test
+    public void setObjectIfAbsent() {
+        when(mockJedis.set(CACHE_KEY.toString(), "\"test\"", "NX", "EX", 100L)).thenReturn("OK");
+        
+        assertTrue(cacheProvider.setObjectIfAbsent(CACHE_KEY, "test", 100));
+        verify(mockJedis).close();
+    }
+    
+    @Test
+    public void setObjectIfAbsentWhenPresent() {
+        // Redis returns a null reply when NX prevents the set.
+        when(mockJedis.set(CACHE_KEY.toString(), "\"test\"", "NX", "EX", 100L)).thenReturn(null);
+        
+        assertFalse(cacheProvider.setObjectIfAbsent(CACHE_KEY, "test", 100));
+        verify(jedisOps, never()).expire(any(), anyInt());
+    }
+    
+    @Test
+    public void setExpirationIfEquals() {
+        when(mockJedis.eval(CacheProvider.EXPIRE_IF_EQUALS_SCRIPT, ImmutableList.of(CACHE_KEY.toString()),
+                ImmutableList.of("\"test\"", "100"))).thenReturn(1L);
+        
+        assertTrue(cacheProvider.setExpirationIfEquals(CACHE_KEY, "test", 100));
+        verify(mockJedis).close();
+    }
+    
+    @Test
+    public void setExpirationIfEqualsWhenNotEqual() {
+        when(mockJedis.eval(CacheProvider.EXPIRE_IF_EQUALS_SCRIPT, ImmutableList.of(CACHE_KEY.toString()),
+                ImmutableList.of("\"test\"", "100"))).thenReturn(0L);
+        
+        assertFalse(cacheProvider.setExpirationIfEquals(CACHE_KEY, "test", 100));
+    }
+    
+    @Test
+    public void removeObjectIfEquals() {
+        when(mockJedis.eval(CacheProvider.REMOVE_IF_EQUALS_SCRIPT, ImmutableList.of(CACHE_KEY.toString()),
+                ImmutableList.of("\"test\""))).thenReturn(1L);
+        
+        assertTrue(cacheProvider.removeObjectIfEquals(CACHE_KEY, "test"));
+        verify(jedisOps, never()).del(any(String.class));
+    }
+    
+    @Test
+    public void removeObjectIfEqualsWhenNotEqual() {
+        when(mockJedis.eval(CacheProvider.REMOVE_IF_EQUALS_SCRIPT, ImmutableList.of(CACHE_KEY.toString()),
+                ImmutableList.of("\"test\""))).thenReturn(0L);
+        
+        assertFalse(cacheProvider.removeObjectIfEquals(CACHE_KEY, "test"));
+    }
+    
     @Test
     public void testGetUserSessionByUserId() throws Exception {
         CacheProvider mockCacheProvider = spy(cacheProvider);
@@ -40,6 +40,7 @@ import org.sagebionetworks.bridge.models.apps.Exporter3Configuration;
 import org.sagebionetworks.bridge.models.apps.OAuthProvider;
 import org.sagebionetworks.bridge.models.apps.OAuthProviderTest;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
 
@@ -128,6 +129,7 @@ public class DynamoAppTest {
         OAuthProvider oauthProvider = new OAuthProvider("clientId", "secret", "endpoint",
                 OAuthProviderTest.CALLBACK_URL, null);
         app.getOAuthProviders().put("myProvider", oauthProvider);
+        app.getRateLimits().put("PARTICIPANT_SEARCH", new RateLimit(10, 100, 60));
 
         app.setAutomaticCustomEvents(ImmutableMap.of("3-days-after-enrollment", "P3D"));
         app.setVersion(2L);
@@ -215,6 +217,12 @@ public class DynamoAppTest {
         assertEquals(providerNode.get("callbackUrl").textValue(), OAuthProviderTest.CALLBACK_URL);
         assertEquals(providerNode.get("type").textValue(), "OAuthProvider");
         
+        JsonNode rateLimitNode = node.get("rateLimits").get("PARTICIPANT_SEARCH");
+        assertEquals(rateLimitNode.get("perUserLimit").intValue(), 10);
+        assertEquals(rateLimitNode.get("perAppLimit").intValue(), 100);
+        assertEquals(rateLimitNode.get("windowSeconds").intValue(), 60);
+        assertEquals(rateLimitNode.get("type").textValue(), "RateLimit");
+        
         JsonNode defaultTemplates = node.get("defaultTemplates");
         assertEquals(defaultTemplates.get("email_account_exists").textValue(), "ABC-DEF");
         
@@ -0,0 +1,113 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.sagebionetworks.bridge.TestConstants.MODIFIED_ON;
+import static org.sagebionetworks.bridge.TestConstants.PHONE;
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.hibernate.AccountSearchIndex.EMAIL_FIELD;
+import static org.sagebionetworks.bridge.hibernate.AccountSearchIndex.EXTERNAL_ID_FIELD;
+import static org.sagebionetworks.bridge.hibernate.AccountSearchIndex.PHONE_FIELD;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.studies.Enrollment;
+
+public class AccountSearchIndexTest {
+    private static final String ACCOUNT_ID = "account-id";
+
+    @Test
+    public void indexesIdentifiersAndTheirSuffixes() {
+        HibernateAccount account = account("Ab@Cd.org");
+        account.setPhone(PHONE);
+        account.getEnrollments().add(Enrollment.create(TEST_APP_ID, "studyA", ACCOUNT_ID, "ext1"));
+        // Withdrawn enrollments are still searched by external ID.
+        Enrollment withdrawn = Enrollment.create(TEST_APP_ID, "studyB", ACCOUNT_ID, "xyz");
+        withdrawn.setWithdrawnOn(MODIFIED_ON);
+        account.getEnrollments().add(withdrawn);
+
+        AccountSearchIndex.update(account);
+
+        Set<HibernateAccountSearchTerm> terms = account.getSearchTerms();
+        assertEquals(terms, ImmutableSet.<HibernateAccountSearchTerm>builder()
+                .add(term(EMAIL_FIELD, "ab@cd.org", true))
+                .add(term(EMAIL_FIELD, "b@cd.org", false))
+                .add(term(EMAIL_FIELD, "@cd.org", false))
+                .add(term(EMAIL_FIELD, "cd.org", false))
+                .add(term(EMAIL_FIELD, "d.org", false))
+                .add(term(EMAIL_FIELD, ".org", false))
+                .add(term(EMAIL_FIELD, "org", false))
+                .add(term(PHONE_FIELD, "19712486796", true))
+                .add(term(PHONE_FIELD, "9712486796", false))
+                .add(term(PHONE_FIELD, "712486796", false))
+                .add(term(PHONE_FIELD, "12486796", false))
+                .add(term(PHONE_FIELD, "2486796", false))
+                .add(term(PHONE_FIELD, "486796", false))
+                .add(term(PHONE_FIELD, "86796", false))
+                .add(term(PHONE_FIELD, "6796", false))
+                .add(term(PHONE_FIELD, "796", false))
+                .add(term(EXTERNAL_ID_FIELD, "ext1", true))
+                .add(term(EXTERNAL_ID_FIELD, "xt1", false))
+                .add(term(EXTERNAL_ID_FIELD, "xyz", true))
+                .build());
+        assertNotNull(account.getSearchTermsDigest());
+    }
+
+    @Test
+    public void termsAreOnlyReplacedWhenIdentifiersChange() {
+        HibernateAccount account = account("ab@cd.org");
+        AccountSearchIndex.update(account);
+        Set<HibernateAccountSearchTerm> terms = account.getSearchTerms();
+        String digest = account.getSearchTermsDigest();
+
+        // Changes to other fields leave the terms alone, so Hibernate doesn't rewrite them.
+        account.setFirstName("First");
+        account.setDataGroups(ImmutableSet.of("group1"));
+        AccountSearchIndex.update(account);
+        assertSame(account.getSearchTerms(), terms);
+
+        // A change of case is not a change to the search terms either.
+        account.setEmail("AB@cd.org");
+        AccountSearchIndex.update(account);
+        assertSame(account.getSearchTerms(), terms);
+
+        account.setEmail("ef@cd.org");
+        AccountSearchIndex.update(account);
+        assertNotEquals(account.getSearchTermsDigest(), digest);
+        assertTrue(account.getSearchTerms().contains(term(EMAIL_FIELD, "ef@cd.org", true)));
+        assertEquals(account.getSearchTerms().size(), terms.size());
+    }
+
+    @Test
+    public void accountWithoutIdentifiersHasNoTerms() {
+        HibernateAccount account = account(null);
+        AccountSearchIndex.update(account);
+        assertTrue(account.getSearchTerms().isEmpty());
+        assertNotNull(account.getSearchTermsDigest());
+    }
+
+    @Test
+    public void normalize() {
+        assertEquals(AccountSearchIndex.normalize(EMAIL_FIELD, " Ab@Cd.org "), "ab@cd.org");
+        assertEquals(AccountSearchIndex.normalize(EXTERNAL_ID_FIELD, "ExtID"), "extid");
+        assertEquals(AccountSearchIndex.normalize(PHONE_FIELD, "+1 (971) 248-6796"), "19712486796");
+    }
+
+    private static HibernateAccount account(String email) {
+        HibernateAccount account = new HibernateAccount();
+        account.setId(ACCOUNT_ID);
+        account.setAppId(TEST_APP_ID);
+        account.setEmail(email);
+        return account;
+    }
+
+    private static HibernateAccountSearchTerm term(String field, String term, boolean wholeValue) {
+        return new HibernateAccountSearchTerm(TEST_APP_ID, field, term, wholeValue);
+    }
+}
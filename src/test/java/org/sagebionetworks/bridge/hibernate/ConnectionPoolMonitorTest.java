@@ -0,0 +1,108 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor.PoolMetrics;
+
+public class ConnectionPoolMonitorTest extends Mockito {
+
+    @Mock
+    PoolStats mockPoolStats;
+
+    ConnectionPoolMonitor monitor;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        monitor = new ConnectionPoolMonitor();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        monitor.close();
+    }
+
+    @Test
+    public void createPool() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("main");
+        config.setJdbcUrl("jdbc:mysql://localhost:3306/bridge");
+        config.setMaximumPoolSize(7);
+        config.setMinimumIdle(0);
+        // Don't connect to the database when the pool is created.
+        config.setInitializationFailTimeout(-1L);
+
+        HikariDataSource dataSource = monitor.createPool(config);
+
+        PoolMetrics metrics = monitor.getPools().get("main");
+        assertNotNull(metrics);
+        assertEquals(metrics.getStats().getMaxConnections(), 7);
+        assertSame(dataSource.getMetricsTrackerFactory(), monitor);
+
+        monitor.close();
+        assertTrue(dataSource.isClosed());
+    }
+
+    @Test
+    public void recordsAcquisitionsAndTimeouts() {
+        IMetricsTracker tracker = monitor.create("main", mockPoolStats, 0L);
+
+        tracker.recordConnectionAcquiredNanos(MILLISECONDS.toNanos(20L));
+        tracker.recordConnectionAcquiredNanos(MILLISECONDS.toNanos(40L));
+        tracker.recordConnectionTimeout();
+
+        PoolMetrics metrics = monitor.getPools().get("main");
+        assertSame(metrics.getStats(), mockPoolStats);
+        assertEquals(metrics.getAcquisitionHistogram().getCount(), 2L);
+        assertEquals(metrics.getAcquisitionHistogram().getMax(), 40L);
+        assertEquals(metrics.getTimeoutCount(), 1L);
+    }
+
+    @Test
+    public void countsConnectionsHeldPastLeakThreshold() {
+        IMetricsTracker tracker = monitor.create("account", mockPoolStats, 1000L);
+
+        tracker.recordConnectionUsageMillis(500L);
+        tracker.recordConnectionUsageMillis(1000L);
+        tracker.recordConnectionUsageMillis(1500L);
+
+        PoolMetrics metrics = monitor.getPools().get("account");
+        assertEquals(metrics.getUsageHistogram().getCount(), 3L);
+        assertEquals(metrics.getLeakCount(), 1L);
+    }
+
+    @Test
+    public void leaksNotCountedWithoutThreshold() {
+        IMetricsTracker tracker = monitor.create("account", mockPoolStats, 0L);
+
+        tracker.recordConnectionUsageMillis(60000L);
+
+        assertEquals(monitor.getPools().get("account").getLeakCount(), 0L);
+    }
+
+    @Test
+    public void poolsAreSortedByName() {
+        monitor.create("replica", mockPoolStats, 0L);
+        monitor.create("account", mockPoolStats, 0L);
+        monitor.create("main", mockPoolStats, 0L);
+
+        assertEquals(ImmutableList.copyOf(monitor.getPools().keySet()),
+                ImmutableList.of("account", "main", "replica"));
+    }
+}
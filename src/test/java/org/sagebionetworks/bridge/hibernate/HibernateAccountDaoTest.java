@@ -19,6 +19,9 @@ import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.DELETE_AL
 import static org.sagebionetworks.bridge.hibernate.HibernateAccountDao.FULL_QUERY;
 import static org.sagebionetworks.bridge.models.SearchTermPredicate.AND;
 import static org.sagebionetworks.bridge.models.StringSearchPosition.INFIX;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.AUTH;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.FULL;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.IDENTITY;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.ENABLED;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.UNVERIFIED;
 import static org.sagebionetworks.bridge.models.accounts.PasswordAlgorithm.DEFAULT_PASSWORD_ALGORITHM;
@@ -36,16 +39,23 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
+import org.hibernate.Session;
+import org.hibernate.collection.internal.PersistentList;
+import org.hibernate.collection.internal.PersistentMap;
+import org.hibernate.collection.internal.PersistentSet;
+import org.hibernate.query.Query;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -56,6 +66,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
@@ -121,6 +132,15 @@ public class HibernateAccountDaoTest extends Mockito {
 
     @Mock
     private HibernateHelper mockHibernateHelper;
+    
+    @Mock
+    private BridgeConfig mockConfig;
+    
+    @Mock
+    private Session mockSession;
+    
+    @Mock
+    private Query<HibernateAccount> mockQuery;
 
     private App app;
     
@@ -132,6 +152,7 @@ public class HibernateAccountDaoTest extends Mockito {
     public void before() {
         MockitoAnnotations.initMocks(this);
         DateTimeUtils.setCurrentMillisFixed(MOCK_DATETIME.getMillis());
+        when(mockHibernateHelper.readReplica()).thenReturn(mockHibernateHelper);
         // Mock successful update.
         when(mockHibernateHelper.update(any())).thenAnswer(invocation -> {
             HibernateAccount account = invocation.getArgument(0);
@@ -140,9 +161,16 @@ public class HibernateAccountDaoTest extends Mockito {
             }
             return account;
         });
+        when(mockHibernateHelper.executeWithExceptionHandling(any(), any())).thenAnswer(invocation -> {
+            Function<Session, Object> function = invocation.getArgument(1);
+            return function.apply(mockSession);
+        });
+
+        when(mockConfig.getInt(HibernateAccountDao.BATCH_SIZE_PROPERTY)).thenReturn(50);
 
         dao = spy(new HibernateAccountDao());
         dao.setHibernateHelper(mockHibernateHelper);
+        dao.setBridgeConfig(mockConfig);
 
         app = App.create();
         app.setIdentifier(TEST_APP_ID);
@@ -159,7 +187,7 @@ public class HibernateAccountDaoTest extends Mockito {
     @Test
     public void getByEmail() throws Exception {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(hibernateAccount));
 
         Account account = dao.getAccount(ACCOUNT_ID_WITH_EMAIL).get();
@@ -177,13 +205,90 @@ public class HibernateAccountDaoTest extends Mockito {
         verify(mockHibernateHelper).create(account);
     }
 
+    @Test
+    public void createAccountIndexesIdentifiersForSearch() {
+        Account account = makeValidGenericAccount();
+        
+        dao.createAccount(app, account);
+        
+        HibernateAccount hibernateAccount = (HibernateAccount) account;
+        assertTrue(hibernateAccount.getSearchTerms().contains(new HibernateAccountSearchTerm(
+                account.getAppId(), AccountSearchIndex.EMAIL_FIELD, EMAIL.toLowerCase(), true)));
+        assertNotNull(hibernateAccount.getSearchTermsDigest());
+    }
+
+    @Test
+    public void createAccountsSuccess() {
+        List<Account> accounts = ImmutableList.of(makeValidGenericAccount(), makeValidGenericAccount());
+
+        dao.createAccounts(app, accounts);
+
+        verify(mockHibernateHelper).bulkInsert(accounts, 50);
+    }
+
     @Test
     public void updateSuccess() {
         Account account = Account.create();
         
         dao.updateAccount(account);
         
-        verify(mockHibernateHelper).update(account);
+        verify(mockHibernateHelper).executeWithExceptionHandling(eq(account), any());
+        verify(mockSession).update(account);
+    }
+    
+    @Test
+    public void updateAccountIndexesEnrollmentsNotLoadedWithAccount() {
+        // Enrollments that were not loaded with the account are read once it is attached to the session.
+        PersistentSet enrollments = mock(PersistentSet.class);
+        when(enrollments.iterator()).thenAnswer(invocation -> ImmutableSet.of(
+                Enrollment.create(TEST_APP_ID, STUDY_A, ACCOUNT_ID, EXTERNAL_ID)).iterator());
+        HibernateAccount account = (HibernateAccount) makeValidGenericAccount();
+        account.setEnrollments(enrollments);
+        
+        dao.updateAccount(account);
+        
+        InOrder inOrder = inOrder(mockSession, enrollments);
+        inOrder.verify(mockSession).update(account);
+        inOrder.verify(enrollments).iterator();
+        assertTrue(account.getSearchTerms().contains(new HibernateAccountSearchTerm(
+                TEST_APP_ID, AccountSearchIndex.EMAIL_FIELD, EMAIL, true)));
+        assertTrue(account.getSearchTerms().contains(new HibernateAccountSearchTerm(
+                TEST_APP_ID, AccountSearchIndex.EXTERNAL_ID_FIELD, EXTERNAL_ID, true)));
+    }
+    
+    @Test
+    public void rebuildSearchTerms() {
+        HibernateAccount account1 = (HibernateAccount) makeValidGenericAccount();
+        HibernateAccount account2 = (HibernateAccount) makeValidGenericAccount();
+        account2.setId("account-id-2");
+        account2.setEmail(OTHER_EMAIL);
+        when(mockSession.createQuery(any(), eq(HibernateAccount.class))).thenReturn(mockQuery);
+        when(mockQuery.list()).thenReturn(ImmutableList.of(account1, account2));
+        
+        List<String> accountIds = dao.rebuildSearchTerms(TEST_APP_ID, "offsetKey", 20);
+        assertEquals(accountIds, ImmutableList.of(ACCOUNT_ID, "account-id-2"));
+        
+        verify(mockSession).createQuery("SELECT acct FROM HibernateAccount AS acct WHERE acct.appId = :appId "
+                + "AND acct.id > :offsetKey ORDER BY acct.id", HibernateAccount.class);
+        verify(mockQuery).setParameter("appId", TEST_APP_ID);
+        verify(mockQuery).setParameter("offsetKey", "offsetKey");
+        verify(mockQuery).setMaxResults(20);
+        assertNotNull(account1.getSearchTermsDigest());
+        assertTrue(account2.getSearchTerms().contains(new HibernateAccountSearchTerm(
+                TEST_APP_ID, AccountSearchIndex.EMAIL_FIELD, OTHER_EMAIL, true)));
+    }
+    
+    @Test
+    public void rebuildSearchTermsFirstPage() {
+        when(mockSession.createQuery(any(), eq(HibernateAccount.class))).thenReturn(mockQuery);
+        when(mockQuery.list()).thenReturn(ImmutableList.of());
+        
+        List<String> accountIds = dao.rebuildSearchTerms(TEST_APP_ID, null, 20);
+        assertTrue(accountIds.isEmpty());
+        
+        verify(mockSession).createQuery("SELECT acct FROM HibernateAccount AS acct WHERE acct.appId = :appId "
+                + "ORDER BY acct.id", HibernateAccount.class);
+        verify(mockQuery, never()).setParameter(eq("offsetKey"), any());
     }
 
     @Test
@@ -202,7 +307,7 @@ public class HibernateAccountDaoTest extends Mockito {
         persistedAccount.setModifiedOn(new DateTime(5678L));
 
         // mock hibernate
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID)).thenReturn(persistedAccount);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(persistedAccount);
 
         // execute
         Account account = makeValidGenericAccount();
@@ -217,7 +322,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // Capture the update
         ArgumentCaptor<HibernateAccount> updatedHibernateAccountCaptor = ArgumentCaptor
                 .forClass(HibernateAccount.class);
-        verify(mockHibernateHelper).update(updatedHibernateAccountCaptor.capture());
+        verify(mockSession).update(updatedHibernateAccountCaptor.capture());
 
         HibernateAccount updatedHibernateAccount = updatedHibernateAccountCaptor.getValue();
 
@@ -232,7 +337,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // mock hibernate
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         hibernateAccount.setHealthCode("original-" + HEALTH_CODE);
-        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID))).thenReturn(hibernateAccount);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(hibernateAccount);
 
         // execute and validate - just validate ID, app, and email, and health code mapping
         Account account = dao.getAccount(ACCOUNT_ID_WITH_ID).get();
@@ -243,6 +348,68 @@ public class HibernateAccountDaoTest extends Mockito {
         verify(mockHibernateHelper, never()).update(any());
     }
 
+    @Test
+    public void getAccountInitializesCollectionsForProfile() {
+        HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(hibernateAccount);
+        
+        dao.getAccount(ACCOUNT_ID_WITH_ID, AUTH);
+        
+        // Apply the initializer to an account with uninitialized collections
+        ArgumentCaptor<Consumer<HibernateAccount>> initializerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), initializerCaptor.capture());
+        
+        PersistentMap attributes = mock(PersistentMap.class);
+        PersistentMap consents = mock(PersistentMap.class);
+        PersistentSet roles = mock(PersistentSet.class);
+        PersistentSet dataGroups = mock(PersistentSet.class);
+        PersistentList languages = mock(PersistentList.class);
+        PersistentSet enrollments = mock(PersistentSet.class);
+        HibernateAccount lazyAccount = new HibernateAccount();
+        lazyAccount.setAttributes(attributes);
+        lazyAccount.setConsents(consents);
+        lazyAccount.setRoles(roles);
+        lazyAccount.setDataGroups(dataGroups);
+        lazyAccount.setLanguages(languages);
+        lazyAccount.setEnrollments(enrollments);
+        initializerCaptor.getValue().accept(lazyAccount);
+        
+        verify(roles).forceInitialization();
+        verify(dataGroups).forceInitialization();
+        verify(languages).forceInitialization();
+        verify(enrollments).forceInitialization();
+        verify(attributes, never()).forceInitialization();
+        verify(consents, never()).forceInitialization();
+    }
+    
+    @Test
+    public void initializeIdentityProfileLoadsNoCollections() {
+        PersistentSet roles = mock(PersistentSet.class);
+        HibernateAccount account = new HibernateAccount();
+        account.setRoles(roles);
+        
+        HibernateAccountDao.initialize(account, IDENTITY);
+        
+        verify(roles, never()).forceInitialization();
+    }
+    
+    @Test
+    public void initializeFullProfileLoadsAllCollections() {
+        PersistentMap attributes = mock(PersistentMap.class);
+        PersistentMap consents = mock(PersistentMap.class);
+        PersistentSet roles = mock(PersistentSet.class);
+        HibernateAccount account = new HibernateAccount();
+        account.setAttributes(attributes);
+        account.setConsents(consents);
+        account.setRoles(roles);
+        
+        HibernateAccountDao.initialize(account, FULL);
+        
+        verify(attributes).forceInitialization();
+        verify(consents).forceInitialization();
+        verify(roles).forceInitialization();
+    }
+    
     @Test
     public void getByIdSuccessCreateNewHealthCode() throws Exception {
         when(dao.generateGUID()).thenReturn(HEALTH_CODE);
@@ -251,7 +418,7 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         // Clear these fields to verify that they are created
         hibernateAccount.setHealthCode(null);
-        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID))).thenReturn(hibernateAccount);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(hibernateAccount);
         when(mockHibernateHelper.update(any())).thenReturn(hibernateAccount);
         
         // execute and validate - just validate ID, app, and email, and health code mapping
@@ -268,7 +435,7 @@ public class HibernateAccountDaoTest extends Mockito {
     @Test
     public void getByIdNotFound() {
         // mock hibernate
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID)).thenReturn(null);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(null);
 
         // execute and validate
         Optional<Account> opt = dao.getAccount(ACCOUNT_ID_WITH_ID);
@@ -280,14 +447,14 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         hibernateAccount.setHealthCode(null);
         hibernateAccount.setAppId(TEST_APP_ID);
-        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID))).thenReturn(hibernateAccount);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(hibernateAccount);
 
         // execute and validate
         AccountId wrongApp = AccountId.forId("wrong-app", ACCOUNT_ID);
         Optional<Account> opt = dao.getAccount(wrongApp);
         assertFalse(opt.isPresent());
         
-        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq(wrongApp.getUnguardedAccountId().getId()));
+        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq(wrongApp.getUnguardedAccountId().getId()), any());
     }
     
     @Test
@@ -299,7 +466,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // mock hibernate
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         hibernateAccount.setHealthCode("original-" + HEALTH_CODE);
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(hibernateAccount));
 
         // execute and validate - just validate ID, app, and email, and health code mapping
@@ -311,7 +478,7 @@ public class HibernateAccountDaoTest extends Mockito {
 
         // verify hibernate query
         verify(mockHibernateHelper).queryGet(eq(expQuery), eq(EMAIL_QUERY_PARAMS), isNull(), isNull(),
-                eq(HibernateAccount.class));
+                eq(HibernateAccount.class), any());
 
         // We don't create a new health code mapping nor update the account.
         verify(mockHibernateHelper, never()).update(any());
@@ -329,7 +496,7 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         // Clear these fields to verify that they are created
         hibernateAccount.setHealthCode(null);
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(hibernateAccount));
 
         when(mockHibernateHelper.update(any())).thenReturn(hibernateAccount);
@@ -342,7 +509,7 @@ public class HibernateAccountDaoTest extends Mockito {
         assertEquals(account.getHealthCode(), HEALTH_CODE);
 
         // verify hibernate query
-        verify(mockHibernateHelper).queryGet(eq(expQuery), eq(EMAIL_QUERY_PARAMS), isNull(), isNull(), eq(HibernateAccount.class));
+        verify(mockHibernateHelper).queryGet(eq(expQuery), eq(EMAIL_QUERY_PARAMS), isNull(), isNull(), eq(HibernateAccount.class), any());
         
         // Verify we create the new health code mapping
         verifyCreatedHealthCode();
@@ -351,7 +518,7 @@ public class HibernateAccountDaoTest extends Mockito {
     @Test
     public void getByEmailNotFound() {
         // mock hibernate
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any())).thenReturn(ImmutableList.of());
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any(), any())).thenReturn(ImmutableList.of());
 
         // execute and validate
         Optional<Account> opt = dao.getAccount(ACCOUNT_ID_WITH_EMAIL);
@@ -367,7 +534,7 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), eq(PHONE_QUERY_PARAMS), isNull(), isNull(),
-                eq(HibernateAccount.class))).thenReturn(ImmutableList.of(hibernateAccount));
+                eq(HibernateAccount.class), any())).thenReturn(ImmutableList.of(hibernateAccount));
 
         // execute and validate
         Account account = dao.getAccount(ACCOUNT_ID_WITH_PHONE).get();
@@ -389,7 +556,7 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), eq(SYNAPSE_QUERY_PARAMS), isNull(), isNull(),
-                eq(HibernateAccount.class))).thenReturn(ImmutableList.of(hibernateAccount));
+                eq(HibernateAccount.class), any())).thenReturn(ImmutableList.of(hibernateAccount));
 
         // execute and validate
         Account account = dao.getAccount(ACCOUNT_ID_WITH_SYNID).get();
@@ -412,7 +579,7 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), eq(HEALTHCODE_QUERY_PARAMS), isNull(), isNull(),
-                eq(HibernateAccount.class))).thenReturn(ImmutableList.of(hibernateAccount));
+                eq(HibernateAccount.class), any())).thenReturn(ImmutableList.of(hibernateAccount));
 
         // execute and validate
         Account account = dao.getAccount(ACCOUNT_ID_WITH_HEALTHCODE).get();
@@ -435,7 +602,7 @@ public class HibernateAccountDaoTest extends Mockito {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), eq(EXTID_QUERY_PARAMS), isNull(), isNull(),
-                eq(HibernateAccount.class))).thenReturn(ImmutableList.of(hibernateAccount));
+                eq(HibernateAccount.class), any())).thenReturn(ImmutableList.of(hibernateAccount));
 
         // execute and validate
         Account account = dao.getAccount(ACCOUNT_ID_WITH_EXTID).get();
@@ -451,7 +618,7 @@ public class HibernateAccountDaoTest extends Mockito {
     @Test
     public void deleteWithId() throws Exception {
         HibernateAccount hibernateAccount = makeValidHibernateAccount(false);
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID)).thenReturn(hibernateAccount);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any())).thenReturn(hibernateAccount);
 
         // Directly deletes with the ID it has
         dao.deleteAccount(ACCOUNT_ID);
@@ -491,8 +658,8 @@ public class HibernateAccountDaoTest extends Mockito {
 
         when(mockHibernateHelper.queryGet(expQuery, APP_QUERY_PARAMS, 10, 5, String.class))
                 .thenReturn(ImmutableList.of("account-1", "account-2"));
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-1")).thenReturn(hibernateAccount1);        
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-2")).thenReturn(hibernateAccount2);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq("account-1"), any())).thenReturn(hibernateAccount1);        
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq("account-2"), any())).thenReturn(hibernateAccount2);
         when(mockHibernateHelper.queryCount(eq(expCountQuery), any())).thenReturn(12);
 
         // execute and validate
@@ -528,8 +695,8 @@ public class HibernateAccountDaoTest extends Mockito {
 
         // verify hibernate calls
         verify(mockHibernateHelper).queryGet(eq(expQuery), eq(APP_QUERY_PARAMS), eq(10), eq(5), eq(String.class));
-        verify(mockHibernateHelper).getById(HibernateAccount.class, "account-1");
-        verify(mockHibernateHelper).getById(HibernateAccount.class, "account-2");
+        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq("account-1"), any());
+        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq("account-2"), any());
         verify(mockHibernateHelper).queryCount(expCountQuery, APP_QUERY_PARAMS);
     }
     
@@ -596,8 +763,8 @@ public class HibernateAccountDaoTest extends Mockito {
         hibernateAccount2.setEnrollments(set);
         when(mockHibernateHelper.queryGet(any(), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of("account-1", "account-2"));
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-1")).thenReturn(hibernateAccount1);
-        when(mockHibernateHelper.getById(HibernateAccount.class, "account-2")).thenReturn(hibernateAccount2);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq("account-1"), any())).thenReturn(hibernateAccount1);
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq("account-2"), any())).thenReturn(hibernateAccount2);
 
         AccountSummarySearch search = new AccountSummarySearch.Builder().build();
         PagedResourceList<AccountSummary> accountSummaryResourceList = dao.getPagedAccountSummaries(TEST_APP_ID, search);
@@ -633,7 +800,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(ACCOUNT_ID));
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID))
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any()))
                 .thenReturn(makeValidHibernateAccount(false));
         when(mockHibernateHelper.queryCount(eq(expCountQuery), any())).thenReturn(11);
 
@@ -680,7 +847,7 @@ public class HibernateAccountDaoTest extends Mockito {
         params.put("orgId", TEST_ORG_ID);
 
         verify(mockHibernateHelper).queryGet(eq(expQuery), paramCaptor.capture(), eq(10), eq(5), eq(String.class));
-        verify(mockHibernateHelper).getById(HibernateAccount.class, ACCOUNT_ID);
+        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any());
         verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
 
         Map<String, Object> capturedParams = paramCaptor.getAllValues().get(0);
@@ -753,7 +920,7 @@ public class HibernateAccountDaoTest extends Mockito {
         // mock hibernate
         when(mockHibernateHelper.queryGet(eq(expQuery), any(), any(), any(), any()))
                 .thenReturn(ImmutableList.of(ACCOUNT_ID));
-        when(mockHibernateHelper.getById(HibernateAccount.class, ACCOUNT_ID))
+        when(mockHibernateHelper.getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any()))
             .thenReturn(makeValidHibernateAccount(false));
         when(mockHibernateHelper.queryCount(any(), any())).thenReturn(11);
 
@@ -790,7 +957,7 @@ public class HibernateAccountDaoTest extends Mockito {
         params.put("language", "de");
 
         verify(mockHibernateHelper).queryGet(eq(expQuery), paramCaptor.capture(), eq(10), eq(5), eq(String.class));
-        verify(mockHibernateHelper).getById(HibernateAccount.class, ACCOUNT_ID);
+        verify(mockHibernateHelper).getById(eq(HibernateAccount.class), eq(ACCOUNT_ID), any());
         verify(mockHibernateHelper).queryCount(eq(expCountQuery), paramCaptor.capture());
 
         Map<String, Object> capturedParams = paramCaptor.getAllValues().get(0);
@@ -949,6 +1116,35 @@ public class HibernateAccountDaoTest extends Mockito {
         assertEquals(builder.getParameters().get("appId"), TEST_APP_ID);
     }
 
+    @Test
+    public void searchIndexQueryCorrect() throws Exception {
+        when(mockConfig.get(HibernateAccountDao.SEARCH_INDEX_ENABLED_PROPERTY)).thenReturn("true");
+        dao.setBridgeConfig(mockConfig);
+        
+        AccountSummarySearch search = new AccountSummarySearch.Builder().withEmailFilter("Email")
+                .withPhoneFilter("206").withExternalIdFilter("ex").build();
+
+        QueryBuilder builder = dao.makeQuery(FULL_QUERY, TEST_APP_ID, null, search, false);
+        
+        String finalQuery = "SELECT acct FROM HibernateAccount AS acct LEFT JOIN acct.enrollments AS enrollment "
+                + "WITH acct.id = enrollment.accountId WHERE acct.appId = :appId AND (acct.id IN (SELECT "
+                + "termAcct.id FROM HibernateAccount AS termAcct JOIN termAcct.searchTerms AS term WHERE "
+                + "term.appId = :emailAppId AND term.field = :emailField AND term.term LIKE :emailTerm) AND "
+                + "acct.email LIKE :email) AND (acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct "
+                + "JOIN termAcct.searchTerms AS term WHERE term.appId = :numberAppId AND term.field = :numberField AND "
+                + "term.term LIKE :numberTerm) AND acct.phone.number LIKE :number) AND "
+                + "enrollment.externalId LIKE :extId GROUP BY acct.id";
+        assertEquals(builder.getQuery(), finalQuery);
+        assertEquals(builder.getParameters().get("emailAppId"), TEST_APP_ID);
+        assertEquals(builder.getParameters().get("emailField"), AccountSearchIndex.EMAIL_FIELD);
+        assertEquals(builder.getParameters().get("emailTerm"), "email%");
+        assertEquals(builder.getParameters().get("email"), "%Email%");
+        assertEquals(builder.getParameters().get("numberTerm"), "206%");
+        assertEquals(builder.getParameters().get("number"), "%206%");
+        // Too short to use the index
+        assertEquals(builder.getParameters().get("extId"), "%ex%");
+    }
+
     @Test
     public void languageQueryCorrect() throws Exception {
         AccountSummarySearch search = new AccountSummarySearch.Builder().withLanguage("en").build();
@@ -1309,6 +1505,44 @@ public class HibernateAccountDaoTest extends Mockito {
         assertNull(params1.get("idFilter"));        
     }
     
+    @Test
+    public void getStudyHealthCodes() {
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(String.class)))
+            .thenReturn(ImmutableList.of("healthCode2", "healthCode3"));
+        
+        List<String> retValue = dao.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of("group1", "group2"),
+                "healthCode1", 50);
+        assertEquals(retValue, ImmutableList.of("healthCode2", "healthCode3"));
+        
+        String query = "SELECT acct.healthCode FROM HibernateAccount AS acct JOIN acct.enrollments AS enrollment "
+                + "WITH acct.id = enrollment.accountId WHERE acct.appId = :appId AND enrollment.studyId = :studyId "
+                + "AND acct.healthCode > :offsetKey AND enrollment.withdrawnOn IS NULL AND (:IN1 IN "
+                + "elements(acct.dataGroups) AND :IN2 IN elements(acct.dataGroups)) ORDER BY acct.healthCode";
+        verify(mockHibernateHelper).readReplica();
+        verify(mockHibernateHelper).queryGet(eq(query), paramCaptor.capture(), isNull(), eq(50), eq(String.class));
+        
+        Map<String,Object> params = paramCaptor.getValue();
+        assertEquals(params.get("appId"), TEST_APP_ID);
+        assertEquals(params.get("studyId"), TEST_STUDY_ID);
+        assertEquals(params.get("offsetKey"), "healthCode1");
+        assertEquals(params.get("IN1"), "group1");
+        assertEquals(params.get("IN2"), "group2");
+    }
+    
+    @Test
+    public void getStudyHealthCodesFirstPage() {
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(String.class)))
+            .thenReturn(ImmutableList.of());
+        
+        dao.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of(), null, 50);
+        
+        String query = "SELECT acct.healthCode FROM HibernateAccount AS acct JOIN acct.enrollments AS enrollment "
+                + "WITH acct.id = enrollment.accountId WHERE acct.appId = :appId AND enrollment.studyId = :studyId "
+                + "AND enrollment.withdrawnOn IS NULL ORDER BY acct.healthCode";
+        verify(mockHibernateHelper).queryGet(eq(query), paramCaptor.capture(), isNull(), eq(50), eq(String.class));
+        assertFalse(paramCaptor.getValue().containsKey("offsetKey"));
+    }
+    
     @Test
     public void deleteAllAccounts() {
         dao.deleteAllAccounts(TEST_APP_ID);
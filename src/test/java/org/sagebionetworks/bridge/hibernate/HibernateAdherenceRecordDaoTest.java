@@ -7,12 +7,14 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
 import static org.sagebionetworks.bridge.TestUtils.getAdherenceRecord;
+import static org.sagebionetworks.bridge.hibernate.HibernateAdherenceRecordDao.BATCH_SIZE_PROPERTY;
 import static org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecordType.ASSESSMENT;
 import static org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecordType.SESSION;
 import static org.sagebionetworks.bridge.models.schedules2.adherence.SortOrder.ASC;
 import static org.sagebionetworks.bridge.models.schedules2.adherence.SortOrder.DESC;
 import static org.sagebionetworks.bridge.validators.AdherenceRecordsSearchValidator.DEFAULT_PAGE_SIZE;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
 import java.util.List;
 import java.util.Map;
@@ -35,6 +37,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.schedules2.Schedule2;
 import org.sagebionetworks.bridge.models.schedules2.adherence.AdherenceRecord;
@@ -66,12 +69,16 @@ public class HibernateAdherenceRecordDaoTest extends Mockito {
     @Captor
     ArgumentCaptor<AdherenceRecordId> idCaptor;
 
+    @Captor
+    ArgumentCaptor<List<AdherenceRecord>> listCaptor;
+
     @InjectMocks
     HibernateAdherenceRecordDao dao;
 
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
+        when(mockHelper.readReplica()).thenReturn(mockHelper);
 
         when(mockSession.createNativeQuery(any())).thenReturn(mockQuery);
         when(mockHelper.executeWithExceptionHandling(any(), any())).thenAnswer(args -> {
@@ -325,6 +332,51 @@ public class HibernateAdherenceRecordDaoTest extends Mockito {
         verifyNoMoreInteractions(mockHelper);
     }
 
+    @Test
+    public void updateAdherenceRecords() {
+        BridgeConfig mockConfig = mock(BridgeConfig.class);
+        when(mockConfig.getInt(BATCH_SIZE_PROPERTY)).thenReturn(50);
+        dao.setBridgeConfig(mockConfig);
+        
+        AdherenceRecord started = new AdherenceRecord();
+        started.setInstanceGuid("started");
+        started.setStartedOn(CREATED_ON);
+        AdherenceRecord declined = new AdherenceRecord();
+        declined.setInstanceGuid("declined");
+        declined.setDeclined(true);
+        AdherenceRecord deleted = new AdherenceRecord();
+        deleted.setUserId(TEST_USER_ID);
+        deleted.setStudyId(TEST_STUDY_ID);
+        deleted.setInstanceGuid(GUID);
+        when(mockHelper.getById(eq(AdherenceRecord.class), any())).thenReturn(new AdherenceRecord());
+        
+        dao.updateAdherenceRecords(ImmutableList.of(started, deleted, declined));
+        
+        verify(mockHelper).bulkUpsert(ImmutableList.of(started, declined), 50);
+        verify(mockHelper).deleteById(eq(AdherenceRecord.class), idCaptor.capture());
+        assertEquals(idCaptor.getValue().getInstanceGuid(), GUID);
+        verify(mockHelper, never()).saveOrUpdate(any());
+    }
+
+    @Test
+    public void updateAdherenceRecordsKeepsLastOfDuplicates() {
+        BridgeConfig mockConfig = mock(BridgeConfig.class);
+        when(mockConfig.getInt(BATCH_SIZE_PROPERTY)).thenReturn(50);
+        dao.setBridgeConfig(mockConfig);
+        
+        AdherenceRecord first = getAdherenceRecord(GUID);
+        AdherenceRecord other = getAdherenceRecord("otherGuid");
+        AdherenceRecord last = getAdherenceRecord(GUID);
+        last.setFinishedOn(MODIFIED_ON);
+        
+        dao.updateAdherenceRecords(ImmutableList.of(first, other, last));
+        
+        verify(mockHelper).bulkUpsert(listCaptor.capture(), eq(50));
+        assertEquals(listCaptor.getValue().size(), 2);
+        assertSame(listCaptor.getValue().get(0), last);
+        assertSame(listCaptor.getValue().get(1), other);
+    }
+
     private AdherenceRecordsSearch.Builder search() {
         return new AdherenceRecordsSearch.Builder().withUserId(TEST_USER_ID).withStudyId(TEST_STUDY_ID);
     }
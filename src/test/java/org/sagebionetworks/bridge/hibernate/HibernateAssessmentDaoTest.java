@@ -1,5 +1,6 @@
 package org.sagebionetworks.bridge.hibernate;
 
+import static org.sagebionetworks.bridge.BridgeConstants.SHARED_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.GUID;
 import static org.sagebionetworks.bridge.TestConstants.IDENTIFIER;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
@@ -7,6 +8,9 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_ORG_ID;
 import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.DELETE_ALL_ASSESSMENTS_SQL;
 import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.DELETE_CONFIG_SQL;
 import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.DELETE_RESOURCES_SQL;
+import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.LATEST_REVISION_QUERY_SPACE;
+import static org.sagebionetworks.bridge.hibernate.HibernateAssessmentDao.UPDATE_LATEST_REVISION_SQL;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_QUERY_REGION;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -26,8 +30,10 @@ import com.google.common.collect.ImmutableSet;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.NativeQuery;
+import org.joda.time.DateTime;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -35,7 +41,9 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConcurrentModificationException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
 import org.sagebionetworks.bridge.models.assessments.AssessmentTest;
@@ -45,30 +53,23 @@ import org.sagebionetworks.bridge.models.assessments.config.HibernateAssessmentC
 
 public class HibernateAssessmentDaoTest extends Mockito {
     
-    private static final String QUERY_SQL_EXC_DELETED = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "
-            +"a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId AND deleted = 0 ORDER BY createdOn DESC";
+    private static final String QUERY_SQL_EXC_DELETED = "FROM Assessments AS a WHERE a.appId = :appId AND "
+            +"a.latestRevision = 1 AND a.deleted = 0 ORDER BY a.createdOn DESC, a.guid DESC";
 
-    private static final String QUERY_SQL_WITH_OWNERID_EXC_DELETED = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"AND ownerId = :ownerId GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "
-            +"a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId AND ownerId = :ownerId AND deleted = 0 ORDER BY createdOn DESC";
-    
-    private static final String QUERY_SQL_INC_DELETED = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "+
-            "a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId ORDER BY createdOn DESC";
-    
-    private static final String QUERY_SQL_WITH_TAGS = "FROM ( SELECT DISTINCT "
-            +"identifier as id, MAX(revision) AS rev FROM Assessments WHERE appId = :appId "
-            +"GROUP BY identifier) AS latest_assessments INNER JOIN Assessments AS a ON "
-            +"a.identifier = latest_assessments.id AND a.revision = latest_assessments.rev "
-            +"WHERE appId = :appId AND guid IN (SELECT DISTINCT assessmentGuid FROM "
-            +"AssessmentTags WHERE tagValue IN :tags) AND deleted = 0 ORDER BY createdOn DESC";
+    private static final String QUERY_SQL_WITH_OWNERID_EXC_DELETED = "FROM Assessments AS a WHERE a.appId = "
+            +":appId AND a.latestRevision = 1 AND a.ownerId = :ownerId AND a.deleted = 0 ORDER BY "
+            +"a.createdOn DESC, a.guid DESC";
+    
+    private static final String QUERY_SQL_INC_DELETED = "FROM Assessments AS a WHERE a.appId = :appId AND "
+            +"a.latestRevision = 1 ORDER BY a.createdOn DESC, a.guid DESC";
+    
+    private static final String QUERY_SQL_WITH_TAGS = "FROM Assessments AS a WHERE a.appId = :appId AND "
+            +"a.latestRevision = 1 AND EXISTS (SELECT 1 FROM AssessmentTags AS t WHERE t.assessmentGuid = a.guid "
+            +"AND t.tagValue IN :tags) AND a.deleted = 0 ORDER BY a.createdOn DESC, a.guid DESC";
+    
+    private static final String QUERY_SQL_AFTER_OFFSET_KEY = "FROM Assessments AS a WHERE a.appId = :appId AND "
+            +"a.latestRevision = 1 AND a.deleted = 0 AND (a.createdOn < :createdOn OR (a.createdOn = :createdOn "
+            +"AND a.guid < :guid)) ORDER BY a.createdOn DESC, a.guid DESC";
     
     private static final String QUERY_GET_REVISIONS_EXC_DELETED = "FROM HibernateAssessment WHERE "
             +"appId = :appId AND identifier = :identifier AND deleted = 0 ORDER BY "
@@ -116,6 +117,9 @@ public class HibernateAssessmentDaoTest extends Mockito {
     @Mock
     NativeQuery<?> mockDelConfigQuery;
     
+    @Mock
+    NativeQuery<?> mockLatestRevisionQuery;
+    
     @InjectMocks
     @Spy
     HibernateAssessmentDao dao;
@@ -123,11 +127,29 @@ public class HibernateAssessmentDaoTest extends Mockito {
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
+        when(mockHelper.readReplica()).thenReturn(mockHelper);
         
         when(mockHelper.executeWithExceptionHandling(any(), any())).then(answer -> {
             Function<Session,HibernateAssessment> func = answer.getArgument(1);
             return func.apply(mockSession);
         });
+        when(mockSession.createNativeQuery(UPDATE_LATEST_REVISION_SQL)).thenReturn(mockLatestRevisionQuery);
+    }
+    
+    private void verifyLatestRevisionUpdated(String appId, String identifier) {
+        InOrder inOrder = inOrder(mockSession, mockLatestRevisionQuery);
+        inOrder.verify(mockSession).flush();
+        inOrder.verify(mockLatestRevisionQuery).setParameter("appId", appId);
+        inOrder.verify(mockLatestRevisionQuery).setParameter("identifier", identifier);
+        inOrder.verify(mockLatestRevisionQuery).addSynchronizedQuerySpace(LATEST_REVISION_QUERY_SPACE);
+        inOrder.verify(mockLatestRevisionQuery).executeUpdate();
+    }
+    
+    private static HibernateAssessment assessment(String guid, long createdOn) {
+        HibernateAssessment assessment = new HibernateAssessment();
+        assessment.setGuid(guid);
+        assessment.setCreatedOn(new DateTime(createdOn));
+        return assessment;
     }
 
     @Test
@@ -189,6 +211,58 @@ public class HibernateAssessmentDaoTest extends Mockito {
         assertEquals(queryCaptor.getAllValues().get(1), "SELECT * " + QUERY_SQL_WITH_TAGS);
     }
     
+    @Test
+    public void getAssessmentsByOffsetKey_firstPage() {
+        when(mockHelper.nativeQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(0), eq(3), 
+                eq(HibernateAssessment.class))).thenReturn(ImmutableList.of(
+                        assessment("guid1", 3000L), assessment("guid2", 2000L), assessment("guid3", 1000L)));
+        
+        ForwardCursorPagedResourceList<Assessment> page = dao.getAssessmentsByOffsetKey(
+                TEST_APP_ID, null, null, 2, null, false);
+        assertEquals(queryCaptor.getValue(), "SELECT * " + QUERY_SQL_EXC_DELETED);
+        assertEquals(page.getItems().size(), 2);
+        assertEquals(page.getItems().get(1).getGuid(), "guid2");
+        assertEquals(page.getNextPageOffsetKey(), "2000:guid2");
+        
+        verify(mockHelper, never()).nativeQueryCount(any(), any());
+    }
+    
+    @Test
+    public void getAssessmentsByOffsetKey_lastPage() {
+        when(mockHelper.nativeQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(0), eq(3), 
+                eq(HibernateAssessment.class))).thenReturn(ImmutableList.of(assessment("guid3", 1000L)));
+        
+        ForwardCursorPagedResourceList<Assessment> page = dao.getAssessmentsByOffsetKey(
+                TEST_APP_ID, null, "2000:guid2", 2, null, false);
+        assertEquals(queryCaptor.getValue(), "SELECT * " + QUERY_SQL_AFTER_OFFSET_KEY);
+        assertEquals(page.getItems().size(), 1);
+        assertNull(page.getNextPageOffsetKey());
+        
+        Map<String,Object> params = paramsCaptor.getValue();
+        assertEquals(params.get("appId"), TEST_APP_ID);
+        assertEquals(params.get("createdOn"), 2000L);
+        assertEquals(params.get("guid"), "guid2");
+    }
+    
+    @Test
+    public void getAssessmentsByOffsetKey_missingCreatedOn() {
+        HibernateAssessment noCreatedOn = assessment("guid2", 0L);
+        noCreatedOn.setCreatedOn(null);
+        when(mockHelper.nativeQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(0), eq(3), 
+                eq(HibernateAssessment.class))).thenReturn(ImmutableList.of(
+                        assessment("guid1", 3000L), noCreatedOn, assessment("guid3", 0L)));
+        
+        ForwardCursorPagedResourceList<Assessment> page = dao.getAssessmentsByOffsetKey(
+                TEST_APP_ID, null, null, 2, null, false);
+        assertEquals(page.getNextPageOffsetKey(), "0:guid2");
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class, 
+            expectedExceptionsMessageRegExp = "Invalid offsetKey: guid2")
+    public void getAssessmentsByOffsetKey_invalidKey() {
+        dao.getAssessmentsByOffsetKey(TEST_APP_ID, null, "guid2", 2, null, false);
+    }
+    
     @Test
     public void getAssessmentRevisionsIncludeDeleted_withoutOwnerId() {
         when(mockHelper.queryCount(queryCaptor.capture(), paramsCaptor.capture()))
@@ -249,7 +323,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByGuid_withOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateAssessment.class),
+                eq(ASSESSMENT_QUERY_REGION)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, TEST_ORG_ID, GUID_VALUE);
@@ -265,7 +340,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
 
     @Test
     public void getAssessmentByGuid_withoutOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateAssessment.class),
+                eq(ASSESSMENT_QUERY_REGION)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, GUID_VALUE);
@@ -280,7 +356,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByGuidNoEntity() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateAssessment.class),
+                eq(ASSESSMENT_QUERY_REGION)))
             .thenReturn(ImmutableList.of());
     
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, GUID_VALUE);
@@ -289,7 +366,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
 
     @Test
     public void getAssessmentByIdAndRevision_withoutOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateAssessment.class),
+                eq(ASSESSMENT_QUERY_REGION)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, ID_VALUE, REV_VALUE);
@@ -305,7 +383,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByIdAndRevision_withOwnerId() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateAssessment.class),
+                eq(ASSESSMENT_QUERY_REGION)))
             .thenReturn(ImmutableList.of(HIBERNATE_ASSESSMENT));
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, TEST_ORG_ID, ID_VALUE, REV_VALUE);
@@ -322,7 +401,8 @@ public class HibernateAssessmentDaoTest extends Mockito {
     
     @Test
     public void getAssessmentByIdAndRevisionNoEntity() {
-        when(mockHelper.queryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(null), eq(null), eq(HibernateAssessment.class)))
+        when(mockHelper.cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(), eq(HibernateAssessment.class),
+                eq(ASSESSMENT_QUERY_REGION)))
             .thenReturn(ImmutableList.of());
         
         Optional<Assessment> retValue = dao.getAssessment(TEST_APP_ID, null, ID_VALUE, REV_VALUE);
@@ -345,16 +425,21 @@ public class HibernateAssessmentDaoTest extends Mockito {
         
         verify(mockSession).merge(assessmentCaptor.capture());
         assertEquals(assessmentCaptor.getValue().getGuid(), GUID);
+        
+        verifyLatestRevisionUpdated(TEST_APP_ID, IDENTIFIER);
     }
 
     @Test
     public void updateAssessment() throws Exception {
         when(mockSession.merge(any())).thenReturn(HIBERNATE_ASSESSMENT);
         
-        Assessment returnValue = dao.updateAssessment(TEST_APP_ID, new Assessment());
+        Assessment assessment = new Assessment();
+        assessment.setIdentifier(ID_VALUE);
+        Assessment returnValue = dao.updateAssessment(TEST_APP_ID, assessment);
         assertNotNull(returnValue);
         
         verify(mockSession).merge(any(HibernateAssessment.class));
+        verifyLatestRevisionUpdated(TEST_APP_ID, ID_VALUE);
     }
     
     // I discovered a ClassCastException because we're not converting and returning
@@ -402,6 +487,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         verify(mockDelConfigQuery).setParameter("guid", GUID);
         verify(mockDelConfigQuery).executeUpdate();
         verify(mockSession).remove(any());
+        verifyLatestRevisionUpdated(TEST_APP_ID, IDENTIFIER);
     }
 
     @Test
@@ -438,6 +524,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         verify(mockHelper).executeWithExceptionHandling(any(HibernateAssessment.class), any());
         verify(mockSession).saveOrUpdate(any(HibernateAssessmentConfig.class));
         verify(mockSession).saveOrUpdate(any(HibernateAssessment.class));
+        verifyLatestRevisionUpdated(SHARED_APP_ID, IDENTIFIER);
     }
     
     @Test
@@ -451,6 +538,7 @@ public class HibernateAssessmentDaoTest extends Mockito {
         verify(mockHelper).executeWithExceptionHandling(any(HibernateAssessment.class), any());
         verify(mockSession).saveOrUpdate(any(HibernateAssessmentConfig.class));
         verify(mockSession).merge(any(HibernateAssessment.class));
+        verifyLatestRevisionUpdated(TEST_APP_ID, IDENTIFIER);
     }
 
     @Test
@@ -0,0 +1,119 @@
+package org.sagebionetworks.bridge.hibernate;
+
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_QUERY_REGION;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_REGION;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.CHANNEL;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.STUDY_REGION;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TEMPLATE_REVISION_CACHE;
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+public class HibernateCacheInvalidatorTest extends Mockito {
+
+    @Mock
+    SessionFactory mockSessionFactory;
+
+    @Mock
+    JedisPool mockJedisPool;
+
+    @Mock
+    Jedis mockJedis;
+
+    @Mock
+    Cache mockCache;
+
+    @InjectMocks
+    HibernateCacheInvalidator invalidator;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        when(mockSessionFactory.getCache()).thenReturn(mockCache);
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+    }
+
+    @Test
+    public void invalidatePublishesRegion() {
+        invalidator.invalidate(ASSESSMENT_REGION);
+
+        verify(mockJedis).publish(CHANNEL, invalidator.serverId + ":" + ASSESSMENT_REGION);
+        verify(mockJedis).close();
+        verify(mockCache, never()).evictRegion(any());
+    }
+
+    @Test
+    public void invalidateDoesNotThrowWhenRedisFails() {
+        when(mockJedisPool.getResource()).thenThrow(new JedisConnectionException("test"));
+
+        invalidator.invalidate(ASSESSMENT_REGION);
+    }
+
+    @Test
+    public void receiveEvictsRegionAndQueryRegion() {
+        invalidator.receive("other-server:" + ASSESSMENT_REGION);
+
+        verify(mockCache).evictRegion(ASSESSMENT_REGION);
+        verify(mockCache).evictQueryRegion(ASSESSMENT_QUERY_REGION);
+    }
+
+    @Test
+    public void receiveEvictsRegionWithoutQueryRegion() {
+        invalidator.receive("other-server:" + STUDY_REGION);
+
+        verify(mockCache).evictRegion(STUDY_REGION);
+        verify(mockCache, never()).evictQueryRegion(any());
+    }
+
+    @Test
+    public void receiveIgnoresOwnMessages() {
+        invalidator.receive(invalidator.serverId + ":" + ASSESSMENT_REGION);
+
+        verify(mockCache, never()).evictRegion(any());
+    }
+
+    @Test
+    public void invalidatePublishesLocalCacheKey() {
+        invalidator.invalidate(TEMPLATE_REVISION_CACHE, "appId");
+
+        verify(mockJedis).publish(CHANNEL, invalidator.serverId + ":" + TEMPLATE_REVISION_CACHE + ":appId");
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void receiveEvictsLocalCacheKey() {
+        List<String> evicted = new ArrayList<>();
+        invalidator.registerLocalCache(TEMPLATE_REVISION_CACHE, evicted::add);
+
+        invalidator.receive("other-server:" + TEMPLATE_REVISION_CACHE + ":appId");
+        invalidator.receive(invalidator.serverId + ":" + TEMPLATE_REVISION_CACHE + ":ownAppId");
+        invalidator.receive("other-server:unknown-cache:appId");
+
+        assertEquals(evicted, ImmutableList.of("appId"));
+        verify(mockCache, never()).evictRegion(any());
+    }
+
+    @Test
+    public void receiveIgnoresUnknownRegions() {
+        invalidator.receive("other-server:unknown");
+        invalidator.receive("malformed");
+
+        verify(mockCache, never()).evictRegion(any());
+        verify(mockCache, never()).evictQueryRegion(any());
+    }
+}
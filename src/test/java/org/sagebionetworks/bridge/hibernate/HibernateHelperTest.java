@@ -8,14 +8,24 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sagebionetworks.bridge.RequestContext.NULL_INSTANCE;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.hibernate.ReadReplicaRouter.Route.AFTER_WRITE;
+import static org.sagebionetworks.bridge.hibernate.ReadReplicaRouter.Route.FALLBACK;
+import static org.sagebionetworks.bridge.hibernate.ReadReplicaRouter.Route.NO_REQUEST;
+import static org.sagebionetworks.bridge.hibernate.ReadReplicaRouter.Route.REPLICA;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -23,23 +33,28 @@ import java.util.function.Function;
 
 import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import org.hibernate.Session;
+import org.hibernate.SessionBuilder;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.JDBCConnectionException;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.accounts.Account;
 
@@ -70,6 +85,11 @@ public class HibernateHelperTest {
             return function.apply(mockSession);
         }).when(helper).execute(any());
     }
+    
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(NULL_INSTANCE);
+    }
 
     @Test
     public void createSuccess() {
@@ -237,6 +257,25 @@ public class HibernateHelperTest {
         verify(mockQuery).setParameter("id", 10L);
     }
 
+    @Test
+    public void cachedQueryGet() {
+        // mock query
+        List<Object> hibernateOutputList = ImmutableList.of();
+        Query<Object> mockQuery = mock(Query.class);
+        when(mockQuery.list()).thenReturn(hibernateOutputList);
+
+        when(mockSession.createQuery(QUERY, Object.class)).thenReturn(mockQuery);
+
+        // execute and validate
+        List<Object> helperOutputList = helper.cachedQueryGet(QUERY, PARAMETERS, Object.class, "test-region");
+        assertSame(helperOutputList, hibernateOutputList);
+
+        verify(mockQuery).setParameter("appId", TEST_APP_ID);
+        verify(mockQuery).setParameter("id", 10L);
+        verify(mockQuery).setCacheable(true);
+        verify(mockQuery).setCacheRegion("test-region");
+    }
+
     @Test
     public void queryUpdate() {
         // mock query
@@ -279,6 +318,50 @@ public class HibernateHelperTest {
         verify(mockQuery).executeUpdate();
     }
     
+    @Test
+    public void bulkInsert() {
+        Object obj1 = new Object();
+        Object obj2 = new Object();
+        Object obj3 = new Object();
+        
+        helper.bulkInsert(ImmutableList.of(obj1, obj2, obj3), 2);
+        
+        InOrder inOrder = inOrder(mockSession);
+        inOrder.verify(mockSession).setJdbcBatchSize(2);
+        inOrder.verify(mockSession).save(obj1);
+        inOrder.verify(mockSession).save(obj2);
+        inOrder.verify(mockSession).flush();
+        inOrder.verify(mockSession).clear();
+        inOrder.verify(mockSession).save(obj3);
+        verify(mockSession, times(1)).flush();
+        verify(helper, times(1)).execute(any());
+    }
+    
+    @Test
+    public void bulkUpsert() {
+        Object obj1 = new Object();
+        Object obj2 = new Object();
+        
+        helper.bulkUpsert(ImmutableList.of(obj1, obj2), 100);
+        
+        verify(mockSession).setJdbcBatchSize(100);
+        verify(mockSession).saveOrUpdate(obj1);
+        verify(mockSession).saveOrUpdate(obj2);
+        verify(mockSession, never()).flush();
+    }
+    
+    @Test
+    public void bulkUpsertNothing() {
+        helper.bulkUpsert(ImmutableList.of(), 100);
+        
+        verify(helper, never()).execute(any());
+    }
+    
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void bulkInsertRejectsInvalidBatchSize() {
+        helper.bulkInsert(ImmutableList.of(new Object()), 0);
+    }
+    
     @Test
     public void saveOrUpdate() {
         Object testObj = new Object();
@@ -626,4 +709,154 @@ public class HibernateHelperTest {
         verify(mockQuery).setParameter("c", "d");
         verify(mockQuery).getResultList();
     }
+    
+    @Test
+    public void readReplicaWithoutReplicaReturnsSameHelper() {
+        assertSame(helper.readReplica(), helper);
+        
+        HibernateHelper routedHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter,
+                new ReadReplicaRouter(null));
+        assertSame(routedHelper.readReplica(), routedHelper);
+    }
+    
+    @Test
+    public void readReplicaReadsFromReplica() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-1").build());
+        SessionFactory mockReplicaFactory = mockOpenSession(mock(SessionFactory.class), mockSession);
+        ReadReplicaRouter router = new ReadReplicaRouter(mockReplicaFactory);
+        HibernateHelper routedHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, router);
+        
+        HibernateHelper replicaHelper = routedHelper.readReplica();
+        assertNotSame(replicaHelper, routedHelper);
+        assertSame(replicaHelper.readReplica(), replicaHelper);
+        
+        Account account = Account.create();
+        when(mockSession.get(Account.class, "id")).thenReturn(account);
+        assertSame(replicaHelper.getById(Account.class, "id"), account);
+        
+        verify(mockReplicaFactory).openSession();
+        verify(mockSession).setDefaultReadOnly(true);
+        verify(mockSessionFactory, never()).openSession();
+        assertEquals(router.getRouteCount(REPLICA), 1L);
+    }
+    
+    @Test
+    public void readReplicaReadsFromPrimaryAfterWrite() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-1").build());
+        Session mockReplicaSession = mock(Session.class);
+        SessionFactory mockReplicaFactory = mockOpenSession(mock(SessionFactory.class), mockReplicaSession);
+        mockOpenSession(mockSessionFactory, mockSession);
+        ReadReplicaRouter router = new ReadReplicaRouter(mockReplicaFactory);
+        HibernateHelper routedHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, router);
+        
+        routedHelper.saveOrUpdate(new Object());
+        routedHelper.readReplica().getById(Account.class, "id");
+        
+        verify(mockSessionFactory, times(2)).openSession();
+        verify(mockReplicaFactory, never()).openSession();
+        assertEquals(router.getRouteCount(AFTER_WRITE), 1L);
+        
+        // A later request on the same thread reads from the replica again.
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-2").build());
+        routedHelper.readReplica().getById(Account.class, "id");
+        
+        verify(mockReplicaFactory).openSession();
+        assertEquals(router.getRouteCount(REPLICA), 1L);
+    }
+    
+    @Test
+    public void readReplicaReadsFromPrimaryOutsideOfRequest() {
+        SessionFactory mockReplicaFactory = mock(SessionFactory.class);
+        mockOpenSession(mockSessionFactory, mockSession);
+        ReadReplicaRouter router = new ReadReplicaRouter(mockReplicaFactory);
+        HibernateHelper routedHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, router);
+        
+        routedHelper.readReplica().getById(Account.class, "id");
+        
+        verify(mockSessionFactory).openSession();
+        verify(mockReplicaFactory, never()).openSession();
+        assertEquals(router.getRouteCount(NO_REQUEST), 1L);
+    }
+    
+    @Test
+    public void readReplicaFallsBackToPrimary() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-1").build());
+        SessionFactory mockReplicaFactory = mock(SessionFactory.class);
+        when(mockReplicaFactory.openSession()).thenThrow(new JDBCConnectionException("Unable to acquire JDBC "
+                + "Connection", new SQLException()));
+        mockOpenSession(mockSessionFactory, mockSession);
+        ReadReplicaRouter router = new ReadReplicaRouter(mockReplicaFactory);
+        HibernateHelper routedHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, router);
+        
+        Account account = Account.create();
+        when(mockSession.get(Account.class, "id")).thenReturn(account);
+        assertSame(routedHelper.readReplica().getById(Account.class, "id"), account);
+        
+        verify(mockSessionFactory).openSession();
+        verify(mockSession).setDefaultReadOnly(false);
+        assertEquals(router.getRouteCount(REPLICA), 1L);
+        assertEquals(router.getRouteCount(FALLBACK), 1L);
+    }
+    
+    @Test
+    public void readsDoNotMakeRequestReadFromPrimary() {
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-1").build());
+        Session mockReplicaSession = mock(Session.class);
+        SessionFactory mockReplicaFactory = mockOpenSession(mock(SessionFactory.class), mockReplicaSession);
+        mockOpenSession(mockSessionFactory, mockSession);
+        ReadReplicaRouter router = new ReadReplicaRouter(mockReplicaFactory);
+        HibernateHelper routedHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, router);
+        
+        routedHelper.getById(Account.class, "id");
+        routedHelper.readReplica().getById(Account.class, "id");
+        
+        verify(mockSessionFactory).openSession();
+        verify(mockReplicaFactory).openSession();
+        assertEquals(router.getRouteCount(REPLICA), 1L);
+    }
+    
+    @Test
+    public void executeTakesConnectionFromDataSource() throws Exception {
+        Connection mockConnection = mock(Connection.class);
+        DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        SessionBuilder mockSessionBuilder = mock(SessionBuilder.class);
+        when(mockSessionFactory.withOptions()).thenReturn(mockSessionBuilder);
+        when(mockSessionBuilder.connection(mockConnection)).thenReturn(mockSessionBuilder);
+        when(mockSessionBuilder.openSession()).thenReturn(mockSession);
+        when(mockSession.beginTransaction()).thenReturn(mockTransaction);
+        
+        HibernateHelper poolHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, null,
+                mockDataSource);
+        Object testObj = new Object();
+        poolHelper.saveOrUpdate(testObj);
+        
+        verify(mockSession).saveOrUpdate(testObj);
+        verify(mockTransaction).commit();
+        verify(mockSession).close();
+        verify(mockConnection).close();
+        verify(mockSessionFactory, never()).openSession();
+    }
+    
+    @Test
+    public void executeConvertsDataSourceFailure() throws Exception {
+        DataSource mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenThrow(new SQLException());
+        when(mockExceptionConverter.convert(any(), any())).then(invocation -> invocation.getArgument(0));
+        
+        HibernateHelper poolHelper = new HibernateHelper(mockSessionFactory, mockExceptionConverter, null,
+                mockDataSource);
+        try {
+            poolHelper.saveOrUpdate(new Object());
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+            assertTrue(e.getCause() instanceof JDBCConnectionException);
+        }
+    }
+    
+    private SessionFactory mockOpenSession(SessionFactory sessionFactory, Session session) {
+        when(sessionFactory.openSession()).thenReturn(session);
+        when(session.beginTransaction()).thenReturn(mockTransaction);
+        return sessionFactory;
+    }
 }
@@ -11,20 +11,28 @@ import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.BATCH_S
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_ALL_SCHEDULES;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_ORPHANED_SESSIONS;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_SESSIONS;
-import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_TIMELINE_RECORDS;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.DELETE_TIMELINE_RECORD;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_ALL_SCHEDULES;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_ORG_SCHEDULES;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_SCHEDULE;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.GET_TIMELINE_METADATA;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.INSERT;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.INSTANCE_GUID;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_ASSESSMENTS_FOR_SESSION_INSTANCE;
 import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_COUNT;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.SELECT_TIMELINE_RECORDS;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.UPDATE_TIMELINE_RECORD;
+import static org.sagebionetworks.bridge.hibernate.HibernateSchedule2Dao.UPDATE_TIMELINE_SCHEDULE_FIELDS;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.SCHEDULE_QUERY_REGION;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.List;
@@ -33,6 +41,7 @@ import java.util.Optional;
 import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import org.hibernate.Session;
@@ -40,6 +49,7 @@ import org.hibernate.jdbc.Work;
 import org.hibernate.query.NativeQuery;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -208,15 +218,15 @@ public class HibernateSchedule2DaoTest extends Mockito {
     @Test
     public void getScheduleSucceeds() {
         Schedule2 schedule = new Schedule2();
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(Schedule2.class)))
+        when(mockHibernateHelper.cachedQueryGet(any(), any(), eq(Schedule2.class), eq(SCHEDULE_QUERY_REGION)))
                 .thenReturn(ImmutableList.of(schedule));
 
         Optional<Schedule2> retValue = dao.getSchedule(TEST_APP_ID, GUID);
         assertTrue(retValue.isPresent());
         assertEquals(retValue.get(), schedule);
 
-        verify(mockHibernateHelper).queryGet(queryCaptor.capture(), paramsCaptor.capture(), isNull(), isNull(),
-                eq(Schedule2.class));
+        verify(mockHibernateHelper).cachedQueryGet(queryCaptor.capture(), paramsCaptor.capture(),
+                eq(Schedule2.class), eq(SCHEDULE_QUERY_REGION));
         assertEquals(queryCaptor.getValue(), GET_SCHEDULE);
         assertEquals(paramsCaptor.getValue().get("appId"), TEST_APP_ID);
         assertEquals(paramsCaptor.getValue().get("guid"), GUID);
@@ -224,7 +234,7 @@ public class HibernateSchedule2DaoTest extends Mockito {
 
     @Test
     public void getScheduleFails() {
-        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(Schedule2.class)))
+        when(mockHibernateHelper.cachedQueryGet(any(), any(), eq(Schedule2.class), eq(SCHEDULE_QUERY_REGION)))
                 .thenReturn(ImmutableList.of());
 
         Optional<Schedule2> retValue = dao.getSchedule(TEST_APP_ID, GUID);
@@ -235,8 +245,6 @@ public class HibernateSchedule2DaoTest extends Mockito {
     public void createSchedule() {
         Schedule2 schedule = Schedule2Test.createValidSchedule();
 
-        when(mockSession.createNativeQuery(DELETE_TIMELINE_RECORDS)).thenReturn(mockQuery);
-
         Schedule2 retValue = dao.createSchedule(schedule);
         assertEquals(retValue, schedule);
 
@@ -259,14 +267,38 @@ public class HibernateSchedule2DaoTest extends Mockito {
         Schedule2 retValue = dao.updateSchedule(schedule);
         assertEquals(retValue, schedule);
 
-        verify(mockSession, times(2)).createNativeQuery(queryCaptor.capture());
-        assertEquals(queryCaptor.getAllValues().get(0), DELETE_ORPHANED_SESSIONS);
-        assertEquals(queryCaptor.getAllValues().get(1), DELETE_TIMELINE_RECORDS);
+        // Timeline metadata is no longer deleted wholesale, it is updated incrementally
+        verify(mockSession).createNativeQuery(queryCaptor.capture());
+        assertEquals(queryCaptor.getValue(), DELETE_ORPHANED_SESSIONS);
         verify(mockQuery).setParameter("guid", SCHEDULE_GUID);
         verify(mockQuery).setParameter("guids", ImmutableSet.of(SESSION_GUID_1, SESSION_GUID_2));
-        verify(mockQuery, times(2)).executeUpdate();
+        verify(mockQuery).executeUpdate();
         verify(mockSession).update(schedule);
+        verify(mockSession).setJdbcBatchSize(10);
         verify(mockSession).doWork(any());
+
+        // The schedule and its timeline metadata are written in one session, the schedule first
+        verify(mockHibernateHelper, times(1)).executeWithExceptionHandling(any(), any());
+        InOrder inOrder = inOrder(mockSession);
+        inOrder.verify(mockSession).update(schedule);
+        inOrder.verify(mockSession).flush();
+        inOrder.verify(mockSession).doWork(any());
+    }
+
+    @Test
+    public void updateScheduleTimelineMetadataFails() {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        doThrow(new RuntimeException("Connection lost")).when(mockSession).doWork(any());
+
+        try {
+            dao.updateSchedule(schedule);
+            fail("Should have thrown exception");
+        } catch (RuntimeException e) {
+            assertEquals(e.getMessage(), "Connection lost");
+        }
+        // The failure is thrown out of the session that updated the schedule, so that update is rolled back
+        verify(mockHibernateHelper, times(1)).executeWithExceptionHandling(any(), any());
+        verify(mockSession).update(schedule);
     }
 
     @Test
@@ -292,6 +324,173 @@ public class HibernateSchedule2DaoTest extends Mockito {
         verify(mockStatement, times(9)).executeBatch();
     }
 
+    @Test
+    public void updateRecordsIncrementally() throws SQLException {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
+        List<TimelineMetadata> metadata = timeline.getMetadata();
+        
+        // One record is unchanged, one has changed, and one is no longer in the timeline. Everything else is new.
+        TimelineMetadata unchanged = TimelineMetadata.copy(metadata.get(0));
+        TimelineMetadata changed = TimelineMetadata.copy(metadata.get(1));
+        changed.setSessionInstanceEndDay(changed.getSessionInstanceEndDay() + 1);
+        TimelineMetadata removed = TimelineMetadata.copy(metadata.get(2));
+        removed.setGuid("oldGuid");
+        
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockSelect = mock(PreparedStatement.class);
+        PreparedStatement mockDelete = mock(PreparedStatement.class);
+        PreparedStatement mockUpdate = mock(PreparedStatement.class);
+        PreparedStatement mockUpdateSchedule = mock(PreparedStatement.class);
+        PreparedStatement mockInsert = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(SELECT_TIMELINE_RECORDS)).thenReturn(mockSelect);
+        when(mockConnection.prepareStatement(DELETE_TIMELINE_RECORD)).thenReturn(mockDelete);
+        when(mockConnection.prepareStatement(UPDATE_TIMELINE_RECORD)).thenReturn(mockUpdate);
+        when(mockConnection.prepareStatement(UPDATE_TIMELINE_SCHEDULE_FIELDS)).thenReturn(mockUpdateSchedule);
+        when(mockConnection.prepareStatement(INSERT)).thenReturn(mockInsert);
+        ResultSet rs = mockResultSet(ImmutableList.of(unchanged, changed, removed));
+        when(mockSelect.executeQuery()).thenReturn(rs);
+        
+        Work work = dao.updateRecordsIncrementally(schedule, metadata);
+        work.execute(mockConnection);
+        
+        verify(mockConnection).setAutoCommit(false);
+        verify(mockSelect).setString(1, SCHEDULE_GUID);
+        
+        verify(mockDelete).setString(1, "oldGuid");
+        verify(mockDelete).addBatch();
+        verify(mockDelete).executeBatch();
+        
+        verify(mockUpdate).setString(12, changed.getGuid());
+        verify(mockUpdate).setInt(6, changed.getSessionInstanceEndDay() - 1);
+        verify(mockUpdate).addBatch();
+        verify(mockUpdate).executeBatch();
+        
+        verify(mockUpdateSchedule).setLong(1, schedule.getModifiedOn().getMillis());
+        verify(mockUpdateSchedule).setBoolean(2, schedule.isPublished());
+        verify(mockUpdateSchedule).setString(3, SCHEDULE_GUID);
+        verify(mockUpdateSchedule).executeUpdate();
+        
+        // 82 new records at a batch size of 10 generates 9 executeBatch statements
+        verify(mockInsert, times(82)).addBatch();
+        verify(mockInsert, times(9)).executeBatch();
+        verify(mockInsert, never()).setString(16, unchanged.getGuid());
+        verify(mockInsert, never()).setString(16, changed.getGuid());
+    }
+    
+    @Test
+    public void updateRecordsIncrementallyWithNoChanges() throws SQLException {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        List<TimelineMetadata> metadata = Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata();
+        
+        Connection mockConnection = mock(Connection.class);
+        PreparedStatement mockSelect = mock(PreparedStatement.class);
+        PreparedStatement mockUpdateSchedule = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(SELECT_TIMELINE_RECORDS)).thenReturn(mockSelect);
+        when(mockConnection.prepareStatement(UPDATE_TIMELINE_SCHEDULE_FIELDS)).thenReturn(mockUpdateSchedule);
+        ResultSet rs = mockResultSet(metadata);
+        when(mockSelect.executeQuery()).thenReturn(rs);
+        
+        dao.updateRecordsIncrementally(schedule, metadata).execute(mockConnection);
+        
+        verify(mockUpdateSchedule).executeUpdate();
+        verify(mockConnection, never()).prepareStatement(DELETE_TIMELINE_RECORD);
+        verify(mockConnection, never()).prepareStatement(UPDATE_TIMELINE_RECORD);
+        verify(mockConnection, never()).prepareStatement(INSERT);
+    }
+    
+    @Test
+    public void recordContentEquals() {
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        TimelineMetadata meta = Scheduler.INSTANCE.calculateTimeline(schedule).getMetadata().get(1);
+        
+        TimelineMetadata copy = TimelineMetadata.copy(meta);
+        // The schedule's state is not compared, it is updated for all records at once
+        copy.setScheduleModifiedOn(meta.getScheduleModifiedOn().plusDays(1));
+        copy.setSchedulePublished(!meta.isSchedulePublished());
+        assertTrue(HibernateSchedule2Dao.recordContentEquals(meta, copy));
+        
+        copy.setAssessmentRevision(meta.getAssessmentRevision() + 1);
+        assertFalse(HibernateSchedule2Dao.recordContentEquals(meta, copy));
+        
+        copy = TimelineMetadata.copy(meta);
+        copy.setAssessmentRevision(null);
+        assertFalse(HibernateSchedule2Dao.recordContentEquals(meta, copy));
+        
+        copy = TimelineMetadata.copy(meta);
+        copy.setTimeWindowPersistent(!meta.isTimeWindowPersistent());
+        assertFalse(HibernateSchedule2Dao.recordContentEquals(meta, copy));
+    }
+    
+    @Test
+    public void updateChangedRecordStatement() throws Exception {
+        PreparedStatement mockStatement = mock(PreparedStatement.class);
+
+        Schedule2 schedule = Schedule2Test.createValidSchedule();
+        Timeline timeline = Scheduler.INSTANCE.calculateTimeline(schedule);
+        TimelineMetadata meta = timeline.getMetadata().get(0);
+
+        dao.updateChangedRecordStatement(mockStatement, meta);
+
+        verify(mockStatement).setString(1, meta.getAssessmentGuid());
+        verify(mockStatement).setString(2, meta.getAssessmentId());
+        verify(mockStatement).setString(3, meta.getAssessmentInstanceGuid());
+        verify(mockStatement).setNull(4, Types.NULL);
+        verify(mockStatement).setString(5, meta.getSessionGuid());
+        verify(mockStatement).setInt(6, meta.getSessionInstanceEndDay());
+        verify(mockStatement).setString(7, meta.getSessionInstanceGuid());
+        verify(mockStatement).setInt(8, meta.getSessionInstanceStartDay());
+        verify(mockStatement).setString(9, meta.getSessionStartEventId());
+        verify(mockStatement).setString(10, meta.getTimeWindowGuid());
+        verify(mockStatement).setBoolean(11, meta.isTimeWindowPersistent());
+        verify(mockStatement).setString(12, meta.getGuid());
+        verify(mockStatement).addBatch();
+
+        reset(mockStatement);
+        meta = timeline.getMetadata().get(1);
+
+        dao.updateChangedRecordStatement(mockStatement, meta);
+
+        verify(mockStatement).setInt(4, meta.getAssessmentRevision());
+    }
+    
+    // Returns the records one row at a time, the way the JDBC driver would.
+    private ResultSet mockResultSet(List<TimelineMetadata> records) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        int[] row = new int[] { -1 };
+        boolean[] wasNull = new boolean[1];
+        when(rs.next()).thenAnswer(args -> ++row[0] < records.size());
+        when(rs.getString(anyString())).thenAnswer(args -> {
+            TimelineMetadata meta = records.get(row[0]);
+            switch((String)args.getArgument(0)) {
+                case "guid": return meta.getGuid();
+                case "assessmentGuid": return meta.getAssessmentGuid();
+                case "assessmentId": return meta.getAssessmentId();
+                case "assessmentInstanceGuid": return meta.getAssessmentInstanceGuid();
+                case "sessionGuid": return meta.getSessionGuid();
+                case "sessionInstanceGuid": return meta.getSessionInstanceGuid();
+                case "sessionStartEventId": return meta.getSessionStartEventId();
+                case "timeWindowGuid": return meta.getTimeWindowGuid();
+                default: throw new IllegalArgumentException(args.getArgument(0));
+            }
+        });
+        when(rs.getInt(anyString())).thenAnswer(args -> {
+            TimelineMetadata meta = records.get(row[0]);
+            Integer value;
+            switch((String)args.getArgument(0)) {
+                case "assessmentRevision": value = meta.getAssessmentRevision(); break;
+                case "sessionInstanceEndDay": value = meta.getSessionInstanceEndDay(); break;
+                case "sessionInstanceStartDay": value = meta.getSessionInstanceStartDay(); break;
+                default: throw new IllegalArgumentException(args.getArgument(0));
+            }
+            wasNull[0] = (value == null);
+            return (value == null) ? 0 : value;
+        });
+        when(rs.wasNull()).thenAnswer(args -> wasNull[0]);
+        when(rs.getBoolean("timeWindowPersistent")).thenAnswer(args -> records.get(row[0]).isTimeWindowPersistent());
+        return rs;
+    }
+
     @Test
     public void updatePreparedStatement() throws Exception {
         PreparedStatement mockStatement = mock(PreparedStatement.class);
@@ -337,10 +536,9 @@ public class HibernateSchedule2DaoTest extends Mockito {
         Schedule2 retValue = dao.updateSchedule(schedule);
         assertEquals(retValue, schedule);
 
-        verify(mockSession).createNativeQuery(DELETE_TIMELINE_RECORDS);
         verify(mockSession).createNativeQuery(DELETE_SESSIONS);
         verify(mockQuery).setParameter("guid", "ScheduleGuid");
-        verify(mockQuery, times(2)).executeUpdate();
+        verify(mockQuery).executeUpdate();
         verify(mockSession).update(schedule);
     }
 
@@ -387,6 +585,26 @@ public class HibernateSchedule2DaoTest extends Mockito {
         assertFalse(retValue.isPresent());
     }
 
+    @Test
+    public void getTimelineMetadataForCollection() {
+        List<TimelineMetadata> list = ImmutableList.of(new TimelineMetadata());
+        when(mockHibernateHelper.queryGet(any(), any(), any(), any(), eq(TimelineMetadata.class))).thenReturn(list);
+        
+        List<TimelineMetadata> retValue = dao.getTimelineMetadata(ImmutableSet.of("AAA", "BBB"));
+        assertSame(retValue, list);
+        
+        verify(mockHibernateHelper).queryGet(GET_TIMELINE_METADATA, ImmutableMap.of("guids", ImmutableSet.of("AAA", "BBB")),
+                null, null, TimelineMetadata.class);
+    }
+    
+    @Test
+    public void getTimelineMetadataForEmptyCollection() {
+        List<TimelineMetadata> retValue = dao.getTimelineMetadata(ImmutableSet.of());
+        assertTrue(retValue.isEmpty());
+        
+        verify(mockHibernateHelper, never()).queryGet(any(), any(), any(), any(), any());
+    }
+
     @Test
     public void getAssessmentsForSessionInstance() {
         List<TimelineMetadata> results = ImmutableList.of();
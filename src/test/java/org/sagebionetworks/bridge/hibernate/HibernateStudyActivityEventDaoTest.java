@@ -48,6 +48,7 @@ public class HibernateStudyActivityEventDaoTest extends Mockito {
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
+        when(mockHelper.readReplica()).thenReturn(mockHelper);
     }
     
     @Test
@@ -339,6 +339,92 @@ public class QueryBuilderTest {
         assertEquals(builder.getParameters().get("number"), "%9712486796%");
     }
     
+    @Test
+    public void whereClause_likeIndexedWithInfix() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.likeIndexed(INFIX, "app", AccountSearchIndex.EMAIL_FIELD, "acct.email LIKE :email", "email", "Val");
+        
+        assertEquals(builder.getQuery(), "WHERE (acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct "
+                + "JOIN termAcct.searchTerms AS term WHERE term.appId = :emailAppId AND term.field = :emailField AND "
+                + "term.term LIKE :emailTerm) AND acct.email LIKE :email)");
+        assertEquals(builder.getParameters().get("emailAppId"), "app");
+        assertEquals(builder.getParameters().get("emailField"), AccountSearchIndex.EMAIL_FIELD);
+        assertEquals(builder.getParameters().get("emailTerm"), "val%");
+        assertEquals(builder.getParameters().get("email"), "%Val%");
+    }
+    
+    @Test
+    public void whereClause_likeIndexedWithPrefix() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.likeIndexed(PREFIX, "app", AccountSearchIndex.EMAIL_FIELD, "acct.email LIKE :email", "email", "val");
+        
+        assertEquals(builder.getQuery(), "WHERE (acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct "
+                + "JOIN termAcct.searchTerms AS term WHERE term.appId = :emailAppId AND term.field = :emailField AND "
+                + "term.term LIKE :emailTerm AND term.wholeValue = true) AND acct.email LIKE :email)");
+        assertEquals(builder.getParameters().get("emailTerm"), "val%");
+        assertEquals(builder.getParameters().get("email"), "val%");
+    }
+    
+    @Test
+    public void whereClause_likeIndexedWithPostfix() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.likeIndexed(POSTFIX, "app", AccountSearchIndex.EMAIL_FIELD, "acct.email LIKE :email", "email", "val");
+        
+        assertEquals(builder.getQuery(), "WHERE (acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct "
+                + "JOIN termAcct.searchTerms AS term WHERE term.appId = :emailAppId AND term.field = :emailField AND "
+                + "term.term = :emailTerm) AND acct.email LIKE :email)");
+        assertEquals(builder.getParameters().get("emailTerm"), "val");
+        assertEquals(builder.getParameters().get("email"), "%val");
+    }
+    
+    @Test
+    public void whereClause_likeIndexedWithExact() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.likeIndexed(EXACT, "app", AccountSearchIndex.EMAIL_FIELD, "acct.email LIKE :email", "email", "val");
+        
+        assertEquals(builder.getQuery(), "WHERE (acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct "
+                + "JOIN termAcct.searchTerms AS term WHERE term.appId = :emailAppId AND term.field = :emailField AND "
+                + "term.term = :emailTerm AND term.wholeValue = true) AND acct.email LIKE :email)");
+        assertEquals(builder.getParameters().get("emailTerm"), "val");
+        assertEquals(builder.getParameters().get("email"), "val");
+    }
+    
+    @Test
+    public void whereClause_likeIndexedWithShortValueIsNotIndexed() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.likeIndexed(INFIX, "app", AccountSearchIndex.EMAIL_FIELD, "acct.email LIKE :email", "email", "va");
+        
+        assertEquals(builder.getQuery(), "WHERE acct.email LIKE :email");
+        assertEquals(builder.getParameters().get("email"), "%va%");
+        assertEquals(builder.getParameters().size(), 1);
+    }
+    
+    @Test
+    public void whereClause_likeIndexedWithBlankValue() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.likeIndexed(INFIX, "app", AccountSearchIndex.EMAIL_FIELD, "acct.email LIKE :email", "email", "");
+        assertEquals(builder.getQuery(), "");
+    }
+    
+    @Test
+    public void whereClause_phoneIndexed() {
+        QueryBuilder builder = new QueryBuilder();
+        WhereClauseBuilder where = builder.startWhere(AND);
+        where.phoneIndexed(INFIX, "app", "(971) 248-6796");
+        assertEquals(builder.getQuery(), "WHERE (acct.id IN (SELECT termAcct.id FROM HibernateAccount AS termAcct "
+                + "JOIN termAcct.searchTerms AS term WHERE term.appId = :numberAppId AND term.field = :numberField AND "
+                + "term.term LIKE :numberTerm) AND acct.phone.number LIKE :number)");
+        assertEquals(builder.getParameters().get("numberField"), AccountSearchIndex.PHONE_FIELD);
+        assertEquals(builder.getParameters().get("numberTerm"), "9712486796%");
+        assertEquals(builder.getParameters().get("number"), "%9712486796%");
+    }
+    
     @Test
     public void whereClause_phoneWithNullValue() {
         QueryBuilder builder = new QueryBuilder();
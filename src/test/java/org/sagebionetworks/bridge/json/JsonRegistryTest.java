@@ -0,0 +1,71 @@
+package org.sagebionetworks.bridge.json;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+
+public class JsonRegistryTest {
+
+    @Test
+    public void readersAreBuiltOnce() throws Exception {
+        JsonRegistry.warm();
+        ObjectReader reader = JsonRegistry.readerFor(UserSession.class);
+        assertSame(JsonRegistry.readerFor(UserSession.class), reader);
+
+        // Type references to the same type share a reader.
+        ObjectReader listReader = JsonRegistry.readerFor(new TypeReference<List<String>>() {});
+        assertSame(JsonRegistry.readerFor(new TypeReference<List<String>>() {}), listReader);
+        assertNotSame(listReader, reader);
+
+        List<String> list = listReader.readValue("[\"a\",\"b\"]");
+        assertEquals(list, ImmutableList.of("a", "b"));
+    }
+
+    @Test
+    public void writersKeepFiltersOfTheirWriter() throws Exception {
+        StudyParticipant participant = new StudyParticipant.Builder().withFirstName("First")
+                .withHealthCode("healthCode").build();
+
+        ObjectWriter writer = JsonRegistry.writerFor(StudyParticipant.API_NO_HEALTH_CODE_WRITER,
+                StudyParticipant.class);
+        assertSame(JsonRegistry.writerFor(StudyParticipant.API_NO_HEALTH_CODE_WRITER, StudyParticipant.class),
+                writer);
+
+        JsonNode node = BridgeObjectMapper.get().readTree(writer.writeValueAsString(participant));
+        assertEquals(node.get("firstName").textValue(), "First");
+        assertEquals(node.get("type").textValue(), "StudyParticipant");
+        assertFalse(node.has("healthCode"));
+
+        ObjectWriter healthCodeWriter = JsonRegistry.writerFor(StudyParticipant.API_WITH_HEALTH_CODE_WRITER,
+                StudyParticipant.class);
+        assertNotSame(healthCodeWriter, writer);
+        node = BridgeObjectMapper.get().readTree(healthCodeWriter.writeValueAsString(participant));
+        assertEquals(node.get("healthCode").textValue(), "healthCode");
+    }
+
+    @Test
+    public void sessionRoundTrips() throws Exception {
+        UserSession session = new UserSession(new StudyParticipant.Builder().withFirstName("First").build());
+        session.setSessionToken("sessionToken");
+
+        String json = JsonRegistry.writerFor(StudyParticipant.CACHE_WRITER, UserSession.class)
+                .writeValueAsString(session);
+        UserSession deser = JsonRegistry.readerFor(UserSession.class).readValue(json);
+
+        assertEquals(deser.getSessionToken(), "sessionToken");
+        assertEquals(deser.getParticipant().getFirstName(), "First");
+    }
+}
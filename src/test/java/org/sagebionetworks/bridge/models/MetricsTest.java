@@ -3,12 +3,14 @@ package org.sagebionetworks.bridge.models;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Set;
+
 import com.fasterxml.jackson.databind.JsonNode;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.ImmutableSet;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.testng.annotations.AfterClass;
@@ -62,24 +64,54 @@ public class MetricsTest {
         metrics.end();
         assertEquals(metrics.getJson().get("end").textValue(), END_TIME.toString());
         assertEquals(metrics.getJson().get("elapsedMillis").longValue(), EXPECTED_ELAPSED_MILLIS);
+        assertEquals(metrics.getElapsedMillis(), Long.valueOf(EXPECTED_ELAPSED_MILLIS));
     }
 
     @Test
-    public void testElapsedWithNoStart() {
-        // This should never happen, but if it does, don't throw.
+    public void testElapsedBeforeEnd() {
         Metrics metrics = new Metrics("12345");
-        metrics.getJson().remove("start");
-        metrics.end();
-        assertFalse(metrics.getJson().has("elapsedMillis"));
+        assertNull(metrics.getElapsedMillis());
+        JsonNode node = metrics.getJson();
+        assertFalse(node.has("end"));
+        assertFalse(node.has("elapsedMillis"));
     }
 
     @Test
-    public void testElapsedWithInvalidStart() {
-        // This should never happen, but if it does, don't throw.
+    public void recordSpan() throws Exception {
         Metrics metrics = new Metrics("12345");
-        metrics.getJson().put("start", "February 16, 2018 2 5:14pm");
-        metrics.end();
-        assertFalse(metrics.getJson().has("elapsedMillis"));
+        metrics.recordSpan("mysql", "HibernateAccountDao.getAccount", 1500L);
+        metrics.recordSpan("mysql", "HibernateAccountDao.updateAccount", 500L);
+        metrics.recordSpan("redis", "JedisOps.get", 100L);
+        
+        JsonNode backends = metrics.getJson().get("backends");
+        assertEquals(backends.get("mysql").get("calls").longValue(), 2L);
+        assertEquals(backends.get("mysql").get("micros").longValue(), 2000L);
+        assertEquals(backends.get("redis").get("calls").longValue(), 1L);
+        assertEquals(backends.get("redis").get("micros").longValue(), 100L);
+        
+        JsonNode spans = BridgeObjectMapper.get().readTree(metrics.toSpansJsonString());
+        assertEquals(spans.get("request_id").textValue(), "12345");
+        assertEquals(spans.get("spans").size(), 3);
+        assertEquals(spans.get("spans").get(0).get("backend").textValue(), "mysql");
+        assertEquals(spans.get("spans").get(0).get("operation").textValue(), "HibernateAccountDao.getAccount");
+        assertEquals(spans.get("spans").get(0).get("micros").longValue(), 1500L);
+        assertFalse(spans.has("spans_dropped"));
+        
+        // The breakdown is not part of the regular log line
+        assertFalse(metrics.toJsonString().contains("spans"));
+    }
+    
+    @Test
+    public void recordSpanLimitsBreakdown() throws Exception {
+        Metrics metrics = new Metrics("12345");
+        for (int i=0; i < Metrics.MAX_SPANS + 5; i++) {
+            metrics.recordSpan("dynamodb", "DynamoAppDao.getApp", 10L);
+        }
+        assertEquals(metrics.getJson().get("backends").get("dynamodb").get("calls").intValue(), Metrics.MAX_SPANS + 5);
+        
+        JsonNode spans = BridgeObjectMapper.get().readTree(metrics.toSpansJsonString());
+        assertEquals(spans.get("spans").size(), Metrics.MAX_SPANS);
+        assertEquals(spans.get("spans_dropped").intValue(), 5);
     }
 
     @Test
@@ -119,24 +151,30 @@ public class MetricsTest {
     }
 
     @Test
-    public void testSetQueryParams() throws Exception {
+    public void testSetQueryString() throws Exception {
+        Set<String> allowList = ImmutableSet.of("not_real_key", "now_new_key", "encoded");
+        
         // Test empty params metrics.
         String requestId = "12345";
         Metrics metrics = new Metrics(requestId);
-        metrics.setQueryParams(null);
+        metrics.setQueryString(null, allowList);
         String json = metrics.toJsonString();
         JsonNode metricsNode = BridgeObjectMapper.get().readTree(json);
         assertFalse(metricsNode.has("query_params"));
 
-        Multimap<String, String> paramsMap = MultimapBuilder.linkedHashKeys().linkedListValues().build();
         metrics = new Metrics(requestId);
-        metrics.setQueryParams(paramsMap);
+        metrics.setQueryString("", allowList);
+        metricsNode = metrics.getJson();
+        assertFalse(metricsNode.has("query_params"));
+
+        // Nothing in the allow list
+        metrics = new Metrics(requestId);
+        metrics.setQueryString("email=someone@fake.com&other", allowList);
         metricsNode = metrics.getJson();
         assertFalse(metricsNode.has("query_params"));
 
-        paramsMap.put("not_real_key", "only_one");
         metrics = new Metrics(requestId);
-        metrics.setQueryParams(paramsMap);
+        metrics.setQueryString("not_real_key=only_one&email=someone@fake.com", allowList);
         metricsNode = metrics.getJson();
         assertTrue(metricsNode.has("query_params"));
         JsonNode paramsNode = metricsNode.get("query_params");
@@ -146,23 +184,49 @@ public class MetricsTest {
         assertEquals(1, paramsNode.get("not_real_key").size());
         assertEquals("only_one", paramsNode.get("not_real_key").get(0).textValue());
 
-        paramsMap.put("not_real_key", "the_second");
         metrics = new Metrics(requestId);
-        metrics.setQueryParams(paramsMap);
+        metrics.setQueryString("not_real_key=only_one&not_real_key=the_second", allowList);
         metricsNode = metrics.getJson();
         paramsNode = metricsNode.get("query_params");
         assertEquals(2, paramsNode.get("not_real_key").size());
         assertEquals("the_second", paramsNode.get("not_real_key").get(1).textValue());
 
-        paramsMap.put("now_new_key", "third");
         metrics = new Metrics(requestId);
-        metrics.setQueryParams(paramsMap);
+        metrics.setQueryString("not_real_key=only_one&&now_new_key=third&not_real_key=the_second", allowList);
         metricsNode = metrics.getJson();
         paramsNode = metricsNode.get("query_params");
         assertEquals(2, paramsNode.size());
+        assertEquals(2, paramsNode.get("not_real_key").size());
         assertTrue(paramsNode.has("now_new_key"));
         assertEquals(1, paramsNode.get("now_new_key").size());
         assertEquals("third", paramsNode.get("now_new_key").get(0).textValue());
+        
+        // Values are decoded; a parameter without a value is logged as null; bad encodings are logged as sent.
+        metrics = new Metrics(requestId);
+        metrics.setQueryString("encoded=a+b%20c&encoded&encoded=100%&not_real_key=", allowList);
+        paramsNode = metrics.getJson().get("query_params");
+        assertEquals("a b c", paramsNode.get("encoded").get(0).textValue());
+        assertTrue(paramsNode.get("encoded").get(1).isNull());
+        assertEquals("100%", paramsNode.get("encoded").get(2).textValue());
+        assertEquals("", paramsNode.get("not_real_key").get(0).textValue());
+    }
+    
+    @Test
+    public void testGetJsonIsACopy() {
+        Metrics metrics = new Metrics("12345");
+        metrics.getJson().put("status", 500);
+        
+        assertFalse(metrics.getJson().has("status"));
+    }
+    
+    @Test
+    public void testBlankValuesAreNotLogged() {
+        Metrics metrics = new Metrics("12345");
+        metrics.setUserAgent("userAgent/1");
+        metrics.setUserAgent(" ");
+        
+        assertEquals(metrics.getJson().get("user_agent").textValue(), "userAgent/1");
+        assertFalse(metrics.getJson().has("app_id"));
     }
 
     @Test(expectedExceptions = IllegalArgumentException.class)
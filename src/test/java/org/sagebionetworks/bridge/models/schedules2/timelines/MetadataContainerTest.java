@@ -13,10 +13,14 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import org.joda.time.DateTime;
@@ -39,6 +43,15 @@ public class MetadataContainerTest extends Mockito {
     @BeforeMethod
     public void beforeMethod() { 
         MockitoAnnotations.initMocks(this);
+        // Metadata is retrieved in bulk, from the per-record metadata each test sets up
+        when(mockScheduleService.getTimelineMetadata(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> instanceGuids = invocation.getArgument(0);
+            Map<String, TimelineMetadata> map = new HashMap<>();
+            for (String instanceGuid : instanceGuids) {
+                mockScheduleService.getTimelineMetadata(instanceGuid).ifPresent(meta -> map.put(instanceGuid, meta));
+            }
+            return map;
+        });
     }
     
     private MetadataContainer createContainer(List<AdherenceRecord> records) {
@@ -78,6 +91,35 @@ public class MetadataContainerTest extends Mockito {
         assertNotNull(container.getMetadata("session2"));
     }
     
+    @Test
+    public void constructorLoadsMetadataInOneCall() {
+        AdherenceRecord rec1 = new AdherenceRecord();
+        rec1.setInstanceGuid("AAA");
+        AdherenceRecord rec2 = new AdherenceRecord();
+        rec2.setInstanceGuid("BBB");
+        
+        TimelineMetadata meta1 = new TimelineMetadata();
+        meta1.setGuid("AAA");
+        meta1.setAssessmentInstanceGuid("AAA");
+        TimelineMetadata meta2 = new TimelineMetadata();
+        meta2.setGuid("BBB");
+        meta2.setSessionInstanceGuid("BBB");
+        
+        reset(mockScheduleService);
+        when(mockScheduleService.getTimelineMetadata(ImmutableSet.of("AAA", "BBB")))
+            .thenReturn(ImmutableMap.of("AAA", meta1, "BBB", meta2));
+        
+        MetadataContainer container = createContainer(ImmutableList.of(rec1, rec2));
+        
+        assertEquals(container.getMetadata("AAA"), meta1);
+        assertEquals(container.getMetadata("BBB"), meta2);
+        assertEquals(container.getAssessments(), ImmutableList.of(rec1));
+        assertEquals(ImmutableList.copyOf(container.getSessionUpdates()), ImmutableList.of(rec2));
+        
+        verify(mockScheduleService).getTimelineMetadata(ImmutableSet.of("AAA", "BBB"));
+        verify(mockScheduleService, never()).getTimelineMetadata(anyString());
+    }
+    
     @Test
     public void constructorSkipsRecordsWithoutMetadata() { 
         List<AdherenceRecord> records = ImmutableList.of(
@@ -24,6 +24,10 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_NOTE;
 import static org.sagebionetworks.bridge.TestConstants.TEST_CLIENT_TIME_ZONE;
 import static org.sagebionetworks.bridge.dao.AccountDao.MIGRATION_VERSION;
 import static org.sagebionetworks.bridge.models.AccountSummarySearch.EMPTY_SEARCH;
+import static org.sagebionetworks.bridge.models.ResourceList.OFFSET_KEY;
+import static org.sagebionetworks.bridge.models.ResourceList.PAGE_SIZE;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.AUTH;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.IDENTITY;
 import static org.sagebionetworks.bridge.models.accounts.AccountSecretType.REAUTH;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.DISABLED;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.ENABLED;
@@ -69,6 +73,7 @@ import org.sagebionetworks.bridge.exceptions.AccountDisabledException;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
@@ -276,6 +281,52 @@ public class AccountServiceTest extends Mockito {
         assertEquals(createdAccount.getDataGroups(), ImmutableSet.of());
     }
     
+    @Test
+    public void createAccounts() {
+        App app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        
+        Account account1 = Account.create();
+        account1.setId("id1");
+        account1.getEnrollments().add(Enrollment.create(TEST_APP_ID, STUDY_A, "id1"));
+        Account account2 = Account.create();
+        account2.setId("id2");
+        List<Account> accounts = ImmutableList.of(account1, account2);
+        
+        service.createAccounts(app, accounts);
+        
+        verify(mockAccountDao).createAccounts(app, accounts);
+        for (Account account : accounts) {
+            assertEquals(account.getAppId(), TEST_APP_ID);
+            assertEquals(account.getCreatedOn().getMillis(), MOCK_DATETIME.getMillis());
+            assertEquals(account.getModifiedOn().getMillis(), MOCK_DATETIME.getMillis());
+            assertEquals(account.getPasswordModifiedOn().getMillis(), MOCK_DATETIME.getMillis());
+        }
+        // Only the enrolled account publishes enrollment events.
+        verify(activityEventService, times(1)).publishEnrollmentEvent(any(), any(), any());
+        verify(studyActivityEventService, times(1)).publishEvent(eventCaptor.capture(), eq(false), eq(true));
+        assertEquals(eventCaptor.getValue().getUserId(), "id1");
+        assertEquals(eventCaptor.getValue().getStudyId(), STUDY_A);
+    }
+    
+    @Test
+    public void createAccountsFails() {
+        App app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        
+        Account account = Account.create();
+        account.getEnrollments().add(Enrollment.create(TEST_APP_ID, STUDY_A, TEST_USER_ID));
+        doThrow(new IllegalStateException()).when(mockAccountDao).createAccounts(any(), any());
+        
+        try {
+            service.createAccounts(app, ImmutableList.of(account));
+            fail("Should have thrown exception");
+        } catch (IllegalStateException e) {
+        }
+        verify(activityEventService, never()).publishEnrollmentEvent(any(), any(), any());
+        verify(studyActivityEventService, never()).publishEvent(any(), anyBoolean(), anyBoolean());
+    }
+    
     @Test
     public void createAccountByDevCreatesTestAccount() {
         RequestContext.set(new RequestContext.Builder()
@@ -513,42 +564,60 @@ public class AccountServiceTest extends Mockito {
         verify(mockAccountDao).getPagedAccountSummaries(TEST_APP_ID, EMPTY_SEARCH);
     }
 
+    @Test
+    public void getAccountWithProfile() throws Exception {
+        Account account = Account.create();
+        account.setId(TEST_USER_ID);
+        when(mockAccountDao.getAccount(ACCOUNT_ID, AUTH)).thenReturn(Optional.of(account));
+
+        Optional<Account> returnVal = service.getAccount(ACCOUNT_ID, AUTH);
+        assertEquals(returnVal.get(), account);
+        verify(mockAccountDao).getAccount(ACCOUNT_ID, AUTH);
+    }
+    
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getAccountWithIdentityProfile() {
+        service.getAccount(ACCOUNT_ID, IDENTITY);
+    }
+
     @Test
     public void getAccountHealthCode() throws Exception {
-        Account account = mockGetAccountById(ACCOUNT_ID, false);
+        Account account = Account.create();
         account.setHealthCode(HEALTH_CODE);
+        when(mockAccountDao.getAccount(ACCOUNT_ID, IDENTITY)).thenReturn(Optional.of(account));
 
         Optional<String> healthCode = service.getAccountHealthCode(TEST_APP_ID, TEST_USER_ID);
         assertEquals(healthCode.get(), HEALTH_CODE);
-        verify(mockAccountDao).getAccount(ACCOUNT_ID);
+        verify(mockAccountDao).getAccount(ACCOUNT_ID, IDENTITY);
     }
     
     @Test
     public void getAccountHealthCodeNoAccount() {
-        when(mockAccountDao.getAccount(ACCOUNT_ID)).thenReturn(Optional.empty());
+        when(mockAccountDao.getAccount(ACCOUNT_ID, IDENTITY)).thenReturn(Optional.empty());
         
         Optional<String> healthCode = service.getAccountHealthCode(TEST_APP_ID, TEST_USER_ID);
         assertFalse(healthCode.isPresent());
-        verify(mockAccountDao).getAccount(ACCOUNT_ID);
+        verify(mockAccountDao).getAccount(ACCOUNT_ID, IDENTITY);
     }    
 
     @Test
     public void getAccountId() throws Exception {
-        Account account = mockGetAccountById(ACCOUNT_ID, false);
+        Account account = Account.create();
         account.setId(TEST_USER_ID);
+        when(mockAccountDao.getAccount(ACCOUNT_ID, IDENTITY)).thenReturn(Optional.of(account));
 
         Optional<String> userId = service.getAccountId(TEST_APP_ID, TEST_USER_ID);
         assertEquals(userId.get(), TEST_USER_ID);
-        verify(mockAccountDao).getAccount(ACCOUNT_ID);
+        verify(mockAccountDao).getAccount(ACCOUNT_ID, IDENTITY);
     }
     
     @Test
     public void getAccountIdNoAccount() {
-        when(mockAccountDao.getAccount(ACCOUNT_ID)).thenReturn(Optional.empty());
+        when(mockAccountDao.getAccount(ACCOUNT_ID, IDENTITY)).thenReturn(Optional.empty());
         
         Optional<String> userId = service.getAccountId(TEST_APP_ID, TEST_USER_ID);
         assertFalse(userId.isPresent());
-        verify(mockAccountDao).getAccount(ACCOUNT_ID);
+        verify(mockAccountDao).getAccount(ACCOUNT_ID, IDENTITY);
     }
     
     @Test
@@ -1345,6 +1414,34 @@ public class AccountServiceTest extends Mockito {
         assertSame(retValue, page);
     }
 
+    @Test
+    public void rebuildSearchTerms() {
+        List<String> accountIds = ImmutableList.of("a", "b", "c", "d", "e");
+        when(mockAccountDao.rebuildSearchTerms(TEST_APP_ID, "offsetKey", 5)).thenReturn(accountIds);
+        
+        ForwardCursorPagedResourceList<String> page = service.rebuildSearchTerms(TEST_APP_ID, "offsetKey", 5);
+        assertEquals(page.getItems(), accountIds);
+        assertEquals(page.getNextPageOffsetKey(), "e");
+        assertEquals(page.getRequestParams().get(OFFSET_KEY), "offsetKey");
+        assertEquals(page.getRequestParams().get(PAGE_SIZE), 5);
+    }
+    
+    @Test
+    public void rebuildSearchTermsLastPage() {
+        List<String> accountIds = ImmutableList.of("a", "b");
+        when(mockAccountDao.rebuildSearchTerms(TEST_APP_ID, null, 5)).thenReturn(accountIds);
+        
+        ForwardCursorPagedResourceList<String> page = service.rebuildSearchTerms(TEST_APP_ID, null, 5);
+        assertEquals(page.getItems(), accountIds);
+        assertNull(page.getNextPageOffsetKey());
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = AccountService.SEARCH_TERMS_PAGE_SIZE_ERROR)
+    public void rebuildSearchTermsPageSizeTooLarge() {
+        service.rebuildSearchTerms(TEST_APP_ID, null, AccountService.SEARCH_TERMS_MAX_PAGE_SIZE + 1);
+    }
+    
     @Test
     public void deleteAllAccounts() { 
         service.deleteAllAccounts(TEST_APP_ID);
@@ -37,6 +37,8 @@ import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -98,7 +100,7 @@ public class AdherenceServiceTest extends Mockito {
     ArgumentCaptor<StudyActivityEvent> eventCaptor;
     
     @Captor
-    ArgumentCaptor<AdherenceRecord> recordCaptor;
+    ArgumentCaptor<Collection<AdherenceRecord>> recordsCaptor;
 
     @InjectMocks
     AdherenceService service;
@@ -106,6 +108,15 @@ public class AdherenceServiceTest extends Mockito {
     @BeforeMethod
     public void beforeMethod() {
         MockitoAnnotations.initMocks(this);
+        // Metadata is retrieved in bulk, from the per-record metadata each test sets up
+        when(mockScheduleService.getTimelineMetadata(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> instanceGuids = invocation.getArgument(0);
+            Map<String, TimelineMetadata> map = new HashMap<>();
+            for (String instanceGuid : instanceGuids) {
+                mockScheduleService.getTimelineMetadata(instanceGuid).ifPresent(meta -> map.put(instanceGuid, meta));
+            }
+            return map;
+        });
     }
     
     @AfterMethod
@@ -126,10 +137,11 @@ public class AdherenceServiceTest extends Mockito {
         
         service.updateAdherenceRecords(TEST_APP_ID, records);
         
-        verify(mockDao, times(3)).updateAdherenceRecord(recordCaptor.capture());
-        assertEquals(recordCaptor.getAllValues().get(0).getInstanceGuid(), "AAA");
-        assertEquals(recordCaptor.getAllValues().get(1).getInstanceGuid(), "BBB");
-        assertEquals(recordCaptor.getAllValues().get(2).getInstanceGuid(), "sessionInstanceGuid");
+        List<AdherenceRecord> updated = updatedRecords();
+        assertEquals(updated.size(), 3);
+        assertEquals(updated.get(0).getInstanceGuid(), "AAA");
+        assertEquals(updated.get(1).getInstanceGuid(), "BBB");
+        assertEquals(updated.get(2).getInstanceGuid(), "sessionInstanceGuid");
         
         // Nothing is finished, nothing is published.
         verify(mockStudyActivityEventService, never()).publishEvent(any(), eq(false), eq(true));
@@ -170,8 +182,9 @@ public class AdherenceServiceTest extends Mockito {
         
         service.updateAdherenceRecords(TEST_APP_ID, list);
         
-        verify(mockDao).updateAdherenceRecord(list.getRecords().get(0));
-        verify(mockDao).updateAdherenceRecord(list.getRecords().get(1));
+        List<AdherenceRecord> updated = updatedRecords();
+        assertTrue(updated.contains(list.getRecords().get(0)));
+        assertTrue(updated.contains(list.getRecords().get(1)));
         verify(mockStudyActivityEventService, times(3)).publishEvent(eventCaptor.capture(), eq(false), eq(true));
         
         StudyActivityEvent event = eventCaptor.getAllValues().get(2);
@@ -195,8 +208,9 @@ public class AdherenceServiceTest extends Mockito {
         
         service.updateAdherenceRecords(TEST_APP_ID, list);
         
-        verify(mockDao).updateAdherenceRecord(list.getRecords().get(0));
-        verify(mockDao).updateAdherenceRecord(list.getRecords().get(1));
+        List<AdherenceRecord> updated = updatedRecords();
+        assertTrue(updated.contains(list.getRecords().get(0)));
+        assertTrue(updated.contains(list.getRecords().get(1)));
         verify(mockStudyActivityEventService, times(1)).publishEvent(eventCaptor.capture(), eq(false), eq(true));
         
         StudyActivityEvent event = eventCaptor.getValue();
@@ -265,7 +279,7 @@ public class AdherenceServiceTest extends Mockito {
         MetadataContainer container = new MetadataContainer(mockScheduleService, list.getRecords());
         service.updateSessionState(TEST_APP_ID, container, list.getRecords().get(0));
         
-        verify(mockDao, never()).updateAdherenceRecord(any());
+        verify(mockDao, never()).updateAdherenceRecords(any());
         verify(mockStudyActivityEventService, never()).publishEvent(any(), eq(false), eq(true));
     }
     
@@ -490,9 +504,10 @@ public class AdherenceServiceTest extends Mockito {
         
         service.updateAdherenceRecords(TEST_APP_ID, list);
         
-        verify(mockDao, times(3)).updateAdherenceRecord(recordCaptor.capture());
+        List<AdherenceRecord> updated = updatedRecords();
+        assertEquals(updated.size(), 3);
         
-        AdherenceRecord session = recordCaptor.getAllValues().get(2);
+        AdherenceRecord session = updated.get(2);
         assertEquals(session.getStartedOn(), STARTED_ON);
         // based on the assessment records, any value submitted for session is ignored
         assertEquals(session.getFinishedOn(), FINISHED_ON);
@@ -694,7 +709,7 @@ public class AdherenceServiceTest extends Mockito {
         TimelineMetadata timelineMetadata = new TimelineMetadata();
         timelineMetadata.setTimeWindowPersistent(true);
 
-        when(mockScheduleService.getTimelineMetadata(any())).thenReturn(Optional.of(timelineMetadata));
+        when(mockScheduleService.getTimelineMetadata(anyString())).thenReturn(Optional.of(timelineMetadata));
 
         service.deleteAdherenceRecord(record);
 
@@ -711,7 +726,7 @@ public class AdherenceServiceTest extends Mockito {
         TimelineMetadata timelineMetadata = new TimelineMetadata();
         timelineMetadata.setTimeWindowPersistent(false);
 
-        when(mockScheduleService.getTimelineMetadata(any())).thenReturn(Optional.of(timelineMetadata));
+        when(mockScheduleService.getTimelineMetadata(anyString())).thenReturn(Optional.of(timelineMetadata));
 
         service.deleteAdherenceRecord(record);
 
@@ -725,7 +740,7 @@ public class AdherenceServiceTest extends Mockito {
         RequestContext.set(new RequestContext.Builder()
                 .withCallerRoles(ImmutableSet.of(RESEARCHER)).build());
 
-        when(mockScheduleService.getTimelineMetadata(any())).thenReturn(Optional.empty());
+        when(mockScheduleService.getTimelineMetadata(anyString())).thenReturn(Optional.empty());
 
         service.deleteAdherenceRecord(record);
 
@@ -839,4 +854,14 @@ public class AdherenceServiceTest extends Mockito {
         
         return new AdherenceRecordList(records);
     }
+    
+    // Assessments are updated in one batch, and then sessions in another.
+    private List<AdherenceRecord> updatedRecords() {
+        verify(mockDao, times(2)).updateAdherenceRecords(recordsCaptor.capture());
+        List<AdherenceRecord> records = new ArrayList<>();
+        for (Collection<AdherenceRecord> batch : recordsCaptor.getAllValues()) {
+            records.addAll(batch);
+        }
+        return records;
+    }
 }
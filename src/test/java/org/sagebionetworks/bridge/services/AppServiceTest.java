@@ -84,6 +84,7 @@ import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
 import org.sagebionetworks.bridge.models.organizations.Organization;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.models.apps.AppAndUsers;
@@ -1798,6 +1799,7 @@ public class AppServiceTest extends Mockito {
         assertTrue(app.isPhoneSignInEnabled());
         assertTrue(app.isReauthenticationEnabled());
         assertEquals(app.getAccountLimit(), 10);
+        assertEquals(app.getRateLimits().get("PARTICIPANT_SEARCH"), new RateLimit(10, 100, 60));
     }
 
     private void assertAppDefaults(App app) {
@@ -1809,6 +1811,7 @@ public class AppServiceTest extends Mockito {
         assertFalse(app.isPhoneSignInEnabled());
         assertFalse(app.isReauthenticationEnabled());
         assertEquals(app.getAccountLimit(), 0);
+        assertTrue(app.getRateLimits().isEmpty());
     }
     
     private void changeAppDefaults(App app) {
@@ -1820,6 +1823,7 @@ public class AppServiceTest extends Mockito {
         app.setPhoneSignInEnabled(true);
         app.setReauthenticationEnabled(true);
         app.setAccountLimit(10);
+        app.setRateLimits(ImmutableMap.of("PARTICIPANT_SEARCH", new RateLimit(10, 100, 60)));
     }
 
     @Test(expectedExceptions = UnauthorizedException.class)
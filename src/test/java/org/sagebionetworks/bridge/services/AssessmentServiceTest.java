@@ -18,6 +18,7 @@ import static org.sagebionetworks.bridge.TestConstants.MODIFIED_ON;
 import static org.sagebionetworks.bridge.TestConstants.TEST_OWNER_ID;
 import static org.sagebionetworks.bridge.TestConstants.STRING_TAGS;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ASSESSMENT_REGION;
 import static org.sagebionetworks.bridge.models.OperatingSystem.ANDROID;
 import static org.sagebionetworks.bridge.models.OperatingSystem.UNIVERSAL;
 import static org.sagebionetworks.bridge.services.AssessmentService.IDENTIFIER_REQUIRED;
@@ -57,6 +58,8 @@ import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
 import org.sagebionetworks.bridge.models.assessments.AssessmentTest;
@@ -82,6 +85,9 @@ public class AssessmentServiceTest extends Mockito {
     @Mock
     OrganizationService mockOrganizationService;
     
+    @Mock
+    HibernateCacheInvalidator mockCacheInvalidator;
+    
     @Mock
     Organization mockOrganization;
     
@@ -133,6 +139,31 @@ public class AssessmentServiceTest extends Mockito {
         assertEquals(retValue.getRequestParams().get("tags"), STRING_TAGS);
     }
     
+    @Test
+    public void getAssessmentsByOffsetKey() {
+        ForwardCursorPagedResourceList<Assessment> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(ASSESSMENT), "nextKey");
+        when(mockDao.getAssessmentsByOffsetKey(TEST_APP_ID, TEST_OWNER_ID, "offsetKey", 26, STRING_TAGS, true))
+                .thenReturn(page);
+        
+        ForwardCursorPagedResourceList<Assessment> retValue = service.getAssessmentsByOffsetKey(
+                TEST_APP_ID, TEST_OWNER_ID, "offsetKey", 26, STRING_TAGS, true);
+        
+        assertEquals(retValue.getItems().get(0), ASSESSMENT);
+        assertEquals(retValue.getNextPageOffsetKey(), "nextKey");
+        
+        assertEquals(retValue.getRequestParams().get("offsetKey"), "offsetKey");
+        assertEquals(retValue.getRequestParams().get("pageSize"), 26);
+        assertTrue((Boolean)retValue.getRequestParams().get("includeDeleted"));
+        assertEquals(retValue.getRequestParams().get("tags"), STRING_TAGS);
+    }
+    
+    @Test(expectedExceptions = BadRequestException.class, 
+            expectedExceptionsMessageRegExp = PAGE_SIZE_ERROR)
+    public void getAssessmentsByOffsetKeyPageSizeOverMax() {
+        service.getAssessmentsByOffsetKey(TEST_APP_ID, TEST_OWNER_ID, null, 100000, null, false);
+    }
+    
     @Test(expectedExceptions = BadRequestException.class, 
             expectedExceptionsMessageRegExp = NEGATIVE_OFFSET_ERROR)
     public void getAssessmentsNegativeOffsetBy() {
@@ -406,6 +437,7 @@ public class AssessmentServiceTest extends Mockito {
         assertEquals(retValue.getModifiedOn(), MODIFIED_ON);
         
         verify(mockDao).updateAssessment(TEST_APP_ID, retValue);
+        verify(mockCacheInvalidator).invalidate(ASSESSMENT_REGION);
     }
     
     @Test
@@ -239,7 +239,7 @@ public class AuthenticationServiceTest {
             .withClientInfo(ClientInfo.fromUserAgentCache("app/13")).build();
         
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(contextCaptor.capture(), any());
         doReturn(REAUTH_TOKEN).when(service).generateReauthToken();
         doReturn(Environment.PROD).when(config).getEnvironment();
@@ -314,7 +314,7 @@ public class AuthenticationServiceTest {
             .withClientInfo(ClientInfo.fromUserAgentCache("app/13")).build();
         
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(contextCaptor.capture(), any());
         doReturn(REAUTH_TOKEN).when(service).generateReauthToken();
         doReturn(Environment.PROD).when(config).getEnvironment();
@@ -356,7 +356,7 @@ public class AuthenticationServiceTest {
         account.setId(TEST_USER_ID);
         account.setReauthToken(REAUTH_TOKEN);
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         UserSession retrieved = service.signIn(app, CONTEXT, EMAIL_PASSWORD_SIGN_IN);
@@ -369,7 +369,7 @@ public class AuthenticationServiceTest {
     @Test(expectedExceptions = ConsentRequiredException.class)
     public void unconsentedSignInWithEmail() {
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         service.signIn(app, CONTEXT, EMAIL_PASSWORD_SIGN_IN);
@@ -381,7 +381,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder().copyOf(PARTICIPANT)
                 .withRoles(Sets.newHashSet(Roles.DEVELOPER)).build();
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), eq(account));
         
         // Does not throw consent required exception, despite being unconsented, because user has DEVELOPER role.
@@ -396,7 +396,7 @@ public class AuthenticationServiceTest {
         account.setId(TEST_USER_ID);
         account.setReauthToken(REAUTH_TOKEN);
         doReturn(account).when(accountService).authenticate(app, PHONE_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         UserSession retrieved = service.signIn(app, CONTEXT, PHONE_PASSWORD_SIGN_IN);
@@ -409,7 +409,7 @@ public class AuthenticationServiceTest {
     @Test(expectedExceptions = ConsentRequiredException.class)
     public void unconsentedSignInWithPhone() {
         doReturn(account).when(accountService).authenticate(app, PHONE_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         service.signIn(app, CONTEXT, PHONE_PASSWORD_SIGN_IN);
@@ -421,7 +421,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder()
                 .copyOf(PARTICIPANT).withRoles(Sets.newHashSet(Roles.RESEARCHER)).build();
         doReturn(account).when(accountService).authenticate(app, PHONE_PASSWORD_SIGN_IN);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         // Does not throw consent required exception, despite being unconsented, because user has RESEARCHER role. 
@@ -475,7 +475,7 @@ public class AuthenticationServiceTest {
         account.setReauthToken(REAUTH_TOKEN);
         when(cacheProvider.getObject(CACHE_KEY_EMAIL_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_EMAIL.getAccountId());
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         UserSession retSession = service.emailSignIn(CONTEXT, SIGN_IN_WITH_EMAIL);
@@ -506,7 +506,7 @@ public class AuthenticationServiceTest {
         when(cacheProvider.getUserSession(SESSION_TOKEN)).thenReturn(null);
 
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_EMAIL.getAccountId());
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         UserSession retSession = service.emailSignIn(CONTEXT, SIGN_IN_WITH_EMAIL);
@@ -539,7 +539,7 @@ public class AuthenticationServiceTest {
         when(cacheProvider.getUserSession(SESSION_TOKEN)).thenReturn(cachedSession);
 
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_EMAIL.getAccountId());
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         UserSession retSession = service.emailSignIn(CONTEXT, SIGN_IN_WITH_EMAIL);
@@ -607,7 +607,7 @@ public class AuthenticationServiceTest {
 
         when(cacheProvider.getObject(CACHE_KEY_EMAIL_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_EMAIL.getAccountId());
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         try {
@@ -624,7 +624,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder().withId(TEST_USER_ID)
                 .withRoles(Sets.newHashSet(Roles.ADMIN)).build();
 
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         when(cacheProvider.getObject(CACHE_KEY_EMAIL_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_EMAIL.getAccountId());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
@@ -644,7 +644,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder().withId(TEST_USER_ID).withEmail(RECIPIENT_EMAIL).build();
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         doReturn(account).when(accountService).reauthenticate(app, REAUTH_REQUEST);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         
         UserSession session = service.reauthenticate(app, CONTEXT, REAUTH_REQUEST);
         assertEquals(session.getParticipant().getEmail(), RECIPIENT_EMAIL);
@@ -667,7 +667,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder().withId(TEST_USER_ID).withEmail(RECIPIENT_EMAIL).build();
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         doReturn(account).when(accountService).reauthenticate(app, REAUTH_REQUEST);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         
         service.reauthenticate(app, CONTEXT, REAUTH_REQUEST);
     }
@@ -680,7 +680,7 @@ public class AuthenticationServiceTest {
                 .withRoles(ImmutableSet.of(Roles.DEVELOPER)).withEmail(RECIPIENT_EMAIL).build();
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         doReturn(account).when(accountService).reauthenticate(app, REAUTH_REQUEST);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         
         service.reauthenticate(app, CONTEXT, REAUTH_REQUEST);
     }
@@ -697,7 +697,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder().withId(TEST_USER_ID).withEmail(RECIPIENT_EMAIL).build();
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         doReturn(account).when(accountService).reauthenticate(app, REAUTH_REQUEST);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         
         UserSession session = service.reauthenticate(app, CONTEXT, REAUTH_REQUEST);
         assertEquals(session.getSessionToken(), "existingToken");
@@ -715,7 +715,7 @@ public class AuthenticationServiceTest {
                 .withStatus(AccountStatus.ENABLED).build();
         
         doReturn(account).when(accountService).reauthenticate(app, REAUTH_REQUEST);
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         
         try {
@@ -830,7 +830,7 @@ public class AuthenticationServiceTest {
         StudyParticipant participant = new StudyParticipant.Builder().withDataGroups(DATA_GROUP_SET)
                 .withEmail(RECIPIENT_EMAIL).withHealthCode(HEALTH_CODE).withId(TEST_USER_ID).withLanguages(LANGUAGES)
                 .withFirstName("Test").withLastName("Tester").withPhone(TestConstants.PHONE).build();
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         when(cacheProvider.getObject(CACHE_KEY_PHONE_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_PHONE.getAccountId());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
@@ -861,7 +861,7 @@ public class AuthenticationServiceTest {
 
         when(cacheProvider.getObject(CACHE_KEY_PHONE_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_PHONE.getAccountId());
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         // Execute and validate. Just verify that it succeeds and doesn't throw. Details are tested in above tests.
@@ -876,7 +876,7 @@ public class AuthenticationServiceTest {
 
         when(cacheProvider.getObject(CACHE_KEY_PHONE_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_PHONE.getAccountId());
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
 
         // Execute and validate. Just verify that it succeeds and doesn't throw. Details are tested in above tests.
@@ -918,7 +918,7 @@ public class AuthenticationServiceTest {
         // Put some stuff in participant to verify session is initialized
         StudyParticipant participant = new StudyParticipant.Builder().withId(TEST_USER_ID)
                 .withEmail(RECIPIENT_EMAIL).withFirstName("Test").withLastName("Tester").build();
-        doReturn(participant).when(participantService).getParticipant(app, account, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(account), any());
         when(cacheProvider.getObject(CACHE_KEY_PHONE_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), any());
         doReturn(Optional.of(account)).when(accountService).getAccount(SIGN_IN_WITH_PHONE.getAccountId());
@@ -970,6 +970,7 @@ public class AuthenticationServiceTest {
     public void languagesArePersistedFromContext() {
         // This specifically has to be a mock to easily mock the editAccount method on the DAO.
         Account mockAccount = mock(Account.class);
+        when(mockAccount.getHealthCode()).thenReturn(HEALTH_CODE);
 
         CriteriaContext context = new CriteriaContext.Builder().withLanguages(LANGUAGES)
                 .withUserId(TEST_USER_ID).withAppId(TEST_APP_ID).build();
@@ -978,7 +979,7 @@ public class AuthenticationServiceTest {
         
         // No languages.
         StudyParticipant participant = new StudyParticipant.Builder().withHealthCode(HEALTH_CODE).build();
-        doReturn(participant).when(participantService).getParticipant(app, mockAccount, false);
+        doReturn(participant).when(participantService).getSessionParticipant(eq(mockAccount), any());
         
         service.getSession(app, context);
         
@@ -1153,13 +1154,11 @@ public class AuthenticationServiceTest {
         Account consentedAccount = Account.create();
 
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getParticipant(app, account,
-                false);
+        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(UNCONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), eq(account));
         
         doReturn(Optional.of(consentedAccount)).when(accountService).getAccount(any());
-        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getParticipant(app, consentedAccount,
-                false);
+        doReturn(PARTICIPANT_WITH_ATTRIBUTES).when(participantService).getSessionParticipant(eq(consentedAccount), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), eq(consentedAccount));
         
         // This would normally throw except that the intentService reports consents were updated
@@ -1177,11 +1176,11 @@ public class AuthenticationServiceTest {
         when(cacheProvider.getObject(CACHE_KEY_EMAIL_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         when(accountService.getAccount(any())).thenReturn(
                 Optional.of(account), Optional.of(consentedAccount));
-        when(participantService.getParticipant(app, account, false)).thenReturn(
+        when(participantService.getSessionParticipant(eq(account), any())).thenReturn(
                 PARTICIPANT_WITH_ATTRIBUTES);
         when(consentService.getConsentStatuses(any(), eq(account))).thenReturn(UNCONSENTED_STATUS_MAP);
 
-        when(participantService.getParticipant(app, consentedAccount, false)).thenReturn(
+        when(participantService.getSessionParticipant(eq(consentedAccount), any())).thenReturn(
                 PARTICIPANT_WITH_ATTRIBUTES);
         when(consentService.getConsentStatuses(any(), eq(consentedAccount))).thenReturn(CONSENTED_STATUS_MAP);
 
@@ -1200,11 +1199,11 @@ public class AuthenticationServiceTest {
         when(cacheProvider.getObject(CACHE_KEY_PHONE_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         when(accountService.getAccount(any())).thenReturn(
                Optional.of(account), Optional.of(consentedAccount));
-        when(participantService.getParticipant(app, account, false)).thenReturn(
+        when(participantService.getSessionParticipant(eq(account), any())).thenReturn(
                 PARTICIPANT_WITH_ATTRIBUTES);
         when(consentService.getConsentStatuses(any(), eq(account))).thenReturn(UNCONSENTED_STATUS_MAP);
 
-        when(participantService.getParticipant(app, consentedAccount, false)).thenReturn(
+        when(participantService.getSessionParticipant(eq(consentedAccount), any())).thenReturn(
                 PARTICIPANT_WITH_ATTRIBUTES);
         when(consentService.getConsentStatuses(any(), eq(consentedAccount))).thenReturn(CONSENTED_STATUS_MAP);
 
@@ -1217,7 +1216,7 @@ public class AuthenticationServiceTest {
     @Test
     public void consentedSignInDoesNotExecuteIntentToParticipate() {
         doReturn(account).when(accountService).authenticate(app, EMAIL_PASSWORD_SIGN_IN);
-        doReturn(PARTICIPANT).when(participantService).getParticipant(app, account, false);
+        doReturn(PARTICIPANT).when(participantService).getSessionParticipant(eq(account), any());
         doReturn(CONSENTED_STATUS_MAP).when(consentService).getConsentStatuses(any(), eq(account));
 
         service.signIn(app, CONTEXT, EMAIL_PASSWORD_SIGN_IN);
@@ -1229,7 +1228,7 @@ public class AuthenticationServiceTest {
     public void consentedEmailSignInDoesNotExecuteIntentToParticipate() {
         when(cacheProvider.getObject(CACHE_KEY_EMAIL_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         when(accountService.getAccount(any())).thenReturn(Optional.of(account));
-        when(participantService.getParticipant(app, account, false)).thenReturn(PARTICIPANT);
+        when(participantService.getSessionParticipant(eq(account), any())).thenReturn(PARTICIPANT);
         when(consentService.getConsentStatuses(any(), eq(account))).thenReturn(CONSENTED_STATUS_MAP);
 
         service.emailSignIn(CONTEXT, SIGN_IN_WITH_EMAIL);
@@ -1241,7 +1240,7 @@ public class AuthenticationServiceTest {
     public void consentedPhoneSignInDoesNotExecuteIntentToParticipate() {
         when(cacheProvider.getObject(CACHE_KEY_PHONE_SIGNIN, String.class)).thenReturn(TOKEN_UNFORMATTED);
         when(accountService.getAccount(any())).thenReturn(Optional.of(account));
-        when(participantService.getParticipant(app, account, false)).thenReturn(PARTICIPANT);
+        when(participantService.getSessionParticipant(eq(account), any())).thenReturn(PARTICIPANT);
         when(consentService.getConsentStatuses(any(), eq(account))).thenReturn(CONSENTED_STATUS_MAP);
 
         service.phoneSignIn(CONTEXT, SIGN_IN_WITH_PHONE);
@@ -1270,7 +1269,7 @@ public class AuthenticationServiceTest {
                 .build();
         
         // Mock pre-reqs.
-        when(participantService.getParticipant(any(), any(Account.class), anyBoolean())).thenReturn(participant);
+        when(participantService.getSessionParticipant(any(Account.class), any())).thenReturn(participant);
         when(config.getEnvironment()).thenReturn(Environment.LOCAL);
         when(consentService.getConsentStatuses(any(), any())).thenReturn(CONSENTED_STATUS_MAP);
         when(service.generateReauthToken()).thenReturn(REAUTH_TOKEN);
@@ -1310,7 +1309,7 @@ public class AuthenticationServiceTest {
         Account account = Account.create();
 
         // Mock pre-reqs.
-        when(participantService.getParticipant(any(), any(Account.class), anyBoolean())).thenReturn(PARTICIPANT);
+        when(participantService.getSessionParticipant(any(Account.class), any())).thenReturn(PARTICIPANT);
         when(config.getEnvironment()).thenReturn(Environment.LOCAL);
         when(consentService.getConsentStatuses(any(), any())).thenReturn(CONSENTED_STATUS_MAP);
         
@@ -1336,7 +1335,7 @@ public class AuthenticationServiceTest {
         Account account = Account.create();
 
         // Mock pre-reqs.
-        when(participantService.getParticipant(any(), any(Account.class), anyBoolean())).thenReturn(PARTICIPANT);
+        when(participantService.getSessionParticipant(any(Account.class), any())).thenReturn(PARTICIPANT);
         when(config.getEnvironment()).thenReturn(Environment.LOCAL);
         when(consentService.getConsentStatuses(any(), any())).thenReturn(CONSENTED_STATUS_MAP);
 
@@ -1423,7 +1422,7 @@ public class AuthenticationServiceTest {
         
         StudyParticipant participant = new StudyParticipant.Builder()
                 .withId(TEST_USER_ID).withLanguages(TestConstants.LANGUAGES).build();
-        when(participantService.getParticipant(app, account, false)).thenReturn(participant);
+        when(participantService.getSessionParticipant(eq(account), any())).thenReturn(participant);
         when(consentService.getConsentStatuses(any(), any())).thenReturn(CONSENTED_STATUS_MAP);
         
         CriteriaContext context = new CriteriaContext.Builder()
@@ -1440,12 +1439,13 @@ public class AuthenticationServiceTest {
     @Test
     public void languagePreferencesArePersisted() {
         // Language prefs are not persisted, so the context should cause an update
+        account.setHealthCode(HEALTH_CODE);
         when(accountService.authenticate(app, EMAIL_PASSWORD_SIGN_IN)).thenReturn(account);
         
         StudyParticipant participant = new StudyParticipant.Builder().copyOf(PARTICIPANT)
-                .withHealthCode(HEALTH_CODE).build();
+                .withHealthCode(HEALTH_CODE).withLanguages(TestConstants.LANGUAGES).build();
         
-        when(participantService.getParticipant(app, account, false)).thenReturn(participant);
+        when(participantService.getSessionParticipant(eq(account), any())).thenReturn(participant);
         when(consentService.getConsentStatuses(any(), any())).thenReturn(CONSENTED_STATUS_MAP);
         
         CriteriaContext context = new CriteriaContext.Builder()
@@ -1455,8 +1455,10 @@ public class AuthenticationServiceTest {
         UserSession session = service.signIn(app, context, EMAIL_PASSWORD_SIGN_IN);
         
         assertEquals(session.getParticipant().getLanguages(), TestConstants.LANGUAGES);
+        // The context languages are handed to the participant service to fold into the session participant
+        verify(participantService).getSessionParticipant(account, TestConstants.LANGUAGES);
         
-        // Note that the context does not have the healthCode, you must use the participant
+        // Note that the context does not have the healthCode, you must use the account
         verify(accountService).editAccount(eq(ACCOUNT_ID_WITH_HEALTHCODE), any());
    }
     
@@ -1471,7 +1473,7 @@ public class AuthenticationServiceTest {
        when(accountService.getAccount(accountId)).thenReturn(Optional.of(account));
        
        StudyParticipant participant = new StudyParticipant.Builder().withSynapseUserId("12345").build();
-       when(participantService.getParticipant(any(), eq(account), eq(false))).thenReturn(participant);
+       when(participantService.getSessionParticipant(eq(account), any())).thenReturn(participant);
        
        UserSession session = service.oauthSignIn(CONTEXT, token);
        
@@ -1509,7 +1511,7 @@ public class AuthenticationServiceTest {
        when(accountService.getAccount(accountId)).thenReturn(Optional.of(account));
        
        StudyParticipant participant = new StudyParticipant.Builder().withSynapseUserId("12345").build();
-       when(participantService.getParticipant(any(), eq(account), eq(false))).thenReturn(participant);
+       when(participantService.getSessionParticipant(eq(account), any())).thenReturn(participant);
        
        service.oauthSignIn(CONTEXT, token);
    }
@@ -5,6 +5,8 @@ import static org.sagebionetworks.bridge.TestConstants.EMAIL;
 import static org.sagebionetworks.bridge.TestConstants.PHONE;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.NO_SHARING;
 import static org.sagebionetworks.bridge.services.StudyConsentService.SIGNATURE_BLOCK;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.FileInputStream;
@@ -22,6 +24,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoApp;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.subpopulations.ConsentSignature;
+import org.sagebionetworks.bridge.util.CompiledTemplate;
 
 public class ConsentPdfTest {
     private static final long TIMESTAMP = DateTime.parse("2017-10-04").getMillis();
@@ -64,6 +67,24 @@ public class ConsentPdfTest {
         assertTrue(consentPdf.getBytes().length > 0);
     }
     
+    @Test
+    public void compiledConsentDocumentCanBeReused() throws Exception {
+        ConsentSignature sig = makeSignatureWithoutImage();
+        CompiledTemplate consentDocument = ConsentPdf.compileConsentDocument(app, DOCUMENT_FRAGMENT,
+                consentBodyTemplate);
+        
+        ConsentPdf fromStrings = new ConsentPdf(app, EMAIL_PARTICIPANT, sig, NO_SHARING, DOCUMENT_FRAGMENT,
+                consentBodyTemplate);
+        ConsentPdf fromCompiled = new ConsentPdf(EMAIL_PARTICIPANT, sig, NO_SHARING, consentDocument);
+        assertEquals(fromCompiled.getFormattedConsentDocument(), fromStrings.getFormattedConsentDocument());
+        
+        StudyParticipant otherSigner = new StudyParticipant.Builder().withEmail("other@email.com")
+                .withEmailVerified(true).build();
+        ConsentPdf otherPdf = new ConsentPdf(otherSigner, sig, NO_SHARING, consentDocument);
+        assertTrue(otherPdf.getFormattedConsentDocument().contains("other@email.com"));
+        assertFalse(otherPdf.getFormattedConsentDocument().contains(EMAIL));
+    }
+    
     @Test
     public void docWithNullUserTimeZone() throws Exception {
         ConsentSignature sig = makeSignatureWithoutImage();
@@ -11,6 +11,7 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -22,12 +23,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.apache.commons.io.IOUtils;
 import org.joda.time.DateTime;
@@ -157,6 +160,8 @@ public class ConsentServiceTest extends Mockito {
                 new FileInputStream(new ClassPathResource("conf/app-defaults/consent-page.xhtml").getFile()), UTF_8);
 
         consentService.setConsentTemplate(new ByteArrayResource((documentString).getBytes()));
+        consentService.setConsentExecutorService(MoreExecutors.newDirectExecutorService());
+        consentService.consentDocumentCache.invalidateAll();
 
         app = TestUtils.getValidApp(ConsentServiceTest.class);
         
@@ -833,6 +838,56 @@ public class ConsentServiceTest extends Mockito {
         verify(sendMailService, never()).sendEmail(any());
     }
 
+    @Test
+    public void consentToResearchSendsConsentInBackground() {
+        ExecutorService mockExecutor = mock(ExecutorService.class);
+        consentService.setConsentExecutorService(mockExecutor);
+        RequestContext context = new RequestContext.Builder().withCallerUserId(ID).build();
+        RequestContext.set(context);
+        
+        consentService.consentToResearch(app, SUBPOP_GUID, PARTICIPANT, CONSENT_SIGNATURE, SharingScope.NO_SHARING,
+                true);
+        
+        // The user is consented before the PDF is rendered
+        verify(accountService).updateAccount(any());
+        verify(sendMailService, never()).sendEmail(any());
+        
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockExecutor).execute(taskCaptor.capture());
+        RequestContext.set(NULL_INSTANCE);
+        when(templateService.getRevisionForUser(app, EMAIL_SIGNED_CONSENT)).thenAnswer(invocation -> {
+            assertSame(RequestContext.get(), context);
+            return TemplateRevision.create();
+        });
+        
+        taskCaptor.getValue().run();
+        
+        verify(sendMailService).sendEmail(any());
+        assertSame(RequestContext.get(), NULL_INSTANCE);
+    }
+    
+    @Test
+    public void consentDocumentIsAssembledOnceForAllSigners() {
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+        
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        
+        verify(sendMailService, times(2)).sendEmail(any());
+        verify(studyConsentView, times(1)).getDocumentContent();
+    }
+    
+    @Test
+    public void consentDocumentIsAssembledAgainForNewAppVersion() {
+        account.setConsentSignatureHistory(SUBPOP_GUID, ImmutableList.of(CONSENT_SIGNATURE));
+        
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        app.setVersion(2L);
+        consentService.resendConsentAgreement(app, SUBPOP_GUID, PARTICIPANT);
+        
+        verify(studyConsentView, times(2)).getDocumentContent();
+    }
+
     // Tests of the construction of recipients for email, originally part of special email builder.
 
     @Test
@@ -2,13 +2,12 @@ package org.sagebionetworks.bridge.services;
 
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.joda.time.DateTime;
@@ -25,7 +24,6 @@ public class ExportViaSqsServiceTest {
 
     private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
     private static final long MOCK_NOW = DateTime.parse("2017-08-10T15:53:29.769-07:00").getMillis();
-    private static final String SQS_MESSAGE_ID = "dummy-message-id";
     private static final String SQS_URL = "dummy-sqs-url";
 
     @BeforeMethod
@@ -45,19 +43,18 @@ public class ExportViaSqsServiceTest {
         when(mockConfig.getProperty(ExportViaSqsService.CONFIG_KEY_EXPORTER_SQS_QUEUE_URL)).thenReturn(SQS_URL);
 
         // mock SQS
-        AmazonSQSClient mockSqsClient = mock(AmazonSQSClient.class);
-        SendMessageResult mockSqsResult = new SendMessageResult().withMessageId(SQS_MESSAGE_ID);
+        SqsMessageDispatcher mockSqsMessageDispatcher = mock(SqsMessageDispatcher.class);
         ArgumentCaptor<String> sqsMessageCaptor = ArgumentCaptor.forClass(String.class);
-        when(mockSqsClient.sendMessage(eq(SQS_URL), sqsMessageCaptor.capture())).thenReturn(mockSqsResult);
 
         // set up test service
         ExportViaSqsService service = new ExportViaSqsService();
         service.setBridgeConfig(mockConfig);
-        service.setSqsClient(mockSqsClient);
+        service.setSqsMessageDispatcher(mockSqsMessageDispatcher);
 
         // execute and validate
         service.startOnDemandExport(TEST_APP_ID);
 
+        verify(mockSqsMessageDispatcher).send(eq(SQS_URL), sqsMessageCaptor.capture());
         String sqsMessageText = sqsMessageCaptor.getValue();
         JsonNode sqsMessageNode = JSON_OBJECT_MAPPER.readTree(sqsMessageText);
         assertEquals(sqsMessageNode.size(), 5);
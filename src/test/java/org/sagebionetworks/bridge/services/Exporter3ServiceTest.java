@@ -18,8 +18,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.mockito.ArgumentCaptor;
@@ -90,7 +88,7 @@ public class Exporter3ServiceTest {
     private S3Helper mockS3Helper;
 
     @Mock
-    private AmazonSQSClient mockSqsClient;
+    private SqsMessageDispatcher mockSqsMessageDispatcher;
 
     @Mock
     private SynapseHelper mockSynapseHelper;
@@ -336,9 +334,6 @@ public class Exporter3ServiceTest {
         createdRecord.setId(RECORD_ID);
         when(mockHealthDataEx3Service.createOrUpdateRecord(any())).thenReturn(createdRecord);
 
-        // Mock SQS. Return type doesn't actually matter except for logs, but we don't want it to be null.
-        when(mockSqsClient.sendMessage(any(), any())).thenReturn(new SendMessageResult());
-
         // Execute.
         exporter3Service.completeUpload(app, upload);
 
@@ -360,7 +355,7 @@ public class Exporter3ServiceTest {
 
         // Verify call to SQS.
         ArgumentCaptor<String> requestJsonTextCaptor = ArgumentCaptor.forClass(String.class);
-        verify(mockSqsClient).sendMessage(eq(WORKER_QUEUE_URL), requestJsonTextCaptor.capture());
+        verify(mockSqsMessageDispatcher).send(eq(WORKER_QUEUE_URL), requestJsonTextCaptor.capture());
 
         String requestJsonText = requestJsonTextCaptor.getValue();
         WorkerRequest workerRequest = BridgeObjectMapper.get().readValue(requestJsonText, WorkerRequest.class);
@@ -395,7 +390,7 @@ public class Exporter3ServiceTest {
         exporter3Service.completeUpload(app, upload);
 
         // No call to SQS.
-        verifyZeroInteractions(mockSqsClient);
+        verifyZeroInteractions(mockSqsMessageDispatcher);
     }
 
     @Test
@@ -417,6 +412,6 @@ public class Exporter3ServiceTest {
         }
 
         // No calls to HealthDataEx3Service or SQS.
-        verifyZeroInteractions(mockHealthDataEx3Service, mockSqsClient);
+        verifyZeroInteractions(mockHealthDataEx3Service, mockSqsMessageDispatcher);
     }
 }
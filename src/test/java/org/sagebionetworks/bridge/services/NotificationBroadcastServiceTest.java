@@ -0,0 +1,432 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.TestConstants.GUID;
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_ID;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.COMPLETED;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.FAILED;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.IN_PROGRESS;
+import static org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus.PAUSED;
+import static org.sagebionetworks.bridge.services.NotificationBroadcastService.EXPIRE_IN_SECONDS;
+import static org.sagebionetworks.bridge.services.NotificationBroadcastService.LEASE_EXPIRE_IN_SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.services.sns.AmazonSNSClient;
+import com.amazonaws.services.sns.model.InvalidParameterException;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.joda.time.DateTime;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.models.notifications.NotificationBroadcast;
+import org.sagebionetworks.bridge.models.notifications.NotificationBroadcastStatus;
+import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
+import org.sagebionetworks.bridge.models.notifications.NotificationProtocol;
+import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
+
+public class NotificationBroadcastServiceTest extends Mockito {
+
+    static final CacheKey BROADCAST_KEY = CacheKey.notificationBroadcast(TEST_APP_ID, GUID);
+    static final CacheKey PAUSE_KEY = CacheKey.notificationBroadcastPause(TEST_APP_ID, GUID);
+    static final CacheKey LEASE_KEY = CacheKey.notificationBroadcastLease(TEST_APP_ID, GUID);
+    static final NotificationMessage MESSAGE = new NotificationMessage.Builder().withSubject("subject")
+            .withMessage("message").build();
+
+    @Mock
+    AccountService mockAccountService;
+
+    @Mock
+    NotificationRegistrationDao mockRegistrationDao;
+
+    @Mock
+    AmazonSNSClient mockSnsClient;
+
+    @Mock
+    CacheProvider mockCacheProvider;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    ExecutorService mockAsyncExecutorService;
+
+    @Captor
+    ArgumentCaptor<NotificationBroadcast> broadcastCaptor;
+
+    @Captor
+    ArgumentCaptor<PublishRequest> publishCaptor;
+
+    @InjectMocks
+    @Spy
+    NotificationBroadcastService service;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getInt(NotificationBroadcastService.PAGE_SIZE_PROPERTY)).thenReturn(2);
+        when(mockConfig.getInt(NotificationBroadcastService.RATE_PROPERTY)).thenReturn(1000);
+        service.setBridgeConfig(mockConfig);
+        service.setAsyncExecutorService(mockAsyncExecutorService);
+        service.setBroadcastExecutorService(MoreExecutors.newDirectExecutorService());
+
+        // Run the broadcast on the calling thread.
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockAsyncExecutorService).execute(any());
+
+        when(service.generateGuid()).thenReturn(GUID);
+        when(mockSnsClient.publish(any())).thenReturn(new PublishResult());
+
+        // The lease token is also GUID. By default the lease is free, and this server keeps it.
+        when(mockCacheProvider.setObjectIfAbsent(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS)).thenReturn(true);
+        when(mockCacheProvider.setExpirationIfEquals(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS)).thenReturn(true);
+    }
+
+    @Test
+    public void startBroadcast() {
+        // Two pages of accounts.
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of("group1"), null, 2))
+                .thenReturn(ImmutableList.of("hc1", "hc2"));
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of("group1"), "hc2", 2))
+                .thenReturn(ImmutableList.of("hc3"));
+
+        // hc1 has one device, hc2 has none, and hc3 has a device and an SMS registration.
+        when(mockRegistrationDao.listRegistrations("hc1")).thenReturn(ImmutableList.of(
+                registration("hc1-push", NotificationProtocol.APPLICATION)));
+        when(mockRegistrationDao.listRegistrations("hc2")).thenReturn(ImmutableList.of());
+        when(mockRegistrationDao.listRegistrations("hc3")).thenReturn(ImmutableList.of(
+                registration("hc3-push", NotificationProtocol.APPLICATION),
+                registration("hc3-sms", NotificationProtocol.SMS)));
+
+        // The hc3 device's endpoint has been disabled.
+        when(mockSnsClient.publish(argThat(request -> request != null && "hc3-push".equals(request.getTargetArn()))))
+                .thenThrow(new InvalidParameterException("Endpoint is disabled"));
+
+        NotificationBroadcast retValue = service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, request());
+        assertEquals(retValue.getGuid(), GUID);
+        assertEquals(retValue.getStudyId(), TEST_STUDY_ID);
+        assertEquals(retValue.getStatus(), IN_PROGRESS);
+        assertEquals(retValue.getMessage(), MESSAGE);
+        assertEquals(retValue.getAllOfGroups(), ImmutableSet.of("group1"));
+        assertNotNull(retValue.getStartedOn());
+
+        verify(mockSnsClient, times(2)).publish(publishCaptor.capture());
+        assertEquals(publishCaptor.getAllValues().get(0).getTargetArn(), "hc1-push");
+        assertEquals(publishCaptor.getAllValues().get(0).getSubject(), "subject");
+        assertEquals(publishCaptor.getAllValues().get(0).getMessage(), "message");
+        assertEquals(publishCaptor.getAllValues().get(1).getTargetArn(), "hc3-push");
+
+        NotificationBroadcast finalBroadcast = captureFinalBroadcast();
+        assertEquals(finalBroadcast.getStatus(), COMPLETED);
+        assertEquals(finalBroadcast.getAccountCount(), 3);
+        assertEquals(finalBroadcast.getUnregisteredCount(), 1);
+        assertEquals(finalBroadcast.getDeliveredCount(), 1);
+        assertEquals(finalBroadcast.getFailedCount(), 1);
+        assertEquals(finalBroadcast.getOffsetKey(), "hc3");
+        assertNotNull(finalBroadcast.getFinishedOn());
+        assertNull(finalBroadcast.getError());
+
+        // The lease is renewed after each page, and released when the broadcast is done.
+        verify(mockCacheProvider, times(2)).setExpirationIfEquals(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS);
+        verify(mockCacheProvider).removeObjectIfEquals(LEASE_KEY, GUID);
+    }
+
+    @Test
+    public void startBroadcastReadsPastFullLastPage() {
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of("group1"), null, 2))
+                .thenReturn(ImmutableList.of("hc1", "hc2"));
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of("group1"), "hc2", 2))
+                .thenReturn(ImmutableList.of());
+        when(mockRegistrationDao.listRegistrations(any())).thenReturn(ImmutableList.of());
+
+        service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, request());
+
+        NotificationBroadcast finalBroadcast = captureFinalBroadcast();
+        assertEquals(finalBroadcast.getStatus(), COMPLETED);
+        assertEquals(finalBroadcast.getAccountCount(), 2);
+        assertEquals(finalBroadcast.getUnregisteredCount(), 2);
+        assertEquals(finalBroadcast.getOffsetKey(), "hc2");
+        verify(mockSnsClient, never()).publish(any());
+    }
+
+    @Test
+    public void startBroadcastFails() {
+        when(mockAccountService.getStudyHealthCodes(any(), any(), any(), any(), anyInt()))
+                .thenThrow(new RuntimeException("Database is down"));
+
+        service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, request());
+
+        NotificationBroadcast finalBroadcast = captureFinalBroadcast();
+        assertEquals(finalBroadcast.getStatus(), FAILED);
+        assertEquals(finalBroadcast.getError(), "Database is down");
+        assertEquals(finalBroadcast.getAccountCount(), 0);
+    }
+
+    @Test
+    public void startBroadcastPausesBeforeNextPage() {
+        when(mockCacheProvider.getObject(PAUSE_KEY, Boolean.class)).thenReturn(Boolean.TRUE);
+
+        service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, request());
+
+        NotificationBroadcast finalBroadcast = captureFinalBroadcast();
+        assertEquals(finalBroadcast.getStatus(), PAUSED);
+        assertNull(finalBroadcast.getFinishedOn());
+        verify(mockCacheProvider).removeObject(PAUSE_KEY);
+        verify(mockCacheProvider).removeObjectIfEquals(LEASE_KEY, GUID);
+        verify(mockAccountService, never()).getStudyHealthCodes(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    public void broadcastStopsWhenItLosesItsLease() {
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of("group1"), null, 2))
+                .thenReturn(ImmutableList.of("hc1", "hc2"));
+        when(mockRegistrationDao.listRegistrations(any())).thenReturn(ImmutableList.of());
+        // Another server has resumed the broadcast.
+        when(mockCacheProvider.setExpirationIfEquals(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS)).thenReturn(false);
+
+        service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, request());
+
+        // Only the initial record is saved, and the other server's lease is left alone.
+        verify(mockCacheProvider, times(1)).setObject(eq(BROADCAST_KEY), any(), eq(EXPIRE_IN_SECONDS));
+        assertEquals(captureFinalBroadcast().getStatus(), IN_PROGRESS);
+        verify(mockAccountService, times(1)).getStudyHealthCodes(any(), any(), any(), any(), anyInt());
+        verify(mockCacheProvider, never()).removeObjectIfEquals(any(), any());
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = NotificationBroadcastService.MESSAGE_REQUIRED_ERROR)
+    public void startBroadcastNoMessage() {
+        service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, new NotificationBroadcast());
+    }
+
+    @Test(expectedExceptions = InvalidEntityException.class)
+    public void startBroadcastInvalidMessage() {
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        broadcast.setMessage(new NotificationMessage.Builder().withSubject("subject").build());
+
+        service.startBroadcast(TEST_APP_ID, TEST_STUDY_ID, broadcast);
+    }
+
+    @Test
+    public void getBroadcast() {
+        NotificationBroadcast stored = stored(PAUSED);
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored);
+
+        NotificationBroadcast retValue = service.getBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        assertEquals(retValue.getGuid(), GUID);
+        assertEquals(retValue.getStatus(), PAUSED);
+        assertEquals(retValue.getAccountCount(), 2);
+        // The offset key is a health code, so it isn't returned.
+        assertNull(retValue.getOffsetKey());
+        assertEquals(stored.getOffsetKey(), "hc2");
+    }
+
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void getBroadcastNotFound() {
+        service.getBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void getBroadcastInOtherStudy() {
+        NotificationBroadcast stored = stored(PAUSED);
+        stored.setStudyId("otherStudy");
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored);
+
+        service.getBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    @Test
+    public void pauseBroadcast() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class))
+                .thenReturn(stored(IN_PROGRESS));
+
+        NotificationBroadcast retValue = service.pauseBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        assertEquals(retValue.getStatus(), IN_PROGRESS);
+
+        verify(mockCacheProvider).setObject(PAUSE_KEY, Boolean.TRUE, EXPIRE_IN_SECONDS);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = NotificationBroadcastService.CANNOT_PAUSE_ERROR)
+    public void pauseBroadcastNotInProgress() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored(PAUSED));
+
+        service.pauseBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    @Test
+    public void resumeBroadcast() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored(PAUSED));
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of(), "hc2", 2))
+                .thenReturn(ImmutableList.of("hc3"));
+        when(mockRegistrationDao.listRegistrations("hc3")).thenReturn(ImmutableList.of(
+                registration("hc3-push", NotificationProtocol.APPLICATION)));
+
+        NotificationBroadcast retValue = service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        assertEquals(retValue.getStatus(), IN_PROGRESS);
+        assertNull(retValue.getOffsetKey());
+
+        // Continues after the last account processed, and adds to the counts so far.
+        verify(mockSnsClient).publish(any());
+        NotificationBroadcast finalBroadcast = captureFinalBroadcast();
+        assertEquals(finalBroadcast.getStatus(), COMPLETED);
+        assertEquals(finalBroadcast.getAccountCount(), 3);
+        assertEquals(finalBroadcast.getDeliveredCount(), 3);
+        assertEquals(finalBroadcast.getOffsetKey(), "hc3");
+    }
+
+    @Test
+    public void resumeFailedBroadcast() {
+        NotificationBroadcast stored = stored(FAILED);
+        stored.setError("Database is down");
+        stored.setFinishedOn(DateTime.now());
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored);
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of(), "hc2", 2))
+                .thenReturn(ImmutableList.of());
+
+        NotificationBroadcast retValue = service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        assertEquals(retValue.getStatus(), IN_PROGRESS);
+        assertNull(retValue.getError());
+        assertNull(retValue.getFinishedOn());
+
+        assertEquals(captureFinalBroadcast().getStatus(), COMPLETED);
+    }
+
+    @Test
+    public void resumeBroadcastWithdrawsPause() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class))
+                .thenReturn(stored(IN_PROGRESS));
+        when(mockCacheProvider.getObject(PAUSE_KEY, Boolean.class)).thenReturn(Boolean.TRUE);
+        when(mockCacheProvider.setObjectIfAbsent(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS)).thenReturn(false);
+
+        NotificationBroadcast retValue = service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        assertEquals(retValue.getStatus(), IN_PROGRESS);
+
+        verify(mockCacheProvider).removeObject(PAUSE_KEY);
+        verify(mockAsyncExecutorService, never()).execute(any());
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = NotificationBroadcastService.ALREADY_RUNNING_ERROR)
+    public void resumeBroadcastAlreadyRunning() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class))
+                .thenReturn(stored(IN_PROGRESS));
+        when(mockCacheProvider.setObjectIfAbsent(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS)).thenReturn(false);
+
+        service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = NotificationBroadcastService.ALREADY_RUNNING_ERROR)
+    public void resumePausedBroadcastAlreadyResumed() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored(PAUSED));
+        when(mockCacheProvider.setObjectIfAbsent(LEASE_KEY, GUID, LEASE_EXPIRE_IN_SECONDS)).thenReturn(false);
+
+        try {
+            service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        } finally {
+            verify(mockCacheProvider, never()).setObject(any(), any(), anyInt());
+            verify(mockAsyncExecutorService, never()).execute(any());
+        }
+    }
+
+    @Test
+    public void resumeBroadcastThatLostItsServer() {
+        // The broadcast is in progress, but no server holds its lease.
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class))
+                .thenReturn(stored(IN_PROGRESS));
+        when(mockAccountService.getStudyHealthCodes(TEST_APP_ID, TEST_STUDY_ID, ImmutableSet.of(), "hc2", 2))
+                .thenReturn(ImmutableList.of());
+
+        service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+
+        // Any pause requested of the server that stopped is withdrawn.
+        verify(mockCacheProvider).removeObject(PAUSE_KEY);
+        assertEquals(captureFinalBroadcast().getStatus(), COMPLETED);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = NotificationBroadcastService.ALREADY_COMPLETED_ERROR)
+    public void resumeBroadcastCompletedWhileClaimingLease() {
+        // The server that held the lease completed the broadcast before releasing it.
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class))
+                .thenReturn(stored(PAUSED), stored(COMPLETED));
+
+        try {
+            service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        } finally {
+            verify(mockCacheProvider).removeObjectIfEquals(LEASE_KEY, GUID);
+            verify(mockAsyncExecutorService, never()).execute(any());
+        }
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = NotificationBroadcastService.ALREADY_COMPLETED_ERROR)
+    public void resumeCompletedBroadcast() {
+        when(mockCacheProvider.getObject(BROADCAST_KEY, NotificationBroadcast.class)).thenReturn(stored(COMPLETED));
+
+        service.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    private NotificationBroadcast request() {
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        broadcast.setMessage(MESSAGE);
+        broadcast.setAllOfGroups(ImmutableSet.of("group1"));
+        return broadcast;
+    }
+
+    // A broadcast that has processed its first page of two accounts.
+    private NotificationBroadcast stored(NotificationBroadcastStatus status) {
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        broadcast.setGuid(GUID);
+        broadcast.setStudyId(TEST_STUDY_ID);
+        broadcast.setMessage(MESSAGE);
+        broadcast.setStatus(status);
+        broadcast.setOffsetKey("hc2");
+        broadcast.setAccountCount(2);
+        broadcast.setDeliveredCount(2);
+        broadcast.setStartedOn(DateTime.now());
+        broadcast.setModifiedOn(DateTime.now());
+        return broadcast;
+    }
+
+    private NotificationRegistration registration(String endpoint, NotificationProtocol protocol) {
+        NotificationRegistration registration = NotificationRegistration.create();
+        registration.setGuid(endpoint + "-guid");
+        registration.setEndpoint(endpoint);
+        registration.setProtocol(protocol);
+        return registration;
+    }
+
+    private NotificationBroadcast captureFinalBroadcast() {
+        verify(mockCacheProvider, atLeastOnce()).setObject(eq(BROADCAST_KEY), broadcastCaptor.capture(),
+                eq(EXPIRE_IN_SECONDS));
+        List<NotificationBroadcast> saved = broadcastCaptor.getAllValues();
+        return saved.get(saved.size() - 1);
+    }
+}
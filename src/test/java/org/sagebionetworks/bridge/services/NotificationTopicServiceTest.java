@@ -6,16 +6,20 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestUtils.getNotificationTopic;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.CRITERIA_TOPIC_CACHE;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -31,6 +35,7 @@ import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.dao.NotificationTopicDao;
 import org.sagebionetworks.bridge.dao.TopicSubscriptionDao;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.Criteria;
 import org.sagebionetworks.bridge.models.CriteriaContext;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
@@ -45,6 +50,7 @@ import com.amazonaws.services.sns.model.PublishRequest;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class NotificationTopicServiceTest {
@@ -137,6 +143,12 @@ public class NotificationTopicServiceTest {
     @Mock
     private NotificationRegistration mockNotificationRegistration;
     
+    @Mock
+    private HibernateCacheInvalidator mockCacheInvalidator;
+    
+    @Captor
+    private ArgumentCaptor<Consumer<String>> evictorCaptor;
+    
     @Captor
     private ArgumentCaptor<PublishRequest> publishRequestCaptor;
 
@@ -151,6 +163,8 @@ public class NotificationTopicServiceTest {
         service.setSnsClient(mockSnsClient);
         service.setNotificationRegistrationDao(mockRegistrationDao);
         service.setTopicSubscriptionDao(mockSubscriptionDao);
+        service.setNotificationExecutorService(MoreExecutors.newDirectExecutorService());
+        service.setHibernateCacheInvalidator(mockCacheInvalidator);
     }
     
     @Test
@@ -363,6 +377,73 @@ public class NotificationTopicServiceTest {
         verify(mockSubscriptionDao, never()).unsubscribe(any(), eq(MANUAL_TOPIC_2));
         verify(mockSubscriptionDao, never()).subscribe(any(), eq(MANUAL_TOPIC_1));
         verify(mockSubscriptionDao, never()).subscribe(any(), eq(MANUAL_TOPIC_2));
+
+        // Subscriptions are compared to the subscription records, without looking each one up in SNS.
+        verify(mockSnsClient, never()).getSubscriptionAttributes(any(String.class));
+    }
+
+    @Test
+    public void manageCriteriaBasedSubscriptions_NoChanges() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(CRITERIA_TOPIC_1, CRITERIA_TOPIC_2));
+        when(mockRegistrationDao.listRegistrations(HEALTH_CODE)).thenReturn(ImmutableList.of(PUSH_REGISTRATION));
+        when(mockSubscriptionDao.listSubscriptions(PUSH_REGISTRATION)).thenReturn((List)ImmutableList.of(
+                getSub(CRITERIA_TOPIC_2.getGuid())));
+
+        CriteriaContext context = new CriteriaContext.Builder().withContext(EMPTY_CONTEXT).withUserDataGroups(
+                ImmutableSet.of(CRITERIA_GROUP_2)).build();
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, context, HEALTH_CODE);
+
+        // Already subscribed to exactly the topics that match, so nothing is sent to SNS.
+        verify(mockSubscriptionDao, never()).subscribe(any(), any());
+        verify(mockSubscriptionDao, never()).unsubscribe(any(), any());
+    }
+
+    @Test
+    public void manageCriteriaBasedSubscriptions_CachesTopics() {
+        when(mockTopicDao.listTopics(TEST_APP_ID, true)).thenReturn(ImmutableList.of(MANUAL_TOPIC_1));
+
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        verify(mockTopicDao, times(1)).listTopics(TEST_APP_ID, true);
+
+        // Changing a topic removes the app's topics from the cache.
+        service.deleteTopic(TEST_APP_ID, MANUAL_TOPIC_1.getGuid());
+        service.manageCriteriaBasedSubscriptions(TEST_APP_ID, EMPTY_CONTEXT, HEALTH_CODE);
+        verify(mockTopicDao, times(2)).listTopics(TEST_APP_ID, true);
+    }
+
+    @Test
+    public void changingTopicsInvalidatesCache() {
+        NotificationTopic topic = getNotificationTopic();
+
+        service.criteriaTopicCache.put(TEST_APP_ID, ImmutableList.of());
+        service.createTopic(topic);
+        assertNull(service.criteriaTopicCache.getIfPresent(TEST_APP_ID));
+
+        service.criteriaTopicCache.put(TEST_APP_ID, ImmutableList.of());
+        service.updateTopic(topic);
+        assertNull(service.criteriaTopicCache.getIfPresent(TEST_APP_ID));
+
+        service.criteriaTopicCache.put(TEST_APP_ID, ImmutableList.of());
+        service.deleteTopicPermanently(TEST_APP_ID, topic.getGuid());
+        assertNull(service.criteriaTopicCache.getIfPresent(TEST_APP_ID));
+
+        service.criteriaTopicCache.put(TEST_APP_ID, ImmutableList.of());
+        service.deleteAllTopics(TEST_APP_ID);
+        assertNull(service.criteriaTopicCache.getIfPresent(TEST_APP_ID));
+
+        // The other servers are told to remove it as well.
+        verify(mockCacheInvalidator, times(4)).invalidate(CRITERIA_TOPIC_CACHE, TEST_APP_ID);
+    }
+
+    @Test
+    public void invalidationFromAnotherServerEvictsCache() {
+        verify(mockCacheInvalidator).registerLocalCache(eq(CRITERIA_TOPIC_CACHE), evictorCaptor.capture());
+        service.criteriaTopicCache.put(TEST_APP_ID, ImmutableList.of());
+
+        evictorCaptor.getValue().accept(TEST_APP_ID);
+
+        assertNull(service.criteriaTopicCache.getIfPresent(TEST_APP_ID));
     }
 
     @Test
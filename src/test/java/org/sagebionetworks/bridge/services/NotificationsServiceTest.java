@@ -6,6 +6,7 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
 import static org.sagebionetworks.bridge.TestUtils.getNotificationMessage;
 import static org.sagebionetworks.bridge.TestUtils.getNotificationRegistration;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
@@ -24,6 +25,7 @@ import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.dao.NotificationRegistrationDao;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
@@ -43,6 +45,7 @@ import com.amazonaws.services.sns.model.PublishResult;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class NotificationsServiceTest {
     private static final String HEALTH_CODE = "ABC";
@@ -89,6 +92,7 @@ public class NotificationsServiceTest {
         service.setAppService(mockAppService);
         service.setNotificationRegistrationDao(mockRegistrationDao);
         service.setSnsClient(mockSnsClient);
+        service.setNotificationExecutorService(MoreExecutors.newDirectExecutorService());
 
         Map<String,String> map = Maps.newHashMap();
         map.put(OS_NAME, PLATFORM_ARN);
@@ -271,6 +275,23 @@ public class NotificationsServiceTest {
         assertEquals(request.getTargetArn(), "endpointARN");
     }
     
+    @Test
+    public void sendNotificationOnCallingThreadKeepsRequestContext() {
+        // The executor in these tests runs tasks on the calling thread, as a full executor does.
+        NotificationRegistration registration = getNotificationRegistration();
+        doReturn(Lists.newArrayList(registration)).when(mockRegistrationDao).listRegistrations(HEALTH_CODE);
+        doReturn(mockPublishResult).when(mockSnsClient).publish(any());
+        RequestContext context = new RequestContext.Builder().withCallerUserId(TEST_USER_ID).build();
+        RequestContext.set(context);
+        try {
+            service.sendNotificationToUser(TEST_APP_ID, HEALTH_CODE, getNotificationMessage());
+
+            assertSame(RequestContext.get(), context);
+        } finally {
+            RequestContext.set(RequestContext.NULL_INSTANCE);
+        }
+    }
+    
     @Test
     public void sendNotificationNoRegistration() {
         doReturn(Lists.newArrayList()).when(mockRegistrationDao).listRegistrations(HEALTH_CODE);
@@ -14,6 +14,7 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_ORG_ID;
 import static org.sagebionetworks.bridge.TestConstants.USER_DATA_GROUPS;
 import static org.sagebionetworks.bridge.TestUtils.mockEditAccount;
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.ORGANIZATION_REGION;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
@@ -44,6 +45,7 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.AccountSummarySearch;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.accounts.Account;
@@ -70,6 +72,9 @@ public class OrganizationServiceTest extends Mockito {
     @Mock
     SessionUpdateService mockSessionUpdateService;
     
+    @Mock
+    HibernateCacheInvalidator mockCacheInvalidator;
+    
     @InjectMocks
     @Spy
     OrganizationService service;
@@ -235,6 +240,8 @@ public class OrganizationServiceTest extends Mockito {
         assertEquals(retValue.getName(), NAME);
         assertEquals(retValue.getCreatedOn(), CREATED_ON);
         assertEquals(retValue.getModifiedOn(), MODIFIED_ON);
+        
+        verify(mockCacheInvalidator).invalidate(ORGANIZATION_REGION);
     }
     
     @Test(expectedExceptions = EntityNotFoundException.class, 
@@ -0,0 +1,341 @@
+package org.sagebionetworks.bridge.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.sagebionetworks.bridge.TestConstants.EMAIL;
+import static org.sagebionetworks.bridge.TestConstants.GUID;
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_ID;
+import static org.sagebionetworks.bridge.models.accounts.ParticipantImportStatus.COMPLETED;
+import static org.sagebionetworks.bridge.models.accounts.ParticipantImportStatus.FAILED;
+import static org.sagebionetworks.bridge.models.accounts.ParticipantImportStatus.IN_PROGRESS;
+import static org.sagebionetworks.bridge.services.ParticipantImportService.EXPIRE_IN_SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.cache.CacheKey;
+import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
+import org.sagebionetworks.bridge.models.AccountSummarySearch;
+import org.sagebionetworks.bridge.models.PagedResourceList;
+import org.sagebionetworks.bridge.models.accounts.Account;
+import org.sagebionetworks.bridge.models.accounts.AccountSummary;
+import org.sagebionetworks.bridge.models.accounts.ParticipantImport;
+import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.studies.Enrollment;
+
+public class ParticipantImportServiceTest extends Mockito {
+
+    static final String JSON_ROSTER = "[{\"email\":\"a@a.com\"},{\"email\":\"b@b.com\"},{\"email\":\"c@c.com\"}]";
+    static final String CSV_ROSTER = "email,phone,dataGroups,externalId\n"
+            + "a@a.com,9712486796,\"group1, group2\",extA\n"
+            + "b@b.com,,,\n";
+
+    @Mock
+    ParticipantService mockParticipantService;
+
+    @Mock
+    AccountService mockAccountService;
+
+    @Mock
+    EnrollmentService mockEnrollmentService;
+
+    @Mock
+    CacheProvider mockCacheProvider;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Mock
+    ExecutorService mockAsyncExecutorService;
+
+    @Captor
+    ArgumentCaptor<StudyParticipant> participantCaptor;
+
+    @Captor
+    ArgumentCaptor<Enrollment> enrollmentCaptor;
+
+    @Captor
+    ArgumentCaptor<List<Account>> accountsCaptor;
+
+    @InjectMocks
+    @Spy
+    ParticipantImportService service;
+
+    App app;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockConfig.getInt(ParticipantImportService.BATCH_SIZE_PROPERTY)).thenReturn(2);
+        when(mockConfig.getInt(ParticipantImportService.MAX_ROWS_PROPERTY)).thenReturn(5);
+        service.setBridgeConfig(mockConfig);
+        service.setAsyncExecutorService(mockAsyncExecutorService);
+        service.setImportExecutorService(MoreExecutors.newDirectExecutorService());
+
+        // Run the import and the notifications on the calling thread.
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockAsyncExecutorService).execute(any());
+
+        when(service.generateGuid()).thenReturn(GUID);
+        when(mockParticipantService.newAccount(any(), any(), eq(true))).thenAnswer(invocation -> {
+            StudyParticipant participant = invocation.getArgument(1);
+            Account account = Account.create();
+            account.setId("id-" + participant.getEmail());
+            account.setEmail(participant.getEmail());
+            account.setEmailVerified(false);
+            return account;
+        });
+
+        app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+    }
+
+    @Test
+    public void importParticipantsFromJson() {
+        ParticipantImport retValue = service.importParticipants(app, TEST_STUDY_ID, roster(JSON_ROSTER), false);
+
+        assertEquals(retValue.getGuid(), GUID);
+        assertEquals(retValue.getStudyId(), TEST_STUDY_ID);
+        assertEquals(retValue.getStatus(), IN_PROGRESS);
+        assertEquals(retValue.getRowCount(), 3);
+
+        // Two batches of rows, each inserted together.
+        verify(mockAccountService, times(2)).createAccounts(eq(app), accountsCaptor.capture());
+        assertEquals(accountsCaptor.getAllValues().get(0).size(), 2);
+        assertEquals(accountsCaptor.getAllValues().get(1).size(), 1);
+        verify(mockAccountService, never()).createAccount(any(), any());
+        verify(mockParticipantService, times(3)).sendNewAccountNotifications(eq(app), any(), eq(true));
+
+        ParticipantImport finalImport = captureFinalImport();
+        assertEquals(finalImport.getStatus(), COMPLETED);
+        assertEquals(finalImport.getSucceededCount(), 3);
+        assertEquals(finalImport.getFailedCount(), 0);
+        assertEquals(finalImport.getResults().get(2).getRow(), 3);
+        assertEquals(finalImport.getResults().get(2).getUserId(), "id-c@c.com");
+        assertTrue(finalImport.getFinishedOn() != null);
+    }
+
+    @Test
+    public void importParticipantsFromCsv() {
+        service.importParticipants(app, TEST_STUDY_ID, roster(CSV_ROSTER), true);
+
+        verify(mockParticipantService, times(2)).newAccount(eq(app), participantCaptor.capture(), eq(true));
+        StudyParticipant first = participantCaptor.getAllValues().get(0);
+        assertEquals(first.getEmail(), "a@a.com");
+        assertEquals(first.getPhone().getNumber(), "+19712486796");
+        assertEquals(first.getPhone().getRegionCode(), "US");
+        assertEquals(first.getDataGroups(), ImmutableSet.of("group1", "group2"));
+        assertEquals(first.getExternalIds(), ImmutableMap.of(TEST_STUDY_ID, "extA"));
+        StudyParticipant second = participantCaptor.getAllValues().get(1);
+        assertEquals(second.getEmail(), "b@b.com");
+        assertNull(second.getPhone());
+
+        verify(mockEnrollmentService, times(2)).addEnrollment(any(), enrollmentCaptor.capture(), eq(false));
+        Enrollment enrollment = enrollmentCaptor.getAllValues().get(0);
+        assertEquals(enrollment.getStudyId(), TEST_STUDY_ID);
+        assertEquals(enrollment.getExternalId(), "extA");
+        assertTrue(enrollment.isConsentRequired());
+
+        assertEquals(captureFinalImport().getSucceededCount(), 2);
+    }
+
+    @Test
+    public void importParticipantsReportsDuplicateRows() {
+        String json = "[{\"email\":\"a@a.com\"},{\"email\":\"A@A.com\"}]";
+
+        service.importParticipants(app, TEST_STUDY_ID, roster(json), false);
+
+        verify(mockParticipantService, times(1)).newAccount(any(), any(), anyBoolean());
+
+        ParticipantImport finalImport = captureFinalImport();
+        assertEquals(finalImport.getSucceededCount(), 1);
+        assertEquals(finalImport.getFailedCount(), 1);
+        assertEquals(finalImport.getResults().get(1).getError(),
+                String.format(ParticipantImportService.DUPLICATE_ERROR, "email", 1));
+    }
+
+    @Test
+    public void importParticipantsReportsDuplicateStudyExternalIds() {
+        // The first row is enrolled with its external ID for this study, which is the second row's external ID.
+        String json = "[{\"email\":\"a@a.com\",\"externalId\":\"extA\",\"externalIds\":{\"" + TEST_STUDY_ID
+                + "\":\"extB\"}},{\"email\":\"b@b.com\",\"externalId\":\"extB\"}]";
+
+        service.importParticipants(app, TEST_STUDY_ID, roster(json), false);
+
+        verify(mockParticipantService, times(1)).newAccount(any(), any(), anyBoolean());
+
+        ParticipantImport finalImport = captureFinalImport();
+        assertEquals(finalImport.getFailedCount(), 1);
+        assertEquals(finalImport.getResults().get(1).getError(),
+                String.format(ParticipantImportService.DUPLICATE_ERROR, "external ID", 1));
+    }
+
+    @Test
+    public void importParticipantsReportsInvalidRows() {
+        when(mockParticipantService.newAccount(any(), any(), anyBoolean()))
+                .thenThrow(new BadRequestException("Participant is invalid"));
+
+        service.importParticipants(app, TEST_STUDY_ID, roster("[{\"email\":\"a@a.com\"}]"), false);
+
+        verify(mockAccountService).createAccounts(app, ImmutableList.of());
+
+        ParticipantImport finalImport = captureFinalImport();
+        assertEquals(finalImport.getStatus(), COMPLETED);
+        assertEquals(finalImport.getFailedCount(), 1);
+        assertEquals(finalImport.getResults().get(0).getError(), "Participant is invalid");
+    }
+
+    @Test
+    public void importParticipantsFallsBackToSingleInserts() {
+        doThrow(new RuntimeException("batch failed")).when(mockAccountService).createAccounts(any(), any());
+        doThrow(new RuntimeException("row failed")).when(mockAccountService).createAccount(eq(app),
+                argThat(account -> account.getEmail().equals("b@b.com")));
+
+        service.importParticipants(app, TEST_STUDY_ID, roster(JSON_ROSTER), false);
+
+        verify(mockAccountService, times(3)).createAccount(eq(app), any());
+        verify(mockParticipantService, times(2)).sendNewAccountNotifications(eq(app), any(), eq(true));
+
+        ParticipantImport finalImport = captureFinalImport();
+        assertEquals(finalImport.getStatus(), COMPLETED);
+        assertEquals(finalImport.getSucceededCount(), 2);
+        assertEquals(finalImport.getFailedCount(), 1);
+        assertEquals(finalImport.getResults().get(1).getRow(), 2);
+        assertEquals(finalImport.getResults().get(1).getError(), "row failed");
+    }
+
+    @Test
+    public void importParticipantsRecordsFailure() {
+        // Only the import itself runs; it fails when it tries to queue a notification.
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).doThrow(new IllegalStateException("pool closed")).when(mockAsyncExecutorService).execute(any());
+
+        service.importParticipants(app, TEST_STUDY_ID, roster(JSON_ROSTER), false);
+
+        ParticipantImport finalImport = captureFinalImport();
+        assertEquals(finalImport.getStatus(), FAILED);
+        assertEquals(finalImport.getError(), "pool closed");
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = ParticipantImportService.EMPTY_ROSTER_ERROR)
+    public void importParticipantsEmptyRoster() {
+        service.importParticipants(app, TEST_STUDY_ID, roster("[]"), false);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = ParticipantImportService.INVALID_JSON_ERROR)
+    public void importParticipantsRosterNotAnArray() {
+        service.importParticipants(app, TEST_STUDY_ID, roster("{\"email\":\"a@a.com\"}"), false);
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = "Roster cannot have more than 5 rows")
+    public void importParticipantsTooManyRows() {
+        String json = "[{},{},{},{},{},{}]";
+        service.importParticipants(app, TEST_STUDY_ID, roster(json), false);
+    }
+
+    @Test
+    public void importParticipantsOverAccountLimit() {
+        app.setAccountLimit(10);
+        PagedResourceList<AccountSummary> summaries = new PagedResourceList<>(ImmutableList.of(), 8);
+        when(mockParticipantService.getPagedAccountSummaries(app, AccountSummarySearch.EMPTY_SEARCH))
+                .thenReturn(summaries);
+        try {
+            service.importParticipants(app, TEST_STUDY_ID, roster(JSON_ROSTER), false);
+            fail("Should have thrown exception");
+        } catch (LimitExceededException e) {
+        }
+        verify(mockCacheProvider, never()).setObject(any(), any(), anyInt());
+        verify(mockAsyncExecutorService, never()).execute(any());
+    }
+
+    @Test(expectedExceptions = BadRequestException.class,
+            expectedExceptionsMessageRegExp = ParticipantImportService.NO_IDENTIFIER_ERROR)
+    public void newAccountWithoutIdentifier() {
+        StudyParticipant participant = new StudyParticipant.Builder().withFirstName("First").build();
+        when(mockParticipantService.newAccount(any(), any(), anyBoolean())).thenReturn(Account.create());
+
+        service.newAccount(app, TEST_STUDY_ID, participant);
+    }
+
+    @Test
+    public void newAccountKeepsOnlyThisStudysExternalId() {
+        StudyParticipant participant = new StudyParticipant.Builder().withEmail(EMAIL)
+                .withExternalIds(ImmutableMap.of(TEST_STUDY_ID, "extA", "otherStudy", "extB")).build();
+
+        service.newAccount(app, TEST_STUDY_ID, participant);
+
+        verify(mockParticipantService).newAccount(eq(app), participantCaptor.capture(), eq(true));
+        assertEquals(participantCaptor.getValue().getExternalIds(), ImmutableMap.of(TEST_STUDY_ID, "extA"));
+    }
+
+    @Test
+    public void getParticipantImport() {
+        ParticipantImport participantImport = new ParticipantImport();
+        participantImport.setStudyId(TEST_STUDY_ID);
+        when(mockCacheProvider.getObject(CacheKey.participantImport(TEST_APP_ID, GUID), ParticipantImport.class))
+                .thenReturn(participantImport);
+
+        ParticipantImport retValue = service.getParticipantImport(TEST_APP_ID, TEST_STUDY_ID, GUID);
+        assertEquals(retValue, participantImport);
+    }
+
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void getParticipantImportNotFound() {
+        service.getParticipantImport(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    @Test(expectedExceptions = EntityNotFoundException.class)
+    public void getParticipantImportInOtherStudy() {
+        ParticipantImport participantImport = new ParticipantImport();
+        participantImport.setStudyId("otherStudy");
+        when(mockCacheProvider.getObject(CacheKey.participantImport(TEST_APP_ID, GUID), ParticipantImport.class))
+                .thenReturn(participantImport);
+
+        service.getParticipantImport(TEST_APP_ID, TEST_STUDY_ID, GUID);
+    }
+
+    private InputStream roster(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+
+    private ParticipantImport captureFinalImport() {
+        ArgumentCaptor<ParticipantImport> captor = ArgumentCaptor.forClass(ParticipantImport.class);
+        verify(mockCacheProvider, atLeastOnce()).setObject(eq(CacheKey.participantImport(TEST_APP_ID, GUID)),
+                captor.capture(), eq(EXPIRE_IN_SECONDS));
+        List<ParticipantImport> values = captor.getAllValues();
+        return values.get(values.size() - 1);
+    }
+}
@@ -51,8 +51,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.ImmutableList;
 
@@ -262,7 +260,7 @@ public class ParticipantServiceTest extends Mockito {
     private TemplateService templateService;
 
     @Mock
-    private AmazonSQSClient sqsClient;
+    private SqsMessageDispatcher sqsMessageDispatcher;
 
     @Mock
     private BridgeConfig bridgeConfig;
@@ -1595,6 +1593,40 @@ public class ParticipantServiceTest extends Mockito {
         assertNull(participant.isConsented());
     }
 
+    @Test
+    public void getSessionParticipant() {
+        account.setId(ID);
+        account.setHealthCode(HEALTH_CODE);
+        account.setEmail(EMAIL);
+        account.setLanguages(USER_LANGUAGES);
+        account.setDataGroups(TestUtils.newLinkedHashSet("group1","group2"));
+        account.setEnrollments(ImmutableSet.of(Enrollment.create(TEST_APP_ID, "studyA", ID, "externalIdA")));
+        
+        StudyParticipant participant = participantService.getSessionParticipant(account, TestConstants.LANGUAGES);
+        
+        assertEquals(participant.getId(), ID);
+        assertEquals(participant.getHealthCode(), HEALTH_CODE);
+        assertEquals(participant.getEmail(), EMAIL);
+        assertEquals(participant.getLanguages(), USER_LANGUAGES);
+        assertEquals(participant.getDataGroups(), TestUtils.newLinkedHashSet("group1","group2"));
+        assertEquals(participant.getEnrollments().keySet(), ImmutableSet.of("studyA"));
+        assertTrue(participant.getConsentHistories().isEmpty());
+        assertNull(participant.isConsented());
+        
+        // None of this is needed to construct the session's participant
+        verify(requestInfoService, never()).getRequestInfo(any());
+        verify(consentService, never()).getConsentStatuses(any(), any());
+    }
+    
+    @Test
+    public void getSessionParticipantUsesDefaultLanguages() {
+        account.setId(ID);
+        
+        StudyParticipant participant = participantService.getSessionParticipant(account, TestConstants.LANGUAGES);
+        
+        assertEquals(participant.getLanguages(), TestConstants.LANGUAGES);
+    }
+    
     @Test
     public void getParticipantWithHealthCode() {
         String id = "healthCode:" + ID;
@@ -2570,13 +2602,11 @@ public class ParticipantServiceTest extends Mockito {
         String queueUrl = "https://sqs.us-east-1.amazonaws.com/420786776710/Bridge-WorkerPlatform-Request-local";
         when(bridgeConfig.getProperty("workerPlatform.request.sqs.queue.url")).thenReturn(queueUrl);
 
-        when(sqsClient.sendMessage(eq(queueUrl), anyString())).thenReturn(mock(SendMessageResult.class));
-
         participantService.requestParticipantRoster(APP, TEST_USER_ID, request);
 
         String requestJson = "{\"service\":\"DownloadParticipantRosterWorker\",\"body\":{\"appId\":\"test-app\"," +
                 "\"userId\":\"userId\",\"password\":\"P@ssword1\",\"studyId\":\"studyId\"}}";
-        verify(sqsClient).sendMessage(queueUrl, requestJson);
+        verify(sqsMessageDispatcher).sendSecret(queueUrl, requestJson);
     }
 
     @Test(expectedExceptions = BadRequestException.class)
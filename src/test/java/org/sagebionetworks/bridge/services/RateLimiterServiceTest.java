@@ -0,0 +1,165 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
+import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.PARTICIPANT_SEARCH;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.REPORT_WRITE;
+import static org.sagebionetworks.bridge.services.RateLimiterService.SLIDING_WINDOW_SCRIPT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import org.joda.time.DateTimeUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
+import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
+
+public class RateLimiterServiceTest extends Mockito {
+
+    // 15 seconds into window #1000 of a one minute window
+    private static final long NOW = 60000L * 1000L + 15000L;
+
+    @Mock
+    JedisPool mockJedisPool;
+
+    @Mock
+    Jedis mockJedis;
+
+    @Mock
+    AppService mockAppService;
+
+    @Captor
+    ArgumentCaptor<List<String>> keysCaptor;
+
+    @Captor
+    ArgumentCaptor<List<String>> argsCaptor;
+
+    @InjectMocks
+    RateLimiterService service;
+
+    App app;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+
+        app = App.create();
+        app.setIdentifier(TEST_APP_ID);
+        when(mockAppService.getApp(TEST_APP_ID)).thenReturn(app);
+        when(mockJedisPool.getResource()).thenReturn(mockJedis);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void noRateLimitConfigured() {
+        service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+
+        verify(mockJedisPool, never()).getResource();
+    }
+
+    @Test
+    public void userLimitCheckedInRedis() {
+        app.getRateLimits().put(PARTICIPANT_SEARCH.name(), new RateLimit(10, 0, 60));
+        when(mockJedis.eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList())).thenReturn(1L);
+
+        service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+
+        verify(mockJedis).eval(eq(SLIDING_WINDOW_SCRIPT), keysCaptor.capture(), argsCaptor.capture());
+        assertEquals(keysCaptor.getValue(), ImmutableList.of(TEST_USER_ID + ":participant_search:1000:user-rate-limit",
+                TEST_USER_ID + ":participant_search:999:user-rate-limit"));
+        // limit, lease size (at least one), weight of the previous window, expiration
+        assertEquals(argsCaptor.getValue(), ImmutableList.of("10", "1", "750", "120"));
+        verify(mockJedis).close();
+    }
+
+    @Test
+    public void appLimitCheckedInRedis() {
+        app.getRateLimits().put(REPORT_WRITE.name(), new RateLimit(0, 1000, 60));
+        when(mockJedis.eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList())).thenReturn(1L);
+
+        service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, REPORT_WRITE);
+
+        verify(mockJedis).eval(eq(SLIDING_WINDOW_SCRIPT), keysCaptor.capture(), argsCaptor.capture());
+        assertEquals(keysCaptor.getValue(), ImmutableList.of(TEST_APP_ID + ":report_write:1000:app-rate-limit",
+                TEST_APP_ID + ":report_write:999:app-rate-limit"));
+        assertEquals(argsCaptor.getValue(), ImmutableList.of("1000", "50", "750", "120"));
+    }
+
+    @Test
+    public void leasedPermitsAreUsedLocally() {
+        app.getRateLimits().put(PARTICIPANT_SEARCH.name(), new RateLimit(100, 0, 60));
+        when(mockJedis.eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList())).thenReturn(5L);
+
+        // The first call leases five permits; the next four are served without Redis
+        for (int i=0; i < 5; i++) {
+            service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+        }
+        verify(mockJedis, times(1)).eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList());
+
+        // The lease is exhausted, so this goes back to Redis
+        service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+        verify(mockJedis, times(2)).eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList());
+    }
+
+    @Test
+    public void limitExceeded() {
+        app.getRateLimits().put(PARTICIPANT_SEARCH.name(), new RateLimit(10, 0, 60));
+        when(mockJedis.eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList())).thenReturn(0L);
+
+        try {
+            service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+            fail("Should have thrown exception");
+        } catch(LimitExceededException e) {
+            assertEquals(e.getMessage(), "Too many participant search requests. Please try again later.");
+            // 45 seconds remain in the current window
+            assertEquals(e.getRetryAfterSeconds(), Integer.valueOf(45));
+            assertEquals(e.getStatusCode(), 429);
+        }
+    }
+
+    @Test
+    public void appLimitNotCheckedWhenUserLimitExceeded() {
+        app.getRateLimits().put(PARTICIPANT_SEARCH.name(), new RateLimit(10, 1000, 60));
+        when(mockJedis.eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList())).thenReturn(0L);
+
+        try {
+            service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+            fail("Should have thrown exception");
+        } catch(LimitExceededException e) {
+        }
+        verify(mockJedis, times(1)).eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList());
+    }
+
+    @Test
+    public void redisFailureAllowsRequest() {
+        app.getRateLimits().put(PARTICIPANT_SEARCH.name(), new RateLimit(10, 1000, 60));
+        when(mockJedis.eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList()))
+                .thenThrow(new JedisConnectionException("Connection refused"));
+
+        service.checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
+
+        verify(mockJedis, times(2)).eval(eq(SLIDING_WINDOW_SCRIPT), anyList(), anyList());
+    }
+}
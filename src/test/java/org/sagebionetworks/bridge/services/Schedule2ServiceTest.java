@@ -15,16 +15,22 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_ORG_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_ID;
 import static org.sagebionetworks.bridge.TestUtils.getClientData;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.SCHEDULE_REGION;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TIMELINE_METADATA_BY_APP_CACHE;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TIMELINE_METADATA_BY_SCHEDULE_CACHE;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventUpdateType.MUTABLE;
 import static org.sagebionetworks.bridge.models.studies.StudyPhase.DESIGN;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.google.common.collect.ImmutableList;
@@ -50,6 +56,7 @@ import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.exceptions.PublishedEntityException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.organizations.Organization;
@@ -76,6 +83,9 @@ public class Schedule2ServiceTest extends Mockito {
     
     @Mock
     Schedule2Dao mockDao;
+    
+    @Mock
+    HibernateCacheInvalidator mockCacheInvalidator;
 
     @InjectMocks
     @Spy
@@ -91,6 +101,7 @@ public class Schedule2ServiceTest extends Mockito {
         doReturn(CREATED_ON).when(service).getCreatedOn();
         doReturn(MODIFIED_ON).when(service).getModifiedOn();
         doReturn(GUID).when(service).generateGuid();
+        service.metadataCache.invalidateAll();
     }
     
     @AfterMethod
@@ -515,6 +526,9 @@ public class Schedule2ServiceTest extends Mockito {
         assertFalse(captured.isDeleted());
         assertFalse(captured.isPublished());
         assertEquals(captured.getVersion(), 2L);
+        
+        verify(service).invalidateTimelineMetadata(GUID);
+        verify(mockCacheInvalidator).invalidate(SCHEDULE_REGION);
     }
     
     @Test(expectedExceptions = PublishedEntityException.class)
@@ -592,6 +606,8 @@ public class Schedule2ServiceTest extends Mockito {
         verify(mockDao).updateSchedule(scheduleCaptor.capture());
         assertTrue(scheduleCaptor.getValue().isPublished());
         assertEquals(scheduleCaptor.getValue().getModifiedOn(), MODIFIED_ON);
+        verify(service).invalidateTimelineMetadata(GUID);
+        verify(mockCacheInvalidator).invalidate(SCHEDULE_REGION);
     }
     
     @Test(expectedExceptions = EntityNotFoundException.class)
@@ -684,6 +700,8 @@ public class Schedule2ServiceTest extends Mockito {
         
         verify(mockDao).deleteSchedulePermanently(existing);
         verify(mockStudyService).removeScheduleFromStudies(TEST_APP_ID, GUID);
+        verify(service).invalidateTimelineMetadata(GUID);
+        verify(mockCacheInvalidator).invalidate(SCHEDULE_REGION);
     }
 
     @Test(expectedExceptions = EntityNotFoundException.class)
@@ -934,6 +952,87 @@ public class Schedule2ServiceTest extends Mockito {
         assertSame(retValue.get(), meta);
     }
     
+    @Test
+    public void getTimelineMetadataIsCached() {
+        TimelineMetadata meta = new TimelineMetadata();
+        meta.setGuid(GUID);
+        meta.setSessionInstanceGuid("sessionInstanceGuid");
+        
+        when(mockDao.getTimelineMetadata(GUID)).thenReturn(Optional.of(meta));
+        
+        service.getTimelineMetadata(GUID);
+        Optional<TimelineMetadata> retValue = service.getTimelineMetadata(GUID);
+        
+        // A copy is returned from the cache, so callers cannot change the cached record
+        assertEquals(retValue.get().getSessionInstanceGuid(), "sessionInstanceGuid");
+        assertNotSame(retValue.get(), meta);
+        verify(mockDao, times(1)).getTimelineMetadata(GUID);
+    }
+    
+    @Test
+    public void getTimelineMetadataNotFoundIsNotCached() {
+        when(mockDao.getTimelineMetadata(GUID)).thenReturn(Optional.empty());
+        
+        assertFalse(service.getTimelineMetadata(GUID).isPresent());
+        assertFalse(service.getTimelineMetadata(GUID).isPresent());
+        
+        verify(mockDao, times(2)).getTimelineMetadata(GUID);
+    }
+    
+    @Test
+    public void getTimelineMetadataForCollection() {
+        TimelineMetadata meta1 = metadata("AAA", SCHEDULE_GUID);
+        TimelineMetadata meta2 = metadata("BBB", SCHEDULE_GUID);
+        TimelineMetadata meta3 = metadata("CCC", SCHEDULE_GUID);
+        when(mockDao.getTimelineMetadata(ImmutableList.of("AAA", "BBB")))
+            .thenReturn(ImmutableList.of(meta1, meta2));
+        when(mockDao.getTimelineMetadata(ImmutableList.of("CCC", "DDD")))
+            .thenReturn(ImmutableList.of(meta3));
+        
+        Map<String, TimelineMetadata> retValue = service.getTimelineMetadata(ImmutableList.of("AAA", "BBB"));
+        assertEquals(retValue.keySet(), ImmutableSet.of("AAA", "BBB"));
+        assertSame(retValue.get("AAA"), meta1);
+        
+        // Cached records are not retrieved again, and GUIDs without records are left out
+        retValue = service.getTimelineMetadata(ImmutableList.of("AAA", "BBB", "CCC", "DDD"));
+        assertEquals(retValue.keySet(), ImmutableSet.of("AAA", "BBB", "CCC"));
+        
+        verify(mockDao).getTimelineMetadata(ImmutableList.of("AAA", "BBB"));
+        verify(mockDao).getTimelineMetadata(ImmutableList.of("CCC", "DDD"));
+        verify(mockDao, never()).getTimelineMetadata(anyString());
+    }
+    
+    @Test
+    public void getTimelineMetadataForCollectionAllCached() {
+        when(mockDao.getTimelineMetadata(GUID)).thenReturn(Optional.of(metadata(GUID, SCHEDULE_GUID)));
+        service.getTimelineMetadata(GUID);
+        
+        Map<String, TimelineMetadata> retValue = service.getTimelineMetadata(ImmutableList.of(GUID));
+        assertEquals(retValue.keySet(), ImmutableSet.of(GUID));
+        
+        verify(mockDao, never()).getTimelineMetadata(anyCollection());
+    }
+    
+    @Test
+    public void invalidateTimelineMetadata() {
+        when(mockDao.getTimelineMetadata(ImmutableList.of("AAA", "BBB"))).thenReturn(ImmutableList.of(
+                metadata("AAA", SCHEDULE_GUID), metadata("BBB", "otherScheduleGuid")));
+        service.getTimelineMetadata(ImmutableList.of("AAA", "BBB"));
+        
+        service.invalidateTimelineMetadata(SCHEDULE_GUID);
+        
+        assertNull(service.metadataCache.getIfPresent("AAA"));
+        assertNotNull(service.metadataCache.getIfPresent("BBB"));
+        verify(mockCacheInvalidator).invalidate(TIMELINE_METADATA_BY_SCHEDULE_CACHE, SCHEDULE_GUID);
+    }
+    
+    private TimelineMetadata metadata(String guid, String scheduleGuid) {
+        TimelineMetadata meta = new TimelineMetadata();
+        meta.setGuid(guid);
+        meta.setScheduleGuid(scheduleGuid);
+        return meta;
+    }
+    
     @Test
     public void getSessionAssessmentMetadata() {
         List<TimelineMetadata> results = ImmutableList.of();
@@ -1015,5 +1114,6 @@ public class Schedule2ServiceTest extends Mockito {
     public void deleteAllSchedules() { 
         service.deleteAllSchedules(TEST_APP_ID);
         verify(mockDao).deleteAllSchedules(TEST_APP_ID);
+        verify(mockCacheInvalidator).invalidate(TIMELINE_METADATA_BY_APP_CACHE, TEST_APP_ID);
     }
 }
@@ -10,7 +10,9 @@ import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.nio.file.Files;
 import java.util.List;
 
 import com.amazonaws.AmazonServiceException;
@@ -19,6 +21,7 @@ import org.apache.commons.io.IOUtils;
 import org.mockito.ArgumentCaptor;
 
 import org.sagebionetworks.bridge.TestConstants;
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.dynamodb.DynamoApp;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.time.DateUtils;
@@ -33,12 +36,12 @@ import org.sagebionetworks.bridge.models.subpopulations.Subpopulation;
 import org.sagebionetworks.bridge.models.templates.TemplateRevision;
 import org.sagebionetworks.bridge.services.email.BasicEmailProvider;
 
-import com.amazonaws.regions.Region;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
 import com.google.common.base.Charsets;
 import org.springframework.core.io.ClassPathResource;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -52,6 +55,8 @@ public class SendMailViaAmazonServiceConsentTest {
     private static final StudyParticipant PARTICIPANT = new StudyParticipant.Builder()
             .withEmail("test-user@sagebase.org").withEmailVerified(true).build();;
     private SendMailViaAmazonService service;
+    private SesEmailDispatcher dispatcher;
+    private File spillDir;
     private AmazonSimpleEmailServiceClient emailClient;
     private AppService appService;
     private StudyConsentService studyConsentService;
@@ -83,8 +88,20 @@ public class SendMailViaAmazonServiceConsentTest {
         emailClient = mock(AmazonSimpleEmailServiceClient.class);
         argument = ArgumentCaptor.forClass(SendRawEmailRequest.class);
 
+        spillDir = Files.createTempDirectory("ses-spill").toFile();
+        BridgeConfig config = mock(BridgeConfig.class);
+        when(config.getInt(SesEmailDispatcher.CAPACITY_PROPERTY)).thenReturn(10);
+        when(config.getInt(SesEmailDispatcher.MAX_MEGABYTES_PROPERTY)).thenReturn(10);
+        when(config.getInt(SesEmailDispatcher.THREAD_COUNT_PROPERTY)).thenReturn(1);
+        when(config.getInt(SesEmailDispatcher.SEND_RATE_PROPERTY)).thenReturn(100);
+        when(config.getProperty(SesEmailDispatcher.SPILL_DIR_PROPERTY)).thenReturn(spillDir.getPath());
+        
+        dispatcher = new SesEmailDispatcher();
+        dispatcher.setEmailClient(emailClient);
+        dispatcher.setBridgeConfig(config);
+
         service = new SendMailViaAmazonService();
-        service.setEmailClient(emailClient);
+        service.setEmailDispatcher(dispatcher);
         
         emailVerificationService = mock(EmailVerificationService.class);
         service.setEmailVerificationService(emailVerificationService);
@@ -98,6 +115,12 @@ public class SendMailViaAmazonServiceConsentTest {
         studyConsentService = mock(StudyConsentService.class);
         when(studyConsentService.getActiveConsent(subpopulation)).thenReturn(view);
     }
+    
+    @AfterMethod
+    public void tearDown() {
+        new File(spillDir, SesEmailDispatcher.SPILL_FILE_NAME).delete();
+        spillDir.delete();
+    }
 
     @Test
     public void sendConsentEmail() {
@@ -121,8 +144,8 @@ public class SendMailViaAmazonServiceConsentTest {
                 .withBinaryAttachment("consent.pdf", MimeType.PDF, consentPdf.getBytes())
                 .withRecipientEmail("test-user@sagebase.org").build();
         service.sendEmail(provider);
+        dispatcher.dispatchQueued();
 
-        verify(emailClient).setRegion(any(Region.class));
         verify(emailClient).sendRawEmail(argument.capture());
 
         // validate from
@@ -163,8 +186,8 @@ public class SendMailViaAmazonServiceConsentTest {
                 .withRecipientEmail("test-user@sagebase.org").build();
         
         service.sendEmail(provider);
+        dispatcher.dispatchQueued();
 
-        verify(emailClient).setRegion(any(Region.class));
         verify(emailClient).sendRawEmail(argument.capture());
 
         // validate from
@@ -211,10 +234,13 @@ public class SendMailViaAmazonServiceConsentTest {
 
         // execute
         service.sendEmail(provider);
+        dispatcher.dispatchQueued();
 
         // Verify email client was called. No need to test anything else, everything else is already tested in the
         // normal case above.
         verify(emailClient).sendRawEmail(any());
+        assertEquals(dispatcher.getAppMetrics().get(TEST_APP_ID).getFailedCount(), 1L);
+        assertEquals(dispatcher.getQueueDepth(), 0);
     }
 
     @Test(expectedExceptions = BridgeServiceException.class)
@@ -1,16 +1,24 @@
 package org.sagebionetworks.bridge.services;
 
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.models.apps.MimeType.HTML;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.config.BridgeConfig;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.apps.MimeType;
@@ -18,6 +26,7 @@ import org.sagebionetworks.bridge.models.templates.TemplateRevision;
 import org.sagebionetworks.bridge.services.email.BasicEmailProvider;
 
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
+import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
 import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
 
 public class SendMailViaAmazonServiceTest {
@@ -27,6 +36,10 @@ public class SendMailViaAmazonServiceTest {
     
     private SendMailViaAmazonService service;
     
+    private SesEmailDispatcher dispatcher;
+    
+    private File spillDir;
+    
     private App app;
     
     @Mock
@@ -38,19 +51,39 @@ public class SendMailViaAmazonServiceTest {
     @Mock
     private SendRawEmailResult result;
     
+    @Mock
+    private BridgeConfig config;
+    
     @BeforeMethod
-    public void before() {
+    public void before() throws IOException {
         MockitoAnnotations.initMocks(this);
         
+        spillDir = Files.createTempDirectory("ses-spill").toFile();
+        when(config.getInt(SesEmailDispatcher.CAPACITY_PROPERTY)).thenReturn(10);
+        when(config.getInt(SesEmailDispatcher.MAX_MEGABYTES_PROPERTY)).thenReturn(10);
+        when(config.getInt(SesEmailDispatcher.THREAD_COUNT_PROPERTY)).thenReturn(1);
+        when(config.getInt(SesEmailDispatcher.SEND_RATE_PROPERTY)).thenReturn(100);
+        when(config.getProperty(SesEmailDispatcher.SPILL_DIR_PROPERTY)).thenReturn(spillDir.getPath());
+        
         app = App.create();
         app.setName("Name");
         app.setSupportEmail(SUPPORT_EMAIL);
         
+        dispatcher = new SesEmailDispatcher();
+        dispatcher.setEmailClient(emailClient);
+        dispatcher.setBridgeConfig(config);
+        
         service = new SendMailViaAmazonService();
-        service.setEmailClient(emailClient);
+        service.setEmailDispatcher(dispatcher);
         service.setEmailVerificationService(emailVerificationService);
     }
     
+    @AfterMethod
+    public void after() {
+        new File(spillDir, SesEmailDispatcher.SPILL_FILE_NAME).delete();
+        spillDir.delete();
+    }
+    
     @Test
     public void unverifiedEmailThrowsException() {
         when(emailVerificationService.isVerified(SUPPORT_EMAIL)).thenReturn(false);
@@ -89,5 +122,13 @@ public class SendMailViaAmazonServiceTest {
                 .withTemplateRevision(revision)
                 .build();
         service.sendEmail(provider);
+        
+        // The email is queued, and sent by the dispatcher.
+        verify(emailClient, never()).sendRawEmail(any());
+        assertEquals(dispatcher.getQueueDepth(), 1);
+        
+        dispatcher.dispatchQueued();
+        verify(emailClient).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(dispatcher.getQueueDepth(), 0);
     }
 }
@@ -0,0 +1,244 @@
+package org.sagebionetworks.bridge.services;
+
+import static org.sagebionetworks.bridge.hibernate.ReadReplicaRouter.Route.AFTER_WRITE;
+import static org.sagebionetworks.bridge.hibernate.ReadReplicaRouter.Route.REPLICA;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisPool;
+
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor;
+import org.sagebionetworks.bridge.hibernate.ConnectionPoolMonitor.PoolMetrics;
+import org.sagebionetworks.bridge.hibernate.ReadReplicaRouter;
+import org.sagebionetworks.bridge.util.LatencyHistogram;
+
+public class ServerMetricsServiceTest extends Mockito {
+    
+    @Mock
+    JedisPool mockJedisPool;
+    
+    ThreadPoolExecutor executor;
+    
+    @InjectMocks
+    ServerMetricsService service;
+    
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10));
+        service.setAsyncExecutorService(executor);
+    }
+    
+    @AfterMethod
+    public void afterMethod() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void recordRequestGroupsByRouteAndStatusClass() {
+        service.recordRequest("GET", "/v5/studies/{studyId}", 200, 10L);
+        service.recordRequest("GET", "/v5/studies/{studyId}", 201, 20L);
+        service.recordRequest("GET", "/v5/studies/{studyId}", 404, 5L);
+        service.recordRequest("GET", null, 404, 1L);
+        
+        LatencyHistogram histogram = service.getRequestHistogram("GET", "/v5/studies/{studyId}", "2xx");
+        assertEquals(histogram.getCount(), 2L);
+        assertEquals(histogram.getSum(), 30L);
+        
+        assertEquals(service.getRequestHistogram("GET", "/v5/studies/{studyId}", "4xx").getCount(), 1L);
+        assertEquals(service.getRequestHistogram("GET", ServerMetricsService.UNMATCHED_ROUTE, "4xx").getCount(), 1L);
+        assertNull(service.getRequestHistogram("POST", "/v5/studies/{studyId}", "2xx"));
+    }
+    
+    @Test
+    public void getPrometheusText() {
+        when(mockJedisPool.getNumActive()).thenReturn(3);
+        when(mockJedisPool.getNumIdle()).thenReturn(5);
+        when(mockJedisPool.getNumWaiters()).thenReturn(0);
+        
+        service.recordRequest("GET", "/v5/studies/{studyId}", 200, 30L);
+        service.recordRequest("GET", "/v5/studies/{studyId}", 200, 70L);
+        
+        String text = service.getPrometheusText();
+        String labels = "method=\"GET\",route=\"/v5/studies/{studyId}\",status=\"2xx\"";
+        
+        assertTrue(text.contains("# TYPE bridge_http_request_duration_seconds histogram\n"));
+        assertTrue(text.contains("bridge_http_request_duration_seconds_bucket{" + labels + ",le=\"0.025\"} 0\n"));
+        assertTrue(text.contains("bridge_http_request_duration_seconds_bucket{" + labels + ",le=\"0.05\"} 1\n"));
+        assertTrue(text.contains("bridge_http_request_duration_seconds_bucket{" + labels + ",le=\"0.1\"} 2\n"));
+        assertTrue(text.contains("bridge_http_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("bridge_http_request_duration_seconds_sum{" + labels + "} 0.1\n"));
+        assertTrue(text.contains("bridge_http_request_duration_seconds_count{" + labels + "} 2\n"));
+        assertTrue(text.contains("bridge_http_request_duration_percentile_seconds{" + labels
+                + ",percentile=\"100.0\"} 0.07\n"));
+        assertTrue(text.contains("bridge_redis_pool_active 3\n"));
+        assertTrue(text.contains("bridge_redis_pool_idle 5\n"));
+        assertTrue(text.contains("bridge_async_executor_pool_size 0\n"));
+        assertTrue(text.contains("# TYPE bridge_jvm_heap_used_bytes gauge\n"));
+    }
+    
+    @Test
+    public void recordBackendCall() {
+        service.recordBackendCall("mysql", "HibernateAccountDao.getAccount", 3L);
+        service.recordBackendCall("mysql", "HibernateAccountDao.getAccount", 5L);
+        
+        assertEquals(service.getBackendHistogram("mysql", "HibernateAccountDao.getAccount").getCount(), 2L);
+        assertNull(service.getBackendHistogram("redis", "HibernateAccountDao.getAccount"));
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("# TYPE bridge_backend_call_duration_seconds histogram\n"));
+        assertTrue(text.contains("bridge_backend_call_duration_seconds_count{backend=\"mysql\","
+                + "operation=\"HibernateAccountDao.getAccount\"} 2\n"));
+    }
+    
+    @Test
+    public void getPrometheusTextIncludesCacheRegions() {
+        CacheRegionStatistics studyStats = mock(CacheRegionStatistics.class);
+        when(studyStats.getHitCount()).thenReturn(3L);
+        when(studyStats.getMissCount()).thenReturn(1L);
+        CacheRegionStatistics scheduleStats = mock(CacheRegionStatistics.class);
+        
+        Statistics mockStatistics = mock(Statistics.class);
+        when(mockStatistics.isStatisticsEnabled()).thenReturn(true);
+        when(mockStatistics.getSecondLevelCacheRegionNames()).thenReturn(new String[] { "study", "schedule" });
+        when(mockStatistics.getCacheRegionStatistics("study")).thenReturn(studyStats);
+        when(mockStatistics.getCacheRegionStatistics("schedule")).thenReturn(scheduleStats);
+        
+        SessionFactory mockSessionFactory = mock(SessionFactory.class);
+        when(mockSessionFactory.getStatistics()).thenReturn(mockStatistics);
+        service.setSessionFactory(mockSessionFactory);
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("bridge_hibernate_cache_hits_total{region=\"study\"} 3\n"));
+        assertTrue(text.contains("bridge_hibernate_cache_misses_total{region=\"study\"} 1\n"));
+        assertTrue(text.contains("bridge_hibernate_cache_hit_ratio{region=\"study\"} 0.75\n"));
+        assertTrue(text.contains("bridge_hibernate_cache_hit_ratio{region=\"schedule\"} 0.0\n"));
+    }
+    
+    @Test
+    public void getPrometheusTextIncludesDbPools() {
+        PoolStats mockStats = mock(PoolStats.class);
+        when(mockStats.getMaxConnections()).thenReturn(20);
+        when(mockStats.getActiveConnections()).thenReturn(3);
+        when(mockStats.getIdleConnections()).thenReturn(2);
+        when(mockStats.getPendingThreads()).thenReturn(1);
+        LatencyHistogram acquisitions = new LatencyHistogram();
+        acquisitions.record(7L);
+        PoolMetrics mockMetrics = mock(PoolMetrics.class);
+        when(mockMetrics.getStats()).thenReturn(mockStats);
+        when(mockMetrics.getAcquisitionHistogram()).thenReturn(acquisitions);
+        when(mockMetrics.getUsageHistogram()).thenReturn(new LatencyHistogram());
+        when(mockMetrics.getTimeoutCount()).thenReturn(4L);
+        when(mockMetrics.getLeakCount()).thenReturn(5L);
+        
+        ConnectionPoolMonitor mockMonitor = mock(ConnectionPoolMonitor.class);
+        when(mockMonitor.getPools()).thenReturn(new TreeMap<>(ImmutableMap.of("account", mockMetrics)));
+        service.setConnectionPoolMonitor(mockMonitor);
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("bridge_db_pool_max{pool=\"account\"} 20\n"));
+        assertTrue(text.contains("bridge_db_pool_active{pool=\"account\"} 3\n"));
+        assertTrue(text.contains("bridge_db_pool_idle{pool=\"account\"} 2\n"));
+        assertTrue(text.contains("bridge_db_pool_pending{pool=\"account\"} 1\n"));
+        assertTrue(text.contains("bridge_db_pool_timeouts_total{pool=\"account\"} 4\n"));
+        assertTrue(text.contains("bridge_db_pool_leaks_total{pool=\"account\"} 5\n"));
+        assertTrue(text.contains("bridge_db_pool_acquire_duration_seconds_bucket{pool=\"account\",le=\"0.01\"} 1\n"));
+        assertTrue(text.contains("bridge_db_pool_usage_duration_seconds_count{pool=\"account\"} 0\n"));
+    }
+    
+    @Test
+    public void getPrometheusTextIncludesReadRouting() {
+        ReadReplicaRouter mockRouter = mock(ReadReplicaRouter.class);
+        when(mockRouter.isReplicaConfigured()).thenReturn(true);
+        when(mockRouter.getRouteCount(REPLICA)).thenReturn(5L);
+        when(mockRouter.getRouteCount(AFTER_WRITE)).thenReturn(2L);
+        service.setReadReplicaRouter(mockRouter);
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("# TYPE bridge_db_read_routing_total counter\n"));
+        assertTrue(text.contains("bridge_db_read_routing_total{route=\"replica\"} 5\n"));
+        assertTrue(text.contains("bridge_db_read_routing_total{route=\"after_write\"} 2\n"));
+        assertTrue(text.contains("bridge_db_read_routing_total{route=\"fallback\"} 0\n"));
+    }
+    
+    @Test
+    public void getPrometheusTextOmitsReadRoutingWithoutReplica() {
+        service.setReadReplicaRouter(new ReadReplicaRouter(null));
+        
+        assertFalse(service.getPrometheusText().contains("bridge_db_read_routing_total"));
+    }
+    
+    @Test
+    public void getPrometheusTextIncludesSqsDispatch() {
+        SqsMessageDispatcher mockDispatcher = mock(SqsMessageDispatcher.class);
+        when(mockDispatcher.getQueueDepth()).thenReturn(3);
+        when(mockDispatcher.getBatchCount()).thenReturn(4L);
+        when(mockDispatcher.getSentCount()).thenReturn(20L);
+        when(mockDispatcher.getSpilledCount()).thenReturn(1L);
+        when(mockDispatcher.getDroppedCount()).thenReturn(2L);
+        when(mockDispatcher.getBatchFillRatio()).thenReturn(0.5);
+        service.setSqsMessageDispatcher(mockDispatcher);
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("bridge_sqs_dispatch_queue_depth 3\n"));
+        assertTrue(text.contains("# TYPE bridge_sqs_dispatch_batches_total counter\n"));
+        assertTrue(text.contains("bridge_sqs_dispatch_batches_total 4\n"));
+        assertTrue(text.contains("bridge_sqs_dispatch_messages_total 20\n"));
+        assertTrue(text.contains("bridge_sqs_dispatch_spilled_total 1\n"));
+        assertTrue(text.contains("bridge_sqs_dispatch_dropped_total 2\n"));
+        assertTrue(text.contains("bridge_sqs_dispatch_batch_fill_ratio 0.5\n"));
+    }
+    
+    @Test
+    public void getPrometheusTextIncludesEmailDispatchByApp() {
+        SesEmailDispatcher.AppEmailMetrics mockMetrics = mock(SesEmailDispatcher.AppEmailMetrics.class);
+        when(mockMetrics.getQueuedCount()).thenReturn(5L);
+        when(mockMetrics.getSentCount()).thenReturn(3L);
+        when(mockMetrics.getRetriedCount()).thenReturn(2L);
+        when(mockMetrics.getFailedCount()).thenReturn(1L);
+        when(mockMetrics.getSpilledCount()).thenReturn(0L);
+        SesEmailDispatcher mockDispatcher = mock(SesEmailDispatcher.class);
+        when(mockDispatcher.getQueueDepth()).thenReturn(1);
+        when(mockDispatcher.getQueuedBytes()).thenReturn(2048L);
+        when(mockDispatcher.getAppMetrics()).thenReturn(ImmutableMap.of("api", mockMetrics));
+        service.setSesEmailDispatcher(mockDispatcher);
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("bridge_ses_dispatch_queue_depth 1\n"));
+        assertTrue(text.contains("bridge_ses_dispatch_queued_bytes 2048\n"));
+        assertTrue(text.contains("# TYPE bridge_ses_dispatch_sent_total counter\n"));
+        assertTrue(text.contains("bridge_ses_dispatch_queued_total{app=\"api\"} 5\n"));
+        assertTrue(text.contains("bridge_ses_dispatch_sent_total{app=\"api\"} 3\n"));
+        assertTrue(text.contains("bridge_ses_dispatch_retried_total{app=\"api\"} 2\n"));
+        assertTrue(text.contains("bridge_ses_dispatch_failed_total{app=\"api\"} 1\n"));
+        assertTrue(text.contains("bridge_ses_dispatch_spilled_total{app=\"api\"} 0\n"));
+    }
+    
+    @Test
+    public void labelValuesAreEscaped() {
+        service.recordRequest("GET", "/v3/\"quoted\"", 200, 1L);
+        
+        String text = service.getPrometheusText();
+        assertTrue(text.contains("route=\"/v3/\\\"quoted\\\"\""));
+    }
+}
@@ -0,0 +1,304 @@
+package org.sagebionetworks.bridge.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
+import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
+import com.amazonaws.services.simpleemail.model.SendRawEmailResult;
+import com.google.common.collect.ImmutableList;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.config.BridgeConfig;
+import org.sagebionetworks.bridge.exceptions.ServiceUnavailableException;
+import org.sagebionetworks.bridge.services.email.EmailType;
+
+public class SesEmailDispatcherTest extends Mockito {
+    private static final String APP_A = "app-a";
+    private static final String APP_B = "app-b";
+    private static final String SENDER = "\"App\" <support@app.com>";
+    private static final String RECIPIENT = "participant@test.com";
+
+    @Mock
+    AmazonSimpleEmailServiceClient mockEmailClient;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Captor
+    ArgumentCaptor<SendRawEmailRequest> requestCaptor;
+
+    File spillDir;
+
+    File spillFile;
+
+    SesEmailDispatcher dispatcher;
+
+    @BeforeMethod
+    public void beforeMethod() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").build());
+
+        spillDir = Files.createTempDirectory("ses-spill").toFile();
+        spillFile = new File(spillDir, SesEmailDispatcher.SPILL_FILE_NAME);
+        when(mockConfig.getInt(SesEmailDispatcher.CAPACITY_PROPERTY)).thenReturn(3);
+        when(mockConfig.getInt(SesEmailDispatcher.MAX_MEGABYTES_PROPERTY)).thenReturn(1);
+        when(mockConfig.getInt(SesEmailDispatcher.THREAD_COUNT_PROPERTY)).thenReturn(2);
+        when(mockConfig.getInt(SesEmailDispatcher.SEND_RATE_PROPERTY)).thenReturn(1000);
+        when(mockConfig.getProperty(SesEmailDispatcher.SPILL_DIR_PROPERTY)).thenReturn(spillDir.getPath());
+
+        // The SES stub accepts every message.
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class)))
+                .thenReturn(new SendRawEmailResult().withMessageId("message-id"));
+
+        // Retry without waiting.
+        dispatcher = spy(new SesEmailDispatcher());
+        dispatcher.setEmailClient(mockEmailClient);
+        dispatcher.setBridgeConfig(mockConfig);
+        doReturn(0L).when(dispatcher).getBackoffMillis(anyInt());
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(RequestContext.NULL_INSTANCE);
+        spillFile.delete();
+        spillDir.delete();
+    }
+
+    @Test
+    public void sendsQueuedEmail() {
+        dispatcher.send(APP_A, EmailType.RESET_PASSWORD, SENDER, RECIPIENT, bytes("message a"));
+        dispatcher.send(APP_B, EmailType.RESET_PASSWORD, SENDER, RECIPIENT, bytes("message b"));
+        assertEquals(dispatcher.getQueueDepth(), 2);
+        verifyZeroInteractions(mockEmailClient);
+
+        dispatcher.dispatchQueued();
+
+        verify(mockEmailClient, times(2)).sendRawEmail(requestCaptor.capture());
+        SendRawEmailRequest request = requestCaptor.getAllValues().get(0);
+        assertEquals(request.getSource(), SENDER);
+        assertEquals(request.getDestinations(), ImmutableList.of(RECIPIENT));
+        assertEquals(new String(request.getRawMessage().getData().array(), UTF_8), "message a");
+
+        assertEquals(dispatcher.getQueueDepth(), 0);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getQueuedCount(), 1L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSentCount(), 1L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_B).getSentCount(), 1L);
+    }
+
+    @Test
+    public void spillsWhenQueueIsFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            dispatcher.send(APP_A, EmailType.SIGN_CONSENT, SENDER, RECIPIENT, bytes("message " + i));
+        }
+        // The 4th message doesn't fit in the queue.
+        assertEquals(dispatcher.getQueueDepth(), 3);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSpilledCount(), 1L);
+        assertEquals(Files.readAllLines(spillFile.toPath(), UTF_8).size(), 1);
+        // Only the server can read the spilled messages.
+        assertEquals(Files.getPosixFilePermissions(spillFile.toPath()), SpillFiles.FILE_PERMISSIONS);
+        verifyZeroInteractions(mockEmailClient);
+    }
+
+    @Test
+    public void spillsWhenQueuedMessagesAreTooLarge() throws Exception {
+        // Two of these exceed the 1 MB limit, though the queue has room for three messages.
+        byte[] attachment = new byte[600 * 1024];
+        dispatcher.send(APP_A, EmailType.SIGN_CONSENT, SENDER, RECIPIENT, attachment);
+        assertEquals(dispatcher.getQueuedBytes(), attachment.length);
+        dispatcher.send(APP_A, EmailType.SIGN_CONSENT, SENDER, RECIPIENT, attachment);
+
+        assertEquals(dispatcher.getQueueDepth(), 1);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSpilledCount(), 1L);
+
+        dispatcher.dispatchQueued();
+        assertEquals(dispatcher.getQueuedBytes(), 0L);
+    }
+
+    @Test
+    public void sendsTimeLimitedEmailNowWhenQueueIsFull() {
+        for (int i = 0; i < 4; i++) {
+            dispatcher.send(APP_A, EmailType.EMAIL_SIGN_IN, SENDER, RECIPIENT, bytes("message " + i));
+        }
+        // The sign-in link would expire before a spilled message was resent, so the 4th is sent on this thread.
+        assertEquals(dispatcher.getQueueDepth(), 3);
+        verify(mockEmailClient).sendRawEmail(requestCaptor.capture());
+        assertEquals(new String(requestCaptor.getValue().getRawMessage().getData().array(), UTF_8), "message 3");
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSentCount(), 1L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSpilledCount(), 0L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void timeLimitedEmailFailsRequestWhenQueueIsFullAndSesIsDown() {
+        for (int i = 0; i < 3; i++) {
+            dispatcher.send(APP_A, EmailType.VERIFY_EMAIL, SENDER, RECIPIENT, bytes("message " + i));
+        }
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class)))
+                .thenThrow(new AmazonClientException("SES is down"));
+        try {
+            dispatcher.send(APP_A, EmailType.VERIFY_EMAIL, SENDER, RECIPIENT, bytes("message 3"));
+            fail("Should have thrown exception");
+        } catch (ServiceUnavailableException e) {
+            // The client can ask for the email again.
+        }
+        verify(mockEmailClient).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getFailedCount(), 1L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSpilledCount(), 0L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void retriesThrottledEmail() {
+        AmazonServiceException throttled = new AmazonServiceException("Maximum sending rate exceeded.");
+        throttled.setErrorType(ErrorType.Client);
+        throttled.setErrorCode("Throttling");
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(throttled)
+                .thenThrow(new AmazonClientException("Connection reset"))
+                .thenReturn(new SendRawEmailResult().withMessageId("message-id"));
+
+        dispatcher.send(APP_A, EmailType.RESET_PASSWORD, SENDER, RECIPIENT, bytes("message"));
+        dispatcher.dispatchQueued();
+
+        verify(mockEmailClient, times(3)).sendRawEmail(any(SendRawEmailRequest.class));
+        verify(dispatcher).getBackoffMillis(1);
+        verify(dispatcher).getBackoffMillis(2);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getRetriedCount(), 2L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSentCount(), 1L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void dropsTimeLimitedEmailWhenSesIsDown() {
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class)))
+                .thenThrow(new AmazonClientException("SES is down"));
+        dispatcher.send(APP_A, EmailType.RESET_PASSWORD, SENDER, RECIPIENT, bytes("message"));
+
+        dispatcher.dispatchQueued();
+
+        verify(mockEmailClient, times(SesEmailDispatcher.MAX_ATTEMPTS)).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getFailedCount(), 1L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void doesNotRetryRejectedEmail() {
+        AmazonServiceException invalid = new AmazonServiceException("Missing final '@domain'");
+        invalid.setErrorType(ErrorType.Client);
+        invalid.setErrorCode("InvalidParameterValue");
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class))).thenThrow(invalid);
+
+        dispatcher.send(APP_A, EmailType.RESET_PASSWORD, SENDER, RECIPIENT, bytes("message"));
+        dispatcher.dispatchQueued();
+
+        verify(mockEmailClient).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getFailedCount(), 1L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getRetriedCount(), 0L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void spillsAndResendsEmailWhenSesIsDown() throws Exception {
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class)))
+                .thenThrow(new AmazonClientException("SES is down"));
+        dispatcher.send(APP_A, EmailType.WITHDRAW_CONSENT, SENDER, RECIPIENT, bytes("message"));
+
+        dispatcher.dispatchQueued();
+
+        verify(mockEmailClient, times(SesEmailDispatcher.MAX_ATTEMPTS)).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getRetriedCount(), SesEmailDispatcher.MAX_ATTEMPTS - 1L);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSpilledCount(), 1L);
+        List<String> lines = Files.readAllLines(spillFile.toPath(), UTF_8);
+        assertEquals(lines.size(), 1);
+        assertTrue(lines.get(0).contains("\"requestId\":\"request-id\""));
+        assertTrue(lines.get(0).contains("\"totalAttempts\":" + SesEmailDispatcher.MAX_ATTEMPTS));
+
+        // SES recovers.
+        reset(mockEmailClient);
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class)))
+                .thenReturn(new SendRawEmailResult().withMessageId("message-id"));
+
+        dispatcher.resendSpilledEmails();
+        assertFalse(spillFile.exists());
+        dispatcher.dispatchQueued();
+
+        verify(mockEmailClient).sendRawEmail(requestCaptor.capture());
+        SendRawEmailRequest request = requestCaptor.getValue();
+        assertEquals(request.getSource(), SENDER);
+        assertEquals(request.getDestinations(), ImmutableList.of(RECIPIENT));
+        assertEquals(new String(request.getRawMessage().getData().array(), UTF_8), "message");
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSentCount(), 1L);
+    }
+
+    @Test
+    public void dropsEmailAfterTotalAttempts() {
+        when(mockEmailClient.sendRawEmail(any(SendRawEmailRequest.class)))
+                .thenThrow(new AmazonClientException("SES is down"));
+        dispatcher.send(APP_A, EmailType.WITHDRAW_CONSENT, SENDER, RECIPIENT, bytes("message"));
+
+        // The message is spilled and resent until it has been tried the most times allowed, then it is dropped.
+        dispatcher.dispatchQueued();
+        for (int i = 1; i < SesEmailDispatcher.MAX_TOTAL_ATTEMPTS / SesEmailDispatcher.MAX_ATTEMPTS; i++) {
+            assertTrue(spillFile.exists());
+            dispatcher.resendSpilledEmails();
+            dispatcher.dispatchQueued();
+        }
+
+        verify(mockEmailClient, times(SesEmailDispatcher.MAX_TOTAL_ATTEMPTS))
+                .sendRawEmail(any(SendRawEmailRequest.class));
+        assertFalse(spillFile.exists());
+        assertEquals(dispatcher.getQueueDepth(), 0);
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getFailedCount(), 1L);
+    }
+
+    @Test
+    public void startAndStopSendsEverything() {
+        dispatcher.start();
+        for (int i = 0; i < 3; i++) {
+            dispatcher.send(APP_A, EmailType.RESET_PASSWORD, SENDER, RECIPIENT, bytes("message " + i));
+        }
+        dispatcher.stop();
+
+        verify(mockEmailClient, times(3)).sendRawEmail(any(SendRawEmailRequest.class));
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSentCount(), 3L);
+        assertEquals(dispatcher.getQueueDepth(), 0);
+
+        // Once stopped, messages are kept in the spill file until the server starts again.
+        dispatcher.send(APP_A, EmailType.SIGN_CONSENT, SENDER, RECIPIENT, bytes("late"));
+        assertEquals(dispatcher.getAppMetrics().get(APP_A).getSpilledCount(), 1L);
+        assertTrue(spillFile.exists());
+    }
+
+    @Test
+    public void backoffDoublesUpToMaximum() {
+        SesEmailDispatcher dispatcher = new SesEmailDispatcher();
+        assertEquals(dispatcher.getBackoffMillis(1), SesEmailDispatcher.INITIAL_BACKOFF_MILLIS);
+        assertEquals(dispatcher.getBackoffMillis(2), 2 * SesEmailDispatcher.INITIAL_BACKOFF_MILLIS);
+        assertEquals(dispatcher.getBackoffMillis(3), 4 * SesEmailDispatcher.INITIAL_BACKOFF_MILLIS);
+        assertEquals(dispatcher.getBackoffMillis(10), SesEmailDispatcher.MAX_BACKOFF_MILLIS);
+        assertEquals(dispatcher.getBackoffMillis(100), SesEmailDispatcher.MAX_BACKOFF_MILLIS);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+}
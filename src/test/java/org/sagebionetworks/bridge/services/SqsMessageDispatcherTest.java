@@ -0,0 +1,309 @@
+package org.sagebionetworks.bridge.services;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.config.BridgeConfig;
+
+public class SqsMessageDispatcherTest extends Mockito {
+    private static final String QUEUE_A = "https://sqs.us-east-1.amazonaws.com/123/queue-a";
+    private static final String QUEUE_B = "https://sqs.us-east-1.amazonaws.com/123/queue-b";
+
+    @Mock
+    AmazonSQSClient mockSqsClient;
+
+    @Mock
+    BridgeConfig mockConfig;
+
+    @Captor
+    ArgumentCaptor<SendMessageBatchRequest> requestCaptor;
+
+    File spillDir;
+
+    File spillFile;
+
+    SqsMessageDispatcher dispatcher;
+
+    @BeforeMethod
+    public void beforeMethod() throws IOException {
+        MockitoAnnotations.initMocks(this);
+
+        spillDir = Files.createTempDirectory("sqs-spill").toFile();
+        spillFile = new File(spillDir, SqsMessageDispatcher.SPILL_FILE_NAME);
+        when(mockConfig.getInt(SqsMessageDispatcher.CAPACITY_PROPERTY)).thenReturn(25);
+        when(mockConfig.getProperty(SqsMessageDispatcher.SPILL_DIR_PROPERTY)).thenReturn(spillDir.getPath());
+
+        // The SQS stub accepts every message.
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            SendMessageBatchResult result = new SendMessageBatchResult();
+            for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                result.getSuccessful().add(new SendMessageBatchResultEntry().withId(entry.getId()));
+            }
+            return result;
+        });
+
+        dispatcher = new SqsMessageDispatcher();
+        dispatcher.setSqsClient(mockSqsClient);
+        dispatcher.setBridgeConfig(mockConfig);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        spillFile.delete();
+        spillDir.delete();
+    }
+
+    @Test
+    public void sendsQueuedMessagesInBatchesByQueue() {
+        for (int i = 0; i < 12; i++) {
+            dispatcher.send(QUEUE_A, "a" + i);
+        }
+        dispatcher.send(QUEUE_B, "b0");
+        assertEquals(dispatcher.getQueueDepth(), 13);
+        verifyZeroInteractions(mockSqsClient);
+
+        dispatcher.dispatchQueued();
+
+        verify(mockSqsClient, times(3)).sendMessageBatch(requestCaptor.capture());
+        List<SendMessageBatchRequest> requests = requestCaptor.getAllValues();
+        assertEquals(requests.get(0).getQueueUrl(), QUEUE_A);
+        assertEquals(requests.get(0).getEntries().size(), 10);
+        assertEquals(requests.get(0).getEntries().get(0).getMessageBody(), "a0");
+        assertEquals(requests.get(1).getQueueUrl(), QUEUE_A);
+        assertEquals(bodies(requests.get(1)), ImmutableList.of("a10", "a11"));
+        assertEquals(requests.get(2).getQueueUrl(), QUEUE_B);
+        assertEquals(bodies(requests.get(2)), ImmutableList.of("b0"));
+
+        assertEquals(dispatcher.getQueueDepth(), 0);
+        assertEquals(dispatcher.getBatchCount(), 3L);
+        assertEquals(dispatcher.getSentCount(), 13L);
+        assertEquals(dispatcher.getBatchFillRatio(), 13.0 / 30.0);
+    }
+
+    @Test
+    public void sendsOnCallerThreadWhenQueueIsFull() {
+        for (int i = 0; i < 26; i++) {
+            dispatcher.send(QUEUE_A, "a" + i);
+        }
+        // The 26th message doesn't fit in the queue.
+        verify(mockSqsClient).sendMessageBatch(requestCaptor.capture());
+        assertEquals(bodies(requestCaptor.getValue()), ImmutableList.of("a25"));
+        assertEquals(dispatcher.getQueueDepth(), 25);
+    }
+
+    @Test
+    public void spillsAndResendsMessagesWhenSqsFails() throws Exception {
+        doThrow(new AmazonClientException("SQS is down")).when(mockSqsClient)
+                .sendMessageBatch(any(SendMessageBatchRequest.class));
+        dispatcher.send(QUEUE_A, "{\"a\":1}");
+        dispatcher.send(QUEUE_B, "b0");
+
+        dispatcher.dispatchQueued();
+
+        assertEquals(dispatcher.getSpilledCount(), 2L);
+        assertEquals(Files.readAllLines(spillFile.toPath(), UTF_8).size(), 2);
+        assertEquals(Files.getPosixFilePermissions(spillFile.toPath()), SpillFiles.FILE_PERMISSIONS);
+
+        // SQS recovers.
+        reset(mockSqsClient);
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+                .thenReturn(new SendMessageBatchResult());
+
+        dispatcher.resendSpilledMessages();
+
+        verify(mockSqsClient, times(2)).sendMessageBatch(requestCaptor.capture());
+        assertEquals(requestCaptor.getAllValues().get(0).getQueueUrl(), QUEUE_A);
+        assertEquals(bodies(requestCaptor.getAllValues().get(0)), ImmutableList.of("{\"a\":1}"));
+        assertEquals(requestCaptor.getAllValues().get(1).getQueueUrl(), QUEUE_B);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void spillsOnlyMessagesSqsRejected() throws Exception {
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+                new SendMessageBatchResult()
+                        .withSuccessful(new SendMessageBatchResultEntry().withId("0"))
+                        .withFailed(new BatchResultErrorEntry().withId("1").withCode("InternalError")));
+        dispatcher.send(QUEUE_A, "a0");
+        dispatcher.send(QUEUE_A, "a1");
+
+        dispatcher.dispatchQueued();
+
+        assertEquals(dispatcher.getSentCount(), 1L);
+        assertEquals(dispatcher.getSpilledCount(), 1L);
+        List<String> lines = Files.readAllLines(spillFile.toPath(), UTF_8);
+        assertEquals(lines.size(), 1);
+        assertTrue(lines.get(0).contains("\"body\":\"a1\""));
+    }
+
+    @Test
+    public void splitsBatchesBySize() {
+        String body = Strings.repeat("x", 100 * 1024);
+        for (int i = 0; i < 5; i++) {
+            dispatcher.send(QUEUE_A, body);
+        }
+
+        dispatcher.dispatchQueued();
+
+        // Only two 100 KiB messages fit in a 256 KiB batch.
+        verify(mockSqsClient, times(3)).sendMessageBatch(requestCaptor.capture());
+        List<SendMessageBatchRequest> requests = requestCaptor.getAllValues();
+        assertEquals(requests.get(0).getEntries().size(), 2);
+        assertEquals(requests.get(1).getEntries().size(), 2);
+        assertEquals(requests.get(2).getEntries().size(), 1);
+        assertEquals(dispatcher.getSentCount(), 5L);
+    }
+
+    @Test
+    public void dropsMessageThatIsTooLarge() {
+        dispatcher.send(QUEUE_A, Strings.repeat("x", SqsMessageDispatcher.MAX_BATCH_BYTES + 1));
+        dispatcher.send(QUEUE_A, "a0");
+
+        dispatcher.dispatchQueued();
+
+        verify(mockSqsClient).sendMessageBatch(requestCaptor.capture());
+        assertEquals(bodies(requestCaptor.getValue()), ImmutableList.of("a0"));
+        assertEquals(dispatcher.getDroppedCount(), 1L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void dropsMessagesRejectedAsSenderFault() {
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+                new SendMessageBatchResult()
+                        .withFailed(new BatchResultErrorEntry().withId("0").withCode("InvalidMessageContents")
+                                .withSenderFault(true))
+                        .withFailed(new BatchResultErrorEntry().withId("1").withCode("InternalError")
+                                .withSenderFault(false)));
+        dispatcher.send(QUEUE_A, "a0");
+        dispatcher.send(QUEUE_A, "a1");
+
+        dispatcher.dispatchQueued();
+
+        assertEquals(dispatcher.getDroppedCount(), 1L);
+        assertEquals(dispatcher.getSpilledCount(), 1L);
+        assertTrue(spillFile.exists());
+    }
+
+    @Test
+    public void dropsMessageAfterMaxAttempts() throws Exception {
+        when(mockSqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+                new SendMessageBatchResult().withFailed(new BatchResultErrorEntry().withId("0")
+                        .withCode("InternalError").withSenderFault(false)));
+        dispatcher.send(QUEUE_A, "a0");
+        dispatcher.dispatchQueued();
+
+        List<String> lines = Files.readAllLines(spillFile.toPath(), UTF_8);
+        assertTrue(lines.get(0).contains("\"attempts\":1"));
+
+        for (int i = 1; i < SqsMessageDispatcher.MAX_ATTEMPTS; i++) {
+            dispatcher.resendSpilledMessages();
+        }
+
+        verify(mockSqsClient, times(SqsMessageDispatcher.MAX_ATTEMPTS))
+                .sendMessageBatch(any(SendMessageBatchRequest.class));
+        assertEquals(dispatcher.getSpilledCount(), SqsMessageDispatcher.MAX_ATTEMPTS - 1L);
+        assertEquals(dispatcher.getDroppedCount(), 1L);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void dropsMessageWithSecretInsteadOfSpilling() {
+        doThrow(new AmazonClientException("SQS is down")).when(mockSqsClient)
+                .sendMessageBatch(any(SendMessageBatchRequest.class));
+        dispatcher.sendSecret(QUEUE_A, "{\"password\":\"P@ssword1\"}");
+        dispatcher.send(QUEUE_A, "a0");
+
+        dispatcher.dispatchQueued();
+
+        assertEquals(dispatcher.getDroppedCount(), 1L);
+        assertEquals(dispatcher.getSpilledCount(), 1L);
+        List<String> lines = Files.readAllLines(spillFile.toPath(), UTF_8);
+        assertEquals(lines.size(), 1);
+        assertTrue(lines.get(0).contains("\"body\":\"a0\""));
+    }
+
+    @Test
+    public void sendsMessageWithSecret() {
+        dispatcher.sendSecret(QUEUE_A, "{\"password\":\"P@ssword1\"}");
+
+        dispatcher.dispatchQueued();
+
+        verify(mockSqsClient).sendMessageBatch(requestCaptor.capture());
+        assertEquals(bodies(requestCaptor.getValue()), ImmutableList.of("{\"password\":\"P@ssword1\"}"));
+        assertEquals(dispatcher.getSentCount(), 1L);
+    }
+
+    @Test
+    public void spillsToTempDirectoryByDefault() {
+        assertEquals(SpillFiles.directory(null),
+                new File(System.getProperty("java.io.tmpdir"), SpillFiles.DEFAULT_DIRECTORY_NAME));
+        assertEquals(SpillFiles.directory(" "),
+                new File(System.getProperty("java.io.tmpdir"), SpillFiles.DEFAULT_DIRECTORY_NAME));
+        assertEquals(SpillFiles.directory("/data/spill"), new File("/data/spill"));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void startFailsWhenSpillDirectoryCannotBeCreated() throws Exception {
+        // The spill directory would be inside a regular file.
+        File notADirectory = new File(spillDir, "file");
+        Files.write(notADirectory.toPath(), ImmutableList.of("x"), UTF_8);
+        try {
+            when(mockConfig.getProperty(SqsMessageDispatcher.SPILL_DIR_PROPERTY))
+                    .thenReturn(new File(notADirectory, "spill").getPath());
+            dispatcher.setBridgeConfig(mockConfig);
+
+            dispatcher.start();
+        } finally {
+            notADirectory.delete();
+        }
+    }
+
+    @Test
+    public void startAndStopSendsEverything() {
+        dispatcher.start();
+        for (int i = 0; i < 15; i++) {
+            dispatcher.send(QUEUE_A, "a" + i);
+        }
+        dispatcher.stop();
+
+        assertEquals(dispatcher.getSentCount(), 15L);
+        assertEquals(dispatcher.getQueueDepth(), 0);
+
+        // Once stopped, messages are sent on the caller's thread.
+        dispatcher.send(QUEUE_A, "late");
+        assertEquals(dispatcher.getSentCount(), 16L);
+    }
+
+    private List<String> bodies(SendMessageBatchRequest request) {
+        return request.getEntries().stream().map(SendMessageBatchRequestEntry::getMessageBody)
+                .collect(Collectors.toList());
+    }
+}
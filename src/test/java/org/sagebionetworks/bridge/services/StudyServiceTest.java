@@ -17,6 +17,7 @@ import static org.sagebionetworks.bridge.TestConstants.SCHEDULE_GUID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_ORG_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_ID;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.STUDY_REGION;
 import static org.sagebionetworks.bridge.models.activities.ActivityEventUpdateType.IMMUTABLE;
 import static org.sagebionetworks.bridge.models.studies.StudyPhase.ANALYSIS;
 import static org.sagebionetworks.bridge.models.studies.StudyPhase.COMPLETED;
@@ -55,6 +56,7 @@ import org.sagebionetworks.bridge.exceptions.EntityAlreadyExistsException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.PagedResourceList;
 import org.sagebionetworks.bridge.models.VersionHolder;
 import org.sagebionetworks.bridge.models.schedules2.Schedule2;
@@ -85,6 +87,9 @@ public class StudyServiceTest {
     @Mock
     private Schedule2Service mockScheduleService;
     
+    @Mock
+    private HibernateCacheInvalidator mockCacheInvalidator;
+    
     @Captor
     private ArgumentCaptor<Study> studyCaptor;
     
@@ -527,6 +532,7 @@ public class StudyServiceTest {
         assertNotNull(persisted.getModifiedOn());
         
         verify(mockCacheProvider).removeObject(CACHE_KEY);
+        verify(mockCacheInvalidator).invalidate(STUDY_REGION);
     }
     
     @Test(expectedExceptions = BadRequestException.class,
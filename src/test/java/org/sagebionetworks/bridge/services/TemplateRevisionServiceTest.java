@@ -51,6 +51,9 @@ public class TemplateRevisionServiceTest extends Mockito {
     @Mock
     TemplateRevisionDao mockTemplateRevisionDao;
     
+    @Mock
+    TemplateService mockTemplateService;
+    
     @InjectMocks
     @Spy
     TemplateRevisionService service;
@@ -188,6 +191,7 @@ public class TemplateRevisionServiceTest extends Mockito {
         
         verify(mockTemplateDao).updateTemplate(templateCaptor.capture());
         assertEquals(templateCaptor.getValue().getPublishedCreatedOn(), CREATED_ON);
+        verify(mockTemplateService).invalidateRevisionCache(TEST_APP_ID);
     }
     
     @Test(expectedExceptions = EntityNotFoundException.class, expectedExceptionsMessageRegExp = "Template not found.")
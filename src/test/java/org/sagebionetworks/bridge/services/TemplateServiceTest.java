@@ -8,6 +8,7 @@ import static org.sagebionetworks.bridge.TestConstants.UA;
 import static org.sagebionetworks.bridge.TestConstants.USER_DATA_GROUPS;
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
 import static org.sagebionetworks.bridge.TestConstants.USER_STUDY_IDS;
+import static org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator.TEMPLATE_REVISION_CACHE;
 import static org.sagebionetworks.bridge.models.apps.MimeType.HTML;
 import static org.sagebionetworks.bridge.models.templates.TemplateType.EMAIL_ACCOUNT_EXISTS;
 import static org.sagebionetworks.bridge.models.templates.TemplateType.EMAIL_APP_INSTALL_LINK;
@@ -58,6 +59,7 @@ import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.ConstraintViolationException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.hibernate.HibernateCacheInvalidator;
 import org.sagebionetworks.bridge.models.ClientInfo;
 import org.sagebionetworks.bridge.models.Criteria;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -88,6 +90,9 @@ public class TemplateServiceTest extends Mockito {
     @Mock
     StudyService mockStudyService;
     
+    @Mock
+    HibernateCacheInvalidator mockCacheInvalidator;
+    
     @InjectMocks
     @Spy
     TemplateService service;
@@ -138,6 +143,7 @@ public class TemplateServiceTest extends Mockito {
         app.setDefaultTemplates(new HashMap<>());
         when(mockAppService.getApp(TEST_APP_ID)).thenReturn(app);
         when(mockStudyService.getStudyIds(TEST_APP_ID)).thenReturn(USER_STUDY_IDS);
+        service.revisionCache.invalidateAll();
     }
     
     @AfterMethod
@@ -677,10 +683,76 @@ public class TemplateServiceTest extends Mockito {
         service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
     }
     
+    @Test
+    public void getRevisionForUserIsCached() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerClientInfo(ClientInfo.fromUserAgentCache(UA)).withCallerLanguages(LANGUAGES).build());
+        TemplateRevision revision = mockTemplateForRevision();
+        
+        assertSame(service.getRevisionForUser(app, EMAIL_RESET_PASSWORD), revision);
+        assertSame(service.getRevisionForUser(app, EMAIL_RESET_PASSWORD), revision);
+        
+        verify(mockTemplateDao, times(1)).getTemplates(TEST_APP_ID, EMAIL_RESET_PASSWORD, null, null, false);
+        verify(mockTemplateRevisionDao, times(1)).getTemplateRevision(eq(GUID1), any());
+    }
+    
+    @Test
+    public void getRevisionForUserIsCachedByCallerContext() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerClientInfo(ClientInfo.fromUserAgentCache(UA)).withCallerLanguages(LANGUAGES).build());
+        mockTemplateForRevision();
+        service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
+        
+        // Different languages and a different default template are each selected again
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerClientInfo(ClientInfo.fromUserAgentCache(UA)).withCallerLanguages(ImmutableList.of("fr"))
+                .build());
+        service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
+        mockTemplateDefault(GUID1);
+        service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
+        
+        verify(mockTemplateRevisionDao, times(3)).getTemplateRevision(eq(GUID1), any());
+    }
+    
+    @Test
+    public void changingTemplatesInvalidatesRevisionCache() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerClientInfo(ClientInfo.fromUserAgentCache(UA)).withCallerLanguages(LANGUAGES).build());
+        mockTemplateForRevision();
+        service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
+        
+        service.deleteAllTemplates(TEST_APP_ID);
+        service.getRevisionForUser(app, EMAIL_RESET_PASSWORD);
+        
+        verify(mockTemplateRevisionDao, times(2)).getTemplateRevision(eq(GUID1), any());
+    }
+    
+    @Test
+    public void invalidateRevisionCacheOnlyRemovesAppEntries() {
+        service.revisionCache.put(TEST_APP_ID + ":EMAIL_SIGN_IN", TemplateRevision.create());
+        service.revisionCache.put(TEST_APP_ID + "-other:EMAIL_SIGN_IN", TemplateRevision.create());
+        
+        service.invalidateRevisionCache(TEST_APP_ID);
+        
+        assertEquals(service.revisionCache.asMap().keySet(), ImmutableSet.of(TEST_APP_ID + "-other:EMAIL_SIGN_IN"));
+        verify(mockCacheInvalidator).invalidate(TEMPLATE_REVISION_CACHE, TEST_APP_ID);
+    }
+    
     @Test
     public void deleteTemplatesForApp() {
         service.deleteAllTemplates(TEST_APP_ID);
         
         verify(mockTemplateDao).deleteTemplatesForApp(TEST_APP_ID);
     }
+    
+    private TemplateRevision mockTemplateForRevision() {
+        DateTime createdOn = DateTime.now();
+        Template template = makeTemplate(GUID1, "en");
+        template.setPublishedCreatedOn(createdOn);
+        mockGetTemplates(ImmutableList.of(template));
+        
+        TemplateRevision revision = TemplateRevision.create();
+        when(mockTemplateRevisionDao.getTemplateRevision(GUID1, createdOn)).thenReturn(Optional.of(revision));
+        return revision;
+    }
 }
@@ -5,16 +5,21 @@ import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_EXTERNAL_ID;
+import static org.sagebionetworks.bridge.services.UserAdminService.DELETION_EXPIRE_IN_SECONDS;
+import static org.sagebionetworks.bridge.services.UserAdminService.DELETION_STEPS_TYPE;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.fail;
 
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -32,7 +37,9 @@ import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.Roles;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.TestUtils;
+import org.sagebionetworks.bridge.cache.CacheKey;
 import org.sagebionetworks.bridge.cache.CacheProvider;
+import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
 import org.sagebionetworks.bridge.models.CriteriaContext;
@@ -47,10 +54,12 @@ import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.apps.App;
 import org.sagebionetworks.bridge.models.studies.Enrollment;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
+import org.sagebionetworks.bridge.services.UserAdminService.DeletionStep;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class UserAdminServiceTest {
     
@@ -106,6 +115,9 @@ public class UserAdminServiceTest {
     
     @Captor
     private ArgumentCaptor<Account> accountCaptor;
+    
+    @Captor
+    private ArgumentCaptor<Set<DeletionStep>> setCaptor;
 
     @InjectMocks
     private UserAdminService service;
@@ -115,6 +127,7 @@ public class UserAdminServiceTest {
     @BeforeMethod
     public void before() {
         MockitoAnnotations.initMocks(this);
+        service.setDeletionExecutorService(MoreExecutors.newDirectExecutorService());
         
         // Make a user with multiple consent statuses, and just verify that we call the 
         // consent service that many times.
@@ -366,10 +379,66 @@ public class UserAdminServiceTest {
         verify(scheduledActivityService).deleteActivitiesForUser("healthCode");
         verify(activityEventService, atLeastOnce()).deleteActivityEvents("healthCode");
         verify(accountService).deleteAccount(accountId);
+        verify(cacheProvider, times(DeletionStep.values().length)).setObject(
+                CacheKey.userDeletion(app.getIdentifier(), "userId"),
+                EnumSet.allOf(DeletionStep.class), DELETION_EXPIRE_IN_SECONDS);
+        verify(cacheProvider).removeObject(CacheKey.userDeletion(app.getIdentifier(), "userId"));
         
         assertEquals(account.getHealthCode(), "healthCode");
     }
     
+    @Test
+    public void deleteUserResumesPartialDeletion() {
+        App app = TestUtils.getValidApp(UserAdminServiceTest.class);
+        AccountId accountId = AccountId.forId(app.getIdentifier(),  "userId");
+        CacheKey progressKey = CacheKey.userDeletion(app.getIdentifier(), "userId");
+        
+        doReturn("userId").when(account).getId();
+        doReturn("healthCode").when(account).getHealthCode();
+        doReturn(Optional.of(account)).when(accountService).getAccount(accountId);
+        when(cacheProvider.getObject(progressKey, DELETION_STEPS_TYPE))
+                .thenReturn(ImmutableSet.of(DeletionStep.HEALTH_DATA, DeletionStep.UPLOADS));
+        
+        service.deleteUser(app, "userId");
+        
+        verify(healthDataService, never()).deleteRecordsForHealthCode(any());
+        verify(uploadService, never()).deleteUploadsForHealthCode(any());
+        verify(healthDataEx3Service).deleteRecordsForHealthCode("healthCode");
+        verify(notificationsService).deleteAllRegistrations(app.getIdentifier(), "healthCode");
+        verify(scheduledActivityService).deleteActivitiesForUser("healthCode");
+        verify(activityEventService).deleteActivityEvents("healthCode");
+        verify(accountService).deleteAccount(accountId);
+        verify(cacheProvider).removeObject(progressKey);
+    }
+    
+    @Test
+    public void deleteUserRecordsProgressWhenStepFails() {
+        App app = TestUtils.getValidApp(UserAdminServiceTest.class);
+        AccountId accountId = AccountId.forId(app.getIdentifier(),  "userId");
+        CacheKey progressKey = CacheKey.userDeletion(app.getIdentifier(), "userId");
+        
+        doReturn("userId").when(account).getId();
+        doReturn("healthCode").when(account).getHealthCode();
+        doReturn(Optional.of(account)).when(accountService).getAccount(accountId);
+        doThrow(new BridgeServiceException("Throttled")).when(uploadService).deleteUploadsForHealthCode("healthCode");
+        
+        try {
+            service.deleteUser(app, "userId");
+            fail("Should have thrown exception");
+        } catch(BridgeServiceException e) {
+            assertEquals(e.getMessage(), "Throttled");
+        }
+        // The other steps still run, and are recorded so they're skipped when the deletion is retried.
+        verify(scheduledActivityService).deleteActivitiesForUser("healthCode");
+        verify(activityEventService).deleteActivityEvents("healthCode");
+        verify(cacheProvider, atLeastOnce()).setObject(eq(progressKey), setCaptor.capture(),
+                eq(DELETION_EXPIRE_IN_SECONDS));
+        assertEquals(setCaptor.getValue(), EnumSet.complementOf(EnumSet.of(DeletionStep.UPLOADS)));
+        
+        verify(accountService, never()).deleteAccount(any());
+        verify(cacheProvider, never()).removeObject(any());
+    }
+    
     @Test
     public void deleteUserNotFound() {
         App app = TestUtils.getValidApp(UserAdminServiceTest.class);
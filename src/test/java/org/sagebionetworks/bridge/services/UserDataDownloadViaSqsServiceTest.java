@@ -2,6 +2,7 @@ package org.sagebionetworks.bridge.services;
 
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.services.UserDataDownloadViaSqsService.CONFIG_KEY_UDD_SQS_QUEUE_URL;
@@ -15,8 +16,6 @@ import static org.sagebionetworks.bridge.services.UserDataDownloadViaSqsService.
 import static org.sagebionetworks.bridge.services.UserDataDownloadViaSqsService.UDD_SERVICE_TITLE;
 import static org.testng.Assert.assertEquals;
 
-import com.amazonaws.services.sqs.AmazonSQSClient;
-import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.joda.time.LocalDate;
@@ -30,7 +29,6 @@ public class UserDataDownloadViaSqsServiceTest {
     private static final String START_DATE = "2015-08-15";
     private static final String END_DATE = "2015-08-19";
     private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-    private static final String SQS_MESSAGE_ID = "dummy-message-id";
     private static final String SQS_URL = "dummy-sqs-url";
     private static final String USER_ID = "test-user-id";
 
@@ -44,15 +42,13 @@ public class UserDataDownloadViaSqsServiceTest {
         when(mockConfig.getProperty(CONFIG_KEY_UDD_SQS_QUEUE_URL)).thenReturn(SQS_URL);
 
         // mock SQS
-        AmazonSQSClient mockSqsClient = mock(AmazonSQSClient.class);
-        SendMessageResult mockSqsResult = new SendMessageResult().withMessageId(SQS_MESSAGE_ID);
+        SqsMessageDispatcher mockSqsMessageDispatcher = mock(SqsMessageDispatcher.class);
         ArgumentCaptor<String> sqsMessageCaptor = ArgumentCaptor.forClass(String.class);
-        when(mockSqsClient.sendMessage(eq(SQS_URL), sqsMessageCaptor.capture())).thenReturn(mockSqsResult);
 
         // set up test service
         UserDataDownloadViaSqsService testService = new UserDataDownloadViaSqsService();
         testService.setBridgeConfig(mockConfig);
-        testService.setSqsClient(mockSqsClient);
+        testService.setSqsMessageDispatcher(mockSqsMessageDispatcher);
 
         // test inputs
         DateRange dateRange = new DateRange(LocalDate.parse(START_DATE), LocalDate.parse(END_DATE));
@@ -61,6 +57,7 @@ public class UserDataDownloadViaSqsServiceTest {
         testService.requestUserData(TEST_APP_ID, USER_ID, dateRange);
 
         // Validate SQS args.
+        verify(mockSqsMessageDispatcher).send(eq(SQS_URL), sqsMessageCaptor.capture());
         String sqsMessageText = sqsMessageCaptor.getValue();
 
         JsonNode sqsMessageNode = JSON_OBJECT_MAPPER.readTree(sqsMessageText);
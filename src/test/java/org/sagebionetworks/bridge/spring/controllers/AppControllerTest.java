@@ -23,6 +23,7 @@ import static org.sagebionetworks.bridge.TestUtils.getValidApp;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
 import static org.sagebionetworks.bridge.services.EmailVerificationStatus.VERIFIED;
 import static org.sagebionetworks.bridge.services.AppEmailType.CONSENT_NOTIFICATION;
+import static org.sagebionetworks.bridge.services.AccountService.SEARCH_TERMS_MAX_PAGE_SIZE;
 import static org.sagebionetworks.bridge.spring.controllers.AppController.CONSENT_EMAIL_VERIFIED_MSG;
 import static org.sagebionetworks.bridge.spring.controllers.AppController.RESEND_EMAIL_MSG;
 import static org.testng.Assert.assertEquals;
@@ -190,6 +191,7 @@ public class AppControllerTest extends Mockito {
         assertGet(AppController.class, "getUploads");
         assertGet(AppController.class, "getUploadsForApp");
         assertGet(AppController.class, "getAppMemberships");
+        assertPost(AppController.class, "rebuildAccountSearchTerms");
     }
     
     @Test(expectedExceptions = UnauthorizedException.class)
@@ -921,6 +923,27 @@ public class AppControllerTest extends Mockito {
         assertEquals(appCaptor.getValue().getName(), "My new app");
     }
     
+    @Test
+    public void rebuildAccountSearchTerms() {
+        doReturn(mockSession).when(controller).getAuthenticatedSession(SUPERADMIN);
+        ForwardCursorPagedResourceList<String> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of("a", "b"), null);
+        when(mockAccountService.rebuildSearchTerms(TEST_APP_ID, "offsetKey", 20)).thenReturn(page);
+        
+        ForwardCursorPagedResourceList<String> retValue = controller.rebuildAccountSearchTerms(TEST_APP_ID,
+                "offsetKey", "20");
+        assertSame(retValue, page);
+    }
+    
+    @Test
+    public void rebuildAccountSearchTermsDefaultsPageSize() {
+        doReturn(mockSession).when(controller).getAuthenticatedSession(SUPERADMIN);
+        
+        controller.rebuildAccountSearchTerms(TEST_APP_ID, null, null);
+        
+        verify(mockAccountService).rebuildSearchTerms(TEST_APP_ID, null, SEARCH_TERMS_MAX_PAGE_SIZE);
+    }
+    
     private App mockApp(String name, String appId, boolean active) {
         App app = App.create();
         app.setName(name);
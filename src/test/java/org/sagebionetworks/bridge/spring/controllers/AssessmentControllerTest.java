@@ -51,7 +51,9 @@ import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
@@ -125,8 +127,8 @@ public class AssessmentControllerTest extends Mockito {
                 .withRequestParam(PagedResourceList.TAGS, STRING_TAGS);
         when(mockService.getAssessments(TEST_APP_ID, TEST_ORG_ID, 100, 25, STRING_TAGS, true)).thenReturn(page);
         
-        PagedResourceList<Assessment> retValue = controller.getAssessments("100", "25",
-                STRING_TAGS, "true");
+        PagedResourceList<Assessment> retValue = (PagedResourceList<Assessment>)controller.getAssessments(
+                "100", "25", STRING_TAGS, "true", null, null);
 
         assertEquals(retValue.getItems().size(), 1);
         assertEquals(retValue.getTotal(), Integer.valueOf(100));
@@ -143,18 +145,47 @@ public class AssessmentControllerTest extends Mockito {
         PagedResourceList<Assessment> page = new PagedResourceList<>(ImmutableList.of(), 0);
         when(mockService.getAssessments(TEST_APP_ID, TEST_ORG_ID, 0, 50, null, false)).thenReturn(page);
         
-        controller.getAssessments(null, null, null, null);
+        controller.getAssessments(null, null, null, null, null, null);
         
         verify(mockService).getAssessments(TEST_APP_ID, TEST_ORG_ID, 0, 50, null, false);
     }
 
+    @Test
+    public void getAssessmentsByOffsetKey() {
+        doReturn(session).when(controller).getAuthenticatedSession(DEVELOPER, STUDY_DESIGNER);
+        
+        ForwardCursorPagedResourceList<Assessment> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(new Assessment()), "nextKey");
+        when(mockService.getAssessmentsByOffsetKey(TEST_APP_ID, TEST_ORG_ID, "offsetKey", 25, STRING_TAGS, true))
+                .thenReturn(page);
+        
+        ResourceList<Assessment> retValue = controller.getAssessments(null, "25", STRING_TAGS, "true",
+                "offsetKey", null);
+        assertSame(retValue, page);
+        
+        verify(mockService, never()).getAssessments(any(), any(), anyInt(), anyInt(), any(), anyBoolean());
+    }
+
+    @Test
+    public void getAssessmentsWithoutTotal() {
+        doReturn(session).when(controller).getAuthenticatedSession(DEVELOPER, STUDY_DESIGNER);
+        
+        ForwardCursorPagedResourceList<Assessment> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(), null);
+        when(mockService.getAssessmentsByOffsetKey(TEST_APP_ID, TEST_ORG_ID, null, 50, null, false))
+                .thenReturn(page);
+        
+        ResourceList<Assessment> retValue = controller.getAssessments(null, null, null, null, null, "false");
+        assertSame(retValue, page);
+    }
+
     @Test(expectedExceptions = UnauthorizedException.class, 
             expectedExceptionsMessageRegExp = SHARED_ASSESSMENTS_ERROR)
     public void getAssessmentsRejectsSharedAppContext() {
         session.setAppId(SHARED_APP_ID);
         doReturn(session).when(controller).getAuthenticatedSession(DEVELOPER, STUDY_DESIGNER);
         
-        controller.getAssessments(null, null, null, null);
+        controller.getAssessments(null, null, null, null, null, null);
     }
     
     @Test
@@ -6,6 +6,7 @@ import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
+import static org.sagebionetworks.bridge.TestUtils.toJson;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 
@@ -168,7 +169,7 @@ public class HealthDataControllerTest extends Mockito {
                 ImmutableList.of(record1, record2));
 
         // Execute and verify.
-        String json = controller.getRecordsByCreatedOn(CREATED_ON_STR, CREATED_ON_END_STR);
+        String json = toJson(controller.getRecordsByCreatedOn(CREATED_ON_STR, CREATED_ON_END_STR));
 
         DateTimeRangeResourceList<HealthDataRecord> recordResourceList = BridgeObjectMapper.get().readValue(
                 json, HealthDataController.RECORD_RESOURCE_LIST_TYPE_REF);
@@ -36,10 +36,12 @@ import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
 import static org.sagebionetworks.bridge.TestUtils.createJson;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
+import static org.sagebionetworks.bridge.TestUtils.toJson;
 import static org.sagebionetworks.bridge.models.accounts.AccountStatus.ENABLED;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.ALL_QUALIFIED_RESEARCHERS;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.NO_SHARING;
 import static org.sagebionetworks.bridge.models.accounts.SharingScope.SPONSORS_AND_PARTNERS;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.PARTICIPANT_SEARCH;
 import static org.sagebionetworks.bridge.models.sms.SmsType.PROMOTIONAL;
 import static org.sagebionetworks.bridge.spring.controllers.StudyParticipantController.INSTALL_LINK_SEND_MSG;
 import static org.testng.Assert.assertEquals;
@@ -132,6 +134,7 @@ import org.sagebionetworks.bridge.services.ConsentService;
 import org.sagebionetworks.bridge.services.EnrollmentService;
 import org.sagebionetworks.bridge.services.NotificationTopicService;
 import org.sagebionetworks.bridge.services.ParticipantService;
+import org.sagebionetworks.bridge.services.RateLimiterService;
 import org.sagebionetworks.bridge.services.RequestInfoService;
 import org.sagebionetworks.bridge.services.SessionUpdateService;
 import org.sagebionetworks.bridge.services.SponsorService;
@@ -187,6 +190,9 @@ public class ParticipantControllerTest extends Mockito {
 
     @Mock
     AppService mockAppService;
+
+    @Mock
+    RateLimiterService mockRateLimiterService;
     
     @Mock
     AccountService mockAccountService;
@@ -1296,8 +1302,8 @@ public class ParticipantControllerTest extends Mockito {
         doReturn(createActivityResultsV2("offsetKey", 15)).when(mockParticipantService).getActivityHistory(eq(app),
                 eq(TEST_USER_ID), eq(ActivityType.SURVEY), eq("referentGuid"), any(), any(), eq("offsetKey"), eq(15));
 
-        String result = controller.getActivityHistoryV3(TEST_USER_ID, "surveys", "referentGuid", START_TIME.toString(),
-                END_TIME.toString(), "offsetKey", "15");
+        String result = toJson(controller.getActivityHistoryV3(TEST_USER_ID, "surveys", "referentGuid",
+                START_TIME.toString(), END_TIME.toString(), "offsetKey", "15"));
 
         JsonNode node = MAPPER.readTree(result);
         assertEquals(node.get("requestParams").get("pageSize").intValue(), 15);
@@ -1483,8 +1489,8 @@ public class ParticipantControllerTest extends Mockito {
         when(mockParticipantService.getActivityHistory(eq(app), eq(TEST_USER_ID), eq(ActivityType.TASK), any(), any(),
                 any(), eq("asdf"), eq(50))).thenReturn(cursor);
 
-        String result = controller.getActivityHistoryForWorkerV3(TEST_APP_ID, TEST_USER_ID, "tasks",
-                START_TIME.toString(), END_TIME.toString(), null, "asdf", "50");
+        String result = toJson(controller.getActivityHistoryForWorkerV3(TEST_APP_ID, TEST_USER_ID, "tasks",
+                START_TIME.toString(), END_TIME.toString(), null, "asdf", "50"));
 
         verify(mockParticipantService).getActivityHistory(eq(app), eq(TEST_USER_ID), eq(ActivityType.TASK), any(), any(),
                 any(), eq("asdf"), eq(50));
@@ -1564,6 +1570,7 @@ public class ParticipantControllerTest extends Mockito {
 
         assertEquals(result.getItems().size(), 3);
 
+        verify(mockRateLimiterService).checkRateLimit(TEST_APP_ID, TEST_USER_ID, PARTICIPANT_SEARCH);
         verify(mockParticipantService).getPagedAccountSummaries(eq(app), searchCaptor.capture());
 
         AccountSummarySearch search = searchCaptor.getValue();
@@ -13,6 +13,7 @@ import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertDelete;
 import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
+import static org.sagebionetworks.bridge.models.accounts.AccountFetchProfile.AUTH;
 import static org.sagebionetworks.bridge.models.reports.ReportType.PARTICIPANT;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
@@ -67,6 +68,7 @@ import org.sagebionetworks.bridge.models.reports.ReportIndex;
 import org.sagebionetworks.bridge.models.reports.ReportType;
 import org.sagebionetworks.bridge.models.subpopulations.SubpopulationGuid;
 import org.sagebionetworks.bridge.services.AccountService;
+import org.sagebionetworks.bridge.services.RateLimiterService;
 import org.sagebionetworks.bridge.services.ReportService;
 import org.sagebionetworks.bridge.services.AppService;
 
@@ -91,6 +93,9 @@ public class ParticipantReportControllerTest extends Mockito {
     
     @Mock
     AppService mockAppService;
+
+    @Mock
+    RateLimiterService mockRateLimiterService;
     
     @Mock
     AccountService mockAccountService;
@@ -142,7 +147,7 @@ public class ParticipantReportControllerTest extends Mockito {
         doReturn(app).when(mockAppService).getApp(TEST_APP_ID);
         doReturn(OTHER_PARTICIPANT_ID).when(mockOtherAccount).getId();
         doReturn(OTHER_PARTICIPANT_HEALTH_CODE).when(mockOtherAccount).getHealthCode();
-        doReturn(Optional.of(mockOtherAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID);
+        doReturn(Optional.of(mockOtherAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID, AUTH);
         doReturn(HEALTH_CODE).when(mockAccount).getHealthCode();
         doReturn(TEST_USER_ID).when(mockAccount).getId();
         doReturn(session).when(controller).getSessionIfItExists();
@@ -237,7 +242,7 @@ public class ParticipantReportControllerTest extends Mockito {
                 .withRoles(Sets.newHashSet(RESEARCHER)).build();
         session.setParticipant(participant);
         
-        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID);
+        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID, AUTH);
         
         doReturn(makePagedResults(START_TIME, END_TIME, OFFSET_KEY, PAGE_SIZE_INT)).when(mockReportService)
                 .getParticipantReportV4(session.getAppId(), TEST_USER_ID, REPORT_ID, HEALTH_CODE, START_TIME, END_TIME,
@@ -252,7 +257,7 @@ public class ParticipantReportControllerTest extends Mockito {
     @Test
     public void getParticipantReportForWorkerV4_DefaultParams() throws Exception {
         // Mock dependencies
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockAccount));
 
         ForwardCursorPagedResourceList<ReportData> expectedPage = makePagedResults(START_TIME, END_TIME, null,
                 API_DEFAULT_PAGE_SIZE);
@@ -273,7 +278,7 @@ public class ParticipantReportControllerTest extends Mockito {
     @Test
     public void getParticipantReportForWorkerV4_OptionalParams() throws Exception {
         // Mock dependencies
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockAccount));
 
         ForwardCursorPagedResourceList<ReportData> expectedPage = makePagedResults(START_TIME, END_TIME, OFFSET_KEY,
                 PAGE_SIZE_INT);
@@ -297,7 +302,7 @@ public class ParticipantReportControllerTest extends Mockito {
         RequestContext.set(new RequestContext.Builder()
                 .withCallerRoles(ImmutableSet.of(RESEARCHER)).build());
         
-        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID);
+        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID, AUTH);
         
         doReturn(makeResults(START_DATE, END_DATE)).when(mockReportService).getParticipantReport(session.getAppId(),
                 TEST_USER_ID, REPORT_ID, HEALTH_CODE, START_DATE, END_DATE);
@@ -318,7 +323,7 @@ public class ParticipantReportControllerTest extends Mockito {
         session.setParticipant(participant);
 
         when(mockAccount.getId()).thenReturn(OTHER_PARTICIPANT_ID);
-        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID);
+        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID, AUTH);
         
         doReturn(makeResults(START_DATE, END_DATE)).when(mockReportService).getParticipantReport(session.getAppId(),
                 TEST_USER_ID, REPORT_ID, HEALTH_CODE, START_DATE, END_DATE);
@@ -334,7 +339,7 @@ public class ParticipantReportControllerTest extends Mockito {
                 .withId(OTHER_PARTICIPANT_ID).withRoles(Sets.newHashSet(DEVELOPER)).build();
         session.setParticipant(participant);
         
-        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID);
+        doReturn(Optional.of(mockAccount)).when(mockAccountService).getAccount(OTHER_ACCOUNT_ID, AUTH);
         
         doReturn(makePagedResults(START_TIME, END_TIME, OFFSET_KEY, PAGE_SIZE_INT)).when(mockReportService)
                 .getParticipantReportV4(session.getAppId(), TEST_USER_ID, REPORT_ID, HEALTH_CODE, START_TIME, END_TIME,
@@ -350,7 +355,7 @@ public class ParticipantReportControllerTest extends Mockito {
     @Test
     public void getParticipantReportForWorker_DefaultParams() throws Exception {
         // Mock dependencies
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockAccount));
 
         DateRangeResourceList<ReportData> expectedPage = makeResults(START_DATE, END_DATE);
         doReturn(expectedPage).when(mockReportService).getParticipantReport(TEST_APP_ID, TEST_USER_ID, REPORT_ID,
@@ -368,7 +373,7 @@ public class ParticipantReportControllerTest extends Mockito {
     @Test
     public void getParticipantReportForWorker_OptionalParams() throws Exception {
         // Mock dependencies
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockAccount));
 
         DateRangeResourceList<ReportData> expectedPage = makeResults(START_DATE, END_DATE);
         doReturn(expectedPage).when(mockReportService).getParticipantReport(TEST_APP_ID, TEST_USER_ID, REPORT_ID,
@@ -387,7 +392,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void saveParticipantReportData() throws Exception {
         String json = TestUtils.createJson("{'date':'2015-02-12','data':{'field1':'Last','field2':'Name'}}");
         mockRequestBody(mockRequest, json);
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockOtherAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockOtherAccount));
 
         StatusMessage result = controller.saveParticipantReport(OTHER_PARTICIPANT_ID, REPORT_ID);
         assertEquals(result.getMessage(), "Report data saved.");
@@ -405,7 +410,7 @@ public class ParticipantReportControllerTest extends Mockito {
             expectedExceptionsMessageRegExp = ".*Error parsing JSON in request body, fields:.*")
     public void saveParticipantReportForWorkerBadJson() throws Exception {
         mockRequestBody(mockRequest, "\"+1234567890\"");
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockAccount));
 
         controller.saveParticipantReport(TEST_USER_ID, REPORT_ID);
     }
@@ -415,7 +420,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void saveParticipantEmptyReportData() throws Exception {
         String json = TestUtils.createJson("{'date':'2015-02-12','data':{}}");
         mockRequestBody(mockRequest, json);
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockAccount));
 
         StatusMessage result = controller.saveParticipantReport(OTHER_PARTICIPANT_ID, REPORT_ID);
         assertEquals(result.getMessage(), "Report data saved.");
@@ -489,7 +494,7 @@ public class ParticipantReportControllerTest extends Mockito {
     
     @Test
     public void deleteParticipantReportData() throws Exception {
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockOtherAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockOtherAccount));
         
         StatusMessage result = controller.deleteParticipantReport(OTHER_PARTICIPANT_ID, REPORT_ID);
         assertEquals(result.getMessage(), "Report deleted.");
@@ -500,7 +505,7 @@ public class ParticipantReportControllerTest extends Mockito {
     
     @Test
     public void deleteParticipantReportDataRecord() throws Exception {
-        when(mockAccountService.getAccount(any())).thenReturn(Optional.of(mockOtherAccount));
+        when(mockAccountService.getAccount(any(), eq(AUTH))).thenReturn(Optional.of(mockOtherAccount));
         
         StatusMessage result = controller.deleteParticipantReportRecord(OTHER_PARTICIPANT_ID, REPORT_ID, "2014-05-10");
         assertEquals(result.getMessage(), "Report record deleted.");
@@ -545,7 +550,7 @@ public class ParticipantReportControllerTest extends Mockito {
         RequestContext.set(new RequestContext.Builder()
                 .withCallerRoles(ImmutableSet.of(RESEARCHER)).build());
 
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
         
         controller.getParticipantReport(TEST_USER_ID, REPORT_ID, null, null);
@@ -556,7 +561,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void getParticipantReportForWorkerAccountNotFound() {
         doReturn(session).when(controller).getAuthenticatedSession(WORKER);
 
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
         
         controller.getParticipantReportForWorker(TEST_APP_ID, TEST_USER_ID, REPORT_ID, null, null);
@@ -567,7 +572,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void saveParticipantReportAccountNotFound() {
         doReturn(session).when(controller).getAuthenticatedSession(DEVELOPER);
         
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
 
         controller.saveParticipantReport(TEST_USER_ID, REPORT_ID);
@@ -578,7 +583,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void deleteParticipantReportAccountNotFound() {
         doReturn(session).when(controller).getAuthenticatedSession(DEVELOPER, WORKER);
         
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
 
         controller.deleteParticipantReport(TEST_USER_ID, REPORT_ID);
@@ -589,7 +594,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void deleteParticipantReportRecordAccountNotFound() {
         doReturn(session).when(controller).getAuthenticatedSession(DEVELOPER, WORKER);
         
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
 
         controller.deleteParticipantReportRecord(TEST_USER_ID, REPORT_ID, null);
@@ -603,7 +608,7 @@ public class ParticipantReportControllerTest extends Mockito {
         
         doReturn(session).when(controller).getAdministrativeSession();
         
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
         
         controller.getParticipantReportV4(TEST_USER_ID, REPORT_ID, null, null, null, null);
@@ -614,7 +619,7 @@ public class ParticipantReportControllerTest extends Mockito {
     public void getParticipantReportForWorkerV4AccountNotFound() {
         doReturn(session).when(controller).getAuthenticatedSession(WORKER);
         
-        when(mockAccountService.getAccount(any()))
+        when(mockAccountService.getAccount(any(), eq(AUTH)))
             .thenThrow(new EntityNotFoundException(Account.class));
 
         controller.getParticipantReportForWorkerV4(TEST_APP_ID, TEST_USER_ID, REPORT_ID, null, null, null, null);
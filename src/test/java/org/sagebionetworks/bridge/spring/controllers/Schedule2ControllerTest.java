@@ -11,6 +11,7 @@ import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertDelete;
 import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
+import static org.sagebionetworks.bridge.models.ThrottleRequestType.TIMELINE_RETRIEVAL;
 import static org.sagebionetworks.bridge.models.studies.StudyPhase.DESIGN;
 import static org.sagebionetworks.bridge.models.studies.StudyPhase.RECRUITMENT;
 import static org.testng.Assert.assertEquals;
@@ -38,12 +39,14 @@ import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
 import org.sagebionetworks.bridge.exceptions.EntityNotFoundException;
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
 import org.sagebionetworks.bridge.models.StatusMessage;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.schedules2.Schedule2;
 import org.sagebionetworks.bridge.models.schedules2.timelines.Timeline;
 import org.sagebionetworks.bridge.models.studies.Study;
 import org.sagebionetworks.bridge.services.Schedule2Service;
+import org.sagebionetworks.bridge.services.RateLimiterService;
 import org.sagebionetworks.bridge.services.StudyService;
 
 public class Schedule2ControllerTest extends Mockito {
@@ -53,6 +56,9 @@ public class Schedule2ControllerTest extends Mockito {
     
     @Mock
     StudyService mockStudyService;
+
+    @Mock
+    RateLimiterService mockRateLimiterService;
     
     @Mock
     HttpServletRequest mockRequest;
@@ -217,6 +223,17 @@ public class Schedule2ControllerTest extends Mockito {
         
         Timeline retValue = controller.getTimeline(TEST_STUDY_ID);
         assertEquals(retValue, timeline);
+        
+        verify(mockRateLimiterService).checkRateLimit(eq(TEST_APP_ID), any(), eq(TIMELINE_RETRIEVAL));
+    }
+    
+    @Test(expectedExceptions = LimitExceededException.class)
+    public void getTimeline_rateLimited() {
+        doReturn(session).when(controller).getAdministrativeSession();
+        doThrow(new LimitExceededException("Too many requests", 30)).when(mockRateLimiterService)
+                .checkRateLimit(eq(TEST_APP_ID), any(), eq(TIMELINE_RETRIEVAL));
+        
+        controller.getTimeline(TEST_STUDY_ID);
     }
     
     @Test(expectedExceptions = EntityNotFoundException.class)
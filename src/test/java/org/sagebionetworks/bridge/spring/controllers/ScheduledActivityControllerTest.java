@@ -13,6 +13,7 @@ import static org.sagebionetworks.bridge.TestUtils.assertGet;
 import static org.sagebionetworks.bridge.TestUtils.assertPost;
 import static org.sagebionetworks.bridge.TestUtils.mockEditAccount;
 import static org.sagebionetworks.bridge.TestUtils.mockRequestBody;
+import static org.sagebionetworks.bridge.TestUtils.toJson;
 import static org.sagebionetworks.bridge.config.Environment.UAT;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
@@ -306,7 +307,7 @@ public class ScheduledActivityControllerTest extends Mockito {
     public void getScheduledActivitiesAsScheduledActivitiesReturnsCorrectType() throws Exception {
         DateTime now = DateTime.parse("2011-05-13T12:37:31.985+03:00");
         
-        String result = controller.getScheduledActivities(now.toString(), null, null, null);
+        String result = toJson(controller.getScheduledActivities(now.toString(), null, null, null));
 
         JsonNode results = BridgeObjectMapper.get().readTree(result);
         ArrayNode items = (ArrayNode)results.get("items");
@@ -423,8 +424,8 @@ public class ScheduledActivityControllerTest extends Mockito {
         doReturn(createActivityResultsV2(20, "offsetKey")).when(mockScheduledActivityService).getActivityHistory(
                 eq(HEALTH_CODE), eq(ActivityType.TASK), eq("referentGuid"), any(), any(), eq("offsetKey"), eq(20));
         
-        String result = controller.getActivityHistoryV3WithActivityType("tasks", "referentGuid", STARTS_ON.toString(),
-                ENDS_ON.toString(), "offsetKey", "20");
+        String result = toJson(controller.getActivityHistoryV3WithActivityType("tasks", "referentGuid",
+                STARTS_ON.toString(), ENDS_ON.toString(), "offsetKey", "20"));
         
         ForwardCursorPagedResourceList<ScheduledActivity> page = BridgeObjectMapper.get()
                 .readValue(result, FORWARD_CURSOR_PAGED_ACTIVITIES_REF);
@@ -522,7 +523,7 @@ public class ScheduledActivityControllerTest extends Mockito {
 
         mockEditAccount(mockAccountService, mockAccount);
         
-        String result = controller.getScheduledActivitiesByDateRange(startsOn.toString(), endsOn.toString());
+        String result = toJson(controller.getScheduledActivitiesByDateRange(startsOn.toString(), endsOn.toString()));
         
         JsonNode node = BridgeObjectMapper.get().readTree(result);
         assertEquals(node.get("startTime").textValue(), startsOn.toString());
@@ -0,0 +1,56 @@
+package org.sagebionetworks.bridge.spring.controllers;
+
+import static org.sagebionetworks.bridge.Roles.SUPERADMIN;
+import static org.sagebionetworks.bridge.TestUtils.assertContentType;
+import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
+import static org.sagebionetworks.bridge.TestUtils.assertGet;
+import static org.testng.Assert.assertEquals;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.exceptions.UnauthorizedException;
+import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.sagebionetworks.bridge.services.ServerMetricsService;
+
+public class ServerMetricsControllerTest extends Mockito {
+
+    @Mock
+    ServerMetricsService mockServerMetricsService;
+    
+    @InjectMocks
+    @Spy
+    ServerMetricsController controller;
+    
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+    }
+    
+    @Test
+    public void verifyAnnotations() throws Exception {
+        assertCrossOrigin(ServerMetricsController.class);
+        assertGet(ServerMetricsController.class, "getMetrics", "/v3/metrics");
+        assertContentType(ServerMetricsController.class, "getMetrics", ServerMetricsController.PROMETHEUS_TEXT);
+    }
+    
+    @Test
+    public void getMetrics() {
+        doReturn(new UserSession()).when(controller).getAuthenticatedSession(SUPERADMIN);
+        when(mockServerMetricsService.getPrometheusText()).thenReturn("bridge_jvm_threads 10\n");
+        
+        assertEquals(controller.getMetrics(), "bridge_jvm_threads 10\n");
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void getMetricsRequiresSuperadmin() {
+        doThrow(new UnauthorizedException()).when(controller).getAuthenticatedSession(SUPERADMIN);
+        
+        controller.getMetrics();
+    }
+}
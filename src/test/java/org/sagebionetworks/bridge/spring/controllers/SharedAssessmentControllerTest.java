@@ -31,7 +31,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import org.sagebionetworks.bridge.exceptions.BadRequestException;
+import org.sagebionetworks.bridge.models.ForwardCursorPagedResourceList;
 import org.sagebionetworks.bridge.models.PagedResourceList;
+import org.sagebionetworks.bridge.models.ResourceList;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.assessments.Assessment;
 import org.sagebionetworks.bridge.models.assessments.AssessmentTest;
@@ -99,7 +101,8 @@ public class SharedAssessmentControllerTest extends Mockito {
         PagedResourceList<Assessment> page = new PagedResourceList<>(ImmutableList.of(new Assessment()), 100);
         when(mockService.getAssessments(SHARED_APP_ID, null, 10, 25, STRING_TAGS, true)).thenReturn(page);
 
-        PagedResourceList<Assessment> retValue = controller.getSharedAssessments("10", "25", STRING_TAGS, "true");
+        ResourceList<Assessment> retValue = controller.getSharedAssessments("10", "25", STRING_TAGS, "true",
+                null, null);
         assertSame(retValue, page);
 
         verify(mockService).getAssessments(SHARED_APP_ID, null, 10, 25, STRING_TAGS, true);
@@ -111,12 +114,37 @@ public class SharedAssessmentControllerTest extends Mockito {
         when(mockService.getAssessments(SHARED_APP_ID, null, 0, API_DEFAULT_PAGE_SIZE, null, false))
                 .thenReturn(page);
 
-        PagedResourceList<Assessment> retValue = controller.getSharedAssessments(null, null, null, null);
+        ResourceList<Assessment> retValue = controller.getSharedAssessments(null, null, null, null, null, null);
         assertSame(retValue, page);
 
         verify(mockService).getAssessments(SHARED_APP_ID, null, 0, API_DEFAULT_PAGE_SIZE, null, false);
     }
 
+    @Test
+    public void getSharedAssessmentsByOffsetKey() {
+        ForwardCursorPagedResourceList<Assessment> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(new Assessment()), "nextKey");
+        when(mockService.getAssessmentsByOffsetKey(SHARED_APP_ID, null, "offsetKey", 25, STRING_TAGS, true))
+                .thenReturn(page);
+
+        ResourceList<Assessment> retValue = controller.getSharedAssessments(null, "25", STRING_TAGS, "true",
+                "offsetKey", null);
+        assertSame(retValue, page);
+
+        verify(mockService, never()).getAssessments(any(), any(), anyInt(), anyInt(), any(), anyBoolean());
+    }
+
+    @Test
+    public void getSharedAssessmentsWithoutTotal() {
+        ForwardCursorPagedResourceList<Assessment> page = new ForwardCursorPagedResourceList<>(
+                ImmutableList.of(), null);
+        when(mockService.getAssessmentsByOffsetKey(SHARED_APP_ID, null, null, API_DEFAULT_PAGE_SIZE, null, false))
+                .thenReturn(page);
+
+        ResourceList<Assessment> retValue = controller.getSharedAssessments(null, null, null, null, null, "false");
+        assertSame(retValue, page);
+    }
+
     @Test
     public void getSharedAssessmentByGuid() {
         Assessment assessment = AssessmentTest.createAssessment();
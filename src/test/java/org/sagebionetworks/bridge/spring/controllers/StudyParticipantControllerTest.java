@@ -12,6 +12,7 @@ import static org.sagebionetworks.bridge.Roles.WORKER;
 import static org.sagebionetworks.bridge.TestConstants.ACCOUNT_ID;
 import static org.sagebionetworks.bridge.TestConstants.CREATED_ON;
 import static org.sagebionetworks.bridge.TestConstants.EMAIL;
+import static org.sagebionetworks.bridge.TestConstants.GUID;
 import static org.sagebionetworks.bridge.TestConstants.HEALTH_CODE;
 import static org.sagebionetworks.bridge.TestConstants.IDENTIFIER;
 import static org.sagebionetworks.bridge.TestConstants.LANGUAGES;
@@ -22,6 +23,7 @@ import static org.sagebionetworks.bridge.TestConstants.SCHEDULE_GUID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_APP_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_STUDY_ID;
 import static org.sagebionetworks.bridge.TestConstants.TEST_USER_ID;
+import static org.sagebionetworks.bridge.TestUtils.assertAccept;
 import static org.sagebionetworks.bridge.TestUtils.assertCreate;
 import static org.sagebionetworks.bridge.TestUtils.assertCrossOrigin;
 import static org.sagebionetworks.bridge.TestUtils.assertDelete;
@@ -51,6 +53,7 @@ import static org.testng.Assert.assertTrue;
 import java.util.List;
 import java.util.Optional;
 
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -91,11 +94,13 @@ import org.sagebionetworks.bridge.models.accounts.Account;
 import org.sagebionetworks.bridge.models.accounts.AccountId;
 import org.sagebionetworks.bridge.models.accounts.AccountSummary;
 import org.sagebionetworks.bridge.models.accounts.IdentifierHolder;
+import org.sagebionetworks.bridge.models.accounts.ParticipantImport;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEvent;
 import org.sagebionetworks.bridge.models.activities.StudyActivityEventIdsMap;
 import org.sagebionetworks.bridge.models.apps.App;
+import org.sagebionetworks.bridge.models.notifications.NotificationBroadcast;
 import org.sagebionetworks.bridge.models.notifications.NotificationMessage;
 import org.sagebionetworks.bridge.models.notifications.NotificationRegistration;
 import org.sagebionetworks.bridge.models.reports.ReportData;
@@ -113,7 +118,10 @@ import org.sagebionetworks.bridge.services.AccountService;
 import org.sagebionetworks.bridge.services.AppService;
 import org.sagebionetworks.bridge.services.AuthenticationService.ChannelType;
 import org.sagebionetworks.bridge.services.EnrollmentService;
+import org.sagebionetworks.bridge.services.NotificationBroadcastService;
+import org.sagebionetworks.bridge.services.ParticipantImportService;
 import org.sagebionetworks.bridge.services.ParticipantService;
+import org.sagebionetworks.bridge.services.RateLimiterService;
 import org.sagebionetworks.bridge.services.ReportService;
 import org.sagebionetworks.bridge.services.RequestInfoService;
 import org.sagebionetworks.bridge.services.Schedule2Service;
@@ -124,6 +132,9 @@ import org.sagebionetworks.bridge.services.UserAdminService;
 public class StudyParticipantControllerTest extends Mockito {
     @Mock
     AppService mockAppService;
+
+    @Mock
+    RateLimiterService mockRateLimiterService;
     
     @Mock
     ParticipantService mockParticipantService;
@@ -155,6 +166,12 @@ public class StudyParticipantControllerTest extends Mockito {
     @Mock
     ReportService mockReportService;
     
+    @Mock
+    ParticipantImportService mockParticipantImportService;
+    
+    @Mock
+    NotificationBroadcastService mockNotificationBroadcastService;
+    
     @Mock
     HttpServletRequest mockRequest;
     
@@ -231,6 +248,12 @@ public class StudyParticipantControllerTest extends Mockito {
         assertGet(StudyParticipantController.class, "getEnrollmentsForUser");
         assertPost(StudyParticipantController.class, "searchForAccountSummaries");
         assertCreate(StudyParticipantController.class, "createParticipant");
+        assertAccept(StudyParticipantController.class, "importParticipants");
+        assertGet(StudyParticipantController.class, "getParticipantImport");
+        assertAccept(StudyParticipantController.class, "startNotificationBroadcast");
+        assertGet(StudyParticipantController.class, "getNotificationBroadcast");
+        assertAccept(StudyParticipantController.class, "pauseNotificationBroadcast");
+        assertAccept(StudyParticipantController.class, "resumeNotificationBroadcast");
         assertGet(StudyParticipantController.class, "getParticipant");
         assertPost(StudyParticipantController.class, "requestParticipantRoster");
         assertGet(StudyParticipantController.class, "getRequestInfo");
@@ -606,6 +629,139 @@ public class StudyParticipantControllerTest extends Mockito {
         assertTrue(en.isConsentRequired());
     }
 
+    @Test
+    public void importParticipantsJson() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        ServletInputStream mockInputStream = mock(ServletInputStream.class);
+        when(mockRequest.getInputStream()).thenReturn(mockInputStream);
+        when(mockRequest.getContentType()).thenReturn("application/json");
+        
+        ParticipantImport participantImport = new ParticipantImport();
+        when(mockParticipantImportService.importParticipants(app, TEST_STUDY_ID, mockInputStream, false))
+                .thenReturn(participantImport);
+        
+        ParticipantImport retValue = controller.importParticipants(TEST_STUDY_ID);
+        assertSame(retValue, participantImport);
+    }
+    
+    @Test
+    public void importParticipantsCsv() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        ServletInputStream mockInputStream = mock(ServletInputStream.class);
+        when(mockRequest.getInputStream()).thenReturn(mockInputStream);
+        when(mockRequest.getContentType()).thenReturn("text/csv; charset=UTF-8");
+        
+        ParticipantImport participantImport = new ParticipantImport();
+        when(mockParticipantImportService.importParticipants(app, TEST_STUDY_ID, mockInputStream, true))
+                .thenReturn(participantImport);
+        
+        ParticipantImport retValue = controller.importParticipants(TEST_STUDY_ID);
+        assertSame(retValue, participantImport);
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void importParticipantsNotAuthorized() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(STUDY_DESIGNER))
+                .build());
+        
+        controller.importParticipants(TEST_STUDY_ID);
+    }
+    
+    @Test
+    public void getParticipantImport() {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        ParticipantImport participantImport = new ParticipantImport();
+        when(mockParticipantImportService.getParticipantImport(TEST_APP_ID, TEST_STUDY_ID, GUID))
+                .thenReturn(participantImport);
+        
+        ParticipantImport retValue = controller.getParticipantImport(TEST_STUDY_ID, GUID);
+        assertSame(retValue, participantImport);
+    }
+    
+    @Test
+    public void startNotificationBroadcast() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        broadcast.setMessage(new NotificationMessage.Builder().withSubject("subject").withMessage("message").build());
+        broadcast.setAllOfGroups(ImmutableSet.of("group1"));
+        mockRequestBody(mockRequest, broadcast);
+        
+        NotificationBroadcast started = new NotificationBroadcast();
+        when(mockNotificationBroadcastService.startBroadcast(eq(TEST_APP_ID), eq(TEST_STUDY_ID), any()))
+                .thenReturn(started);
+        
+        NotificationBroadcast retValue = controller.startNotificationBroadcast(TEST_STUDY_ID);
+        assertSame(retValue, started);
+        
+        ArgumentCaptor<NotificationBroadcast> broadcastCaptor = ArgumentCaptor.forClass(NotificationBroadcast.class);
+        verify(mockNotificationBroadcastService).startBroadcast(eq(TEST_APP_ID), eq(TEST_STUDY_ID),
+                broadcastCaptor.capture());
+        assertEquals(broadcastCaptor.getValue().getMessage().getSubject(), "subject");
+        assertEquals(broadcastCaptor.getValue().getMessage().getMessage(), "message");
+        assertEquals(broadcastCaptor.getValue().getAllOfGroups(), ImmutableSet.of("group1"));
+    }
+    
+    @Test(expectedExceptions = UnauthorizedException.class)
+    public void startNotificationBroadcastNotAuthorized() throws Exception {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(STUDY_DESIGNER))
+                .build());
+        
+        controller.startNotificationBroadcast(TEST_STUDY_ID);
+    }
+    
+    @Test
+    public void getNotificationBroadcast() {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        when(mockNotificationBroadcastService.getBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID)).thenReturn(broadcast);
+        
+        NotificationBroadcast retValue = controller.getNotificationBroadcast(TEST_STUDY_ID, GUID);
+        assertSame(retValue, broadcast);
+    }
+    
+    @Test
+    public void pauseNotificationBroadcast() {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        when(mockNotificationBroadcastService.pauseBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID)).thenReturn(broadcast);
+        
+        NotificationBroadcast retValue = controller.pauseNotificationBroadcast(TEST_STUDY_ID, GUID);
+        assertSame(retValue, broadcast);
+    }
+    
+    @Test
+    public void resumeNotificationBroadcast() {
+        RequestContext.set(new RequestContext.Builder()
+                .withCallerRoles(ImmutableSet.of(ADMIN))
+                .build());
+        
+        NotificationBroadcast broadcast = new NotificationBroadcast();
+        when(mockNotificationBroadcastService.resumeBroadcast(TEST_APP_ID, TEST_STUDY_ID, GUID)).thenReturn(broadcast);
+        
+        NotificationBroadcast retValue = controller.resumeNotificationBroadcast(TEST_STUDY_ID, GUID);
+        assertSame(retValue, broadcast);
+    }
+    
     @Test
     public void getParticipantIncludeConsents() throws Exception {
         RequestContext.set(new RequestContext.Builder()
@@ -56,6 +56,7 @@ import org.sagebionetworks.bridge.models.upload.UploadValidationStatus;
 import org.sagebionetworks.bridge.models.upload.UploadView;
 import org.sagebionetworks.bridge.services.AccountService;
 import org.sagebionetworks.bridge.services.HealthDataService;
+import org.sagebionetworks.bridge.services.RateLimiterService;
 import org.sagebionetworks.bridge.services.RequestInfoService;
 import org.sagebionetworks.bridge.services.UploadService;
 
@@ -76,6 +77,9 @@ public class UploadControllerTest extends Mockito {
     
     @Mock
     HealthCodeDao mockHealthCodeDao;
+
+    @Mock
+    RateLimiterService mockRateLimiterService;
     
     @Mock
     AccountService mockAccountService;
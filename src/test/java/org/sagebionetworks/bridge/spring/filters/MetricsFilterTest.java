@@ -21,6 +21,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
+import org.springframework.web.servlet.HandlerMapping;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -28,6 +29,7 @@ import org.testng.annotations.Test;
 import org.sagebionetworks.bridge.RequestContext;
 import org.sagebionetworks.bridge.TestConstants;
 import org.sagebionetworks.bridge.models.Metrics;
+import org.sagebionetworks.bridge.services.ServerMetricsService;
 
 public class MetricsFilterTest extends Mockito {
 
@@ -40,6 +42,9 @@ public class MetricsFilterTest extends Mockito {
     @Mock
     private FilterChain mockFilterChain;
     
+    @Mock
+    private ServerMetricsService mockServerMetricsService;
+    
     @InjectMocks
     private MetricsFilter filter = new MetricsFilter();
 
@@ -92,6 +97,47 @@ public class MetricsFilterTest extends Mockito {
         verify(mockFilterChain).doFilter(mockRequest, mockResponse);
     }
 
+    @Test
+    public void latencyRecordedByRoute() throws Exception {
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockRequest.getServletPath()).thenReturn("/v5/studies/study1");
+        when(mockRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .thenReturn("/v5/studies/{studyId}");
+        when(mockResponse.getStatus()).thenReturn(200);
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        Long elapsedMillis = RequestContext.get().getMetrics().getElapsedMillis();
+        verify(mockServerMetricsService).recordRequest("GET", "/v5/studies/{studyId}", 200, elapsedMillis);
+    }
+
+    @Test
+    public void slowRequestLogsSpans() throws Exception {
+        filter.setTraceThresholdMillis(1L);
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResponse.getStatus()).thenReturn(200);
+        RequestContext.get().getMetrics().recordSpan("mysql", "HibernateAccountDao.getAccount", 10L);
+        // The request takes one second
+        doAnswer(invocation -> {
+            DateTimeUtils.setCurrentMillisFixed(TIMESTAMP.getMillis() + 1000L);
+            return null;
+        }).when(mockFilterChain).doFilter(mockRequest, mockResponse);
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockServerMetricsService).recordRequest("GET", null, 200, 1000L);
+    }
+
+    @Test
+    public void latencyNotRecordedForPassthrough() throws Exception {
+        when(mockRequest.getMethod()).thenReturn("GET");
+        when(mockResponse.getHeader(MetricsFilter.X_PASSTHROUGH)).thenReturn("true");
+
+        filter.doFilter(mockRequest, mockResponse, mockFilterChain);
+
+        verify(mockServerMetricsService, never()).recordRequest(any(), any(), anyInt(), anyLong());
+    }
+
     @Test
     public void metricsUserSessionTest() throws Exception {
         StudyParticipant participant = new StudyParticipant.Builder().withId("participant").build();
@@ -43,6 +43,7 @@ import org.sagebionetworks.bridge.dynamodb.DynamoApp;
 import org.sagebionetworks.bridge.exceptions.BridgeServiceException;
 import org.sagebionetworks.bridge.exceptions.ConsentRequiredException;
 import org.sagebionetworks.bridge.exceptions.InvalidEntityException;
+import org.sagebionetworks.bridge.exceptions.LimitExceededException;
 import org.sagebionetworks.bridge.models.accounts.SharingScope;
 import org.sagebionetworks.bridge.models.accounts.StudyParticipant;
 import org.sagebionetworks.bridge.models.accounts.UserSession;
@@ -235,6 +236,29 @@ public class BridgeExceptionHandlerTest extends Mockito {
         assertEquals(node.get("type").textValue(), "BridgeServiceException");
     }
 
+    @Test
+    public void limitExceededExceptionIncludesRetryAfterHeader() throws Throwable {
+        LimitExceededException ex = new LimitExceededException("Too many requests", 30);
+        
+        ResponseEntity<String> response = handler.handleException(mockRequest, ex);
+        JsonNode node = new ObjectMapper().readTree(response.getBody());
+        
+        assertEquals(response.getStatusCodeValue(), 429);
+        assertEquals(response.getHeaders().getFirst("Retry-After"), "30");
+        assertEquals(node.get("message").textValue(), "Too many requests");
+        assertEquals(node.get("type").textValue(), "LimitExceededException");
+    }
+    
+    @Test
+    public void limitExceededExceptionWithoutRetryAfter() throws Throwable {
+        LimitExceededException ex = new LimitExceededException("Too many requests");
+        
+        ResponseEntity<String> response = handler.handleException(mockRequest, ex);
+        
+        assertEquals(response.getStatusCodeValue(), 429);
+        assertFalse(response.getHeaders().containsKey("Retry-After"));
+    }
+
     @Test
     public void bridgeValidationExceptionCorrectlyReported() throws Throwable {
         App app = new DynamoApp();
@@ -0,0 +1,135 @@
+package org.sagebionetworks.bridge.spring.interceptors;
+
+import static org.sagebionetworks.bridge.spring.interceptors.BackendCallTracer.DYNAMODB;
+import static org.sagebionetworks.bridge.spring.interceptors.BackendCallTracer.MYSQL;
+import static org.sagebionetworks.bridge.spring.interceptors.BackendCallTracer.OTHER;
+import static org.sagebionetworks.bridge.spring.interceptors.BackendCallTracer.REDIS;
+import static org.sagebionetworks.bridge.spring.interceptors.BackendCallTracer.S3;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.RequestContext;
+import org.sagebionetworks.bridge.dao.RequestInfoDao;
+import org.sagebionetworks.bridge.dynamodb.DynamoAppDao;
+import org.sagebionetworks.bridge.hibernate.HibernateRequestInfoDao;
+import org.sagebionetworks.bridge.models.RequestInfo;
+import org.sagebionetworks.bridge.redis.JedisOps;
+import org.sagebionetworks.bridge.s3.S3Helper;
+import org.sagebionetworks.bridge.services.ServerMetricsService;
+
+public class BackendCallTracerTest extends Mockito {
+    
+    @Mock
+    ServerMetricsService mockServerMetricsService;
+    
+    @Mock
+    RequestInfoDao mockRequestInfoDao;
+    
+    @InjectMocks
+    BackendCallTracer tracer;
+    
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        RequestContext.set(new RequestContext.Builder().withRequestId("request-id").build());
+    }
+    
+    @AfterMethod
+    public void afterMethod() {
+        RequestContext.set(null);
+    }
+    
+    @Test
+    public void getBackend() {
+        assertEquals(BackendCallTracer.getBackend(new HibernateRequestInfoDao()), MYSQL);
+        assertEquals(BackendCallTracer.getBackend(mockRequestInfoDao), OTHER);
+        assertEquals(BackendCallTracer.getBackend(new DynamoAppDao()), DYNAMODB);
+        assertEquals(BackendCallTracer.getBackend(mock(JedisOps.class)), REDIS);
+        assertEquals(BackendCallTracer.getBackend(new S3Helper()), S3);
+        assertNull(BackendCallTracer.getBackend(new Object()));
+    }
+    
+    @Test
+    public void untracedBeanIsNotProxied() {
+        Object bean = new Object();
+        assertSame(tracer.postProcessAfterInitialization(bean, "bean"), bean);
+    }
+    
+    @Test
+    public void callsAreRecorded() {
+        RequestInfo info = new RequestInfo.Builder().build();
+        when(mockRequestInfoDao.getRequestInfo("userId")).thenReturn(info);
+        HibernateTestDao dao = new HibernateTestDao(mockRequestInfoDao);
+        
+        HibernateTestDao proxy = (HibernateTestDao)tracer.postProcessAfterInitialization(dao, "dao");
+        assertNotSame(proxy, dao);
+        
+        // The proxy delegates to the original bean
+        assertSame(proxy.getRequestInfo("userId"), info);
+        
+        verify(mockServerMetricsService).recordBackendCall(eq(MYSQL), eq("HibernateTestDao.getRequestInfo"),
+                anyLong());
+        JsonNode backends = RequestContext.get().getMetrics().getJson().get("backends");
+        assertEquals(backends.get(MYSQL).get("calls").intValue(), 1);
+        assertTrue(backends.get(MYSQL).has("micros"));
+    }
+    
+    @Test
+    public void failedCallsAreRecorded() {
+        when(mockRequestInfoDao.getRequestInfo("userId")).thenThrow(new IllegalStateException());
+        HibernateTestDao dao = new HibernateTestDao(mockRequestInfoDao);
+        
+        HibernateTestDao proxy = (HibernateTestDao)tracer.postProcessAfterInitialization(dao, "dao");
+        try {
+            proxy.getRequestInfo("userId");
+            fail("Should have thrown exception");
+        } catch(IllegalStateException e) {
+        }
+        verify(mockServerMetricsService).recordBackendCall(eq(MYSQL), eq("HibernateTestDao.getRequestInfo"),
+                anyLong());
+    }
+    
+    @Test
+    public void callsOutsideOfRequestAreRecordedInRegistryOnly() {
+        RequestContext.set(null);
+        
+        tracer.recordCall(REDIS, "JedisOps.get", 2000000L);
+        
+        verify(mockServerMetricsService).recordBackendCall(REDIS, "JedisOps.get", 2L);
+    }
+    
+    // Named like the Hibernate DAOs, and delegates to a mock so calls through the proxy can be verified.
+    static class HibernateTestDao implements RequestInfoDao {
+        private RequestInfoDao delegate;
+        
+        HibernateTestDao(RequestInfoDao delegate) {
+            this.delegate = delegate;
+        }
+        @Override
+        public void updateRequestInfo(RequestInfo requestInfo) {
+            delegate.updateRequestInfo(requestInfo);
+        }
+        @Override
+        public RequestInfo getRequestInfo(String userId) {
+            return delegate.getRequestInfo(userId);
+        }
+        @Override
+        public void removeRequestInfo(String userId) {
+            delegate.removeRequestInfo(userId);
+        }
+    }
+}
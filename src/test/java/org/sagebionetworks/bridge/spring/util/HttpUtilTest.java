@@ -3,15 +3,21 @@ package org.sagebionetworks.bridge.spring.util;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
 
 import java.io.IOException;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.testng.annotations.Test;
 
+import org.sagebionetworks.bridge.TestUtils;
 import org.sagebionetworks.bridge.json.DefaultObjectMapper;
+import org.sagebionetworks.bridge.models.ResourceList;
+import org.sagebionetworks.bridge.models.healthdata.HealthDataRecord;
 
 import javax.servlet.http.Cookie;
 
@@ -37,6 +43,23 @@ public class HttpUtilTest {
         assertFalse(testCookie.getSecure());
     }
 
+    @Test
+    public void streamJson() throws Exception {
+        HealthDataRecord record = HealthDataRecord.create();
+        record.setHealthCode("healthCode");
+        record.setId("recordId");
+        ResourceList<HealthDataRecord> list = new ResourceList<>(ImmutableList.of(record));
+
+        MappingJacksonValue value = HttpUtil.streamJson(HealthDataRecord.PUBLIC_RECORD_WRITER, list);
+        assertSame(value.getValue(), list);
+
+        // The value is written with the writer's filters.
+        JsonNode node = DefaultObjectMapper.INSTANCE.readTree(TestUtils.toJson(value));
+        JsonNode recordNode = node.get("items").get(0);
+        assertEquals(recordNode.get("id").textValue(), "recordId");
+        assertFalse(recordNode.has("healthCode"));
+    }
+
     public static void assertErrorResponse(ResponseEntity<String> actualResponse, HttpStatus expectedStatus,
                                            String expectedType, String expectedMessage) throws IOException {
         assertEquals(actualResponse.getStatusCode(), expectedStatus);
@@ -0,0 +1,119 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import org.joda.time.DateTime;
+import org.testng.annotations.Test;
+
+import org.sagebionetworks.bridge.models.templates.TemplateRevision;
+
+public class CompiledTemplateTest {
+    private static final DateTime CREATED_ON = DateTime.parse("2020-05-01T10:00:00.000Z");
+    private static final Map<String,String> VALUES = ImmutableMap.of("studyName", "Study", "support.email",
+            "support@test.com", "empty", "");
+
+    @Test
+    public void rendersVariables() {
+        CompiledTemplate template = CompiledTemplate.compile("${studyName} <${support.email}>${empty}!");
+        assertEquals(template.render(VALUES), "Study <support@test.com>!");
+    }
+
+    @Test
+    public void rendersTemplateWithoutVariables() {
+        assertEquals(CompiledTemplate.compile("").render(VALUES), "");
+        assertEquals(CompiledTemplate.compile("no variables").render(VALUES), "no variables");
+    }
+
+    @Test
+    public void leavesUnknownAndNullVariables() {
+        Map<String,String> values = new HashMap<>();
+        values.put("studyName", null);
+        CompiledTemplate template = CompiledTemplate.compile("${studyName} ${unknown} ${}");
+        assertEquals(template.render(values), "${studyName} ${unknown} ${}");
+    }
+
+    @Test
+    public void leavesMalformedVariables() {
+        assertEquals(CompiledTemplate.compile("${studyName").render(VALUES), "${studyName");
+        assertEquals(CompiledTemplate.compile("$studyName} {studyName}").render(VALUES), "$studyName} {studyName}");
+        assertEquals(CompiledTemplate.compile("${a${studyName}}").render(VALUES), "${aStudy}");
+    }
+
+    @Test
+    public void doesNotExpandValues() {
+        Map<String,String> values = ImmutableMap.of("a", "${b}", "b", "B");
+        assertEquals(CompiledTemplate.compile("${a} ${b}").render(values), "${b} B");
+    }
+
+    @Test
+    public void rendersLargeDocumentLikeStringReplacement() {
+        // A consent document of a few hundred KB, with variables throughout.
+        Map<String,String> values = new HashMap<>();
+        StringBuilder builder = new StringBuilder();
+        for (int i=0; i < 2000; i++) {
+            values.put("var" + i, "value " + i);
+            builder.append("<p>Section ").append(i).append(" of the ${studyName} consent, ${var").append(i)
+                    .append("}. Contact ${support.email} with questions about ${unknown").append(i).append("}.</p>\n");
+        }
+        values.putAll(VALUES);
+        String document = builder.toString();
+
+        String expected = document;
+        for (Map.Entry<String,String> entry : values.entrySet()) {
+            expected = expected.replace("${" + entry.getKey() + "}", entry.getValue());
+        }
+        assertEquals(CompiledTemplate.compile(document).render(values), expected);
+    }
+
+    @Test
+    public void cachesRevisionsByGuidAndCreatedOn() {
+        TemplateRevision revision = revision("cachesRevisions", CREATED_ON, "Subject ${studyName}", "Body");
+
+        CompiledTemplate subject = CompiledTemplate.subjectOf(revision);
+        assertEquals(subject.render(VALUES), "Subject Study");
+        assertSame(CompiledTemplate.subjectOf(revision), subject);
+        assertEquals(CompiledTemplate.documentContentOf(revision).render(VALUES), "Body");
+
+        // Another copy of the same revision uses the same compiled template
+        TemplateRevision copy = revision("cachesRevisions", CREATED_ON, "Subject ${studyName}", "Body");
+        assertSame(CompiledTemplate.subjectOf(copy), subject);
+
+        // A later revision of the template is compiled separately
+        TemplateRevision later = revision("cachesRevisions", CREATED_ON.plusMinutes(1), "Later ${studyName}", "Body");
+        assertEquals(CompiledTemplate.subjectOf(later).render(VALUES), "Later Study");
+    }
+
+    @Test
+    public void recompilesRevisionWithDifferentContent() {
+        TemplateRevision revision = revision("recompilesRevision", CREATED_ON, "Subject", "Body ${studyName}");
+        CompiledTemplate body = CompiledTemplate.documentContentOf(revision);
+
+        revision.setDocumentContent("Changed ${studyName}");
+        CompiledTemplate changed = CompiledTemplate.documentContentOf(revision);
+        assertNotSame(changed, body);
+        assertEquals(changed.render(VALUES), "Changed Study");
+    }
+
+    @Test
+    public void doesNotCacheUnsavedRevisions() {
+        TemplateRevision revision = revision(null, null, "Subject", "Body ${studyName}");
+        assertEquals(CompiledTemplate.documentContentOf(revision).render(VALUES), "Body Study");
+        assertNotSame(CompiledTemplate.documentContentOf(revision), CompiledTemplate.documentContentOf(revision));
+    }
+
+    private static TemplateRevision revision(String templateGuid, DateTime createdOn, String subject,
+            String documentContent) {
+        TemplateRevision revision = TemplateRevision.create();
+        revision.setTemplateGuid(templateGuid);
+        revision.setCreatedOn(createdOn);
+        revision.setSubject(subject);
+        revision.setDocumentContent(documentContent);
+        return revision;
+    }
+}
@@ -0,0 +1,95 @@
+package org.sagebionetworks.bridge.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getSum(), 0L);
+        assertEquals(histogram.getMax(), 0L);
+        assertEquals(histogram.getValueAtPercentile(99.0), 0L);
+        assertEquals(histogram.getCumulativeBucketCount(LatencyHistogram.BUCKET_BOUNDS.length-1), 0L);
+    }
+    
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i=1; i <= 7; i++) {
+            histogram.record(i);
+        }
+        assertEquals(histogram.getValueAtPercentile(0.0), 1L);
+        assertEquals(histogram.getValueAtPercentile(50.0), 4L);
+        assertEquals(histogram.getValueAtPercentile(100.0), 7L);
+        assertEquals(histogram.getCount(), 7L);
+        assertEquals(histogram.getSum(), 28L);
+    }
+    
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i=1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertWithinPrecision(histogram.getValueAtPercentile(50.0), 500L);
+        assertWithinPrecision(histogram.getValueAtPercentile(90.0), 900L);
+        assertWithinPrecision(histogram.getValueAtPercentile(99.0), 990L);
+        assertEquals(histogram.getValueAtPercentile(100.0), 1000L);
+        assertEquals(histogram.getMax(), 1000L);
+    }
+    
+    @Test
+    public void bucketsAreCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3L); // <= 5
+        histogram.record(5L); // <= 5
+        histogram.record(40L); // <= 50
+        histogram.record(60000L); // +Inf only
+        
+        assertEquals(histogram.getCumulativeBucketCount(0), 2L);
+        assertEquals(histogram.getCumulativeBucketCount(2), 2L);
+        assertEquals(histogram.getCumulativeBucketCount(3), 3L);
+        assertEquals(histogram.getCumulativeBucketCount(LatencyHistogram.BUCKET_BOUNDS.length-1), 3L);
+        assertEquals(histogram.getCount(), 4L);
+    }
+    
+    @Test
+    public void negativeValuesRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-10L);
+        
+        assertEquals(histogram.getCount(), 1L);
+        assertEquals(histogram.getSum(), 0L);
+        assertEquals(histogram.getValueAtPercentile(50.0), 0L);
+    }
+    
+    @Test
+    public void veryLargeValuesAreCapped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        
+        // Percentiles top out after about 17 minutes, but the maximum is still exact
+        long value = histogram.getValueAtPercentile(100.0);
+        assertTrue(value >= (1L << 19) && value < (1L << 20));
+        assertEquals(histogram.getMax(), Long.MAX_VALUE / 2);
+    }
+    
+    @Test
+    public void bucketIndicesRoundTrip() {
+        for (long value : new long[] {0L, 7L, 8L, 15L, 16L, 17L, 100L, 1023L, 1024L, 99999L}) {
+            long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.fineIndex(value));
+            assertTrue(highest >= value);
+            assertWithinPrecision(highest, value);
+        }
+    }
+    
+    private void assertWithinPrecision(long actual, long expected) {
+        assertTrue(Math.abs(actual - expected) <= expected / 8, actual + " is not within 12.5% of " + expected);
+    }
+}
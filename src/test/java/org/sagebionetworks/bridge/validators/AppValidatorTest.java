@@ -22,6 +22,7 @@ import org.sagebionetworks.bridge.models.apps.AndroidAppLink;
 import org.sagebionetworks.bridge.models.apps.AppleAppLink;
 import org.sagebionetworks.bridge.models.apps.OAuthProvider;
 import org.sagebionetworks.bridge.models.apps.OAuthProviderTest;
+import org.sagebionetworks.bridge.models.apps.RateLimit;
 import org.sagebionetworks.bridge.models.apps.PasswordPolicy;
 import org.sagebionetworks.bridge.models.upload.UploadFieldDefinition;
 import org.sagebionetworks.bridge.models.upload.UploadFieldType;
@@ -419,6 +420,46 @@ public class AppValidatorTest {
         assertValidatorMessage(INSTANCE, app, "oauthProviders[vendor]", "is required");
     }
     
+    @Test
+    public void rateLimitValid() {
+        app.getRateLimits().put("PARTICIPANT_SEARCH", new RateLimit(10, 0, 60));
+        Validate.entityThrowingException(INSTANCE, app);
+    }
+    
+    @Test
+    public void rateLimitRequired() {
+        app.getRateLimits().put("PARTICIPANT_SEARCH", null);
+        assertValidatorMessage(INSTANCE, app, "rateLimits[PARTICIPANT_SEARCH]", "is required");
+    }
+    
+    @Test
+    public void rateLimitTypeMustBeRateLimited() {
+        app.getRateLimits().put("EMAIL_SIGNIN", new RateLimit(10, 0, 60));
+        assertValidatorMessage(INSTANCE, app, "rateLimits[EMAIL_SIGNIN]",
+                "is not a request type that can be rate limited");
+    }
+    
+    @Test
+    public void rateLimitPerUserLimitCannotBeNegative() {
+        app.getRateLimits().put("REPORT_WRITE", new RateLimit(-1, 0, 60));
+        assertValidatorMessage(INSTANCE, app, "rateLimits[REPORT_WRITE].perUserLimit",
+                "must be zero (no limit set) or higher");
+    }
+    
+    @Test
+    public void rateLimitPerAppLimitCannotBeNegative() {
+        app.getRateLimits().put("REPORT_WRITE", new RateLimit(0, -1, 60));
+        assertValidatorMessage(INSTANCE, app, "rateLimits[REPORT_WRITE].perAppLimit",
+                "must be zero (no limit set) or higher");
+    }
+    
+    @Test
+    public void rateLimitWindowRequired() {
+        app.getRateLimits().put("REPORT_WRITE", new RateLimit(10, 100, 0));
+        assertValidatorMessage(INSTANCE, app, "rateLimits[REPORT_WRITE].windowSeconds",
+                "must be one second or longer");
+    }
+    
     @Test
     public void oauthProviderCannotBeCalledSynapse() {
         OAuthProvider provider = new OAuthProvider("clientId", "secret", "endpoint",